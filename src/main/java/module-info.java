@@ -12,6 +12,7 @@ module org.igv {
     requires java.desktop;
     requires java.instrument;
     requires java.management;
+    requires java.net.http;
     requires java.prefs;
     requires java.sql;
     requires java.xml;
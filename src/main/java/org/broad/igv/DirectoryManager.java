@@ -279,6 +279,32 @@ public class DirectoryManager {
 
     }
 
+    /**
+     * Directory for indexes IGV builds itself for non-indexed feature files.
+     */
+    public static synchronized File getFeatureIndexDirectory() {
+
+        File indexDir = new File(DirectoryManager.getIgvDirectory(), "index");
+        if (!indexDir.exists()) {
+            indexDir.mkdir();
+        }
+        return indexDir;
+
+    }
+
+    /**
+     * Directory for coverage summaries IGV computes for alignment files.
+     */
+    public static synchronized File getCoverageCacheDirectory() {
+
+        File coverageDir = new File(DirectoryManager.getIgvDirectory(), "coverage");
+        if (!coverageDir.exists()) {
+            coverageDir.mkdir();
+        }
+        return coverageDir;
+
+    }
+
     public static synchronized File getLogFile() throws IOException {
 
         File logFile = new File(getIgvDirectory(), "igv.log");
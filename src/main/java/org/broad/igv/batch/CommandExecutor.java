@@ -114,6 +114,8 @@ public class CommandExecutor {
             } else if (cmd.equalsIgnoreCase("snapshot")) {
                 String filename = param1;
                 result = createSnapshot(filename, param2);
+            } else if (cmd.equalsIgnoreCase("snapshots")) {
+                result = createSnapshots(param1, param2, param3);
             } else if ((cmd.equalsIgnoreCase("loadfile") || cmd.equalsIgnoreCase("load")) && param1 != null) {
                 result = load(param1, param2, param3, param4);
             } else if (cmd.equalsIgnoreCase("genome") && args.size() > 1) {
@@ -885,6 +887,38 @@ public class CommandExecutor {
     }
 
 
+    /**
+     * Create snapshots of a list of loci concurrently, without changing the current view.
+     *
+     * @param lociArg       path to a file of loci, one per line, or a comma delimited list of loci
+     * @param outputPattern output file name pattern, see {@link ParallelSnapshotRunner}.  Defaults to "{locus}.png"
+     * @param threadsArg    number of loci to load and render at once
+     */
+    private String createSnapshots(String lociArg, String outputPattern, String threadsArg) throws IOException {
+
+        if (lociArg == null) {
+            return "ERROR: missing loci parameter";
+        }
+
+        List<String> loci = ParallelSnapshotRunner.parseLoci(StringUtils.stripQuotes(lociArg));
+        if (loci.isEmpty()) {
+            return "ERROR: no loci in " + lociArg;
+        }
+
+        outputPattern = outputPattern == null ? "{locus}.png" : StringUtils.stripQuotes(outputPattern);
+
+        int nThreads = Runtime.getRuntime().availableProcessors();
+        if (threadsArg != null) {
+            try {
+                nThreads = Math.max(1, Integer.parseInt(threadsArg));
+            } catch (NumberFormatException e) {
+                return "ERROR: thread count (" + threadsArg + ") is not an integer";
+            }
+        }
+
+        return new ParallelSnapshotRunner(igv, snapshotDirectory, outputPattern, nThreads).run(loci);
+    }
+
     private static void createParents(File outputFile) {
         File parent = outputFile.getParentFile();
         if (parent != null && !parent.exists()) {
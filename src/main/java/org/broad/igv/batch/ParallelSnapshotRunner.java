@@ -0,0 +1,251 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.batch;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.event.IGVEventBus;
+import org.broad.igv.feature.FeatureDB;
+import org.broad.igv.feature.Locus;
+import org.broad.igv.feature.NamedFeature;
+import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.feature.genome.GenomeManager;
+import org.broad.igv.track.Track;
+import org.broad.igv.ui.IGV;
+import org.broad.igv.ui.panel.FrameManager;
+import org.broad.igv.ui.panel.MainPanel;
+import org.broad.igv.ui.panel.ReferenceFrame;
+import org.broad.igv.ui.util.ImageFileTypes;
+import org.broad.igv.ui.util.SnapshotUtilities;
+import org.broad.igv.util.FileUtils;
+import org.broad.igv.util.ParsingUtils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Renders snapshots of many loci concurrently.  Each worker owns an offscreen {@link ReferenceFrame}, detached from
+ * the application view, which it moves to each of its loci in turn.  Track data is loaded for that frame and the
+ * main panel is painted for it with {@link MainPanel#paintOffscreen(java.awt.Graphics2D, java.awt.Rectangle, ReferenceFrame, boolean)}.
+ * Reusing a fixed set of frames bounds the per-frame data tracks cache.  The frames are registered with
+ * {@link FrameManager#addOffscreenFrame(ReferenceFrame)} while the snapshots run, so that data loaded for one worker's
+ * frame is not evicted by another's load before it is painted.
+ * <p>
+ * Loading and image encoding run concurrently.  Painting is serialized by
+ * {@link SnapshotUtilities#doFrameSnapshot(MainPanel, ReferenceFrame, File, ImageFileTypes.Type, boolean)}, as
+ * tracks are not safe to render from several threads.  Painting reads, but does not change, the Swing components, and
+ * is done off the event thread as for other batch snapshots.
+ * <p>
+ * Tracks are not autoscaled per locus, since data ranges are shared by all frames.
+ */
+public class ParallelSnapshotRunner {
+
+    private static Logger log = Logger.getLogger(ParallelSnapshotRunner.class);
+
+    public static final String LOCUS_TOKEN = "{locus}";
+    public static final String INDEX_TOKEN = "{index}";
+
+    private final IGV igv;
+    private final File directory;
+    private final String outputPattern;
+    private final int nThreads;
+
+    /**
+     * @param igv
+     * @param directory     directory for output files, or null for the current directory
+     * @param outputPattern output file name.  {locus} is replaced by the locus string, {index} by its position in the list.
+     * @param nThreads      number of loci to load and render at once
+     */
+    public ParallelSnapshotRunner(IGV igv, File directory, String outputPattern, int nThreads) {
+        this.igv = igv;
+        this.directory = directory;
+        this.outputPattern = outputPattern;
+        this.nThreads = nThreads;
+    }
+
+    /**
+     * Parse a list of loci, either a path to a file with one locus per line or a comma delimited list
+     */
+    public static List<String> parseLoci(String lociArg) throws IOException {
+        List<String> loci = new ArrayList<>();
+        if (FileUtils.resourceExists(lociArg)) {
+            try (BufferedReader reader = ParsingUtils.openBufferedReader(lociArg)) {
+                String nextLine;
+                while ((nextLine = reader.readLine()) != null) {
+                    nextLine = nextLine.trim();
+                    if (nextLine.length() > 0 && !nextLine.startsWith("#")) {
+                        // Allow bed-style and whitespace delimited lines, use the first token
+                        loci.add(nextLine.split("\\s+")[0]);
+                    }
+                }
+            }
+        } else {
+            for (String l : lociArg.split(",")) {
+                if (l.trim().length() > 0) loci.add(l.trim());
+            }
+        }
+        return loci;
+    }
+
+    /**
+     * Render a snapshot for each locus.  Returns "OK", or an error message summarizing failures.
+     */
+    public String run(List<String> loci) {
+
+        MainPanel mainPanel = igv.getMainPanel();
+        int width = mainPanel.getDataPanelWidth();
+
+        // One frame per worker, each with its own event bus so view changes do not reach the UI
+        List<ReferenceFrame> offscreenFrames = new ArrayList<>();
+        for (int i = 0; i < nThreads; i++) {
+            ReferenceFrame frame = new ReferenceFrame("snapshot-" + i, new IGVEventBus());
+            frame.setBounds(0, width);
+            offscreenFrames.add(frame);
+            FrameManager.addOffscreenFrame(frame);
+        }
+        BlockingQueue<ReferenceFrame> frames = new LinkedBlockingQueue<>(offscreenFrames);
+
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        List<Future<String>> results = new ArrayList<>();
+        long startTime = System.currentTimeMillis();
+        try {
+            SnapshotUtilities.snapshotInProgress = true;
+            for (int i = 0; i < loci.size(); i++) {
+                final int index = i;
+                final String locus = loci.get(i);
+                results.add(executor.submit(() -> {
+                    ReferenceFrame frame = frames.take();
+                    try {
+                        return snapshot(mainPanel, frame, locus, index);
+                    } finally {
+                        frames.add(frame);
+                    }
+                }));
+            }
+
+            int errorCount = 0;
+            String firstError = null;
+            for (Future<String> f : results) {
+                String result;
+                try {
+                    result = f.get();
+                } catch (ExecutionException e) {
+                    log.error("Error creating snapshot", e.getCause());
+                    result = "ERROR: " + e.getCause().getMessage();
+                }
+                if (result == null || !result.equals("OK")) {
+                    errorCount++;
+                    if (firstError == null) firstError = result;
+                }
+            }
+
+            long elapsed = System.currentTimeMillis() - startTime;
+            String summary = String.format("Snapshots: %d loci in %d ms using %d threads, %d errors",
+                    loci.size(), elapsed, nThreads, errorCount);
+            log.info(summary);
+            return errorCount == 0 ? "OK" : "ERROR: " + errorCount + " snapshots failed. First error: " + firstError;
+
+        } catch (InterruptedException e) {
+            return "ERROR: snapshots interrupted";
+        } finally {
+            SnapshotUtilities.snapshotInProgress = false;
+            executor.shutdownNow();
+            for (ReferenceFrame frame : offscreenFrames) {
+                FrameManager.removeOffscreenFrame(frame);
+            }
+        }
+    }
+
+    private String snapshot(MainPanel mainPanel, ReferenceFrame frame, String locusString, int index) throws Exception {
+
+        Locus locus = resolveLocus(locusString);
+        if (locus == null) {
+            String msg = "ERROR: Unknown locus: " + locusString;
+            log.error(msg);
+            return msg;
+        }
+
+        File file = getOutputFile(locusString, index);
+        String extension = FileUtils.getFileExtension(file.getAbsolutePath());
+        if (extension == null || extension.length() == 0) {
+            file = new File(file.getAbsolutePath() + ".png");
+            extension = ".png";
+        }
+        ImageFileTypes.Type type = ImageFileTypes.getImageFileType(extension);
+        if (type != ImageFileTypes.Type.PNG && type != ImageFileTypes.Type.SVG) {
+            return "ERROR: " + type + " output is not supported.  Try '.png' or '.svg'";
+        }
+
+        long t0 = System.currentTimeMillis();
+        frame.jumpTo(locus);
+        for (Track track : igv.getAllTracks()) {
+            if (track.isVisible() && !track.isReadyToPaint(frame)) {
+                track.load(frame);
+            }
+        }
+
+        long t1 = System.currentTimeMillis();
+        String result = SnapshotUtilities.doFrameSnapshot(mainPanel, frame, file, type, true);
+        long t2 = System.currentTimeMillis();
+
+        log.info("Snapshot: " + file.getAbsolutePath() + "  load: " + (t1 - t0) + " ms  render: " + (t2 - t1) + " ms");
+        return result;
+    }
+
+    private Locus resolveLocus(String locusString) {
+        Genome genome = GenomeManager.getInstance().getCurrentGenome();
+        Locus locus = Locus.fromString(locusString);
+        if (locus == null) {
+            if (genome != null && genome.getChromosome(locusString) != null) {
+                // Whole chromosome
+                return new Locus(genome.getCanonicalChrName(locusString), 0, genome.getChromosome(locusString).getLength());
+            }
+            NamedFeature feature = FeatureDB.getFeature(locusString.toUpperCase().trim());
+            if (feature == null) {
+                return null;
+            }
+            locus = new Locus(feature.getChr(), feature.getStart(), feature.getEnd());
+        }
+        if (genome != null) {
+            locus = new Locus(genome.getCanonicalChrName(locus.getChr()), locus.getStart(), locus.getEnd());
+        }
+        return locus;
+    }
+
+    File getOutputFile(String locusString, int index) {
+        String safeLocus = locusString.replaceAll("[:\\\\/]", "_").replace("-", "_").replace(",", "");
+        String filename = outputPattern.replace(LOCUS_TOKEN, safeLocus).replace(INDEX_TOKEN, String.valueOf(index));
+        File file = directory == null ? new File(filename) : new File(directory, filename);
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,118 @@
+package org.broad.igv.bedpe;
+
+import java.util.*;
+
+/**
+ * Combines interactions whose anchors fall in the same bins, typically one pixel wide, into a single feature.  Used
+ * at low zoom so the number of arcs drawn is bounded by the view rather than the file.
+ * <p>
+ * Intra-chromosomal interactions are binned by the midpoints of both anchors.  Inter-chromosomal interactions are
+ * binned by the midpoint of the local anchor and the chromosome of the other.  The score of a combined feature is the
+ * sum of its members' scores.
+ */
+public class BedPEAggregator {
+
+    private final double binSize;
+    private final Map<String, Map<Long, Bin>> bins = new LinkedHashMap<>();
+
+    public BedPEAggregator(double binSize) {
+        this.binSize = Math.max(1, binSize);
+    }
+
+    public static List<BedPE> aggregate(List<BedPE> features, double binSize) {
+        BedPEAggregator aggregator = new BedPEAggregator(binSize);
+        for (BedPE f : features) {
+            aggregator.add(f);
+        }
+        return aggregator.getFeatures();
+    }
+
+    public void add(BedPE bedPE) {
+        BedPEFeature f = bedPE.get();
+        if (bedPE.isSameChr()) {
+            add(f.chr1, f.start1, f.end1, f.chr2, f.start2, f.end2, f.score);
+        } else if (bedPE instanceof BedPEInterFeature && ((BedPEInterFeature) bedPE).getOrder() == 2) {
+            add(f.chr2, f.start2, f.end2, f.chr1, f.start1, f.end1, f.score);
+        } else {
+            add(f.chr1, f.start1, f.end1, f.chr2, f.start2, f.end2, f.score);
+        }
+    }
+
+    /**
+     * Add an interaction.  For inter-chromosomal interactions anchor 1 is the local anchor.
+     */
+    public void add(String chr1, int start1, int end1, String chr2, int start2, int end2, double score) {
+
+        boolean sameChr = chr1.equals(chr2);
+        long bin1 = (long) (((start1 + end1) / 2.0) / binSize);
+        long bin2 = sameChr ? (long) (((start2 + end2) / 2.0) / binSize) : 0;
+        if (bin2 < bin1) {
+            long tmp = bin1;
+            bin1 = bin2;
+            bin2 = tmp;
+        }
+
+        String key = sameChr ? chr1 : chr1 + "\t" + chr2;
+        Map<Long, Bin> chrBins = bins.computeIfAbsent(key, k -> new HashMap<>());
+        Long binKey = (bin1 << 32) | bin2;
+        Bin bin = chrBins.get(binKey);
+        if (bin == null) {
+            bin = new Bin(chr1, chr2, bin1, bin2, start2, end2);
+            chrBins.put(binKey, bin);
+        }
+        bin.add(start2, end2, score);
+    }
+
+    public List<BedPE> getFeatures() {
+        List<BedPE> features = new ArrayList<>();
+        for (Map<Long, Bin> chrBins : bins.values()) {
+            for (Bin bin : chrBins.values()) {
+                BedPEFeature f;
+                int start1 = (int) (bin.bin1 * binSize);
+                int end1 = (int) ((bin.bin1 + 1) * binSize);
+                if (bin.chr1.equals(bin.chr2)) {
+                    f = new BedPEFeature(bin.chr1, start1, end1, bin.chr2,
+                            (int) (bin.bin2 * binSize), (int) ((bin.bin2 + 1) * binSize));
+                    features.add(f);
+                } else {
+                    f = new BedPEFeature(bin.chr1, start1, end1, bin.chr2, bin.otherStart, bin.otherEnd);
+                    features.add(new BedPEInterFeature(f, 1));
+                }
+                f.score = bin.score;
+                f.scoreString = String.valueOf(bin.score);
+                if (bin.count > 1) {
+                    f.name = bin.count + " interactions";
+                }
+            }
+        }
+        features.sort(Comparator.comparingInt(BedPE::getStart));
+        return features;
+    }
+
+    private static class Bin {
+        final String chr1;
+        final String chr2;
+        final long bin1;
+        final long bin2;
+        int otherStart;
+        int otherEnd;
+        double score;
+        int count;
+
+        Bin(String chr1, String chr2, long bin1, long bin2, int otherStart, int otherEnd) {
+            this.chr1 = chr1;
+            this.chr2 = chr2;
+            this.bin1 = bin1;
+            this.bin2 = bin2;
+            this.otherStart = otherStart;
+            this.otherEnd = otherEnd;
+        }
+
+        void add(int start2, int end2, double score) {
+            otherStart = Math.min(otherStart, start2);
+            otherEnd = Math.max(otherEnd, end2);
+            this.score += score;
+            count++;
+        }
+    }
+}
@@ -0,0 +1,641 @@
+package org.broad.igv.bedpe;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.DirectoryManager;
+import org.broad.igv.Globals;
+import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.util.FileLineReader;
+import org.broad.igv.util.ResourceLocator;
+import org.broad.igv.util.SidecarFiles;
+import org.broad.igv.util.collections.IntArrayList;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.List;
+
+/**
+ * A two dimensional index over the anchors of a local bedpe file.  Features are read from the source file on demand,
+ * so memory scales with the features in view rather than the file.
+ * <p>
+ * Each chromosome's extent is divided into at most {@link #MAX_BINS} bins.  Intra-chromosomal features are filed in
+ * the cell (bin(start), bin(end)) of their full extent, inter-chromosomal features are filed once for each anchor in
+ * the cell of that anchor.  A range query visits rows i <= bin(end) and, in each row, only cells j >= bin(start), so
+ * long range interactions spanning the view are found without scanning the many short ones outside it.
+ * <p>
+ * The columns needed to filter and aggregate records are stored with the index, the source line is only read when a
+ * feature is returned.
+ * <p>
+ * File layout (big endian)
+ * <pre>
+ *   header (see {@link SidecarFiles}), UTF genomeId
+ *   UTF type, int colorColumn, int thicknessColumn, boolean col7isNumeric, int columnCount, columnCount x UTF column
+ *   int chrCount, chrCount x UTF chr
+ *   int sectionCount, sectionCount x { int chr, int binSize, int nBins, int nCells, int nRecords, long position }
+ *   sections:  int[nBins + 1] rowStart, int[nCells] cellColumn, int[nCells + 1] cellStart,
+ *              long[n] offset, int[n] start1, int[n] end1, int[n] start2, int[n] end2, int[n] chr2,
+ *              float[n] score, byte[n] order
+ * </pre>
+ * Cells are sorted by row then column, records by cell.  For inter-chromosomal records anchor 1 is the local anchor
+ * and order is the anchor's position (1 or 2) in the source line, for intra-chromosomal records order is 0.
+ */
+public class BedPEIndex {
+
+    private static Logger log = Logger.getLogger(BedPEIndex.class);
+
+    static final int MAGIC = 0x49474250;   // "IGBP"
+    static final int VERSION = 2;
+    static final int MAX_BINS = 1024;
+    static final int MIN_BIN_SIZE = 1000;
+
+    private final File sourceFile;
+    private final Genome genome;
+    private final BedPEParser.DatasetType type;
+    private final int colorColumn;
+    private final int thicknessColumn;
+    private final boolean col7isNumeric;
+    private final String[] columns;
+    private final String[] chrNames;
+    private final Map<String, Section> sections;
+
+    private BedPEIndex(File sourceFile, Genome genome, BedPEParser.DatasetType type, int colorColumn,
+                       int thicknessColumn, boolean col7isNumeric, String[] columns, String[] chrNames,
+                       Map<String, Section> sections) {
+        this.sourceFile = sourceFile;
+        this.genome = genome;
+        this.type = type;
+        this.colorColumn = colorColumn;
+        this.thicknessColumn = thicknessColumn;
+        this.col7isNumeric = col7isNumeric;
+        this.columns = columns;
+        this.chrNames = chrNames;
+        this.sections = sections;
+    }
+
+    /**
+     * Return true if the resource is a local, uncompressed file, which can be read at random offsets
+     */
+    public static boolean isIndexable(ResourceLocator locator) {
+        String path = locator.getPath().toLowerCase();
+        return locator.isLocal() && !path.endsWith(".gz") && !path.endsWith(".bgz") && new File(locator.getPath()).isFile();
+    }
+
+    /**
+     * Open the index for a local bedpe file, building it in the IGV index directory if needed.
+     */
+    public static BedPEIndex open(ResourceLocator locator, Genome genome) throws IOException {
+
+        File sourceFile = new File(locator.getPath());
+        File indexFile = SidecarFiles.getFile(DirectoryManager.getFeatureIndexDirectory(), sourceFile, ".bpi");
+        String genomeId = genome == null ? "" : genome.getId();
+
+        if (!isCurrent(sourceFile, indexFile, genomeId)) {
+            long t0 = System.currentTimeMillis();
+            build(sourceFile, indexFile, genome);
+            log.info("Indexed " + sourceFile.getName() + " in " + (System.currentTimeMillis() - t0) + " ms");
+        }
+        return read(sourceFile, indexFile, genome);
+    }
+
+    /**
+     * Return true if {@code indexFile} exists and was built from the current version of {@code sourceFile} for
+     * the given genome.
+     */
+    public static boolean isCurrent(File sourceFile, File indexFile, String genomeId) {
+        try (DataInputStream dis = SidecarFiles.openIfCurrent(indexFile, MAGIC, VERSION, sourceFile)) {
+            return dis != null &&
+                    dis.readUTF().equals(genomeId);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Scan {@code sourceFile} and write its index.  Lines are parsed with {@link BedPEParser} so canonical chromosome
+     * names, header handling, and scores match the in-memory loader.
+     */
+    public static void build(File sourceFile, File indexFile, Genome genome) throws IOException {
+
+        BedPEParser parser = new BedPEParser(genome);
+        Map<String, Integer> chrIds = new LinkedHashMap<>();
+        Map<Integer, Records> records = new LinkedHashMap<>();
+
+        try (FileLineReader reader = new FileLineReader(sourceFile)) {
+            long offset = 0;
+            String nextLine;
+            while ((nextLine = reader.readLine(offset)) != null) {
+                BedPEFeature f = parser.parseLine(nextLine);
+                if (f != null) {
+                    int chr1 = chrIds.computeIfAbsent(f.chr1, k -> chrIds.size());
+                    int chr2 = chrIds.computeIfAbsent(f.chr2, k -> chrIds.size());
+                    float score7 = f.name != null && BedPEParser.isNumeric(f.name) ? Float.parseFloat(f.name) : Float.NaN;
+                    if (chr1 == chr2) {
+                        records.computeIfAbsent(chr1, k -> new Records())
+                                .add(offset, f.start1, f.end1, f.start2, f.end2, chr2, (float) f.score, score7, (byte) 0);
+                    } else {
+                        records.computeIfAbsent(chr1, k -> new Records())
+                                .add(offset, f.start1, f.end1, f.start2, f.end2, chr2, (float) f.score, score7, (byte) 1);
+                        records.computeIfAbsent(chr2, k -> new Records())
+                                .add(offset, f.start2, f.end2, f.start1, f.end1, chr1, (float) f.score, score7, (byte) 2);
+                    }
+                }
+                offset = reader.getNextLineOffset();
+            }
+        }
+
+        boolean col7isNumeric = parser.col7isNumeric;
+        for (Records r : records.values()) {
+            r.sort(col7isNumeric);
+        }
+
+        String genomeId = genome == null ? "" : genome.getId();
+        long position = header(sourceFile, genomeId, parser, col7isNumeric, chrIds, records, null).length;
+        Map<Integer, Long> positions = new HashMap<>();
+        for (Map.Entry<Integer, Records> entry : records.entrySet()) {
+            positions.put(entry.getKey(), position);
+            position += entry.getValue().sectionSize();
+        }
+
+        byte[] header = header(sourceFile, genomeId, parser, col7isNumeric, chrIds, records, positions);
+        SidecarFiles.write(indexFile, tmpFile -> {
+            try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+                dos.write(header);
+                for (Records r : records.values()) {
+                    r.write(dos);
+                }
+            }
+        });
+    }
+
+    private static byte[] header(File sourceFile, String genomeId, BedPEParser parser, boolean col7isNumeric,
+                                 Map<String, Integer> chrIds, Map<Integer, Records> records,
+                                 Map<Integer, Long> positions) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream hos = new DataOutputStream(bytes);
+        SidecarFiles.writeHeader(hos, MAGIC, VERSION, sourceFile);
+        hos.writeUTF(genomeId);
+        hos.writeUTF(parser.getType().toString());
+        hos.writeInt(parser.colorColumn);
+        hos.writeInt(parser.thicknessColumn);
+        hos.writeBoolean(col7isNumeric);
+        hos.writeInt(parser.columns.length);
+        for (String c : parser.columns) {
+            hos.writeUTF(c);
+        }
+        hos.writeInt(chrIds.size());
+        for (String chr : chrIds.keySet()) {
+            hos.writeUTF(chr);
+        }
+        hos.writeInt(records.size());
+        for (Map.Entry<Integer, Records> entry : records.entrySet()) {
+            Records r = entry.getValue();
+            hos.writeInt(entry.getKey());
+            hos.writeInt(r.binSize);
+            hos.writeInt(r.nBins);
+            hos.writeInt(r.nCells);
+            hos.writeInt(r.size);
+            hos.writeLong(positions == null ? 0 : positions.get(entry.getKey()));
+        }
+        hos.flush();
+        return bytes.toByteArray();
+    }
+
+    public static BedPEIndex read(File sourceFile, File indexFile, Genome genome) throws IOException {
+
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+             FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+
+            SidecarFiles.skipHeader(dis, MAGIC, VERSION, indexFile);
+            dis.readUTF();
+
+            BedPEParser.DatasetType type = BedPEParser.DatasetType.valueOf(dis.readUTF());
+            int colorColumn = dis.readInt();
+            int thicknessColumn = dis.readInt();
+            boolean col7isNumeric = dis.readBoolean();
+            String[] columns = new String[dis.readInt()];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = dis.readUTF();
+            }
+            String[] chrNames = new String[dis.readInt()];
+            for (int i = 0; i < chrNames.length; i++) {
+                chrNames[i] = dis.readUTF();
+            }
+
+            Map<String, Section> sections = new LinkedHashMap<>();
+            int sectionCount = dis.readInt();
+            for (int i = 0; i < sectionCount; i++) {
+                String chr = chrNames[dis.readInt()];
+                int binSize = dis.readInt();
+                int nBins = dis.readInt();
+                int nCells = dis.readInt();
+                int nRecords = dis.readInt();
+                long position = dis.readLong();
+                long size = sectionSize(nBins, nCells, nRecords);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+                sections.put(chr, new Section(binSize, nBins, nCells, nRecords, buffer));
+            }
+            return new BedPEIndex(sourceFile, genome, type, colorColumn, thicknessColumn, col7isNumeric, columns,
+                    chrNames, sections);
+        }
+    }
+
+    public BedPEParser.DatasetType getType() {
+        return type;
+    }
+
+    public Collection<String> getChromosomeNames() {
+        return sections.keySet();
+    }
+
+    /**
+     * @return the number of distinct features, inter-chromosomal features are counted once
+     */
+    public int getFeatureCount() {
+        int count = 0;
+        for (Section s : sections.values()) {
+            for (int i = 0; i < s.size; i++) {
+                if (s.orders.get(i) != 2) count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Return the number of records overlapping the range
+     */
+    public int count(String chr, int start, int end) {
+        Section s = sections.get(chr);
+        return s == null ? 0 : s.query(start, end).size();
+    }
+
+    /**
+     * Return the features overlapping the range.  If there are more than {@code maxFeatures} they are aggregated in
+     * bins of {@code binSize} bp, typically the width of a pixel, from the index alone.
+     */
+    public List<BedPE> getFeatures(String chr, int start, int end, double binSize, int maxFeatures) throws IOException {
+
+        Section s = sections.get(chr);
+        if (s == null) {
+            return Collections.emptyList();
+        }
+        int[] indices = s.query(start, end).toArray();
+
+        if (indices.length > maxFeatures) {
+            BedPEAggregator aggregator = new BedPEAggregator(binSize);
+            for (int i : indices) {
+                aggregator.add(chr, s.starts1.get(i), s.ends1.get(i), chrNames[s.chrs2.get(i)],
+                        s.starts2.get(i), s.ends2.get(i), s.scores.get(i));
+            }
+            return aggregator.getFeatures();
+        }
+
+        // Read lines in file order.  Offsets are unique within a section.
+        long[] keys = new long[indices.length];
+        Map<Long, Byte> orders = new HashMap<>();
+        for (int k = 0; k < indices.length; k++) {
+            keys[k] = s.offsets.get(indices[k]);
+            orders.put(keys[k], s.orders.get(indices[k]));
+        }
+        Arrays.sort(keys);
+
+        List<BedPEFeature> features = readFeatures(keys);
+        List<BedPE> result = new ArrayList<>(features.size());
+        for (int k = 0; k < features.size(); k++) {
+            BedPEFeature f = features.get(k);
+            byte order = orders.get(keys[k]);
+            result.add(order == 0 ? f : new BedPEInterFeature(f, order));
+        }
+        result.sort(Comparator.comparingInt(BedPE::getStart));
+        return result;
+    }
+
+    /**
+     * Return all features, with inter-chromosomal features once.  Intended for small files, see {@link #getFeatureCount()}.
+     */
+    public List<BedPEFeature> getAllFeatures() throws IOException {
+        LongArray offsets = new LongArray();
+        for (Section s : sections.values()) {
+            for (int i = 0; i < s.size; i++) {
+                if (s.orders.get(i) != 2) offsets.add(s.offsets.get(i));
+            }
+        }
+        long[] keys = offsets.toArray();
+        Arrays.sort(keys);
+        return readFeatures(keys);
+    }
+
+    /**
+     * Return features in genome coordinates aggregated in bins of {@code binSize} bp.  Only the index is read.
+     */
+    public List<BedPE> getWholeGenomeFeatures(double binSize) {
+        BedPEAggregator aggregator = new BedPEAggregator(binSize);
+        for (Map.Entry<String, Section> entry : sections.entrySet()) {
+            String chr = entry.getKey();
+            if (genome.getChromosome(chr) == null) continue;
+            Section s = entry.getValue();
+            for (int i = 0; i < s.size; i++) {
+                if (s.orders.get(i) == 2) continue;
+                String chr2 = chrNames[s.chrs2.get(i)];
+                if (genome.getChromosome(chr2) == null) continue;
+                aggregator.add(Globals.CHR_ALL,
+                        genome.getGenomeCoordinate(chr, s.starts1.get(i)),
+                        genome.getGenomeCoordinate(chr, s.ends1.get(i)),
+                        Globals.CHR_ALL,
+                        genome.getGenomeCoordinate(chr2, s.starts2.get(i)),
+                        genome.getGenomeCoordinate(chr2, s.ends2.get(i)),
+                        s.scores.get(i));
+            }
+        }
+        return aggregator.getFeatures();
+    }
+
+    /**
+     * Read and parse the lines at the given offsets, which must be sorted
+     */
+    private List<BedPEFeature> readFeatures(long[] offsets) throws IOException {
+
+        BedPEParser parser = new BedPEParser(genome);
+        parser.colorColumn = colorColumn;
+        parser.thicknessColumn = thicknessColumn;
+        parser.columns = columns;
+        parser.type = type;
+
+        List<BedPEFeature> features = new ArrayList<>(offsets.length);
+        try (FileLineReader reader = new FileLineReader(sourceFile)) {
+            for (long offset : offsets) {
+                BedPEFeature f = parser.parseLine(reader.readLine(offset));
+                if (col7isNumeric) {
+                    BedPEParser.setScoreFromName(f);
+                }
+                features.add(f);
+            }
+        }
+        return features;
+    }
+
+    private static long sectionSize(int nBins, int nCells, int nRecords) {
+        return 4L * (nBins + 1) + 4L * nCells + 4L * (nCells + 1) + 33L * nRecords;
+    }
+
+    /**
+     * View over a mapped chromosome section
+     */
+    private static class Section {
+
+        final int binSize;
+        final int nBins;
+        final int size;
+        final IntBuffer rowStarts;
+        final IntBuffer cellColumns;
+        final IntBuffer cellStarts;
+        final LongBuffer offsets;
+        final IntBuffer starts1;
+        final IntBuffer ends1;
+        final IntBuffer starts2;
+        final IntBuffer ends2;
+        final IntBuffer chrs2;
+        final FloatBuffer scores;
+        final ByteBuffer orders;
+
+        Section(int binSize, int nBins, int nCells, int size, ByteBuffer buffer) {
+            this.binSize = binSize;
+            this.nBins = nBins;
+            this.size = size;
+            int pos = 0;
+            rowStarts = slice(buffer, pos, 4 * (nBins + 1)).asIntBuffer();
+            pos += 4 * (nBins + 1);
+            cellColumns = slice(buffer, pos, 4 * nCells).asIntBuffer();
+            pos += 4 * nCells;
+            cellStarts = slice(buffer, pos, 4 * (nCells + 1)).asIntBuffer();
+            pos += 4 * (nCells + 1);
+            offsets = slice(buffer, pos, 8 * size).asLongBuffer();
+            pos += 8 * size;
+            starts1 = slice(buffer, pos, 4 * size).asIntBuffer();
+            pos += 4 * size;
+            ends1 = slice(buffer, pos, 4 * size).asIntBuffer();
+            pos += 4 * size;
+            starts2 = slice(buffer, pos, 4 * size).asIntBuffer();
+            pos += 4 * size;
+            ends2 = slice(buffer, pos, 4 * size).asIntBuffer();
+            pos += 4 * size;
+            chrs2 = slice(buffer, pos, 4 * size).asIntBuffer();
+            pos += 4 * size;
+            scores = slice(buffer, pos, 4 * size).asFloatBuffer();
+            pos += 4 * size;
+            orders = slice(buffer, pos, size);
+        }
+
+        /**
+         * Return the indices of records whose extent overlaps [start, end)
+         */
+        IntArrayList query(int start, int end) {
+
+            IntArrayList result = new IntArrayList();
+            int bin1 = Math.max(0, start / binSize);
+            int bin2 = Math.min(nBins - 1, Math.max(0, end - 1) / binSize);
+
+            for (int row = 0; row <= bin2; row++) {
+                int from = rowStarts.get(row);
+                int to = rowStarts.get(row + 1);
+
+                // Cells of a row are sorted by column, skip those ending before the range
+                int lo = from, hi = to;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (cellColumns.get(mid) < bin1) lo = mid + 1;
+                    else hi = mid;
+                }
+
+                for (int c = lo; c < to; c++) {
+                    for (int i = cellStarts.get(c); i < cellStarts.get(c + 1); i++) {
+                        if (extentStart(i) < end && extentEnd(i) > start) {
+                            result.add(i);
+                        }
+                    }
+                }
+            }
+            return result;
+        }
+
+        int extentStart(int i) {
+            return orders.get(i) == 0 ? Math.min(starts1.get(i), starts2.get(i)) : starts1.get(i);
+        }
+
+        int extentEnd(int i) {
+            return orders.get(i) == 0 ? Math.max(ends1.get(i), ends2.get(i)) : ends1.get(i);
+        }
+    }
+
+    /**
+     * Records of a chromosome, collected while scanning
+     */
+    private static class Records {
+
+        int size = 0;
+        long[] offsets = new long[1024];
+        int[] starts1 = new int[1024];
+        int[] ends1 = new int[1024];
+        int[] starts2 = new int[1024];
+        int[] ends2 = new int[1024];
+        int[] chrs2 = new int[1024];
+        float[] scores = new float[1024];
+        float[] scores7 = new float[1024];
+        byte[] orders = new byte[1024];
+
+        int binSize;
+        int nBins;
+        int nCells;
+        int[] rowStarts;
+        int[] cellColumns;
+        int[] cellStarts;
+
+        void add(long offset, int start1, int end1, int start2, int end2, int chr2, float score, float score7, byte order) {
+            if (size == offsets.length) {
+                int newCapacity = size + (size >> 1);
+                offsets = Arrays.copyOf(offsets, newCapacity);
+                starts1 = Arrays.copyOf(starts1, newCapacity);
+                ends1 = Arrays.copyOf(ends1, newCapacity);
+                starts2 = Arrays.copyOf(starts2, newCapacity);
+                ends2 = Arrays.copyOf(ends2, newCapacity);
+                chrs2 = Arrays.copyOf(chrs2, newCapacity);
+                scores = Arrays.copyOf(scores, newCapacity);
+                scores7 = Arrays.copyOf(scores7, newCapacity);
+                orders = Arrays.copyOf(orders, newCapacity);
+            }
+            offsets[size] = offset;
+            starts1[size] = start1;
+            ends1[size] = end1;
+            starts2[size] = start2;
+            ends2[size] = end2;
+            chrs2[size] = chr2;
+            scores[size] = score;
+            scores7[size] = score7;
+            orders[size] = order;
+            size++;
+        }
+
+        int extentStart(int i) {
+            return orders[i] == 0 ? Math.min(starts1[i], starts2[i]) : starts1[i];
+        }
+
+        int extentEnd(int i) {
+            return orders[i] == 0 ? Math.max(ends1[i], ends2[i]) : ends1[i];
+        }
+
+        /**
+         * Choose bins, then sort records by cell and build the row and cell tables
+         */
+        void sort(boolean col7isNumeric) {
+
+            int maxEnd = 0;
+            for (int i = 0; i < size; i++) {
+                maxEnd = Math.max(maxEnd, extentEnd(i));
+            }
+            binSize = Math.max(MIN_BIN_SIZE, (int) Math.ceil((double) maxEnd / MAX_BINS));
+            nBins = Math.max(1, (maxEnd - 1) / binSize + 1);
+
+            // Pack (cell, index) into a long so a primitive sort can be used
+            long[] keys = new long[size];
+            for (int i = 0; i < size; i++) {
+                long row = Math.max(0, extentStart(i)) / binSize;
+                long col = Math.max(0, extentEnd(i) - 1) / binSize;
+                keys[i] = ((row * nBins + col) << 32) | i;
+            }
+            Arrays.sort(keys);
+
+            rowStarts = new int[nBins + 1];
+            cellColumns = new int[size];
+            cellStarts = new int[size + 1];
+            nCells = 0;
+            long lastCell = -1;
+            int[] order = new int[size];
+            for (int k = 0; k < size; k++) {
+                long cell = keys[k] >>> 32;
+                order[k] = (int) (keys[k] & 0xFFFFFFFFL);
+                if (cell != lastCell) {
+                    int row = (int) (cell / nBins);
+                    cellColumns[nCells] = (int) (cell % nBins);
+                    cellStarts[nCells] = k;
+                    rowStarts[row + 1]++;
+                    nCells++;
+                    lastCell = cell;
+                }
+            }
+            cellStarts[nCells] = size;
+            for (int r = 0; r < nBins; r++) {
+                rowStarts[r + 1] += rowStarts[r];
+            }
+
+            long[] of = new long[size];
+            int[] s1 = new int[size];
+            int[] e1 = new int[size];
+            int[] s2 = new int[size];
+            int[] e2 = new int[size];
+            int[] c2 = new int[size];
+            float[] sc = new float[size];
+            byte[] or = new byte[size];
+            for (int k = 0; k < size; k++) {
+                int i = order[k];
+                of[k] = offsets[i];
+                s1[k] = starts1[i];
+                e1[k] = ends1[i];
+                s2[k] = starts2[i];
+                e2[k] = ends2[i];
+                c2[k] = chrs2[i];
+                sc[k] = col7isNumeric ? scores7[i] : scores[i];
+                or[k] = orders[i];
+            }
+            offsets = of;
+            starts1 = s1;
+            ends1 = e1;
+            starts2 = s2;
+            ends2 = e2;
+            chrs2 = c2;
+            scores = sc;
+            orders = or;
+        }
+
+        long sectionSize() {
+            return BedPEIndex.sectionSize(nBins, nCells, size);
+        }
+
+        void write(DataOutputStream dos) throws IOException {
+            for (int r : rowStarts) dos.writeInt(r);
+            for (int c = 0; c < nCells; c++) dos.writeInt(cellColumns[c]);
+            for (int c = 0; c <= nCells; c++) dos.writeInt(cellStarts[c]);
+            for (int i = 0; i < size; i++) dos.writeLong(offsets[i]);
+            for (int i = 0; i < size; i++) dos.writeInt(starts1[i]);
+            for (int i = 0; i < size; i++) dos.writeInt(ends1[i]);
+            for (int i = 0; i < size; i++) dos.writeInt(starts2[i]);
+            for (int i = 0; i < size; i++) dos.writeInt(ends2[i]);
+            for (int i = 0; i < size; i++) dos.writeInt(chrs2[i]);
+            for (int i = 0; i < size; i++) dos.writeFloat(scores[i]);
+            dos.write(orders, 0, size);
+        }
+    }
+
+    private static class LongArray {
+        long[] values = new long[1024];
+        int size = 0;
+
+        void add(long v) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size + (size >> 1));
+            }
+            values[size++] = v;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int position, int length) {
+        ByteBuffer dup = buffer.duplicate();
+        dup.position(position);
+        dup.limit(position + length);
+        return dup.slice();
+    }
+}
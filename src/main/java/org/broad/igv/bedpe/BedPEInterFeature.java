@@ -19,6 +19,13 @@ public class BedPEInterFeature  implements BedPE {
         return wrappedFeature;
     }
 
+    /**
+     * @return 1 or 2, the anchor of the wrapped feature this represents
+     */
+    int getOrder() {
+        return order;
+    }
+
     public String getChr() {
         return this.order == 1 ? wrappedFeature.chr1 : wrappedFeature.chr2;
     }
@@ -25,163 +25,195 @@ public class BedPEParser {
 
     public static Dataset parse(ResourceLocator locator, Genome genome) throws IOException {
 
-        int colorColumn = -1;
-        int thicknessColumn = -1;
-        DatasetType type = DatasetType.UNKNOWN;
-        boolean parsedHeader = true;
-
-        // Default column headers from BedPE spec.  Can be overriden
-        String[] columns = {"chrom1", "start1", "stop1", "chrom2", "start2", "stop2", "name", "score", "strand1", "strand2"};
-        boolean col7isNumeric = true;   // Until proven otherwise
-
-        Map<String, Color> colorCache = new HashMap<>();
+        BedPEParser parser = new BedPEParser(genome);
         List<BedPEFeature> features = new ArrayList<>();
-        BufferedReader br = null;
-        br = ParsingUtils.openBufferedReader(locator.getPath());
-        String nextLine;
-        boolean firstLine = true;
-        while ((nextLine = br.readLine()) != null) {
-
-            if (nextLine.startsWith("#columns")) {
-                // An IGV hack, not sure anyone is using this
-                try {
-                    String[] t1 = ParsingUtils.WHITESPACE_PATTERN.split(nextLine);
-                    if (t1.length == 2) {
-                        String[] t2 = ParsingUtils.SEMI_COLON_PATTERN.split(t1[1]);
-                        for (String keyValue : t2) {
-                            String[] t = keyValue.split("=");
-                            if (t[0].equals("color")) {
-                                colorColumn = Integer.parseInt(t[1]) - 1;
-                            } else if (t[0].equals("thickness")) {
-                                thicknessColumn = Integer.parseInt(t[1]) - 1;
-                            }
-                        }
-                    }
-                } catch (NumberFormatException e) {
-                    log.error("Error parsing #column line.", e);
+        try (BufferedReader br = ParsingUtils.openBufferedReader(locator.getPath())) {
+            String nextLine;
+            while ((nextLine = br.readLine()) != null) {
+                BedPEFeature feature = parser.parseLine(nextLine);
+                if (feature != null) {
+                    features.add(feature);
                 }
-            } else if (nextLine.trim().equals("#chrom1\tstart1\tstop1\tchrom2\tstart2\tstop2\tname\tqual\tstrand1\tstrand2\tfilters\tinfo")) {
-                type = DatasetType.TENX;
             }
+        }
+
+        // A hack to detect "interaction" bedpe files, which are not spec compliant.  Interaction score is column 7
+        if (parser.col7isNumeric) {
+            for (BedPEFeature f : features) {
+                setScoreFromName(f);
+            }
+        }
 
-            if (nextLine.startsWith("#") || nextLine.startsWith("chr1\tx1\tx2")) {
+        return new Dataset(parser.getType(), features);
+    }
+
+    private final Genome genome;
+    private final Map<String, Color> colorCache = new HashMap<>();
+
+    int colorColumn = -1;
+    int thicknessColumn = -1;
+    DatasetType type = DatasetType.UNKNOWN;
+
+    // Default column headers from BedPE spec.  Can be overriden
+    String[] columns = {"chrom1", "start1", "stop1", "chrom2", "start2", "stop2", "name", "score", "strand1", "strand2"};
+    boolean col7isNumeric = true;   // Until proven otherwise
+    private boolean firstLine = true;
 
-                String[] tokens = Globals.tabPattern.split(nextLine);
-                if (tokens.length >= 6) {
-                    columns = tokens;
-                    for (int i = 6; i < columns.length; i++) {
-                        if (columns[i].equalsIgnoreCase("color")) {
-                            colorColumn = i;
-                        } else if (columns[i].toLowerCase().equalsIgnoreCase("thickness")) {
-                            thicknessColumn = i;
+    BedPEParser(Genome genome) {
+        this.genome = genome;
+    }
+
+    /**
+     * Parse a line of a bedpe file, returning the feature it describes or null if it is a header or comment line.
+     * Header lines update the column definitions used to parse subsequent lines.
+     * <p>
+     * Whether column 7 is a score ("interaction" files) is only known once the whole file is read, see
+     * {@link #setScoreFromName(BedPEFeature)}.
+     */
+    BedPEFeature parseLine(String nextLine) {
+
+        BedPEFeature feature = null;
+
+        if (nextLine.startsWith("#columns")) {
+            // An IGV hack, not sure anyone is using this
+            try {
+                String[] t1 = ParsingUtils.WHITESPACE_PATTERN.split(nextLine);
+                if (t1.length == 2) {
+                    String[] t2 = ParsingUtils.SEMI_COLON_PATTERN.split(t1[1]);
+                    for (String keyValue : t2) {
+                        String[] t = keyValue.split("=");
+                        if (t[0].equals("color")) {
+                            colorColumn = Integer.parseInt(t[1]) - 1;
+                        } else if (t[0].equals("thickness")) {
+                            thicknessColumn = Integer.parseInt(t[1]) - 1;
                         }
                     }
                 }
-            } else if (nextLine.startsWith("track") || nextLine.startsWith("##track")) {
-                TrackProperties trackProperties = new TrackProperties();
-                ParsingUtils.parseTrackLine(nextLine, trackProperties);
-            } else if (firstLine && nextLine.startsWith("chromosome1\tx1\tx2") || nextLine.startsWith("chr1\tx1\tx2")) {
-                columns = Globals.tabPattern.split(nextLine);
+            } catch (NumberFormatException e) {
+                log.error("Error parsing #column line.", e);
+            }
+        } else if (nextLine.trim().equals("#chrom1\tstart1\tstop1\tchrom2\tstart2\tstop2\tname\tqual\tstrand1\tstrand2\tfilters\tinfo")) {
+            type = DatasetType.TENX;
+        }
+
+        if (nextLine.startsWith("#") || nextLine.startsWith("chr1\tx1\tx2")) {
+
+            String[] tokens = Globals.tabPattern.split(nextLine);
+            if (tokens.length >= 6) {
+                columns = tokens;
                 for (int i = 6; i < columns.length; i++) {
                     if (columns[i].equalsIgnoreCase("color")) {
                         colorColumn = i;
+                    } else if (columns[i].toLowerCase().equalsIgnoreCase("thickness")) {
+                        thicknessColumn = i;
                     }
                 }
-            } else {
-                String[] tokens = Globals.tabPattern.split(nextLine);
-
-                if (tokens.length < 6) {
-                    log.info("Skipping line: " + nextLine);
-                    continue;
+            }
+        } else if (nextLine.startsWith("track") || nextLine.startsWith("##track")) {
+            TrackProperties trackProperties = new TrackProperties();
+            ParsingUtils.parseTrackLine(nextLine, trackProperties);
+        } else if (firstLine && nextLine.startsWith("chromosome1\tx1\tx2") || nextLine.startsWith("chr1\tx1\tx2")) {
+            columns = Globals.tabPattern.split(nextLine);
+            for (int i = 6; i < columns.length; i++) {
+                if (columns[i].equalsIgnoreCase("color")) {
+                    colorColumn = i;
                 }
+            }
+        } else {
+            String[] tokens = Globals.tabPattern.split(nextLine);
 
-                String chr1 = genome == null ? tokens[0] : genome.getCanonicalChrName(tokens[0]);
-                String chr2 = genome == null ? tokens[3] : genome.getCanonicalChrName(tokens[3]);
-                int start1 = Integer.parseInt(tokens[1]);
-                int end1 = Integer.parseInt(tokens[2]);
-                int start2 = Integer.parseInt(tokens[4]);
-                int end2 = Integer.parseInt(tokens[5]);
+            if (tokens.length < 6) {
+                log.info("Skipping line: " + nextLine);
+                return null;
+            }
 
-                BedPEFeature feature = new BedPEFeature(chr1, start1, end1, chr2, start2, end2);
+            String chr1 = genome == null ? tokens[0] : genome.getCanonicalChrName(tokens[0]);
+            String chr2 = genome == null ? tokens[3] : genome.getCanonicalChrName(tokens[3]);
+            int start1 = Integer.parseInt(tokens[1]);
+            int end1 = Integer.parseInt(tokens[2]);
+            int start2 = Integer.parseInt(tokens[4]);
+            int end2 = Integer.parseInt(tokens[5]);
 
-                if (tokens.length > 6) {
-                    feature.name = tokens[6];
-                    col7isNumeric = col7isNumeric && isNumeric(tokens[6]);
+            feature = new BedPEFeature(chr1, start1, end1, chr2, start2, end2);
 
-                } else {
-                    col7isNumeric = false;
-                }
+            if (tokens.length > 6) {
+                feature.name = tokens[6];
+                col7isNumeric = col7isNumeric && isNumeric(tokens[6]);
 
-                if (tokens.length > 7) {
-                    feature.scoreString = tokens[7];
-                    try {
-                        feature.score = Double.parseDouble(tokens[7]);
-                    } catch (NumberFormatException e) {
-                        feature.score = 0;
-                    }
+            } else {
+                col7isNumeric = false;
+            }
+
+            if (tokens.length > 7) {
+                feature.scoreString = tokens[7];
+                try {
+                    feature.score = Double.parseDouble(tokens[7]);
+                } catch (NumberFormatException e) {
+                    feature.score = 0;
                 }
+            }
 
-                if (tokens.length > 8) {
-                    Map<String, String> attributes = new LinkedHashMap<>();
+            if (tokens.length > 8) {
+                Map<String, String> attributes = new LinkedHashMap<>();
 
-                    for (int i = 8; i < tokens.length; i++) {
+                for (int i = 8; i < tokens.length; i++) {
 
-                        String t = tokens[i];
-                        String c = columns != null && columns.length > i ? columns[i] : String.valueOf(i);
+                    String t = tokens[i];
+                    String c = columns != null && columns.length > i ? columns[i] : String.valueOf(i);
 
-                        if (c.equals("info") && t.contains("=")) {
-                            String[] kvPairs = Globals.semicolonPattern.split(tokens[11]);
-                            for (String kvPair : kvPairs) {
-                                String[] kv = Globals.equalPattern.split(kvPair);
-                                if (kv.length > 1) {
-                                    attributes.put(kv[0], kv[1]);
-                                }
+                    if (c.equals("info") && t.contains("=")) {
+                        String[] kvPairs = Globals.semicolonPattern.split(tokens[11]);
+                        for (String kvPair : kvPairs) {
+                            String[] kv = Globals.equalPattern.split(kvPair);
+                            if (kv.length > 1) {
+                                attributes.put(kv[0], kv[1]);
                             }
-                        } else {
-                            attributes.put(c, t);
                         }
+                    } else {
+                        attributes.put(c, t);
                     }
-                    feature.attributes = attributes;
-                    feature.type = attributes.get("TYPE");
-                }
-
-                if (colorColumn > 0) {
-                    String colorString = tokens[colorColumn];
-                    Color c = colorCache.get(colorString);
-                    if (c == null) {
-                        c = ColorUtilities.stringToColor(colorString);
-                        colorCache.put(colorString, c);
-                    }
-                    feature.color = c;
                 }
+                feature.attributes = attributes;
+                feature.type = attributes.get("TYPE");
+            }
 
-                if (thicknessColumn > 0) {
-                    feature.thickness = Integer.parseInt(tokens[thicknessColumn]);
+            if (colorColumn > 0) {
+                String colorString = tokens[colorColumn];
+                Color c = colorCache.get(colorString);
+                if (c == null) {
+                    c = ColorUtilities.stringToColor(colorString);
+                    colorCache.put(colorString, c);
                 }
-
-                // Skipping remaining fields for now
-
-                features.add(feature);
+                feature.color = c;
             }
-            firstLine = false;
-        }
 
-
-        // A hack to detect "interaction" bedpe files, which are not spec compliant.  Interaction score is column 7
-        if (col7isNumeric) {
-            for (BedPEFeature f : features) {
-                f.score = Double.parseDouble(f.name);
-                f.scoreString = f.name;
-                f.name = null;
+            if (thicknessColumn > 0) {
+                feature.thickness = Integer.parseInt(tokens[thicknessColumn]);
             }
-            if (type == DatasetType.UNKNOWN) {
-                type = DatasetType.CLUSTER;   // A guess
-            }
-        }
 
-        return new Dataset(type, features);
+            // Skipping remaining fields for now
+        }
+        firstLine = false;
+        return feature;
+    }
 
+    /**
+     * @return the dataset type, valid once all lines are parsed
+     */
+    DatasetType getType() {
+        if (col7isNumeric && type == DatasetType.UNKNOWN) {
+            return DatasetType.CLUSTER;   // A guess
+        }
+        return type;
+    }
 
+    /**
+     * Move the column 7 value of an "interaction" file feature from name to score
+     */
+    static void setScoreFromName(BedPEFeature f) {
+        f.score = Double.parseDouble(f.name);
+        f.scoreString = f.name;
+        f.name = null;
     }
 
 
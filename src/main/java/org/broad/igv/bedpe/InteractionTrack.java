@@ -6,11 +6,13 @@ import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.prefs.Constants;
 import org.broad.igv.prefs.PreferencesManager;
 import org.broad.igv.track.AbstractTrack;
+import org.broad.igv.track.LoadedDataInterval;
 import org.broad.igv.track.RenderContext;
 import org.broad.igv.track.TrackClickEvent;
 import org.broad.igv.track.TrackMenuUtils;
 import org.broad.igv.ui.FontManager;
 import org.broad.igv.ui.IGV;
+import org.broad.igv.ui.panel.FrameManager;
 import org.broad.igv.ui.panel.IGVPopupMenu;
 import org.broad.igv.ui.panel.ReferenceFrame;
 import org.broad.igv.ui.util.MessageUtils;
@@ -21,6 +23,7 @@ import org.w3c.dom.Element;
 
 import javax.swing.*;
 import java.awt.*;
+import java.io.IOException;
 import java.util.*;
 import java.util.List;
 
@@ -36,6 +39,12 @@ public class InteractionTrack extends AbstractTrack {
 
     protected static final int AXIS_AREA_WIDTH = 60;
     protected static Color axisLineColor = new Color(255, 180, 180);
+
+    /**
+     * Views with more features than this are drawn with features aggregated by pixel, see {@link BedPEAggregator}
+     */
+    static int MAX_FEATURES = 10000;
+
     private JCheckBoxMenuItem autoscaleCB;
     private JMenuItem maxScoreItem;
     private List<BedPE> wgFeatures;
@@ -58,6 +67,8 @@ public class InteractionTrack extends AbstractTrack {
     //private Map<String, List<BedPE>> featureMap;
     private Map<GraphType, BedPERenderer> renderers;
     private FeatureCache<BedPE> featureCache;
+    private BedPEIndex index;
+    private Map<String, LoadedDataInterval<List<BedPE>>> loadedIntervalCache = Collections.synchronizedMap(new HashMap<>());
 
     public InteractionTrack() {
     }
@@ -67,6 +78,22 @@ public class InteractionTrack extends AbstractTrack {
         super(locator);
         init(dataset.features, genome);
         this.genome = genome;
+        initProperties(dataset.type);
+    }
+
+    /**
+     * Create a track whose features are read on demand through {@code index}
+     */
+    public InteractionTrack(ResourceLocator locator, BedPEIndex index, Genome genome) {
+
+        super(locator);
+        this.index = index;
+        this.genome = genome;
+        initProperties(index.getType());
+    }
+
+    private void initProperties(BedPEParser.DatasetType datasetType) {
+
         setHeight(250, true);
         setColor(new Color(180, 25, 137));
 
@@ -84,7 +111,7 @@ public class InteractionTrack extends AbstractTrack {
                 graphType = GraphType.NESTED_ARC; // default
             }
         } else {
-            graphType = dataset.type == BedPEParser.DatasetType.TENX ? GraphType.PROPORTIONAL_ARC : GraphType.NESTED_ARC;
+            graphType = datasetType == BedPEParser.DatasetType.TENX ? GraphType.PROPORTIONAL_ARC : GraphType.NESTED_ARC;
         }
 
 
@@ -124,7 +151,7 @@ public class InteractionTrack extends AbstractTrack {
             }
         }
 
-        featureCache = new FeatureCache<>(newList, 50);
+        featureCache = new FeatureCache<>(newList);
 
         wgFeatures = createWGFeatures(featureList, genome);
 
@@ -159,21 +186,64 @@ public class InteractionTrack extends AbstractTrack {
 
     @Override
     public boolean isReadyToPaint(ReferenceFrame frame) {
-        return true;
+        LoadedDataInterval<List<BedPE>> interval = loadedIntervalCache.get(frame.getName());
+        return interval != null && interval.contains(frame);
     }
 
     @Override
-    public void load(ReferenceFrame frame) {
-        // Nothing to do, this track is pre-loaded
+    public synchronized void load(ReferenceFrame frame) {
+
+        if (isReadyToPaint(frame)) return; // already loaded
+
+        String chr = frame.getChrName();
+        int start = (int) frame.getOrigin();
+        int end = (int) frame.getEnd() + 1;
+
+        // Expand interval +/- 50%, unless in a multi-locus mode with "lots" of frames
+        boolean multiLocus = (FrameManager.getFrames().size() > 4);
+        int delta = multiLocus ? 1 : (end - start) / 2;
+        int expandedStart = Math.max(0, start - delta);
+        int expandedEnd = end + delta;
+
+        List<BedPE> features;
+        try {
+            features = getFeaturesOverlapping(chr, expandedStart, expandedEnd, frame.getScale());
+        } catch (IOException e) {
+            log.error("Error loading features from " + getResourceLocator().getPath(), e);
+            features = Collections.emptyList();
+        }
+        loadedIntervalCache.put(frame.getName(),
+                new LoadedDataInterval<>(chr, expandedStart, expandedEnd, frame.getZoom(), features));
     }
 
-    private List<BedPE> getFeaturesOverlapping(String chr, double start, double end) {
+    /**
+     * Return the features overlapping the range.  If there are more than {@link #MAX_FEATURES} they are aggregated
+     * in bins of {@code scale} bp, the width of a pixel.
+     */
+    private List<BedPE> getFeaturesOverlapping(String chr, int start, int end, double scale) throws IOException {
 
-        if(chr.equals(Globals.CHR_ALL)) {
-            return wgFeatures;
+        if (chr.equals(Globals.CHR_ALL)) {
+            if (index != null && wgFeatures == null) {
+                if (index.getFeatureCount() > MAX_FEATURES) {
+                    return index.getWholeGenomeFeatures(scale);
+                }
+                wgFeatures = createWGFeatures(index.getAllFeatures(), genome);
+            }
+            return wgFeatures.size() > MAX_FEATURES ? BedPEAggregator.aggregate(wgFeatures, scale) : wgFeatures;
+        } else if (index != null) {
+            return index.getFeatures(chr, start, end, scale, MAX_FEATURES);
         } else {
-            return featureCache.getFeatures(chr, (int) start, (int) end);
+            List<BedPE> features = featureCache.getFeatures(chr, start, end);
+            return features != null && features.size() > MAX_FEATURES ? BedPEAggregator.aggregate(features, scale) : features;
+        }
+    }
+
+    private List<BedPE> getInViewFeatures(ReferenceFrame frame) {
+        if (!isReadyToPaint(frame)) {
+            load(frame);
         }
+        LoadedDataInterval<List<BedPE>> interval = loadedIntervalCache.get(frame.getName());
+        return interval == null ? null : interval.getFeatures();
     }
 
     @Override
@@ -186,20 +256,19 @@ public class InteractionTrack extends AbstractTrack {
 
 
         try {
-            String chr = context.getReferenceFrame().getChrName();
-            List<BedPE> features = getFeaturesOverlapping(chr, context.getOrigin(), context.getEndLocation());
+            List<BedPE> features = getInViewFeatures(context.getReferenceFrame());
             if (features != null && features.size() > 0) {
 
                 if (graphType == GraphType.PROPORTIONAL_ARC) {
                     if(autoscale || maxScore <= 0) {
-                        maxScore = autoscale(features);
+                        maxScore = autoscale(features, context.getOrigin(), context.getEndLocation());
                     }
                     drawScale(context, trackRectangle);
                 }
 
                 renderers.get(graphType).render(features, context, trackRectangle);
             }
-            if (showBlocks) {
+            if (showBlocks && features != null) {
                 renderers.get(GraphType.BLOCK).render(features, context, trackRectangle);
             }
 
@@ -236,15 +305,24 @@ public class InteractionTrack extends AbstractTrack {
     }
 
 
+    /**
+     * Return true if the arc height scale is computed from the features in view each time the track is rendered
+     */
+    public boolean isAutoscaledOnRender() {
+        return graphType == GraphType.PROPORTIONAL_ARC && (autoscale || maxScore <= 0);
+    }
+
     /**
      * Autoscale max height -- specific to proportional arc mode
      *
      * @param features
      */
-    private double autoscale(List<BedPE> features) {
+    private double autoscale(List<BedPE> features, double start, double end) {
         double maxScore = 0;
         for (BedPE f : features) {
-            maxScore = Math.max(maxScore, f.getScore());
+            if (f.getEnd() >= start && f.getStart() <= end) {
+                maxScore = Math.max(maxScore, f.getScore());
+            }
         }
         return maxScore;
     }
@@ -377,7 +455,15 @@ public class InteractionTrack extends AbstractTrack {
     @Override
     public String getValueStringAt(String chr, double position, int mouseX, int mouseY, ReferenceFrame frame) {
 
-        List<BedPE> candidates = getFeaturesOverlapping(frame.getChrName(), (int) position, (int) position + 1);
+        List<BedPE> candidates = new ArrayList<>();
+        List<BedPE> features = getInViewFeatures(frame);
+        if (features != null) {
+            for (BedPE f : features) {
+                if (f.getStart() <= position + 1 && f.getEnd() >= position) {
+                    candidates.add(f);
+                }
+            }
+        }
 
         // Sort candidate features smallest to largest
         Comparator<BedPE> sorter = graphType == GraphType.PROPORTIONAL_ARC ?
@@ -70,7 +70,8 @@ public class DatasetDataSource extends AbstractDataSource {
             if (genome.getHomeChromosome().equals(Globals.CHR_ALL)) {
                 if (dataset instanceof IGVDataset) {
                     genomeSummaryData = ((IGVDataset) dataset).getGenomeSummary();
-                } else {
+                } else if (!(dataset instanceof MatrixDataset && ((MatrixDataset) dataset).hasWholeGenomeSummary())) {
+                    // Matrix files with a whole genome summary computed when written are handled in getRawData
                     genomeSummaryData = new GenomeSummaryData(genome, new String[]{trackId});
                     for (Chromosome chr : genome.getChromosomes()) {
                         int[] startLocations = dataset.getStartLocations(chr.getName());
@@ -95,6 +96,11 @@ public class DatasetDataSource extends AbstractDataSource {
             float[] data = genomeSummaryData.getData(trackId);
             return new DataTile(startLocs, endLocs, data, null);
         }
+        if (chr.equals(Globals.CHR_ALL) && dataset instanceof MatrixDataset && windowFunction != WindowFunction.none &&
+                ((MatrixDataset) dataset).hasWholeGenomeSummary()) {
+            MatrixDataset matrix = (MatrixDataset) dataset;
+            return new DataTile(matrix.getWholeGenomeLocations(), null, matrix.getWholeGenomeData(trackId), null);
+        }
         if (chr.equals(Globals.CHR_ALL)) {
             return getWGRawData();
         } else {
@@ -33,6 +33,7 @@ import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.track.TrackProperties;
 import org.broad.igv.track.TrackType;
 import org.broad.igv.util.ObjectCache;
+import org.broad.igv.util.ParsingUtils;
 import org.broad.igv.util.ResourceLocator;
 
 import java.util.LinkedHashMap;
@@ -57,6 +58,7 @@ public class IGVDataset implements Dataset {
     private float dataMin;
     private float dataMax;
     TrackProperties trackProperties = new TrackProperties();
+    private String trackLine;
     private Map<String, Integer> longestFeatureMap;
 
     public IGVDataset(ResourceLocator locator, Genome genome) {
@@ -184,6 +186,15 @@ public class IGVDataset implements Dataset {
         return trackProperties;
     }
 
+    public void setTrackLine(String trackLine) {
+        this.trackLine = trackLine;
+        ParsingUtils.parseTrackLine(trackLine, trackProperties);
+    }
+
+    public String getTrackLine() {
+        return trackLine;
+    }
+
 
     public Integer getLongestFeature(String chr) {
         return longestFeatureMap == null ? 1000 :
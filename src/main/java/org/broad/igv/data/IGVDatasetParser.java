@@ -476,7 +476,7 @@ public class IGVDatasetParser {
 
         String tmp = comment.substring(1, comment.length());
         if (tmp.startsWith("track")) {
-            ParsingUtils.parseTrackLine(tmp, dataset.getTrackProperties());
+            dataset.setTrackLine(tmp);
 
         } else if (tmp.startsWith("columns")) {
             parseColumnLine(tmp);
@@ -0,0 +1,411 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.data;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.DirectoryManager;
+import org.broad.igv.Globals;
+import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.track.TrackProperties;
+import org.broad.igv.track.TrackType;
+import org.broad.igv.util.ObjectCache;
+import org.broad.igv.util.ParsingUtils;
+import org.broad.igv.util.ResourceLocator;
+import org.broad.igv.util.SidecarFiles;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * A dataset read from the memory mapped matrix format written by {@link MatrixDatasetWriter}.  Expression and igv
+ * files are converted to this format, in the IGV index directory, on first load.
+ * <p>
+ * Within a chromosome section the values of each column (sample) are contiguous, so {@link #getData(String, String)}
+ * is a single bulk copy and only the columns and chromosomes viewed are read.  The locus index (starts, ends, and
+ * names) of recently used chromosomes is cached.
+ * <p>
+ * File layout (big endian)
+ * <pre>
+ *   header (see {@link SidecarFiles}), UTF genomeId, UTF mappingKey
+ *   int attributeCount, attributeCount x { UTF key, UTF value }
+ *   int headingCount, headingCount x UTF heading
+ *   int chrCount, chrCount x { UTF name, int rowCount, int flags, int longestFeature, int nameLength, long position }
+ *   sections:  int[n] start, int[n] end (if HAS_ENDS), float[headingCount][n] values,
+ *              int[n + 1] nameOffset, byte[nameLength] names (UTF-8) (if HAS_NAMES)
+ * </pre>
+ * Rows in a section are sorted by start.  The whole genome summary, if present, is stored as chromosome "All".
+ */
+public class MatrixDataset implements Dataset {
+
+    private static Logger log = Logger.getLogger(MatrixDataset.class);
+
+    static final int MAGIC = 0x49474D58;   // "IGMX"
+    static final int VERSION = 2;
+
+    static final int HAS_ENDS = 1;
+    static final int HAS_NAMES = 2;
+
+    /**
+     * Source of the dataset to convert, called only if the matrix file is missing or out of date
+     */
+    public interface Source {
+        Dataset load() throws IOException;
+
+        /**
+         * @return the track line of the parsed file, or null
+         */
+        String getTrackLine();
+    }
+
+    private String name;
+    private final Map<String, String> attributes;
+    private final String[] headings;
+    private final Map<String, Integer> headingIndices;
+    private final Map<String, Section> sections;
+    private final Section wholeGenome;
+    private final TrackProperties trackProperties = new TrackProperties();
+    private final ObjectCache<String, Locations> locationCache = new ObjectCache<>(30);
+
+    private MatrixDataset(Map<String, String> attributes, String[] headings, Map<String, Section> sections) {
+        this.attributes = attributes;
+        this.headings = headings;
+        this.wholeGenome = sections.remove(Globals.CHR_ALL);
+        this.sections = sections;
+        this.headingIndices = new HashMap<>();
+        for (int i = 0; i < headings.length; i++) {
+            headingIndices.put(headings[i], i);
+        }
+        String trackLine = attributes.get("trackLine");
+        if (trackLine != null) {
+            ParsingUtils.parseTrackLine(trackLine, trackProperties);
+        }
+    }
+
+    /**
+     * Open the matrix file for a local data file, converting the dataset supplied by {@code source} if the file does
+     * not exist or is out of date.
+     *
+     * @param mappingKey description of the probe mapping used to locate rows.  A change invalidates the matrix file.
+     */
+    public static MatrixDataset open(ResourceLocator locator, Genome genome, String mappingKey, Source source) throws IOException {
+
+        File sourceFile = new File(locator.getPath());
+        File matrixFile = getMatrixFile(sourceFile);
+        String genomeId = genome == null ? "" : genome.getId();
+
+        if (!isCurrent(sourceFile, matrixFile, genomeId, mappingKey)) {
+            long t0 = System.currentTimeMillis();
+            Dataset dataset = source.load();
+            new MatrixDatasetWriter(genome).write(dataset, source.getTrackLine(), sourceFile, matrixFile, genomeId, mappingKey);
+            log.info("Converted " + sourceFile.getName() + " in " + (System.currentTimeMillis() - t0) + " ms");
+        }
+        return read(matrixFile);
+    }
+
+    static File getMatrixFile(File sourceFile) {
+        return SidecarFiles.getFile(DirectoryManager.getFeatureIndexDirectory(), sourceFile, ".igvm");
+    }
+
+    /**
+     * Return true if {@code matrixFile} exists and was built from the current version of {@code sourceFile} for the
+     * given genome and probe mapping.
+     */
+    public static boolean isCurrent(File sourceFile, File matrixFile, String genomeId, String mappingKey) {
+        try (DataInputStream dis = SidecarFiles.openIfCurrent(matrixFile, MAGIC, VERSION, sourceFile)) {
+            return dis != null &&
+                    dis.readUTF().equals(genomeId) &&
+                    dis.readUTF().equals(mappingKey);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public static MatrixDataset read(File matrixFile) throws IOException {
+
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(matrixFile)));
+             FileChannel channel = FileChannel.open(matrixFile.toPath(), StandardOpenOption.READ)) {
+
+            SidecarFiles.skipHeader(dis, MAGIC, VERSION, matrixFile);
+            dis.readUTF();
+            dis.readUTF();
+
+            int nAttributes = dis.readInt();
+            Map<String, String> attributes = new HashMap<>();
+            for (int i = 0; i < nAttributes; i++) {
+                attributes.put(dis.readUTF(), dis.readUTF());
+            }
+
+            int nHeadings = dis.readInt();
+            String[] headings = new String[nHeadings];
+            for (int i = 0; i < nHeadings; i++) {
+                headings[i] = dis.readUTF();
+            }
+
+            Map<String, Section> sections = new LinkedHashMap<>();
+            int chrCount = dis.readInt();
+            for (int i = 0; i < chrCount; i++) {
+                String chr = dis.readUTF();
+                int rowCount = dis.readInt();
+                int flags = dis.readInt();
+                int longestFeature = dis.readInt();
+                int nameLength = dis.readInt();
+                long position = dis.readLong();
+                long size = sectionSize(rowCount, nHeadings, flags, nameLength);
+                if (size > Integer.MAX_VALUE) {
+                    throw new IOException("Chromosome " + chr + " is too large to map: " + matrixFile.getAbsolutePath());
+                }
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+                sections.put(chr, new Section(rowCount, nHeadings, flags, longestFeature, buffer));
+            }
+            return new MatrixDataset(attributes, headings, sections);
+        }
+    }
+
+    static long sectionSize(int rowCount, int nHeadings, int flags, int nameLength) {
+        long size = 4L * rowCount * (1 + nHeadings);
+        if ((flags & HAS_ENDS) != 0) {
+            size += 4L * rowCount;
+        }
+        if ((flags & HAS_NAMES) != 0) {
+            size += 4L * (rowCount + 1) + nameLength;
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return sections.isEmpty();
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public TrackType getType() {
+        String type = attributes.get("type");
+        try {
+            return type == null ? TrackType.OTHER : TrackType.valueOf(type);
+        } catch (IllegalArgumentException e) {
+            return TrackType.OTHER;
+        }
+    }
+
+    public TrackProperties getTrackProperties() {
+        return trackProperties;
+    }
+
+    public float getDataMin() {
+        return Float.parseFloat(attributes.get("dataMin"));
+    }
+
+    public float getDataMax() {
+        return Float.parseFloat(attributes.get("dataMax"));
+    }
+
+    public boolean isLogNormalized() {
+        return Boolean.parseBoolean(attributes.get("logNormalized"));
+    }
+
+    public String[] getChromosomes() {
+        return sections.keySet().toArray(new String[0]);
+    }
+
+    public String[] getTrackNames() {
+        return headings;
+    }
+
+    public int[] getStartLocations(String chr) {
+        Locations locations = getLocations(chr);
+        return locations == null ? null : locations.starts;
+    }
+
+    public int[] getEndLocations(String chr) {
+        Locations locations = getLocations(chr);
+        return locations == null ? null : locations.ends;
+    }
+
+    public String[] getFeatureNames(String chr) {
+        Locations locations = getLocations(chr);
+        return locations == null ? null : locations.getNames();
+    }
+
+    public float[] getData(String heading, String chr) {
+        Section section = sections.get(chr);
+        Integer h = headingIndices.get(heading);
+        return section == null || h == null ? null : section.getValues(h);
+    }
+
+    public Integer getLongestFeature(String chr) {
+        Section section = sections.get(chr);
+        return section == null ? 1 : section.longestFeature;
+    }
+
+    /**
+     * @return true if a whole genome summary was computed when the file was converted
+     */
+    public boolean hasWholeGenomeSummary() {
+        return wholeGenome != null;
+    }
+
+    public int[] getWholeGenomeLocations() {
+        return wholeGenome == null ? null : wholeGenome.copyStarts();
+    }
+
+    public float[] getWholeGenomeData(String heading) {
+        Integer h = headingIndices.get(heading);
+        return wholeGenome == null || h == null ? null : wholeGenome.getValues(h);
+    }
+
+    private synchronized Locations getLocations(String chr) {
+        Locations locations = locationCache.get(chr);
+        if (locations == null) {
+            Section section = sections.get(chr);
+            if (section == null) {
+                return null;
+            }
+            locations = new Locations(section);
+            locationCache.put(chr, locations);
+        }
+        return locations;
+    }
+
+    /**
+     * Locus index of a chromosome.  Names are decoded on first request.
+     */
+    private static class Locations {
+
+        final Section section;
+        final int[] starts;
+        final int[] ends;
+        String[] names;
+
+        Locations(Section section) {
+            this.section = section;
+            this.starts = section.copyStarts();
+            this.ends = section.copyEnds();
+        }
+
+        synchronized String[] getNames() {
+            if (names == null) {
+                names = section.decodeNames();
+            }
+            return names;
+        }
+    }
+
+    /**
+     * View over a mapped chromosome section
+     */
+    private static class Section {
+
+        final int rowCount;
+        final int longestFeature;
+        final IntBuffer starts;
+        final IntBuffer ends;
+        final FloatBuffer values;
+        final IntBuffer nameOffsets;
+        final ByteBuffer names;
+
+        Section(int rowCount, int nHeadings, int flags, int longestFeature, ByteBuffer buffer) {
+            this.rowCount = rowCount;
+            this.longestFeature = longestFeature;
+            int pos = 0;
+            starts = slice(buffer, pos, 4 * rowCount).asIntBuffer();
+            pos += 4 * rowCount;
+            if ((flags & HAS_ENDS) != 0) {
+                ends = slice(buffer, pos, 4 * rowCount).asIntBuffer();
+                pos += 4 * rowCount;
+            } else {
+                ends = null;
+            }
+            values = slice(buffer, pos, 4 * rowCount * nHeadings).asFloatBuffer();
+            pos += 4 * rowCount * nHeadings;
+            if ((flags & HAS_NAMES) != 0) {
+                nameOffsets = slice(buffer, pos, 4 * (rowCount + 1)).asIntBuffer();
+                pos += 4 * (rowCount + 1);
+                names = slice(buffer, pos, buffer.limit() - pos);
+            } else {
+                nameOffsets = null;
+                names = null;
+            }
+        }
+
+        int[] copyStarts() {
+            int[] result = new int[rowCount];
+            starts.duplicate().get(result);
+            return result;
+        }
+
+        int[] copyEnds() {
+            if (ends == null) return null;
+            int[] result = new int[rowCount];
+            ends.duplicate().get(result);
+            return result;
+        }
+
+        float[] getValues(int h) {
+            float[] result = new float[rowCount];
+            FloatBuffer dup = values.duplicate();
+            dup.position(h * rowCount);
+            dup.get(result);
+            return result;
+        }
+
+        String[] decodeNames() {
+            if (nameOffsets == null) return null;
+            String[] result = new String[rowCount];
+            ByteBuffer dup = names.duplicate();
+            byte[] bytes = new byte[64];
+            for (int i = 0; i < rowCount; i++) {
+                int offset = nameOffsets.get(i);
+                int length = nameOffsets.get(i + 1) - offset;
+                if (length > bytes.length) {
+                    bytes = new byte[length];
+                }
+                dup.position(offset);
+                dup.get(bytes, 0, length);
+                result[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+            }
+            return result;
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int position, int length) {
+        ByteBuffer dup = buffer.duplicate();
+        dup.position(position);
+        dup.limit(position + length);
+        return dup.slice();
+    }
+}
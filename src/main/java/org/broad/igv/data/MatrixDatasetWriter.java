@@ -0,0 +1,242 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.data;
+
+import org.broad.igv.Globals;
+import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.util.SidecarFiles;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Writes a {@link Dataset}, typically parsed from an expression (gct, res, ...) or igv file, in the matrix format read
+ * by {@link MatrixDataset}.
+ * <p>
+ * Chromosomes are written one at a time, so a dataset which loads chromosomes on demand ({@link IGVDataset}) is never
+ * held in memory in full.  If a genome is supplied a whole genome summary is written as well.
+ */
+public class MatrixDatasetWriter {
+
+    private final Genome genome;
+
+    public MatrixDatasetWriter(Genome genome) {
+        this.genome = genome;
+    }
+
+    /**
+     * Write the dataset
+     *
+     * @param dataset    dataset to write
+     * @param trackLine  track line of the source file, or null
+     * @param sourceFile the file parsed, recorded so the output can be checked for currency
+     * @param matrixFile output file
+     * @param genomeId   id of the genome used to locate the rows
+     * @param mappingKey description of the probe mapping used to locate the rows
+     */
+    public void write(Dataset dataset, String trackLine, File sourceFile, File matrixFile,
+                      String genomeId, String mappingKey) throws IOException {
+
+        String[] headings = dataset.getTrackNames();
+
+        Map<String, String> attributes = new LinkedHashMap<>();
+        attributes.put("type", dataset.getType().toString());
+        attributes.put("logNormalized", String.valueOf(dataset.isLogNormalized()));
+        attributes.put("dataMin", String.valueOf(dataset.getDataMin()));
+        attributes.put("dataMax", String.valueOf(dataset.getDataMax()));
+        if (trackLine != null) {
+            attributes.put("trackLine", trackLine);
+        }
+
+        Map<String, SectionInfo> sections = new LinkedHashMap<>();
+        for (String chr : dataset.getChromosomes()) {
+            sections.put(chr, new SectionInfo());
+        }
+        GenomeSummaryData summary = genome == null ? null : getGenomeSummary(dataset, headings);
+        if (summary != null) {
+            sections.put(Globals.CHR_ALL, new SectionInfo());
+        }
+
+        // The header is fixed width apart from the names written to it, so its length is known before the sections
+        // are.  Sections are written first, then the header with their positions.
+        long headerLength = header(sourceFile, genomeId, mappingKey, attributes, headings, sections).length;
+
+        SidecarFiles.write(matrixFile, tmpFile -> {
+            long position = headerLength;
+            try (RandomAccessFile raf = new RandomAccessFile(tmpFile, "rw")) {
+                raf.setLength(0);
+                raf.seek(position);
+                DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(raf.getChannel())));
+                for (Map.Entry<String, SectionInfo> entry : sections.entrySet()) {
+                    String chr = entry.getKey();
+                    SectionInfo info = entry.getValue();
+                    info.position = position;
+                    if (chr.equals(Globals.CHR_ALL)) {
+                        int[] locations = summary.getLocations();
+                        float[][] data = new float[headings.length][];
+                        for (int h = 0; h < headings.length; h++) {
+                            data[h] = summary.getData(headings[h]);
+                        }
+                        position += writeSection(dos, info, locations, null, null, data);
+                    } else {
+                        int[] starts = dataset.getStartLocations(chr);
+                        int[] ends = dataset.getEndLocations(chr);
+                        String[] names = dataset.getFeatureNames(chr);
+                        float[][] data = new float[headings.length][];
+                        for (int h = 0; h < headings.length; h++) {
+                            data[h] = dataset.getData(headings[h], chr);
+                        }
+                        Integer longest = dataset.getLongestFeature(chr);
+                        info.longestFeature = longest == null ? 1 : longest;
+                        position += writeSection(dos, info, starts == null ? new int[0] : starts, ends, names, data);
+                    }
+                }
+                dos.flush();
+                raf.seek(0);
+                raf.write(header(sourceFile, genomeId, mappingKey, attributes, headings, sections));
+            }
+        });
+    }
+
+    /**
+     * Summary data for the whole genome view, as computed by {@link DatasetDataSource}
+     */
+    private GenomeSummaryData getGenomeSummary(Dataset dataset, String[] headings) {
+        if (dataset instanceof IGVDataset && ((IGVDataset) dataset).getGenomeSummary() != null) {
+            return ((IGVDataset) dataset).getGenomeSummary();
+        }
+        GenomeSummaryData summary = new GenomeSummaryData(genome, headings);
+        for (String chr : genome.getLongChromosomeNames()) {
+            int[] starts = dataset.getStartLocations(chr);
+            if (!chr.equals(Globals.CHR_ALL) && starts != null && starts.length > 0) {
+                Map<String, float[]> dMap = new HashMap<>();
+                for (String heading : headings) {
+                    dMap.put(heading, dataset.getData(heading, chr));
+                }
+                summary.addData(chr, starts, dMap);
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * Write a section, returning its size in bytes.  The layout is described in {@link MatrixDataset}.
+     */
+    private long writeSection(DataOutputStream dos, SectionInfo info, int[] starts, int[] ends, String[] names,
+                              float[][] data) throws IOException {
+
+        int n = starts.length;
+        info.rowCount = n;
+        info.flags = (ends == null ? 0 : MatrixDataset.HAS_ENDS) | (names == null ? 0 : MatrixDataset.HAS_NAMES);
+
+        ByteBuffer buffer = ByteBuffer.allocate(4 * n);
+        writeInts(dos, buffer, starts);
+        if (ends != null) {
+            writeInts(dos, buffer, ends);
+        }
+
+        float[] missing = null;
+        for (float[] values : data) {
+            if (values == null || values.length != n) {
+                if (missing == null) {
+                    missing = new float[n];
+                    Arrays.fill(missing, Float.NaN);
+                }
+                values = missing;
+            }
+            buffer.clear();
+            buffer.asFloatBuffer().put(values);
+            dos.write(buffer.array(), 0, 4 * n);
+        }
+
+        if (names != null) {
+            byte[][] bytes = new byte[n][];
+            int[] offsets = new int[n + 1];
+            for (int i = 0; i < n; i++) {
+                bytes[i] = names[i] == null ? new byte[0] : names[i].getBytes(StandardCharsets.UTF_8);
+                offsets[i + 1] = offsets[i] + bytes[i].length;
+            }
+            for (int offset : offsets) {
+                dos.writeInt(offset);
+            }
+            for (byte[] b : bytes) {
+                dos.write(b);
+            }
+            info.nameLength = offsets[n];
+        }
+        return MatrixDataset.sectionSize(n, data.length, info.flags, info.nameLength);
+    }
+
+    private static void writeInts(DataOutputStream dos, ByteBuffer buffer, int[] values) throws IOException {
+        buffer.clear();
+        buffer.asIntBuffer().put(values);
+        dos.write(buffer.array(), 0, 4 * values.length);
+    }
+
+    private static byte[] header(File sourceFile, String genomeId, String mappingKey, Map<String, String> attributes,
+                                 String[] headings, Map<String, SectionInfo> sections) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream hos = new DataOutputStream(bytes);
+        SidecarFiles.writeHeader(hos, MatrixDataset.MAGIC, MatrixDataset.VERSION, sourceFile);
+        hos.writeUTF(genomeId);
+        hos.writeUTF(mappingKey);
+        hos.writeInt(attributes.size());
+        for (Map.Entry<String, String> entry : attributes.entrySet()) {
+            hos.writeUTF(entry.getKey());
+            hos.writeUTF(entry.getValue());
+        }
+        hos.writeInt(headings.length);
+        for (String heading : headings) {
+            hos.writeUTF(heading);
+        }
+        hos.writeInt(sections.size());
+        for (Map.Entry<String, SectionInfo> entry : sections.entrySet()) {
+            SectionInfo info = entry.getValue();
+            hos.writeUTF(entry.getKey());
+            hos.writeInt(info.rowCount);
+            hos.writeInt(info.flags);
+            hos.writeInt(info.longestFeature);
+            hos.writeInt(info.nameLength);
+            hos.writeLong(info.position);
+        }
+        hos.flush();
+        return bytes.toByteArray();
+    }
+
+    private static class SectionInfo {
+        int rowCount;
+        int flags;
+        int longestFeature = 1;
+        int nameLength;
+        long position;
+    }
+}
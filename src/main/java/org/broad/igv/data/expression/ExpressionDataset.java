@@ -76,6 +76,7 @@ public class ExpressionDataset implements Dataset {
     Map<String, String[]> featureNameMap = new HashMap();
 
     private TrackProperties trackProperties = new TrackProperties();
+    private String trackLine;
 
     /**
      * Creates a new instance of ExpressionDataset
@@ -201,9 +202,14 @@ public class ExpressionDataset implements Dataset {
     }
 
     public void setTrackLine(String trackLine) {
+        this.trackLine = trackLine;
         ParsingUtils.parseTrackLine(trackLine, trackProperties);
     }
 
+    public String getTrackLine() {
+        return trackLine;
+    }
+
     public Integer getLongestFeature(String chr) {
         return longestFeatureMap == null ? 1000 :
                 longestFeatureMap.containsKey(chr) ? longestFeatureMap.get(chr) : 1;
@@ -37,6 +37,7 @@ import org.broad.igv.ui.IGV;
 import org.broad.igv.util.ParsingUtils;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.util.*;
 
@@ -86,6 +87,29 @@ public class GeneToLocusHelper {
 
     }
 
+    /**
+     * Return a key describing the probe mapping preferences in effect.  Files converted with one mapping are not
+     * valid under another.
+     */
+    public static String getMappingKey() {
+        boolean use_probe_mf;
+        String userMappingFile;
+        if (!Globals.isHeadless()) {
+            Session session = IGV.getInstance().getSession();
+            use_probe_mf = session.getPreferenceAsBoolean(Constants.USE_PROBE_MAPPING_FILE);
+            userMappingFile = session.getPreference(Constants.PROBE_MAPPING_FILE);
+        } else {
+            use_probe_mf = PreferencesManager.getPreferences().getAsBoolean(Constants.USE_PROBE_MAPPING_FILE);
+            userMappingFile = PreferencesManager.getPreferences().get(Constants.PROBE_MAPPING_FILE);
+        }
+        String key = "genes=" + PreferencesManager.getPreferences().getAsBoolean(Constants.PROBE_MAPPING_KEY);
+        if (use_probe_mf && userMappingFile != null && userMappingFile.trim().length() > 0) {
+            File file = new File(userMappingFile.trim());
+            key += ";file=" + userMappingFile.trim() + ";" + (file.exists() ? file.lastModified() : 0);
+        }
+        return key;
+    }
+
     /**
      * Return a list of loci mapping to the given probe.
      *
@@ -27,12 +27,14 @@ package org.broad.igv.data.expression;
 
 
 import org.apache.log4j.Logger;
+import org.broad.igv.DirectoryManager;
 import org.broad.igv.Globals;
 import org.broad.igv.exceptions.LoadResourceFromServerException;
 import org.broad.igv.prefs.Constants;
 import org.broad.igv.prefs.PreferencesManager;
 import org.broad.igv.ui.util.MessageUtils;
 import org.broad.igv.util.HttpUtils;
+import org.broad.igv.util.SidecarFiles;
 
 import java.io.*;
 import java.net.URL;
@@ -82,6 +84,13 @@ public class ProbeToLocusMap {
     private static String methylationLociMappingURL =
             SERVER_URL + "/igvdata/probes/meth/methylation_probeToLoci.mappings.txt.gz";
 
+    static final int CACHE_MAGIC = 0x49475050;   // "IGPP"
+
+    /**
+     * Age after which a persisted remote mapping is reloaded, in milliseconds
+     */
+    static final long MAX_CACHE_AGE = 30L * 24 * 60 * 60 * 1000;
+
     private static ProbeToLocusMap instance;
 
     private Map<String, Map<String, String[]>> probeMaps = new HashMap();
@@ -106,7 +115,89 @@ public class ProbeToLocusMap {
     }
 
 
+    /**
+     * Load a mapping.  Remote mappings are persisted to the IGV index directory, and reloaded from there until
+     * {@link #MAX_CACHE_AGE} has passed.  If a remote mapping cannot be reached an older copy is used.
+     */
     public void loadMapping(String urlString, Map<String, String[]> map) {
+        if (!HttpUtils.isRemoteURL(urlString)) {
+            loadMappingFromSource(urlString, map);
+            return;
+        }
+        File cacheFile = getCacheFile(urlString);
+        if (cacheFile.exists() && System.currentTimeMillis() - cacheFile.lastModified() < MAX_CACHE_AGE) {
+            try {
+                readCache(cacheFile, urlString, map);
+                return;
+            } catch (IOException e) {
+                log.error("Error reading probe mapping cache " + cacheFile.getAbsolutePath(), e);
+                map.clear();
+            }
+        }
+        try {
+            loadMappingFromSource(urlString, map);
+        } catch (LoadResourceFromServerException e) {
+            if (!cacheFile.exists()) {
+                throw e;
+            }
+            try {
+                map.clear();
+                readCache(cacheFile, urlString, map);
+                log.info("Using cached probe mapping for " + urlString);
+                return;
+            } catch (IOException e1) {
+                throw e;
+            }
+        }
+        try {
+            writeCache(cacheFile, urlString, map);
+        } catch (IOException e) {
+            log.error("Error writing probe mapping cache " + cacheFile.getAbsolutePath(), e);
+        }
+    }
+
+    static File getCacheFile(String urlString) {
+        return SidecarFiles.getFile(DirectoryManager.getFeatureIndexDirectory(), "probes", urlString, ".bin");
+    }
+
+    /**
+     * Cache layout:  int magic, UTF url, int probeCount, probeCount x { UTF probe, int n, n x UTF locus }
+     */
+    static void writeCache(File cacheFile, String urlString, Map<String, String[]> map) throws IOException {
+        SidecarFiles.write(cacheFile, tmpFile -> {
+            try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+                dos.writeInt(CACHE_MAGIC);
+                dos.writeUTF(urlString);
+                dos.writeInt(map.size());
+                for (Map.Entry<String, String[]> entry : map.entrySet()) {
+                    dos.writeUTF(entry.getKey());
+                    dos.writeInt(entry.getValue().length);
+                    for (String locus : entry.getValue()) {
+                        dos.writeUTF(locus);
+                    }
+                }
+            }
+        });
+    }
+
+    static void readCache(File cacheFile, String urlString, Map<String, String[]> map) throws IOException {
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            if (dis.readInt() != CACHE_MAGIC || !dis.readUTF().equals(urlString)) {
+                throw new IOException("Unrecognized probe mapping cache: " + cacheFile.getAbsolutePath());
+            }
+            int count = dis.readInt();
+            for (int i = 0; i < count; i++) {
+                String probe = dis.readUTF();
+                String[] loci = new String[dis.readInt()];
+                for (int j = 0; j < loci.length; j++) {
+                    loci[j] = dis.readUTF();
+                }
+                map.put(probe, loci);
+            }
+        }
+    }
+
+    private void loadMappingFromSource(String urlString, Map<String, String[]> map) {
         BufferedReader bufReader = null;
         InputStream is = null;
         try {
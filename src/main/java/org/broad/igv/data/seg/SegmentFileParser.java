@@ -84,6 +84,15 @@ public class SegmentFileParser implements SegFileParser {
     public SegmentedAsciiDataSet loadSegments(ResourceLocator locator, Genome genome) {
 
         SegmentedAsciiDataSet dataset = new SegmentedAsciiDataSet(genome);
+        parse(dataset, genome);
+        dataset.sortLists();
+        return dataset;
+    }
+
+    /**
+     * Parse the file, passing segments and header information to {@code dataset}
+     */
+    public void parse(SegmentSink dataset, Genome genome) {
 
         if (birdsuite) {
             dataset.setTrackType(TrackType.CNV);
@@ -199,9 +208,6 @@ public class SegmentFileParser implements SegFileParser {
                 reader.close();
             }
         }
-
-        dataset.sortLists();
-        return dataset;
     }
 
 
@@ -212,11 +218,11 @@ public class SegmentFileParser implements SegFileParser {
      * @param comment
      * @param dataset
      */
-    private void parseComment(String comment, SegmentedAsciiDataSet dataset) {
+    private void parseComment(String comment, SegmentSink dataset) {
 
         String tmp = comment.substring(1, comment.length());
         if (tmp.startsWith("track")) {
-            ParsingUtils.parseTrackLine(tmp, dataset.getTrackProperties());
+            dataset.setTrackLine(tmp);
         } else {
             String[] tokens = tmp.split("=");
 
@@ -37,6 +37,7 @@ import org.broad.igv.feature.LocusScore;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.track.TrackProperties;
 import org.broad.igv.track.TrackType;
+import org.broad.igv.util.ParsingUtils;
 import org.broad.igv.util.ResourceLocator;
 
 import java.util.*;
@@ -45,7 +46,7 @@ import java.util.*;
 /**
  * @author jrobinso
  */
-public class SegmentedAsciiDataSet implements SegmentedDataSet {
+public class SegmentedAsciiDataSet implements SegmentedDataSet, SegmentSink {
 
     //SegFileParser parser;
     TrackType trackType = TrackType.COPY_NUMBER;
@@ -244,6 +245,10 @@ public class SegmentedAsciiDataSet implements SegmentedDataSet {
         this.trackProperties = props;
     }
 
+    public void setTrackLine(String trackLine) {
+        ParsingUtils.parseTrackLine(trackLine, getTrackProperties());
+    }
+
     public TrackProperties getTrackProperties() {
         if (trackProperties == null) {
             trackProperties = new TrackProperties();
@@ -27,19 +27,21 @@ package org.broad.igv.data.seg;
 
 import org.broad.igv.Globals;
 import org.broad.igv.feature.LocusScore;
+import org.broad.igv.track.TrackProperties;
 import org.broad.igv.track.TrackType;
+import org.broad.igv.util.ObjectCache;
+import org.broad.igv.util.ParsingUtils;
 import org.broad.igv.util.ResourceLocator;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 /**
  * @author jrobinso
  */
 public class SegmentedBinaryDataSet implements SegmentedDataSet {
 
+    private static final int MAX_CACHED_SEGMENT_LISTS = 20000;
+
     SegmentedBinaryReader reader;
 
     private long lastRefreshTime = 0;
@@ -54,17 +56,28 @@ public class SegmentedBinaryDataSet implements SegmentedDataSet {
     private List<String> sampleNames = null;
 
     /**
-     * Map of [heading ->  [chr -> [list of segmentsCache]]]
+     * Cache of [heading, chr] ->  [list of segments].  Lists are built from the reader's arrays on demand, the cache
+     * is bounded and softly referenced so large cohorts are not held in memory.
      */
-    Map<String, Map<String, List<LocusScore>>> segmentsCache = new HashMap();
+    ObjectCache<List<String>, List<LocusScore>> segmentsCache = new ObjectCache<>(MAX_CACHED_SEGMENT_LISTS);
 
     Map<String, SegmentedChromosomeData> chrData = new HashMap();
 
     TrackType type = TrackType.COPY_NUMBER;
 
+    private double dataMax = 3;
+
+    private double dataMin = -3;
+
+    private TrackProperties trackProperties;
+
     public SegmentedBinaryDataSet(ResourceLocator locator) {
+        this(new SegmentedBinaryLocalReader(locator.getPath()));
+    }
+
+    public SegmentedBinaryDataSet(SegmentedBinaryReader reader) {
 
-        reader = new SegmentedBinaryLocalReader(locator.getPath());
+        this.reader = reader;
 
         try {
             type = TrackType.valueOf(reader.getStringAttribute("type"));
@@ -83,33 +96,45 @@ public class SegmentedBinaryDataSet implements SegmentedDataSet {
             // ignore
         }
 
+        try {
+            String maxString = reader.getStringAttribute("dataMax");
+            String minString = reader.getStringAttribute("dataMin");
+            if (maxString != null && minString != null) {
+                dataMax = Double.parseDouble(maxString);
+                dataMin = Double.parseDouble(minString);
+            }
+        } catch (Exception exception) {
+            // ignore
+        }
 
+        String trackLine = reader.getStringAttribute("trackLine");
+        if (trackLine != null) {
+            trackProperties = new TrackProperties();
+            ParsingUtils.parseTrackLine(trackLine, trackProperties);
+        }
     }
 
 
-    // TODO -- the synchronized keyword can be removed with the async whole genome load
-
-    public List<LocusScore> getSegments(String heading, String chr) {
+    public synchronized List<LocusScore> getSegments(String heading, String chr) {
 
-        Map<String, List<LocusScore>> chrSegments = segmentsCache.get(heading);
-        if (chrSegments == null) {
-            chrSegments = new HashMap();
-            segmentsCache.put(heading, chrSegments);
-        }
-
-        List<LocusScore> segments = chrSegments.get(chr);
+        List<String> key = Arrays.asList(heading, chr);
+        List<LocusScore> segments = segmentsCache.get(key);
 
         if (segments == null) {
 
             SegmentedChromosomeData cd = chrData.get(chr);
             if (cd == null) {
                 cd = reader.getChromosomeData(chr);
+                if (cd == null) {
+                    return null;
+                }
                 chrData.put(chr, cd);
             }
 
             int[] startLocations = cd.getStartLocations(heading);
             int[] endLocations = cd.getEndLocations(heading);
             float[] values = cd.getValues(heading);
+            String[] descriptions = cd.getDescriptions(heading);
 
             if (startLocations == null || startLocations.length == 0) {
                 return null;
@@ -132,9 +157,14 @@ public class SegmentedBinaryDataSet implements SegmentedDataSet {
             segments = new ArrayList(startLocations.length);
             for (int i = 0; i <
                     startLocations.length; i++) {
-                segments.add(new Segment(startLocations[i], endLocations[i], values[i]));
-                chrSegments.put(chr, segments);
+                if (descriptions == null) {
+                    segments.add(new Segment(startLocations[i], endLocations[i], values[i]));
+                } else {
+                    segments.add(new Segment(startLocations[i], startLocations[i], endLocations[i], endLocations[i],
+                            values[i], descriptions[i]));
+                }
             }
+            segmentsCache.put(key, segments);
 
         }
         return segments;
@@ -159,11 +189,18 @@ public class SegmentedBinaryDataSet implements SegmentedDataSet {
     }
 
     public double getDataMax(String chr) {
-        return 3;
+        return dataMax;
     }
 
     public double getDataMin(String chr) {
-        return -3;
+        return dataMin;
+    }
+
+    /**
+     * Return properties from the source file's track line, or null if there was none
+     */
+    public TrackProperties getTrackProperties() {
+        return trackProperties;
     }
 
     public synchronized List<LocusScore> getWholeGenomeScores(String heading) {
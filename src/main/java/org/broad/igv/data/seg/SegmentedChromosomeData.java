@@ -197,4 +197,11 @@ public class SegmentedChromosomeData {
     public float[] getValues(String sampleName) {
         return valueMap.get(sampleName);
     }
+
+    /**
+     * Return the segment descriptions for the sample, or null if descriptions are not available
+     */
+    public String[] getDescriptions(String sampleName) {
+        return null;
+    }
 }
@@ -0,0 +1,257 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.data.seg;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.DirectoryManager;
+import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.util.ResourceLocator;
+import org.broad.igv.util.SidecarFiles;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Reader for the columnar segmented data format written by {@link SegmentedColumnarWriter}.
+ * <p>
+ * Chromosome sections are memory mapped, and {@link #getChromosomeData(String)} returns views over them.  Arrays
+ * for a sample are copied out only when that sample is requested, so the segments of samples and chromosomes
+ * never viewed are not read.
+ * <p>
+ * File layout (big endian)
+ * <pre>
+ *   header (see {@link SidecarFiles}), UTF genomeId
+ *   int attributeCount, attributeCount x { UTF key, UTF value }
+ *   int sampleCount, sampleCount x UTF name
+ *   int chrCount, chrCount x { UTF name, int segmentCount, int descriptionLength, long sectionPosition }
+ *   sections:  int[sampleCount + 1] sampleStart, int[n] start, int[n] end, float[n] value,
+ *              int[n + 1] descriptionOffset, byte[descriptionLength] descriptions (UTF-8)
+ * </pre>
+ * Segments in a section are sorted by sample, then start.  Sample i's segments are [sampleStart[i], sampleStart[i+1]).
+ */
+public class SegmentedColumnarReader implements SegmentedBinaryReader {
+
+    private static Logger log = Logger.getLogger(SegmentedColumnarReader.class);
+
+    static final int MAGIC = 0x49475343;   // "IGSC"
+    static final int VERSION = 2;
+
+    private final Map<String, String> attributes;
+    private final List<String> sampleNames;
+    private final Map<String, Integer> sampleIndices;
+    private final Map<String, SegmentedChromosomeData> chrData;
+
+    private SegmentedColumnarReader(Map<String, String> attributes, List<String> sampleNames,
+                                    Map<String, SegmentedChromosomeData> chrData) {
+        this.attributes = attributes;
+        this.sampleNames = sampleNames;
+        this.chrData = chrData;
+        this.sampleIndices = new HashMap<>();
+        for (int i = 0; i < sampleNames.size(); i++) {
+            sampleIndices.put(sampleNames.get(i), i);
+        }
+    }
+
+    /**
+     * Open a reader for a local segmented data file.  The file is converted to the columnar format, in the IGV index
+     * directory, on first load.
+     */
+    public static SegmentedColumnarReader open(ResourceLocator locator, Genome genome) throws IOException {
+
+        File sourceFile = new File(locator.getPath());
+        File columnarFile = SidecarFiles.getFile(DirectoryManager.getFeatureIndexDirectory(), sourceFile, ".segc");
+        String genomeId = genome == null ? "" : genome.getId();
+
+        if (!isCurrent(sourceFile, columnarFile, genomeId)) {
+            long t0 = System.currentTimeMillis();
+            SegmentedColumnarWriter writer = new SegmentedColumnarWriter(genome);
+            new SegmentFileParser(locator).parse(writer, genome);
+            writer.write(sourceFile, columnarFile, genomeId);
+            log.info("Converted " + sourceFile.getName() + " in " + (System.currentTimeMillis() - t0) + " ms");
+        }
+        return read(columnarFile);
+    }
+
+    /**
+     * Return true if {@code columnarFile} exists and was built from the current version of {@code sourceFile} for
+     * the given genome.
+     */
+    public static boolean isCurrent(File sourceFile, File columnarFile, String genomeId) {
+        try (DataInputStream dis = SidecarFiles.openIfCurrent(columnarFile, MAGIC, VERSION, sourceFile)) {
+            return dis != null && dis.readUTF().equals(genomeId);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public static SegmentedColumnarReader read(File columnarFile) throws IOException {
+
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(columnarFile)));
+             FileChannel channel = FileChannel.open(columnarFile.toPath(), StandardOpenOption.READ)) {
+
+            SidecarFiles.skipHeader(dis, MAGIC, VERSION, columnarFile);
+            dis.readUTF();
+
+            int nAttributes = dis.readInt();
+            Map<String, String> attributes = new HashMap<>();
+            for (int i = 0; i < nAttributes; i++) {
+                attributes.put(dis.readUTF(), dis.readUTF());
+            }
+
+            int nSamples = dis.readInt();
+            List<String> sampleNames = new ArrayList<>(nSamples);
+            for (int i = 0; i < nSamples; i++) {
+                sampleNames.add(dis.readUTF());
+            }
+
+            SegmentedColumnarReader reader = new SegmentedColumnarReader(attributes, sampleNames, new HashMap<>());
+            int chrCount = dis.readInt();
+            for (int i = 0; i < chrCount; i++) {
+                String chr = dis.readUTF();
+                int count = dis.readInt();
+                int descLength = dis.readInt();
+                long position = dis.readLong();
+                long size = 4L * (nSamples + 1) + 12L * count + 4L * (count + 1) + descLength;
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+                reader.chrData.put(chr, reader.new ChromosomeSection(count, buffer));
+            }
+            return reader;
+        }
+    }
+
+    public SegmentedChromosomeData getChromosomeData(String chr) {
+        return chrData.get(chr);
+    }
+
+    public List<String> getSampleNames() {
+        return sampleNames;
+    }
+
+    public String getStringAttribute(String key) {
+        return attributes.get(key);
+    }
+
+    /**
+     * View over a mapped chromosome section
+     */
+    private class ChromosomeSection extends SegmentedChromosomeData {
+
+        final IntBuffer sampleStarts;
+        final IntBuffer starts;
+        final IntBuffer ends;
+        final FloatBuffer values;
+        final IntBuffer descOffsets;
+        final ByteBuffer descriptions;
+
+        ChromosomeSection(int count, ByteBuffer buffer) {
+            int nSamples = sampleNames.size();
+            int pos = 0;
+            sampleStarts = slice(buffer, pos, 4 * (nSamples + 1)).asIntBuffer();
+            pos += 4 * (nSamples + 1);
+            starts = slice(buffer, pos, 4 * count).asIntBuffer();
+            pos += 4 * count;
+            ends = slice(buffer, pos, 4 * count).asIntBuffer();
+            pos += 4 * count;
+            values = slice(buffer, pos, 4 * count).asFloatBuffer();
+            pos += 4 * count;
+            descOffsets = slice(buffer, pos, 4 * (count + 1)).asIntBuffer();
+            pos += 4 * (count + 1);
+            descriptions = slice(buffer, pos, buffer.limit() - pos);
+        }
+
+        @Override
+        public String[] getSampleNames() {
+            return sampleNames.toArray(new String[0]);
+        }
+
+        @Override
+        public int[] getStartLocations(String sampleName) {
+            return copy(starts, sampleName);
+        }
+
+        @Override
+        public int[] getEndLocations(String sampleName) {
+            return copy(ends, sampleName);
+        }
+
+        @Override
+        public float[] getValues(String sampleName) {
+            Integer s = sampleIndices.get(sampleName);
+            if (s == null) return null;
+            int from = sampleStarts.get(s);
+            float[] result = new float[sampleStarts.get(s + 1) - from];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = values.get(from + i);
+            }
+            return result;
+        }
+
+        @Override
+        public String[] getDescriptions(String sampleName) {
+            Integer s = sampleIndices.get(sampleName);
+            if (s == null) return null;
+            int from = sampleStarts.get(s);
+            String[] result = new String[sampleStarts.get(s + 1) - from];
+            for (int i = 0; i < result.length; i++) {
+                int offset = descOffsets.get(from + i);
+                int length = descOffsets.get(from + i + 1) - offset;
+                if (length > 0) {
+                    byte[] bytes = new byte[length];
+                    ByteBuffer dup = descriptions.duplicate();
+                    dup.position(offset);
+                    dup.get(bytes);
+                    result[i] = new String(bytes, StandardCharsets.UTF_8);
+                }
+            }
+            return result;
+        }
+
+        private int[] copy(IntBuffer buffer, String sampleName) {
+            Integer s = sampleIndices.get(sampleName);
+            if (s == null) return null;
+            int from = sampleStarts.get(s);
+            int[] result = new int[sampleStarts.get(s + 1) - from];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = buffer.get(from + i);
+            }
+            return result;
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int position, int length) {
+        ByteBuffer dup = buffer.duplicate();
+        dup.position(position);
+        dup.limit(position + length);
+        return dup.slice();
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.data.seg;
+
+import org.broad.igv.Globals;
+import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.track.TrackType;
+import org.broad.igv.util.SidecarFiles;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Collects the segments of a segmented data file in primitive arrays, one set per chromosome, and writes them in
+ * the columnar format read by {@link SegmentedColumnarReader}.
+ * <p>
+ * Segments are sorted by sample, in order of first appearance, and then by start.  If a genome is supplied a whole
+ * genome section, in genome coordinates, is computed for the chromosomes visible in whole genome view.
+ */
+public class SegmentedColumnarWriter implements SegmentSink {
+
+    private final Genome genome;
+    private TrackType trackType = TrackType.COPY_NUMBER;
+    private String trackLine;
+    private boolean logNormalized = false;
+    private float dataMax = -Float.MAX_VALUE;
+    private float dataMin = Float.MAX_VALUE;
+    private final Map<String, Integer> samples = new LinkedHashMap<>();
+    private final Map<String, ChrSegments> chromosomes = new LinkedHashMap<>();
+
+    public SegmentedColumnarWriter(Genome genome) {
+        this.genome = genome;
+    }
+
+    public void addSegment(String heading, String c, int start, int end, float value, String desc) {
+
+        String chr = genome == null ? c : genome.getCanonicalChrName(c);
+
+        Integer sample = samples.get(heading);
+        if (sample == null) {
+            sample = samples.size();
+            samples.put(heading, sample);
+        }
+        chromosomes.computeIfAbsent(chr, k -> new ChrSegments()).add(sample, start, end, value, desc);
+
+        dataMax = Math.max(dataMax, value);
+        dataMin = Math.min(dataMin, value);
+        if (value < 0) {
+            logNormalized = true;
+        }
+    }
+
+    public void setTrackType(TrackType trackType) {
+        this.trackType = trackType;
+    }
+
+    public void setTrackLine(String trackLine) {
+        this.trackLine = trackLine;
+    }
+
+    /**
+     * Write the collected segments
+     *
+     * @param sourceFile    the file parsed, recorded so the output can be checked for currency
+     * @param columnarFile  output file
+     * @param genomeId      id of the genome used to canonicalize chromosome names
+     */
+    public void write(File sourceFile, File columnarFile, String genomeId) throws IOException {
+
+        int nSamples = samples.size();
+        Map<String, ChrSegments> sections = new LinkedHashMap<>();
+        for (Map.Entry<String, ChrSegments> entry : chromosomes.entrySet()) {
+            entry.getValue().sort(nSamples);
+            sections.put(entry.getKey(), entry.getValue());
+        }
+        if (genome != null) {
+            sections.put(Globals.CHR_ALL, computeWholeGenome(nSamples));
+        }
+
+        Map<String, String> attributes = new LinkedHashMap<>();
+        attributes.put("type", trackType.toString());
+        attributes.put("logNormalized", String.valueOf(logNormalized));
+        if (dataMin <= dataMax) {
+            attributes.put("dataMin", String.valueOf(dataMin));
+            attributes.put("dataMax", String.valueOf(dataMax));
+        }
+        if (trackLine != null) {
+            attributes.put("trackLine", trackLine);
+        }
+
+        // Section positions are fixed width, so the header length can be computed with placeholder positions
+        long position = header(sourceFile, genomeId, attributes, sections, null).length;
+        Map<String, Long> positions = new HashMap<>();
+        for (Map.Entry<String, ChrSegments> entry : sections.entrySet()) {
+            positions.put(entry.getKey(), position);
+            position += entry.getValue().sectionSize(nSamples);
+        }
+
+        byte[] header = header(sourceFile, genomeId, attributes, sections, positions);
+        SidecarFiles.write(columnarFile, tmpFile -> {
+            try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+                dos.write(header);
+                for (ChrSegments cs : sections.values()) {
+                    cs.write(dos);
+                }
+            }
+        });
+    }
+
+    private byte[] header(File sourceFile, String genomeId, Map<String, String> attributes,
+                          Map<String, ChrSegments> sections, Map<String, Long> positions) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream hos = new DataOutputStream(bytes);
+        SidecarFiles.writeHeader(hos, SegmentedColumnarReader.MAGIC, SegmentedColumnarReader.VERSION, sourceFile);
+        hos.writeUTF(genomeId);
+        hos.writeInt(attributes.size());
+        for (Map.Entry<String, String> entry : attributes.entrySet()) {
+            hos.writeUTF(entry.getKey());
+            hos.writeUTF(entry.getValue());
+        }
+        hos.writeInt(samples.size());
+        for (String sample : samples.keySet()) {
+            hos.writeUTF(sample);
+        }
+        hos.writeInt(sections.size());
+        for (Map.Entry<String, ChrSegments> entry : sections.entrySet()) {
+            hos.writeUTF(entry.getKey());
+            hos.writeInt(entry.getValue().size);
+            hos.writeInt(entry.getValue().descLength);
+            hos.writeLong(positions == null ? 0 : positions.get(entry.getKey()));
+        }
+        hos.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Compute segments in genome coordinates, as done by SegmentedAsciiDataSet.getWholeGenomeScores
+     */
+    private ChrSegments computeWholeGenome(int nSamples) {
+        ChrSegments wg = new ChrSegments();
+        for (int sample = 0; sample < nSamples; sample++) {
+            for (String chr : genome.getLongChromosomeNames()) {
+                ChrSegments cs = chromosomes.get(chr);
+                if (cs == null) continue;
+                int lastgEnd = -1;
+                for (int i = cs.sampleStarts[sample]; i < cs.sampleStarts[sample + 1]; i++) {
+                    int gStart = genome.getGenomeCoordinate(chr, cs.starts[i]);
+                    int gEnd = genome.getGenomeCoordinate(chr, cs.ends[i]);
+                    if (gEnd > lastgEnd) {
+                        wg.add(sample, gStart, gEnd, cs.values[i], cs.descBytes, cs.descOffsets[i], cs.descOffsets[i + 1]);
+                    }
+                    lastgEnd = gEnd;
+                }
+            }
+        }
+        wg.sort(nSamples);
+        return wg;
+    }
+
+    /**
+     * Segments of a chromosome.  Descriptions are stored as UTF-8 bytes in a single array.
+     */
+    private static class ChrSegments {
+
+        int size = 0;
+        int[] samples = new int[1024];
+        int[] starts = new int[1024];
+        int[] ends = new int[1024];
+        float[] values = new float[1024];
+        int[] descOffsets = new int[1025];
+        byte[] descBytes = new byte[16384];
+        int descLength = 0;
+        int[] sampleStarts;
+
+        void add(int sample, int start, int end, float value, String desc) {
+            byte[] bytes = desc == null ? new byte[0] : desc.getBytes(StandardCharsets.UTF_8);
+            add(sample, start, end, value, bytes, 0, bytes.length);
+        }
+
+        void add(int sample, int start, int end, float value, byte[] desc, int descStart, int descEnd) {
+            if (size == starts.length) {
+                int newCapacity = size + (size >> 1);
+                samples = Arrays.copyOf(samples, newCapacity);
+                starts = Arrays.copyOf(starts, newCapacity);
+                ends = Arrays.copyOf(ends, newCapacity);
+                values = Arrays.copyOf(values, newCapacity);
+                descOffsets = Arrays.copyOf(descOffsets, newCapacity + 1);
+            }
+            int len = descEnd - descStart;
+            if (descLength + len > descBytes.length) {
+                descBytes = Arrays.copyOf(descBytes, Math.max(descLength + len, descBytes.length + (descBytes.length >> 1)));
+            }
+            System.arraycopy(desc, descStart, descBytes, descLength, len);
+            descOffsets[size] = descLength;
+            descLength += len;
+            samples[size] = sample;
+            starts[size] = start;
+            ends[size] = end;
+            values[size] = value;
+            size++;
+            descOffsets[size] = descLength;
+        }
+
+        /**
+         * Sort by sample, then start, and compute the index of each sample's first segment.  Samples are bucketed
+         * with a counting sort, each sample's segments are then sorted by start if they are not already.
+         */
+        void sort(int nSamples) {
+
+            sampleStarts = new int[nSamples + 1];
+            for (int i = 0; i < size; i++) {
+                sampleStarts[samples[i] + 1]++;
+            }
+            for (int s = 0; s < nSamples; s++) {
+                sampleStarts[s + 1] += sampleStarts[s];
+            }
+
+            int[] order = new int[size];
+            int[] next = Arrays.copyOf(sampleStarts, nSamples);
+            for (int i = 0; i < size; i++) {
+                order[next[samples[i]]++] = i;
+            }
+
+            for (int s = 0; s < nSamples; s++) {
+                int from = sampleStarts[s];
+                int to = sampleStarts[s + 1];
+                boolean sorted = true;
+                for (int j = from + 1; j < to && sorted; j++) {
+                    sorted = starts[order[j]] >= starts[order[j - 1]];
+                }
+                if (!sorted) {
+                    // Pack (start, index) into a long so a primitive sort can be used
+                    long[] keys = new long[to - from];
+                    for (int j = from; j < to; j++) {
+                        keys[j - from] = (((long) starts[order[j]] - Integer.MIN_VALUE) << 32) | order[j];
+                    }
+                    Arrays.sort(keys);
+                    for (int j = from; j < to; j++) {
+                        order[j] = (int) (keys[j - from] & 0xFFFFFFFFL);
+                    }
+                }
+            }
+
+            int[] sm = new int[size];
+            int[] st = new int[size];
+            int[] en = new int[size];
+            float[] va = new float[size];
+            int[] dOff = new int[size + 1];
+            byte[] dBytes = new byte[descLength];
+            int dLen = 0;
+            for (int j = 0; j < size; j++) {
+                int i = order[j];
+                sm[j] = samples[i];
+                st[j] = starts[i];
+                en[j] = ends[i];
+                va[j] = values[i];
+                int len = descOffsets[i + 1] - descOffsets[i];
+                System.arraycopy(descBytes, descOffsets[i], dBytes, dLen, len);
+                dOff[j] = dLen;
+                dLen += len;
+            }
+            dOff[size] = dLen;
+            samples = sm;
+            starts = st;
+            ends = en;
+            values = va;
+            descOffsets = dOff;
+            descBytes = dBytes;
+        }
+
+        long sectionSize(int nSamples) {
+            return 4L * (nSamples + 1) + 12L * size + 4L * (size + 1) + descLength;
+        }
+
+        void write(DataOutputStream dos) throws IOException {
+            for (int s : sampleStarts) dos.writeInt(s);
+            for (int i = 0; i < size; i++) dos.writeInt(starts[i]);
+            for (int i = 0; i < size; i++) dos.writeInt(ends[i]);
+            for (int i = 0; i < size; i++) dos.writeFloat(values[i]);
+            for (int i = 0; i <= size; i++) dos.writeInt(descOffsets[i]);
+            dos.write(descBytes, 0, descLength);
+        }
+    }
+}
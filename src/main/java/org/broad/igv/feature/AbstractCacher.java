@@ -26,8 +26,9 @@
 
 package org.broad.igv.feature;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.apache.log4j.Logger;
-import org.broad.igv.util.collections.LRUCache;
 import htsjdk.tribble.CloseableTribbleIterator;
 import htsjdk.tribble.Feature;
 
@@ -36,11 +37,19 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
  * Class to handle caching data from any source of features
  * Subclasses must override queryRaw
+ * <p/>
+ * Bins are shared by all callers.  Cached bins are read without locking, and a missing bin is loaded by exactly
+ * one caller while any others requesting it wait on the same load.  The cache is bounded by the total number
+ * of records held, rather than the number of bins.
  *
  * @author jrobinso
  * @date Jun 24, 2010
@@ -49,12 +58,40 @@ public abstract class AbstractCacher {
 
     private static Logger log = Logger.getLogger(AbstractCacher.class);
 
+    public static final long DEFAULT_MAX_RECORD_COUNT = 1000000;
+
     protected int binSize = Integer.MAX_VALUE;
-    protected LRUCache<String, Bin> cache;
+    protected Cache<String, Bin> cache;
+
+    /**
+     * Bins currently being loaded, by key.  Used to insure each bin is loaded once.
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<Bin>> pendingBins = new ConcurrentHashMap<>();
+
+    /**
+     * Incremented when the cache is invalidated, loads started before an invalidation are not cached.
+     */
+    private final AtomicInteger generation = new AtomicInteger();
+
+    /**
+     * Lock guarding queryRaw.  Underlying readers (e.g. tabix) are generally not thread safe.
+     */
+    private final Object queryLock = new Object();
 
 
-    public AbstractCacher(int binCount, int binSize) {
-        this.cache = new LRUCache(binCount);
+    public AbstractCacher(int binSize) {
+        this(binSize, DEFAULT_MAX_RECORD_COUNT);
+    }
+
+    public AbstractCacher(int binSize, long maxRecordCount) {
+        // A single segment, so the whole budget is available to any bin.  Guava divides the weight among
+        // segments, with the default concurrency level a bin larger than a quarter of the budget is evicted as
+        // soon as it is loaded.
+        this.cache = CacheBuilder.newBuilder()
+                .concurrencyLevel(1)
+                .maximumWeight(maxRecordCount)
+                .weigher((String key, Bin bin) -> bin.getRecordCount())
+                .build();
         setBinSize(binSize);
     }
 
@@ -77,12 +114,16 @@ public abstract class AbstractCacher {
      */
     public void setBinSize(int newSize) {
         this.binSize = newSize == 0 ? Integer.MAX_VALUE : newSize;  // A binSize of zero => use a single bin for the entire chromosome
-        cache.clear();
-
+        invalidate();
     }
 
     public void close() throws IOException {
-        cache.clear();
+        invalidate();
+    }
+
+    private void invalidate() {
+        generation.incrementAndGet();
+        cache.invalidateAll();
     }
 
     /**
@@ -105,77 +146,122 @@ public abstract class AbstractCacher {
             return Collections.<Feature>emptyList().iterator();
         }
 
-        // Count total # of records
-        int recordCount = tiles.get(0).getOverlappingRecords().size();
-        for (Bin t : tiles) {
-            recordCount += t.getContainedRecords().size();
-        }
-
-        List<Feature> features = new ArrayList(recordCount);
-        features.addAll(tiles.get(0).getOverlappingRecords());
-        for (Bin t : tiles) {
-            features.addAll(t.getContainedRecords());
-        }
-        return new BinIterator(start, end, features);
+        return new BinIterator(start, end, tiles);
     }
 
 
     /**
      * Return loaded tiles that span the query interval.
      * <p/>
-     * We synchronize this method because different threads might be using
-     * the same source. Synchronizing here ensures that data
-     * is loaded as few times as possible (first caller loads it into the cache,
-     * the second caller accesses it from there) as well as preventing bugs stemming
-     * from multiple thread access
+     * Tiles found in the cache are returned directly.  A missing tile is claimed by registering a future in
+     * {@code pendingBins}; runs of consecutive claimed tiles are loaded with a single call to queryRaw.  Tiles
+     * claimed by other threads are waited on rather than loaded again.
      *
      * @param seq
      * @param startBin
      * @param endBin
      * @return
      */
-    private synchronized List<Bin> getBins(String seq, int startBin, int endBin) {
+    private List<Bin> getBins(String seq, int startBin, int endBin) throws IOException {
 
-        List<Bin> tiles = new ArrayList(endBin - startBin + 1);
-        List<Bin> tilesToLoad = new ArrayList(endBin - startBin + 1);
+        final int gen = generation.get();
+        final int nBins = endBin - startBin + 1;
+        List<CompletableFuture<Bin>> futures = new ArrayList<>(nBins);
+        List<Bin> tilesToLoad = new ArrayList<>(nBins);
+        List<CompletableFuture<Bin>> claims = new ArrayList<>(nBins);
 
         for (int t = startBin; t <= endBin; t++) {
             String key = seq + "_" + t;
-            Bin tile = cache.get(key);
+            Bin tile = cache.getIfPresent(key);
+            if (tile != null) {
+                futures.add(CompletableFuture.completedFuture(tile));
+                loadPending(seq, tilesToLoad, claims, gen);
+                continue;
+            }
 
-            if (tile == null) {
-                if (log.isDebugEnabled()) {
-                    log.debug("Tile cache miss: " + t);
-                }
-                int start = t * binSize;
-                int end = start + binSize;
-                tile = new Bin(t, start, end);
-                cache.put(key, tile);
+            CompletableFuture<Bin> claim = new CompletableFuture<>();
+            CompletableFuture<Bin> existing = pendingBins.putIfAbsent(key, claim);
+            if (existing != null) {
+                // Another caller is loading this bin
+                futures.add(existing);
+                loadPending(seq, tilesToLoad, claims, gen);
+                continue;
             }
 
-            tiles.add(tile);
+            // Recheck, the bin might have been loaded between the cache lookup and the claim
+            tile = cache.getIfPresent(key);
+            if (tile != null) {
+                pendingBins.remove(key, claim);
+                claim.complete(tile);
+                futures.add(claim);
+                loadPending(seq, tilesToLoad, claims, gen);
+                continue;
+            }
 
-            // The current tile is loaded,  load any preceding tiles we have pending
-            if (tile.isLoaded()) {
-                if (tilesToLoad.size() > 0) {
-                    if (!loadTiles(seq, tilesToLoad)) {
-                        return tiles;
-                    }
-                }
-                tilesToLoad.clear();
+            if (log.isDebugEnabled()) {
+                log.debug("Tile cache miss: " + t);
+            }
+            int start = t * binSize;
+            int end = start + binSize;
+            tilesToLoad.add(new Bin(key, t, start, end));
+            claims.add(claim);
+            futures.add(claim);
+        }
+
+        loadPending(seq, tilesToLoad, claims, gen);
+
+        List<Bin> tiles = new ArrayList<>(nBins);
+        try {
+            for (CompletableFuture<Bin> f : futures) {
+                tiles.add(f.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
             } else {
-                tilesToLoad.add(tile);
+                throw new RuntimeException(cause);
             }
         }
+        return tiles;
+    }
 
-        if (tilesToLoad.size() > 0) {
-            loadTiles(seq, tilesToLoad);
+    /**
+     * Load a run of consecutive tiles claimed by this caller, then publish them to the cache and to any waiters.
+     */
+    private void loadPending(String seq, List<Bin> tilesToLoad, List<CompletableFuture<Bin>> claims, int gen) {
+
+        if (tilesToLoad.isEmpty()) {
+            return;
         }
 
-        return tiles;
+        try {
+            loadTiles(seq, tilesToLoad);
+            for (int i = 0; i < tilesToLoad.size(); i++) {
+                Bin tile = tilesToLoad.get(i);
+                if (generation.get() == gen) {
+                    cache.put(tile.key, tile);
+                }
+                pendingBins.remove(tile.key, claims.get(i));
+                claims.get(i).complete(tile);
+            }
+        } catch (Throwable e) {
+            for (int i = 0; i < tilesToLoad.size(); i++) {
+                pendingBins.remove(tilesToLoad.get(i).key, claims.get(i));
+                claims.get(i).completeExceptionally(e);
+            }
+        } finally {
+            tilesToLoad.clear();
+            claims.clear();
+        }
     }
 
-    private boolean loadTiles(String seq, List<Bin> tiles) {
+    private void loadTiles(String seq, List<Bin> tiles) throws IOException {
 
         assert (tiles.size() > 0);
 
@@ -188,17 +274,17 @@ public abstract class AbstractCacher {
         // Convert start to 1-based coordinates
         int start = tiles.get(0).start + 1;
         int end = tiles.get(tiles.size() - 1).end;
-        Iterator<Feature> iter = null;
 
         //log.debug("Loading : " + start + " - " + end);
         int featureCount = 0;
         long t0 = System.currentTimeMillis();
-        try {
 
-            iter = queryRaw(seq, start, end);
+        synchronized (queryLock) {
+            Iterator<Feature> iter = queryRaw(seq, start, end);
 
             while (iter != null && iter.hasNext()) {
                 Feature record = iter.next();
+                featureCount++;
 
                 // Range of tile indices that this feature contributes to.
                 int aStart = record.getStart();
@@ -222,33 +308,22 @@ public abstract class AbstractCacher {
                     }
                 }
             }
+        }
 
-            for (Bin t : tiles) {
-                t.setLoaded(true);
-            }
-            if (log.isDebugEnabled()) {
-                long dt = System.currentTimeMillis() - t0;
-                long rate = dt == 0 ? Long.MAX_VALUE : featureCount / dt;
-                log.debug("Loaded " + featureCount + " reads in " + dt + "ms.  (" + rate + " reads/ms)");
-            }
-            return true;
-
-        } catch (IOException e) {
-            log.error("IOError loading feature data", e);
-
-            // TODO -- do something about this,  how do we want to handle this exception?
-            throw new RuntimeException(e);
-        } finally {
-            if (iter != null) {
-                //iter.close();
-            }
-            //IGV.getInstance().resetStatusMessage();
+        for (Bin t : tiles) {
+            t.setLoaded(true);
+        }
+        if (log.isDebugEnabled()) {
+            long dt = System.currentTimeMillis() - t0;
+            long rate = dt == 0 ? Long.MAX_VALUE : featureCount / dt;
+            log.debug("Loaded " + featureCount + " reads in " + dt + "ms.  (" + rate + " reads/ms)");
         }
     }
 
 
     private static class Bin {
 
+        private final String key;
         private boolean loaded = false;
         private int start;
         private int end;
@@ -256,7 +331,8 @@ public abstract class AbstractCacher {
         private List<Feature> containedRecords;
         private List<Feature> overlappingRecords;
 
-        Bin(int binNumber, int start, int end) {
+        Bin(String key, int binNumber, int start, int end) {
+            this.key = key;
             this.binNumber = binNumber;
             this.start = start;
             this.end = end;
@@ -289,6 +365,13 @@ public abstract class AbstractCacher {
             return loaded;
         }
 
+        /**
+         * Cache weight, the number of records held.  Always at least 1 so empty bins still count.
+         */
+        int getRecordCount() {
+            return 1 + containedRecords.size() + overlappingRecords.size();
+        }
+
         public void setLoaded(boolean loaded) {
             this.loaded = loaded;
         }
@@ -296,7 +379,8 @@ public abstract class AbstractCacher {
     }
 
     /**
-     *
+     * Iterates over the records of a list of bins without copying them: the overlapping records of the first
+     * bin, followed by the contained records of each bin in turn.
      */
     private class BinIterator implements CloseableTribbleIterator {
 
@@ -304,13 +388,14 @@ public abstract class AbstractCacher {
         int end;
         Feature nextRecord;
         int start;
-        List<Feature> features;
+        List<Bin> bins;
+        int binIndex = 0;
 
-        BinIterator(int start, int end, List<Feature> features) {
-            this.features = features;
+        BinIterator(int start, int end, List<Bin> bins) {
+            this.bins = bins;
             this.start = start;
             this.end = end;
-            currentFeatureIterator = features.iterator();
+            currentFeatureIterator = bins.get(0).getOverlappingRecords().iterator();
             advanceToFirstRecord();
         }
 
@@ -347,6 +432,9 @@ public abstract class AbstractCacher {
         }
 
         private void advance() {
+            while (!currentFeatureIterator.hasNext() && binIndex < bins.size()) {
+                currentFeatureIterator = bins.get(binIndex++).getContainedRecords().iterator();
+            }
             if (currentFeatureIterator.hasNext()) {
                 nextRecord = currentFeatureIterator.next();
                 if (nextRecord.getStart() > end) {
@@ -362,4 +450,3 @@ public abstract class AbstractCacher {
         }
     }
 }
-
@@ -41,7 +41,6 @@ import java.util.List;
  */
 public class CachingFeatureSource extends AbstractCacher implements FeatureSource {
 
-    private static final int maxBinCount = 1000;
     private static final int defaultBinSize = 16000; // <= 16 kb
 
     private FeatureSource source;
@@ -54,12 +53,12 @@ public class CachingFeatureSource extends AbstractCacher implements FeatureSourc
      * @api
      */
     public CachingFeatureSource(FeatureSource source) {
-        this(source, maxBinCount, defaultBinSize);
+        this(source, defaultBinSize);
     }
 
 
-    public CachingFeatureSource(FeatureSource source, int binCount, int binSize) {
-        super(binCount, binSize);
+    public CachingFeatureSource(FeatureSource source, int binSize) {
+        super(binSize);
         this.source = source;
     }
 
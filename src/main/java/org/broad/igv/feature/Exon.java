@@ -304,6 +304,10 @@ public class Exon extends AbstractFeature implements IExon {
         this.number = number;
     }
 
+    public int getNumber() {
+        return number;
+    }
+
     public String getURL() {
         return null;  //To change body of implemented methods use File | Settings | File Templates.
     }
@@ -220,6 +220,36 @@ public class FeatureDB {
         featureMap.clear();
     }
 
+    /**
+     * Return a copy of the name index, keyed by upper case name.
+     */
+    public static Map<String, List<NamedFeature>> getFeatureMap() {
+        synchronized (featureMap) {
+            Map<String, List<NamedFeature>> copy = new LinkedHashMap<>(featureMap.size());
+            for (Map.Entry<String, List<NamedFeature>> entry : featureMap.entrySet()) {
+                copy.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+            }
+            return copy;
+        }
+    }
+
+    /**
+     * Add entries to the name index.  Keys are used as is, and features are not checked against the genome, so
+     * this is intended for restoring an index previously obtained from {@link #getFeatureMap()}.
+     */
+    public static void putAll(Map<String, List<NamedFeature>> features) {
+        synchronized (featureMap) {
+            for (Map.Entry<String, List<NamedFeature>> entry : features.entrySet()) {
+                List<NamedFeature> list = featureMap.get(entry.getKey());
+                if (list == null) {
+                    list = new SortedList<NamedFeature>(new ArrayList<>(), FeatureComparator.get(true));
+                    featureMap.put(entry.getKey(), list);
+                }
+                list.addAll(entry.getValue());
+            }
+        }
+    }
+
     static int size() {
         return featureMap.size();
     }
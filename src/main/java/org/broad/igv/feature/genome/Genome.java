@@ -143,6 +143,14 @@ public class Genome {
         }
     }
 
+    /**
+     * Return the chromosome alias table, mapping each alias (including the chromosome names themselves) to the
+     * chromosome name used in this genome.
+     */
+    public Map<String, String> getChrAliasTable() {
+        return Collections.unmodifiableMap(chrAliasTable);
+    }
+
     public boolean isKnownChr(String str) {
         return chrAliasTable.containsKey(str);
     }
@@ -19,6 +19,7 @@ import org.broad.igv.util.ResourceLocator;
 import java.awt.*;
 import java.io.*;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 public class DotGenomeLoader extends GenomeLoader {
@@ -27,6 +28,9 @@ public class DotGenomeLoader extends GenomeLoader {
 
     File archiveFile;
 
+    // False if the genome contains annotations the snapshot cannot represent
+    private boolean snapshotSupported = true;
+
     public DotGenomeLoader(File archiveFile) {
         this.archiveFile = archiveFile;
     }
@@ -37,8 +41,8 @@ public class DotGenomeLoader extends GenomeLoader {
      * @param geneFileName
      * @param geneTrackName
      */
-    private static FeatureTrack createGeneTrack(Genome genome, BufferedReader reader, String geneFileName, String geneTrackName,
-                                               String annotationURL) {
+    private FeatureTrack createGeneTrack(Genome genome, BufferedReader reader, String geneFileName, String geneTrackName,
+                                         String annotationURL) {
 
         FeatureDB.clearFeatures();
         FeatureTrack geneFeatureTrack = null;
@@ -60,22 +64,54 @@ public class DotGenomeLoader extends GenomeLoader {
                 String name = geneTrackName;
                 if (name == null) name = "Genes";
 
-                String id = genome.getId() + "_genes";
-                geneFeatureTrack = new FeatureTrack(id, name, new FeatureCollectionSource(genes, genome));
-                geneFeatureTrack.setMinimumHeight(5);
-                geneFeatureTrack.setHeight(35);
-                geneFeatureTrack.setTrackType(TrackType.GENE);
-                geneFeatureTrack.setColor(Color.BLUE.darker());
+                geneFeatureTrack = createGeneTrack(genome, genes, name, annotationURL);
                 TrackProperties props = parser.getTrackProperties();
                 if (props != null) {
                     geneFeatureTrack.setProperties(parser.getTrackProperties());
+                    snapshotSupported = false;
                 }
-                geneFeatureTrack.setUrl(annotationURL);
             }
         }
         return geneFeatureTrack;
     }
 
+    private static FeatureTrack createGeneTrack(Genome genome, List<Feature> genes, String name, String annotationURL) {
+        String id = genome.getId() + "_genes";
+        FeatureTrack geneFeatureTrack = new FeatureTrack(id, name, new FeatureCollectionSource(genes, genome));
+        geneFeatureTrack.setMinimumHeight(5);
+        geneFeatureTrack.setHeight(35);
+        geneFeatureTrack.setTrackType(TrackType.GENE);
+        geneFeatureTrack.setColor(Color.BLUE.darker());
+        geneFeatureTrack.setUrl(annotationURL);
+        return geneFeatureTrack;
+    }
+
+    /**
+     * Restore cytobands, aliases, and annotations from the genome's snapshot, if it is current.
+     *
+     * @return true if the snapshot was used
+     */
+    private boolean loadSnapshot(Genome genome, File snapshotFile) {
+        if (!GenomeSnapshot.isCurrent(snapshotFile, Collections.singletonList(archiveFile), genome)) {
+            return false;
+        }
+        try {
+            long t0 = System.currentTimeMillis();
+            GenomeSnapshot snapshot = GenomeSnapshot.read(snapshotFile);
+            FeatureDB.clearFeatures();
+            snapshot.apply(genome);
+            if (snapshot.hasGeneTrack()) {
+                genome.setGeneTrack(createGeneTrack(genome, snapshot.getGeneFeatures(),
+                        snapshot.getGeneTrackName(), snapshot.getGeneTrackUrl()));
+            }
+            log.info("Loaded genome snapshot for " + genome.getId() + " in " + (System.currentTimeMillis() - t0) + " ms");
+            return true;
+        } catch (IOException e) {
+            log.error("Error reading genome snapshot " + snapshotFile.getAbsolutePath(), e);
+            return false;
+        }
+    }
+
     /**
      * Create a genome from a ".genome" file.  In addition to the reference sequence .genome files can optionally
      * specify cytobands and annotations.
@@ -108,6 +144,12 @@ public class DotGenomeLoader extends GenomeLoader {
 
         newGenome = new Genome(id, displayName, sequence, chromosOrdered);
 
+        File snapshotFile = GenomeSnapshot.getSnapshotFile(archiveFile);
+        if (loadSnapshot(newGenome, snapshotFile)) {
+            genomeDescriptor.close();
+            return newGenome;
+        }
+
         if (genomeDescriptor.hasCytobands()) {
             InputStream cytobandStream = null;
             try {
@@ -152,6 +194,7 @@ public class DotGenomeLoader extends GenomeLoader {
                     genbankParser.readFeatures(geneStream, false);
                     FeatureTrack geneFeatureTrack = createGeneTrack(newGenome, genbankParser.getFeatures());
                     newGenome.setGeneTrack(geneFeatureTrack);
+                    snapshotSupported = false;
                 } else {
                     BufferedReader reader = new BufferedReader(new InputStreamReader(geneStream));
                     FeatureTrack geneFeatureTrack = createGeneTrack(newGenome, reader,
@@ -167,6 +210,15 @@ public class DotGenomeLoader extends GenomeLoader {
 
         genomeDescriptor.close();
 
+        if (snapshotSupported) {
+            try {
+                GenomeSnapshot.write(snapshotFile, Collections.singletonList(archiveFile), newGenome);
+            } catch (IOException e) {
+                log.info("Genome snapshot not written: " + e.getMessage());
+                snapshotFile.delete();
+            }
+        }
+
         return newGenome;
     }
 
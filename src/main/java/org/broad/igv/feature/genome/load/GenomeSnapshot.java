@@ -0,0 +1,669 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.feature.genome.load;
+
+import htsjdk.tribble.Feature;
+import org.apache.log4j.Logger;
+import org.broad.igv.DirectoryManager;
+import org.broad.igv.Globals;
+import org.broad.igv.feature.*;
+import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.track.FeatureCollectionSource;
+import org.broad.igv.track.FeatureTrack;
+import org.broad.igv.util.SidecarFiles;
+import org.broad.igv.util.collections.FloatArrayList;
+import org.broad.igv.util.collections.IntArrayList;
+import org.broad.igv.util.collections.MultiMap;
+
+import java.awt.*;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.List;
+
+/**
+ * Binary snapshot of a parsed genome:  the chromosome table, aliases, cytobands, gene features, and the feature name
+ * index.  A snapshot is written to the genome cache directory after a genome's annotations are parsed, and on later
+ * loads is memory mapped and used in place of parsing.
+ * <p>
+ * A snapshot records the length and modification time of each local file it was built from, and the chromosome
+ * names and lengths of the genome.  It is used only if all of these are unchanged.
+ * <p>
+ * File layout (big endian)
+ * <pre>
+ *   header (see {@link SidecarFiles}), UTF genomeId
+ *   int chrCount, chrCount x { UTF name, int length }
+ *   int aliasCount, aliasCount x { UTF alias, UTF chr }
+ *   int cytobandChrCount, cytobandChrCount x { UTF chr, int n, n x { UTF name, int start, int end, char type, short stain } }
+ *   boolean hasGeneTrack, UTF geneTrackName, UTF geneTrackUrl, int geneCount
+ *   int recordCount, int attributeCount, int keyCount, int entryCount, int stringCount, int stringLength,
+ *   long sectionPosition
+ *   section:  int[stringCount + 1] stringOffset, int[recordCount] x COLUMN_COUNT columns, float[recordCount] score,
+ *             int[recordCount + 1] attributeStart, int[attributeCount] attributeKey, int[attributeCount] attributeValue,
+ *             int[keyCount] key, int[keyCount + 1] keyStart, int[entryCount] entry, byte[stringLength] strings (UTF-8)
+ * </pre>
+ * Records are features, each followed by its exons.  The first geneCount features are those of the gene track, any
+ * others are referenced only by the name index.  String columns hold indices into the string table, -1 for null.
+ * Name index entries are record indices.
+ */
+public class GenomeSnapshot {
+
+    private static Logger log = Logger.getLogger(GenomeSnapshot.class);
+
+    static final int MAGIC = 0x49474753;   // "IGGS"
+    static final int VERSION = 1;
+
+    // Record flags
+    private static final int EXON = 1;
+    private static final int NONCODING = 2;
+    private static final int HAS_COLOR = 4;
+
+    // Record columns.  For exons THICK_START and THICK_END hold the coding start and end, and COUNT the exon number.
+    private static final int FLAGS = 0;
+    private static final int CHR = 1;
+    private static final int START = 2;
+    private static final int END = 3;
+    private static final int STRAND = 4;
+    private static final int NAME = 5;
+    private static final int IDENTIFIER = 6;
+    private static final int TYPE = 7;
+    private static final int DESCRIPTION = 8;
+    private static final int COLOR = 9;
+    private static final int THICK_START = 10;
+    private static final int THICK_END = 11;
+    private static final int READING_FRAME = 12;
+    private static final int URL = 13;
+    private static final int PARENT_IDS = 14;
+    private static final int COUNT = 15;
+    private static final int COLUMN_COUNT = 16;
+
+    private final Map<String, String> aliases;
+    private final LinkedHashMap<String, List<Cytoband>> cytobands;
+    private final String geneTrackName;
+    private final String geneTrackUrl;
+    private final List<Feature> geneFeatures;
+    private final Map<String, List<NamedFeature>> nameIndex;
+
+    private GenomeSnapshot(Map<String, String> aliases, LinkedHashMap<String, List<Cytoband>> cytobands,
+                           String geneTrackName, String geneTrackUrl, List<Feature> geneFeatures,
+                           Map<String, List<NamedFeature>> nameIndex) {
+        this.aliases = aliases;
+        this.cytobands = cytobands;
+        this.geneTrackName = geneTrackName;
+        this.geneTrackUrl = geneTrackUrl;
+        this.geneFeatures = geneFeatures;
+        this.nameIndex = nameIndex;
+    }
+
+    /**
+     * Return the snapshot file, in the genome cache directory, for a genome loaded from {@code genomeFile}.
+     */
+    public static File getSnapshotFile(File genomeFile) {
+        return SidecarFiles.getFile(DirectoryManager.getGenomeCacheDirectory(), genomeFile, ".snap");
+    }
+
+    /**
+     * Return true if {@code snapshotFile} exists and was built from the current versions of {@code sources} for a
+     * genome with the id and chromosomes of {@code genome}.
+     */
+    public static boolean isCurrent(File snapshotFile, List<File> sources, Genome genome) {
+        try (DataInputStream dis = SidecarFiles.openIfCurrent(snapshotFile, MAGIC, VERSION, sources)) {
+            if (dis == null || !dis.readUTF().equals(genome.getId())) {
+                return false;
+            }
+            List<String> chrNames = genome.getAllChromosomeNames();
+            if (dis.readInt() != chrNames.size()) {
+                return false;
+            }
+            for (String chr : chrNames) {
+                if (!dis.readUTF().equals(chr) || dis.readInt() != genome.getChromosome(chr).getLength()) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Write a snapshot of {@code genome}, including the current contents of the {@link FeatureDB} name index.
+     *
+     * @param snapshotFile output file
+     * @param sources      local files the genome was loaded from, recorded so the snapshot can be checked for currency
+     * @param genome       the parsed genome
+     * @throws IOException if the genome contains features of a type the snapshot does not support
+     */
+    public static void write(File snapshotFile, List<File> sources, Genome genome) throws IOException {
+
+        RecordWriter records = new RecordWriter();
+
+        FeatureTrack geneTrack = genome.getGeneTrack();
+        if (geneTrack != null) {
+            if (!(geneTrack.source instanceof FeatureCollectionSource)) {
+                throw new IOException("Unsupported gene track source: " + geneTrack.source.getClass().getName());
+            }
+            FeatureCollectionSource source = (FeatureCollectionSource) geneTrack.source;
+            for (String chr : source.getChrs()) {
+                if (chr.equals(Globals.CHR_ALL)) continue;
+                for (Feature f : source.getFeatures(chr)) {
+                    records.addFeature(f);
+                }
+            }
+        }
+        int geneCount = records.featureCount;
+
+        // Features of the name index not in the gene track, for example those of hidden annotation tracks
+        Map<String, List<NamedFeature>> featureMap = FeatureDB.getFeatureMap();
+        for (List<NamedFeature> features : featureMap.values()) {
+            for (NamedFeature f : features) {
+                if (!records.recordIndices.containsKey(f) && f.getClass() == BasicFeature.class) {
+                    records.addFeature(f);
+                }
+            }
+        }
+        IntArrayList keys = new IntArrayList(featureMap.size());
+        IntArrayList keyStarts = new IntArrayList(featureMap.size() + 1);
+        IntArrayList entries = new IntArrayList(featureMap.size());
+        for (Map.Entry<String, List<NamedFeature>> entry : featureMap.entrySet()) {
+            keys.add(records.string(entry.getKey()));
+            keyStarts.add(entries.size());
+            for (NamedFeature f : entry.getValue()) {
+                Integer index = records.recordIndices.get(f);
+                if (index == null) {
+                    throw new IOException("Unsupported feature type: " + f.getClass().getName());
+                }
+                entries.add(index);
+            }
+        }
+        keyStarts.add(entries.size());
+
+        // Section position is fixed width, so the header length can be computed with a placeholder position
+        int headerLength = header(sources, genome, geneTrack, geneCount, records, keys.size(), entries.size(), 0).length;
+        byte[] header = header(sources, genome, geneTrack, geneCount, records, keys.size(), entries.size(), headerLength);
+
+        SidecarFiles.write(snapshotFile, tmpFile -> {
+            try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+                dos.write(header);
+                records.write(dos);
+                write(dos, keys);
+                write(dos, keyStarts);
+                write(dos, entries);
+                records.strings.writeTo(dos);
+            }
+        });
+    }
+
+    private static byte[] header(List<File> sources, Genome genome, FeatureTrack geneTrack, int geneCount,
+                                 RecordWriter records, int keyCount, int entryCount, long position) throws IOException {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream hos = new DataOutputStream(bytes);
+        SidecarFiles.writeHeader(hos, MAGIC, VERSION, sources);
+        hos.writeUTF(genome.getId());
+
+        List<String> chrNames = genome.getAllChromosomeNames();
+        hos.writeInt(chrNames.size());
+        for (String chr : chrNames) {
+            hos.writeUTF(chr);
+            hos.writeInt(genome.getChromosome(chr).getLength());
+        }
+
+        Map<String, String> aliases = genome.getChrAliasTable();
+        hos.writeInt(aliases.size());
+        for (Map.Entry<String, String> entry : aliases.entrySet()) {
+            hos.writeUTF(entry.getKey());
+            hos.writeUTF(entry.getValue());
+        }
+
+        List<Chromosome> banded = new ArrayList<>();
+        for (Chromosome chromosome : genome.getChromosomes()) {
+            if (chromosome.getCytobands() != null) banded.add(chromosome);
+        }
+        hos.writeInt(banded.size());
+        for (Chromosome chromosome : banded) {
+            List<Cytoband> bands = chromosome.getCytobands();
+            hos.writeUTF(chromosome.getName());
+            hos.writeInt(bands.size());
+            for (Cytoband band : bands) {
+                hos.writeUTF(band.getName());
+                hos.writeInt(band.getStart());
+                hos.writeInt(band.getEnd());
+                hos.writeChar(band.getType());
+                hos.writeShort(band.getStain());
+            }
+        }
+
+        hos.writeBoolean(geneTrack != null);
+        hos.writeUTF(geneTrack == null || geneTrack.getName() == null ? "" : geneTrack.getName());
+        hos.writeUTF(geneTrack == null || geneTrack.getUrl() == null ? "" : geneTrack.getUrl());
+        hos.writeInt(geneCount);
+
+        hos.writeInt(records.size());
+        hos.writeInt(records.attributeKeys.size());
+        hos.writeInt(keyCount);
+        hos.writeInt(entryCount);
+        hos.writeInt(records.stringOffsets.size() - 1);
+        hos.writeInt(records.strings.size());
+        hos.writeLong(position);
+        hos.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void write(DataOutputStream dos, IntArrayList values) throws IOException {
+        for (int i = 0; i < values.size(); i++) {
+            dos.writeInt(values.get(i));
+        }
+    }
+
+    /**
+     * Read a snapshot.  The feature section is memory mapped, and features are rebuilt from its columns.
+     */
+    public static GenomeSnapshot read(File snapshotFile) throws IOException {
+
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)));
+             FileChannel channel = FileChannel.open(snapshotFile.toPath(), StandardOpenOption.READ)) {
+
+            SidecarFiles.skipHeader(dis, MAGIC, VERSION, snapshotFile);
+            dis.readUTF();
+
+            int chrCount = dis.readInt();
+            for (int i = 0; i < chrCount; i++) {
+                dis.readUTF();
+                dis.readInt();
+            }
+
+            int aliasCount = dis.readInt();
+            Map<String, String> aliases = new LinkedHashMap<>(aliasCount);
+            for (int i = 0; i < aliasCount; i++) {
+                aliases.put(dis.readUTF(), dis.readUTF());
+            }
+
+            int cytobandChrCount = dis.readInt();
+            LinkedHashMap<String, List<Cytoband>> cytobands = new LinkedHashMap<>(cytobandChrCount);
+            for (int i = 0; i < cytobandChrCount; i++) {
+                String chr = dis.readUTF();
+                int n = dis.readInt();
+                List<Cytoband> bands = new ArrayList<>(n);
+                for (int j = 0; j < n; j++) {
+                    Cytoband band = new Cytoband(chr);
+                    band.setName(dis.readUTF());
+                    band.setStart(dis.readInt());
+                    band.setEnd(dis.readInt());
+                    band.setType(dis.readChar());
+                    band.setStain(dis.readShort());
+                    bands.add(band);
+                }
+                cytobands.put(chr, bands);
+            }
+
+            boolean hasGeneTrack = dis.readBoolean();
+            String geneTrackName = dis.readUTF();
+            String geneTrackUrl = dis.readUTF();
+            int geneCount = dis.readInt();
+
+            int recordCount = dis.readInt();
+            int attributeCount = dis.readInt();
+            int keyCount = dis.readInt();
+            int entryCount = dis.readInt();
+            int stringCount = dis.readInt();
+            int stringLength = dis.readInt();
+            long position = dis.readLong();
+
+            long size = 4L * (stringCount + 1) + 4L * COLUMN_COUNT * recordCount + 4L * recordCount +
+                    4L * (recordCount + 1) + 8L * attributeCount + 4L * keyCount + 4L * (keyCount + 1) +
+                    4L * entryCount + stringLength;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+
+            RecordReader reader = new RecordReader(buffer, stringCount, recordCount, attributeCount, keyCount,
+                    entryCount, stringLength);
+            NamedFeature[] features = reader.readRecords();
+
+            List<Feature> genes = null;
+            if (hasGeneTrack) {
+                genes = new ArrayList<>(geneCount);
+                for (int i = 0; i < recordCount && genes.size() < geneCount; i++) {
+                    if ((reader.columns[FLAGS].get(i) & EXON) == 0) {
+                        genes.add(features[i]);
+                    }
+                }
+            }
+
+            return new GenomeSnapshot(aliases, cytobands,
+                    hasGeneTrack ? geneTrackName : null,
+                    geneTrackUrl.isEmpty() ? null : geneTrackUrl,
+                    genes,
+                    reader.readNameIndex(features));
+        }
+    }
+
+    /**
+     * Add the aliases, cytobands, and name index of this snapshot to {@code genome} and the {@link FeatureDB}.
+     */
+    public void apply(Genome genome) {
+        List<Collection<String>> synonyms = new ArrayList<>(aliases.size());
+        for (Map.Entry<String, String> entry : aliases.entrySet()) {
+            synonyms.add(Arrays.asList(entry.getValue(), entry.getKey()));
+        }
+        genome.addChrAliases(synonyms);
+        genome.setCytobands(cytobands);
+        FeatureDB.putAll(nameIndex);
+    }
+
+    public boolean hasGeneTrack() {
+        return geneFeatures != null;
+    }
+
+    public String getGeneTrackName() {
+        return geneTrackName;
+    }
+
+    public String getGeneTrackUrl() {
+        return geneTrackUrl;
+    }
+
+    public List<Feature> getGeneFeatures() {
+        return geneFeatures;
+    }
+
+    /**
+     * Collects records and strings in primitive columns
+     */
+    private static class RecordWriter {
+
+        final IntArrayList[] columns = new IntArrayList[COLUMN_COUNT];
+        final FloatArrayList scores = new FloatArrayList(10000);
+        final IntArrayList attributeStarts = new IntArrayList(10000);
+        final IntArrayList attributeKeys = new IntArrayList(10000);
+        final IntArrayList attributeValues = new IntArrayList(10000);
+        final IntArrayList stringOffsets = new IntArrayList(10000);
+        final ByteArrayOutputStream strings = new ByteArrayOutputStream(65536);
+        final Map<String, Integer> stringIndices = new HashMap<>();
+        final Map<Object, Integer> recordIndices = new IdentityHashMap<>();
+        int featureCount = 0;
+
+        RecordWriter() {
+            for (int i = 0; i < COLUMN_COUNT; i++) {
+                columns[i] = new IntArrayList(10000);
+            }
+            stringOffsets.add(0);
+        }
+
+        int size() {
+            return scores.size();
+        }
+
+        void addFeature(Feature f) throws IOException {
+            if (f.getClass() != BasicFeature.class) {
+                throw new IOException("Unsupported feature type: " + f.getClass().getName());
+            }
+            BasicFeature bf = (BasicFeature) f;
+            List<Exon> exons = bf.getExons();
+            String[] parentIds = bf.getParentIds();
+
+            add(bf, 0, bf.getThickStart(), bf.getThickEnd(), exons == null ? 0 : exons.size(), bf.getScore());
+            int index = size() - 1;
+            columns[IDENTIFIER].set(index, string(bf.getIdentifier()));
+            columns[URL].set(index, string(bf.getURL()));
+            columns[PARENT_IDS].set(index, parentIds == null ? -1 : string(String.join(",", parentIds)));
+            featureCount++;
+
+            if (exons != null) {
+                for (Exon exon : exons) {
+                    if (exon.getClass() != Exon.class) {
+                        throw new IOException("Unsupported exon type: " + exon.getClass().getName());
+                    }
+                    add(exon, EXON | (exon.isNonCoding() ? NONCODING : 0), exon.getCdStart(), exon.getCdEnd(),
+                            exon.getNumber(), Float.NaN);
+                }
+            }
+        }
+
+        private void add(AbstractFeature f, int flags, int thickStart, int thickEnd, int count, float score) {
+            int index = size();
+            Color color = f.getColor();
+            columns[FLAGS].add(flags | (color == null ? 0 : HAS_COLOR));
+            columns[CHR].add(string(f.getChr()));
+            columns[START].add(f.getStart());
+            columns[END].add(f.getEnd());
+            columns[STRAND].add(f.getStrand().ordinal());
+            columns[NAME].add(string(f.getName()));
+            columns[IDENTIFIER].add(-1);
+            columns[TYPE].add(string(f.getType()));
+            columns[DESCRIPTION].add(string(f.getDescription()));
+            columns[COLOR].add(color == null ? 0 : color.getRGB());
+            columns[THICK_START].add(thickStart);
+            columns[THICK_END].add(thickEnd);
+            columns[READING_FRAME].add(f.getReadingFrame());
+            columns[URL].add(-1);
+            columns[PARENT_IDS].add(-1);
+            columns[COUNT].add(count);
+            scores.add(score);
+
+            attributeStarts.add(attributeKeys.size());
+            MultiMap<String, String> attributes = f.getAttributes();
+            if (attributes != null) {
+                for (String key : attributes.keys()) {
+                    for (String value : attributes.getAll(key)) {
+                        attributeKeys.add(string(key));
+                        attributeValues.add(string(value));
+                    }
+                }
+            }
+            recordIndices.put(f, index);
+        }
+
+        int string(String s) {
+            if (s == null) {
+                return -1;
+            }
+            Integer index = stringIndices.get(s);
+            if (index == null) {
+                index = stringIndices.size();
+                stringIndices.put(s, index);
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                strings.write(bytes, 0, bytes.length);
+                stringOffsets.add(strings.size());
+            }
+            return index;
+        }
+
+        void write(DataOutputStream dos) throws IOException {
+            GenomeSnapshot.write(dos, stringOffsets);
+            for (IntArrayList column : columns) {
+                GenomeSnapshot.write(dos, column);
+            }
+            for (int i = 0; i < scores.size(); i++) {
+                dos.writeFloat(scores.get(i));
+            }
+            GenomeSnapshot.write(dos, attributeStarts);
+            dos.writeInt(attributeKeys.size());       // end of the last record's attributes
+            GenomeSnapshot.write(dos, attributeKeys);
+            GenomeSnapshot.write(dos, attributeValues);
+        }
+    }
+
+    /**
+     * Views over the mapped feature section
+     */
+    private static class RecordReader {
+
+        final IntBuffer stringOffsets;
+        final IntBuffer[] columns = new IntBuffer[COLUMN_COUNT];
+        final FloatBuffer scores;
+        final IntBuffer attributeStarts;
+        final IntBuffer attributeKeys;
+        final IntBuffer attributeValues;
+        final IntBuffer keys;
+        final IntBuffer keyStarts;
+        final IntBuffer entries;
+        final ByteBuffer strings;
+        final String[] stringCache;
+        final int recordCount;
+
+        RecordReader(ByteBuffer buffer, int stringCount, int recordCount, int attributeCount, int keyCount,
+                     int entryCount, int stringLength) {
+            this.recordCount = recordCount;
+            int pos = 0;
+            stringOffsets = slice(buffer, pos, 4 * (stringCount + 1)).asIntBuffer();
+            pos += 4 * (stringCount + 1);
+            for (int i = 0; i < COLUMN_COUNT; i++) {
+                columns[i] = slice(buffer, pos, 4 * recordCount).asIntBuffer();
+                pos += 4 * recordCount;
+            }
+            scores = slice(buffer, pos, 4 * recordCount).asFloatBuffer();
+            pos += 4 * recordCount;
+            attributeStarts = slice(buffer, pos, 4 * (recordCount + 1)).asIntBuffer();
+            pos += 4 * (recordCount + 1);
+            attributeKeys = slice(buffer, pos, 4 * attributeCount).asIntBuffer();
+            pos += 4 * attributeCount;
+            attributeValues = slice(buffer, pos, 4 * attributeCount).asIntBuffer();
+            pos += 4 * attributeCount;
+            keys = slice(buffer, pos, 4 * keyCount).asIntBuffer();
+            pos += 4 * keyCount;
+            keyStarts = slice(buffer, pos, 4 * (keyCount + 1)).asIntBuffer();
+            pos += 4 * (keyCount + 1);
+            entries = slice(buffer, pos, 4 * entryCount).asIntBuffer();
+            pos += 4 * entryCount;
+            strings = slice(buffer, pos, stringLength);
+            stringCache = new String[stringCount];
+        }
+
+        NamedFeature[] readRecords() {
+
+            NamedFeature[] features = new NamedFeature[recordCount];
+            Strand[] strands = Strand.values();
+            BasicFeature parent = null;
+            for (int i = 0; i < recordCount; i++) {
+
+                int flags = columns[FLAGS].get(i);
+                String chr = string(columns[CHR].get(i));
+                int start = columns[START].get(i);
+                int end = columns[END].get(i);
+                Strand strand = strands[columns[STRAND].get(i)];
+
+                AbstractFeature f;
+                if ((flags & EXON) != 0) {
+                    Exon exon = new Exon(chr, start, end, strand);
+                    if ((flags & NONCODING) != 0) {
+                        exon.setNonCoding(true);
+                    }
+                    exon.setCodingStart(columns[THICK_START].get(i));
+                    exon.setCodingEnd(columns[THICK_END].get(i));
+                    exon.setNumber(columns[COUNT].get(i));
+                    parent.addExon(exon);
+                    f = exon;
+                } else {
+                    BasicFeature bf = new BasicFeature(chr, start, end, strand);
+                    bf.setIdentifier(string(columns[IDENTIFIER].get(i)));
+                    bf.setURL(string(columns[URL].get(i)));
+                    String parentIds = string(columns[PARENT_IDS].get(i));
+                    if (parentIds != null) {
+                        bf.setParentIds(parentIds.split(","));
+                    }
+                    bf.setScore(scores.get(i));
+                    parent = bf;
+                    f = bf;
+                }
+
+                String name = string(columns[NAME].get(i));
+                if (name != null) f.setName(name);
+                f.setType(string(columns[TYPE].get(i)));
+                f.setDescription(string(columns[DESCRIPTION].get(i)));
+                if ((flags & HAS_COLOR) != 0) {
+                    f.setColor(new Color(columns[COLOR].get(i), true));
+                }
+                f.setReadingFrame(columns[READING_FRAME].get(i));
+
+                int from = attributeStarts.get(i);
+                int to = attributeStarts.get(i + 1);
+                if (to > from) {
+                    MultiMap<String, String> attributes = new MultiMap<>(to - from);
+                    for (int j = from; j < to; j++) {
+                        attributes.put(string(attributeKeys.get(j)), string(attributeValues.get(j)));
+                    }
+                    f.setAttributes(attributes);
+                }
+                features[i] = f;
+            }
+
+            // Adding exons resets the thick start and end, so these are set last
+            for (int i = 0; i < recordCount; i++) {
+                if ((columns[FLAGS].get(i) & EXON) == 0) {
+                    BasicFeature bf = (BasicFeature) features[i];
+                    bf.setThickStart(columns[THICK_START].get(i));
+                    bf.setThickEnd(columns[THICK_END].get(i));
+                }
+            }
+            return features;
+        }
+
+        Map<String, List<NamedFeature>> readNameIndex(NamedFeature[] features) {
+            int keyCount = keys.limit();
+            Map<String, List<NamedFeature>> index = new LinkedHashMap<>(keyCount);
+            for (int k = 0; k < keyCount; k++) {
+                int from = keyStarts.get(k);
+                int to = keyStarts.get(k + 1);
+                List<NamedFeature> list = new ArrayList<>(to - from);
+                for (int j = from; j < to; j++) {
+                    list.add(features[entries.get(j)]);
+                }
+                index.put(string(keys.get(k)), list);
+            }
+            return index;
+        }
+
+        String string(int index) {
+            if (index < 0) {
+                return null;
+            }
+            String s = stringCache[index];
+            if (s == null) {
+                int offset = stringOffsets.get(index);
+                byte[] bytes = new byte[stringOffsets.get(index + 1) - offset];
+                ByteBuffer dup = strings.duplicate();
+                dup.position(offset);
+                dup.get(bytes);
+                s = new String(bytes, StandardCharsets.UTF_8);
+                stringCache[index] = s;
+            }
+            return s;
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int position, int length) {
+        ByteBuffer dup = buffer.duplicate();
+        dup.position(position);
+        dup.limit(position + length);
+        return dup.slice();
+    }
+}
@@ -19,6 +19,7 @@ import org.broad.igv.util.ParsingUtils;
 import org.broad.igv.util.ResourceLocator;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
@@ -115,15 +116,59 @@ public class JsonGenomeLoader extends GenomeLoader {
 
         Genome newGenome = new Genome(id, name, sequence, ordered);
         newGenome.setAnnotationResources(tracks);
+
+        // Aliases and hidden tracks are restored from a snapshot if all are local files
+        List<File> sources = getSnapshotSources(aliasURL, hiddenTracks);
+        File snapshotFile = sources == null ? null : GenomeSnapshot.getSnapshotFile(new File(genomePath));
+        if (snapshotFile != null && GenomeSnapshot.isCurrent(snapshotFile, sources, newGenome)) {
+            try {
+                GenomeSnapshot.read(snapshotFile).apply(newGenome);
+                return newGenome;
+            } catch (IOException e) {
+                log.error("Error reading genome snapshot " + snapshotFile.getAbsolutePath(), e);
+            }
+        }
+
         if (aliasURL != null) {
             newGenome.addChrAliases(GenomeLoader.loadChrAliases(aliasURL.getAsString()));
         }
         if (hiddenTracks.size() > 0) {
             addToFeatureDB(hiddenTracks, newGenome);
         }
+
+        if (snapshotFile != null) {
+            try {
+                GenomeSnapshot.write(snapshotFile, sources, newGenome);
+            } catch (IOException e) {
+                log.info("Genome snapshot not written: " + e.getMessage());
+                snapshotFile.delete();
+            }
+        }
         return newGenome;
     }
 
+    /**
+     * Return the files a snapshot of this genome depends on, or null if any are remote.
+     */
+    private List<File> getSnapshotSources(JsonElement aliasURL, List<ResourceLocator> hiddenTracks) {
+        List<String> paths = new ArrayList<>();
+        paths.add(genomePath);
+        if (aliasURL != null) {
+            paths.add(aliasURL.getAsString());
+        }
+        for (ResourceLocator locator : hiddenTracks) {
+            paths.add(locator.getPath());
+        }
+        List<File> sources = new ArrayList<>(paths.size());
+        for (String path : paths) {
+            if (FileUtils.isRemote(path) || !(new File(path).exists())) {
+                return null;
+            }
+            sources.add(new File(path));
+        }
+        return sources;
+    }
+
     public GenomeDescriptor loadDescriptor() throws IOException {
         BufferedReader reader = ParsingUtils.openBufferedReader(genomePath);
         JsonParser parser = new JsonParser();
@@ -0,0 +1,515 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.feature.tribble;
+
+import htsjdk.tribble.AsciiFeatureCodec;
+import htsjdk.tribble.Feature;
+import org.apache.log4j.Logger;
+import org.broad.igv.util.FileLineReader;
+import org.broad.igv.util.SidecarFiles;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * An on-disk interval index over the lines of an uncompressed, text feature file (BED, GFF, etc).  Unlike a tribble
+ * index the file need not be sorted.
+ * <p>
+ * The index is built in a single pass, with the file split into chunks at line boundaries that are parsed in
+ * parallel.  For each chromosome the index stores, sorted by start, the start, end, and a running maximum of end
+ * positions, and the offset and length of the source line.  Chromosome sections are memory mapped when the
+ * index is opened, so only the sections visited are paged in.
+ * <p>
+ * Index file layout (big endian)
+ * <pre>
+ *   header (see {@link SidecarFiles})
+ *   int headerLineCount, headerLineCount x UTF line
+ *   int chrCount
+ *   chrCount x { UTF name, int featureCount, long sectionPosition }
+ *   sections:  int[n] start, int[n] end, int[n] maxEnd, long[n] offset, int[n] length
+ * </pre>
+ */
+public class FeatureFileIndex {
+
+    private static Logger log = Logger.getLogger(FeatureFileIndex.class);
+
+    static final int MAGIC = 0x49474658;   // "IGFX"
+    static final int VERSION = 2;
+    private static final int MAX_CHUNKS = 16;
+    private static final int MIN_CHUNK_SIZE = 8000000;
+
+    private final File sourceFile;
+    private final List<String> headerLines;
+    private final Map<String, Section> sections;
+
+    private FeatureFileIndex(File sourceFile, List<String> headerLines, Map<String, Section> sections) {
+        this.sourceFile = sourceFile;
+        this.headerLines = headerLines;
+        this.sections = sections;
+    }
+
+    /**
+     * Open the index for {@code sourceFile} from {@code indexFile}, building it first if it does not exist or is
+     * out of date.
+     *
+     * @param sourceFile
+     * @param indexFile
+     * @param codecSupplier supplies a new codec for each parsing thread
+     * @return
+     * @throws IOException
+     */
+    public static FeatureFileIndex loadOrCreate(File sourceFile, File indexFile,
+                                                Supplier<AsciiFeatureCodec> codecSupplier) throws IOException {
+        if (!isCurrent(sourceFile, indexFile)) {
+            long t0 = System.currentTimeMillis();
+            create(sourceFile, indexFile, codecSupplier);
+            log.info("Indexed " + sourceFile.getName() + " in " + (System.currentTimeMillis() - t0) + " ms");
+        }
+        return load(sourceFile, indexFile);
+    }
+
+    /**
+     * Return true if {@code indexFile} exists and was built from the current version of {@code sourceFile}.
+     */
+    public static boolean isCurrent(File sourceFile, File indexFile) {
+        try (DataInputStream dis = SidecarFiles.openIfCurrent(indexFile, MAGIC, VERSION, sourceFile)) {
+            return dis != null;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public Collection<String> getSequenceNames() {
+        return sections.keySet();
+    }
+
+    public int getFeatureCount(String seqName) {
+        Section section = sections.get(seqName);
+        return section == null ? 0 : section.count;
+    }
+
+    /**
+     * Header lines (comments, track and browser lines) preceding the first record.  These should be passed to
+     * the decoding codec before any records.
+     */
+    public List<String> getHeaderLines() {
+        return headerLines;
+    }
+
+    /**
+     * Return the features on {@code seqName} for which start <= end and end > start, in order of start
+     * position, decoded with {@code codec}.
+     */
+    public List<Feature> query(String seqName, int start, int end, AsciiFeatureCodec codec) throws IOException {
+
+        Section section = sections.get(seqName);
+        if (section == null) {
+            return Collections.emptyList();
+        }
+
+        // maxEnd is non-decreasing, the first candidate is the first record whose maxEnd exceeds start
+        int lo = 0;
+        int hi = section.count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (section.maxEnds.get(mid) > start) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+
+        List<Feature> features = new ArrayList<>();
+        try (FileLineReader reader = new FileLineReader(sourceFile)) {
+            for (int i = lo; i < section.count && section.starts.get(i) <= end; i++) {
+                if (section.ends.get(i) > start) {
+                    String line = reader.readLine(section.offsets.get(i), section.lengths.get(i));
+                    Feature f = (Feature) codec.decode(line);
+                    if (f != null) {
+                        features.add(f);
+                    }
+                }
+            }
+        }
+        return features;
+    }
+
+    static FeatureFileIndex load(File sourceFile, File indexFile) throws IOException {
+
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+             FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+
+            SidecarFiles.skipHeader(dis, MAGIC, VERSION, indexFile);
+
+            int nHeaderLines = dis.readInt();
+            List<String> headerLines = new ArrayList<>(nHeaderLines);
+            for (int i = 0; i < nHeaderLines; i++) {
+                headerLines.add(dis.readUTF());
+            }
+
+            int chrCount = dis.readInt();
+            Map<String, Section> sections = new LinkedHashMap<>();
+            for (int i = 0; i < chrCount; i++) {
+                String name = dis.readUTF();
+                int count = dis.readInt();
+                long position = dis.readLong();
+                long size = (long) count * Section.BYTES_PER_RECORD;
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+                sections.put(name, new Section(count, buffer));
+            }
+            return new FeatureFileIndex(sourceFile, headerLines, sections);
+        }
+    }
+
+    /**
+     * Build the index.  The file is parsed in parallel chunks, each chunk collecting records per chromosome in
+     * primitive arrays.  Records are then merged and sorted per chromosome and written out.
+     */
+    static void create(File sourceFile, File indexFile, Supplier<AsciiFeatureCodec> codecSupplier) throws IOException {
+        int nChunks = (int) Math.max(1, Math.min(MAX_CHUNKS,
+                Math.min(Runtime.getRuntime().availableProcessors(), sourceFile.length() / MIN_CHUNK_SIZE)));
+        create(sourceFile, indexFile, codecSupplier, nChunks);
+    }
+
+    static void create(File sourceFile, File indexFile, Supplier<AsciiFeatureCodec> codecSupplier, int nChunks) throws IOException {
+
+        long fileLength = sourceFile.length();
+        List<String> headerLines = new ArrayList<>();
+        long dataStart = readHeader(sourceFile, headerLines);
+
+        // Split the data section into chunks, adjusting boundaries to line starts
+        long[] boundaries = new long[nChunks + 1];
+        boundaries[0] = dataStart;
+        boundaries[nChunks] = fileLength;
+        try (RandomAccessFile raf = new RandomAccessFile(sourceFile, "r")) {
+            for (int i = 1; i < nChunks; i++) {
+                long approx = dataStart + (fileLength - dataStart) * i / nChunks;
+                boundaries[i] = Math.max(boundaries[i - 1], nextLineStart(raf, approx));
+            }
+        }
+
+        List<CompletableFuture<ChunkResult>> futures = new ArrayList<>(nChunks);
+        for (int i = 0; i < nChunks; i++) {
+            final long chunkStart = boundaries[i];
+            final long chunkEnd = boundaries[i + 1];
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return parseChunk(sourceFile, chunkStart, chunkEnd, headerLines, codecSupplier.get());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+
+        List<ChunkResult> results = new ArrayList<>(nChunks);
+        try {
+            for (CompletableFuture<ChunkResult> f : futures) {
+                results.add(f.join());
+            }
+        } catch (java.util.concurrent.CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw e;
+        }
+
+        // Records following a GFF ##FASTA directive are sequence, not features
+        long fastaOffset = Long.MAX_VALUE;
+        for (ChunkResult r : results) {
+            fastaOffset = Math.min(fastaOffset, r.fastaOffset);
+        }
+
+        // Chromosomes in order of first appearance
+        LinkedHashSet<String> seqNames = new LinkedHashSet<>();
+        for (ChunkResult r : results) {
+            seqNames.addAll(r.records.keySet());
+        }
+
+        // Record counts per chromosome, needed up front to compute section positions
+        List<Integer> counts = new ArrayList<>(seqNames.size());
+        for (String seqName : seqNames) {
+            int count = 0;
+            for (ChunkResult r : results) {
+                RecordList rl = r.records.get(seqName);
+                if (rl != null) {
+                    count += rl.countBefore(fastaOffset);
+                }
+            }
+            counts.add(count);
+        }
+
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        DataOutputStream hos = new DataOutputStream(headerBytes);
+        SidecarFiles.writeHeader(hos, MAGIC, VERSION, sourceFile);
+        hos.writeInt(headerLines.size());
+        for (String line : headerLines) {
+            hos.writeUTF(line);
+        }
+        hos.writeInt(seqNames.size());
+
+        ByteArrayOutputStream nameBytes = new ByteArrayOutputStream();
+        DataOutputStream nos = new DataOutputStream(nameBytes);
+        for (String seqName : seqNames) {
+            nos.writeUTF(seqName);
+        }
+        long position = headerBytes.size() + nameBytes.size() + (long) seqNames.size() * (4 + 8);
+
+        int idx = 0;
+        for (String seqName : seqNames) {
+            int count = counts.get(idx++);
+            hos.writeUTF(seqName);
+            hos.writeInt(count);
+            hos.writeLong(position);
+            position += (long) count * Section.BYTES_PER_RECORD;
+        }
+        hos.flush();
+
+        final long sequenceStart = fastaOffset;
+        SidecarFiles.write(indexFile, tmpFile -> {
+            try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+                headerBytes.writeTo(dos);
+
+                // Merge, sort, and write one chromosome at a time
+                for (String seqName : seqNames) {
+                    RecordList all = new RecordList();
+                    for (ChunkResult r : results) {
+                        RecordList rl = r.records.remove(seqName);
+                        if (rl != null) {
+                            all.addAll(rl, sequenceStart);
+                        }
+                    }
+                    all.sortByStart();
+                    all.write(dos);
+                }
+            }
+        });
+    }
+
+    /**
+     * Read header lines from the start of the file.  Returns the offset of the first record.
+     */
+    private static long readHeader(File file, List<String> headerLines) throws IOException {
+        try (FileLineReader reader = new FileLineReader(file)) {
+            long offset = 0;
+            String line;
+            while ((line = reader.readLine(offset)) != null) {
+                if (line.startsWith("#") || line.startsWith("track") || line.startsWith("browser") ||
+                        line.trim().isEmpty()) {
+                    if (line.toUpperCase().startsWith("##FASTA")) {
+                        break;
+                    }
+                    headerLines.add(line);
+                    offset = reader.getNextLineOffset();
+                } else {
+                    break;
+                }
+            }
+            return offset;
+        }
+    }
+
+    private static long nextLineStart(RandomAccessFile raf, long position) throws IOException {
+        raf.seek(position - 1);
+        int b;
+        while ((b = raf.read()) != -1) {
+            if (b == '\n') {
+                return raf.getFilePointer();
+            }
+        }
+        return raf.length();
+    }
+
+    private static ChunkResult parseChunk(File file, long start, long end, List<String> headerLines,
+                                          AsciiFeatureCodec codec) throws IOException {
+
+        for (String line : headerLines) {
+            codec.decode(line);
+        }
+
+        ChunkResult result = new ChunkResult();
+        RecordList current = null;
+        String currentChr = null;
+        int errorCount = 0;
+
+        try (FileLineReader reader = new FileLineReader(file)) {
+            long offset = start;
+            String line;
+            while (offset < end && (line = reader.readLine(offset)) != null) {
+                long next = reader.getNextLineOffset();
+                if (line.toUpperCase().startsWith("##FASTA")) {
+                    result.fastaOffset = offset;
+                    break;
+                }
+                Feature f = null;
+                try {
+                    f = (Feature) codec.decode(line);
+                } catch (Exception e) {
+                    if (errorCount++ == 0) {
+                        log.warn("Skipping unparseable line in " + file.getName() + ": " + line);
+                    }
+                }
+                if (f != null) {
+                    String chr = f.getContig();
+                    if (!chr.equals(currentChr)) {
+                        currentChr = chr;
+                        current = result.records.computeIfAbsent(chr, k -> new RecordList());
+                    }
+                    current.add(f.getStart(), f.getEnd(), offset, (int) (next - offset));
+                }
+                offset = next;
+            }
+        }
+        return result;
+    }
+
+
+    private static class ChunkResult {
+        Map<String, RecordList> records = new LinkedHashMap<>();
+        long fastaOffset = Long.MAX_VALUE;
+    }
+
+    /**
+     * Growable parallel primitive arrays of index records.
+     */
+    private static class RecordList {
+
+        int size = 0;
+        int[] starts = new int[1024];
+        int[] ends = new int[1024];
+        long[] offsets = new long[1024];
+        int[] lengths = new int[1024];
+
+        void add(int start, int end, long offset, int length) {
+            if (size == starts.length) {
+                int newCapacity = size + (size >> 1);
+                starts = Arrays.copyOf(starts, newCapacity);
+                ends = Arrays.copyOf(ends, newCapacity);
+                offsets = Arrays.copyOf(offsets, newCapacity);
+                lengths = Arrays.copyOf(lengths, newCapacity);
+            }
+            starts[size] = start;
+            ends[size] = end;
+            offsets[size] = offset;
+            lengths[size] = length;
+            size++;
+        }
+
+        int countBefore(long maxOffset) {
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                if (offsets[i] < maxOffset) count++;
+            }
+            return count;
+        }
+
+        void addAll(RecordList other, long maxOffset) {
+            for (int i = 0; i < other.size; i++) {
+                if (other.offsets[i] < maxOffset) {
+                    add(other.starts[i], other.ends[i], other.offsets[i], other.lengths[i]);
+                }
+            }
+        }
+
+        /**
+         * Sort records by start.  Keys pack (start, index) into a long so a primitive sort can be used.  Starts
+         * are shifted to be non-negative so the packed keys sort correctly.
+         */
+        void sortByStart() {
+            long[] keys = new long[size];
+            for (int i = 0; i < size; i++) {
+                keys[i] = (((long) starts[i] - Integer.MIN_VALUE) << 32) | i;
+            }
+            Arrays.parallelSort(keys);
+
+            int[] s = new int[size];
+            int[] e = new int[size];
+            long[] o = new long[size];
+            int[] l = new int[size];
+            for (int i = 0; i < size; i++) {
+                int idx = (int) (keys[i] & 0xFFFFFFFFL);
+                s[i] = starts[idx];
+                e[i] = ends[idx];
+                o[i] = offsets[idx];
+                l[i] = lengths[idx];
+            }
+            starts = s;
+            ends = e;
+            offsets = o;
+            lengths = l;
+        }
+
+        void write(DataOutputStream dos) throws IOException {
+            for (int i = 0; i < size; i++) dos.writeInt(starts[i]);
+            for (int i = 0; i < size; i++) dos.writeInt(ends[i]);
+            int maxEnd = Integer.MIN_VALUE;
+            for (int i = 0; i < size; i++) {
+                maxEnd = Math.max(maxEnd, ends[i]);
+                dos.writeInt(maxEnd);
+            }
+            for (int i = 0; i < size; i++) dos.writeLong(offsets[i]);
+            for (int i = 0; i < size; i++) dos.writeInt(lengths[i]);
+        }
+    }
+
+    /**
+     * Views over a memory mapped chromosome section.
+     */
+    private static class Section {
+
+        static final int BYTES_PER_RECORD = 4 + 4 + 4 + 8 + 4;
+
+        final int count;
+        final IntBuffer starts;
+        final IntBuffer ends;
+        final IntBuffer maxEnds;
+        final LongBuffer offsets;
+        final IntBuffer lengths;
+
+        Section(int count, ByteBuffer buffer) {
+            this.count = count;
+            starts = slice(buffer, 0, count * 4).asIntBuffer();
+            ends = slice(buffer, count * 4, count * 4).asIntBuffer();
+            maxEnds = slice(buffer, count * 8, count * 4).asIntBuffer();
+            offsets = slice(buffer, count * 12, count * 8).asLongBuffer();
+            lengths = slice(buffer, count * 20, count * 4).asIntBuffer();
+        }
+
+        private static ByteBuffer slice(ByteBuffer buffer, int position, int length) {
+            ByteBuffer dup = buffer.duplicate();
+            dup.position(position);
+            dup.limit(position + length);
+            return dup.slice();
+        }
+    }
+}
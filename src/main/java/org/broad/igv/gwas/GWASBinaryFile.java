@@ -0,0 +1,193 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.gwas;
+
+import org.broad.igv.util.SidecarFiles;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Binary, columnar form of a GWAS results file, with summary levels.  Chromosome sections are memory mapped when
+ * the file is read, so only the sections visited are paged in and the data does not occupy the heap.  Source lines
+ * are not stored, only their offsets in the source file.
+ * <p>
+ * File layout (big endian)
+ * <pre>
+ *   header (see {@link SidecarFiles}), UTF genomeId
+ *   int columnCount, columnCount x UTF header
+ *   int chrCount
+ *   chrCount x { UTF name, int snpCount, long sectionPosition, int levelCount, levelCount x { int binSize, int binCount } }
+ *   sections:  int[n] position, float[n] value, long[n] offset, levelCount x int[binCount] snpIndex
+ * </pre>
+ *
+ * @see GWASData
+ */
+public class GWASBinaryFile {
+
+    static final int MAGIC = 0x49475742;   // "IGWB"
+    static final int VERSION = 2;
+
+    /**
+     * Return true if {@code binaryFile} exists and was built from the current version of {@code sourceFile} for
+     * the given genome.
+     */
+    public static boolean isCurrent(File sourceFile, File binaryFile, String genomeId) {
+        try (DataInputStream dis = SidecarFiles.openIfCurrent(binaryFile, MAGIC, VERSION, sourceFile)) {
+            return dis != null && dis.readUTF().equals(genomeId);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Write {@code data}, which must have been parsed from {@code sourceFile} with line offsets.
+     */
+    public static void write(GWASData data, File sourceFile, File binaryFile, String genomeId) throws IOException {
+
+        // Section positions are fixed width, so the header length can be computed with placeholder positions
+        long headerLength = header(data, sourceFile, genomeId, null).length;
+        Map<String, Long> positions = new LinkedHashMap<>();
+        long position = headerLength;
+        for (String chr : data.getChromosomeNames()) {
+            positions.put(chr, position);
+            position += sectionSize(data.getChrData(chr));
+        }
+
+        byte[] header = header(data, sourceFile, genomeId, positions);
+        SidecarFiles.write(binaryFile, tmpFile -> {
+            try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+                dos.write(header);
+                for (String chr : data.getChromosomeNames()) {
+                    GWASData.ChrData cd = data.getChrData(chr);
+                    for (int i = 0; i < cd.size; i++) dos.writeInt(cd.positions.get(i));
+                    for (int i = 0; i < cd.size; i++) dos.writeFloat(cd.values.get(i));
+                    for (int i = 0; i < cd.size; i++) dos.writeLong(cd.offsets.get(i));
+                    for (IntBuffer level : cd.levels) {
+                        for (int i = 0; i < level.limit(); i++) dos.writeInt(level.get(i));
+                    }
+                }
+            }
+        });
+    }
+
+    private static byte[] header(GWASData data, File sourceFile, String genomeId, Map<String, Long> positions) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream hos = new DataOutputStream(bytes);
+        SidecarFiles.writeHeader(hos, MAGIC, VERSION, sourceFile);
+        hos.writeUTF(genomeId);
+        String[] columns = data.getColumnHeaders();
+        hos.writeInt(columns.length);
+        for (String c : columns) {
+            hos.writeUTF(c);
+        }
+        hos.writeInt(data.getChromosomeNames().size());
+        for (String chr : data.getChromosomeNames()) {
+            GWASData.ChrData cd = data.getChrData(chr);
+            hos.writeUTF(chr);
+            hos.writeInt(cd.size);
+            hos.writeLong(positions == null ? 0 : positions.get(chr));
+            hos.writeInt(cd.levels.length);
+            for (int k = 0; k < cd.levels.length; k++) {
+                hos.writeInt(cd.binSizes[k]);
+                hos.writeInt(cd.levels[k].limit());
+            }
+        }
+        hos.flush();
+        return bytes.toByteArray();
+    }
+
+    private static long sectionSize(GWASData.ChrData cd) {
+        long size = (long) cd.size * (4 + 4 + 8);
+        for (IntBuffer level : cd.levels) {
+            size += level.limit() * 4L;
+        }
+        return size;
+    }
+
+    public static GWASData read(File sourceFile, File binaryFile) throws IOException {
+
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(binaryFile)));
+             FileChannel channel = FileChannel.open(binaryFile.toPath(), StandardOpenOption.READ)) {
+
+            SidecarFiles.skipHeader(dis, MAGIC, VERSION, binaryFile);
+            dis.readUTF();
+
+            int nColumns = dis.readInt();
+            String[] columns = new String[nColumns];
+            for (int i = 0; i < nColumns; i++) {
+                columns[i] = dis.readUTF();
+            }
+
+            int chrCount = dis.readInt();
+            Map<String, GWASData.ChrData> chrData = new LinkedHashMap<>();
+            for (int c = 0; c < chrCount; c++) {
+                String chr = dis.readUTF();
+                int size = dis.readInt();
+                long position = dis.readLong();
+                int levelCount = dis.readInt();
+                int[] binSizes = new int[levelCount];
+                int[] binCounts = new int[levelCount];
+                long sectionSize = (long) size * (4 + 4 + 8);
+                for (int k = 0; k < levelCount; k++) {
+                    binSizes[k] = dis.readInt();
+                    binCounts[k] = dis.readInt();
+                    sectionSize += binCounts[k] * 4L;
+                }
+
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, sectionSize);
+                int offset = 0;
+                ByteBuffer positions = slice(buffer, offset, size * 4);
+                offset += size * 4;
+                ByteBuffer values = slice(buffer, offset, size * 4);
+                offset += size * 4;
+                ByteBuffer offsets = slice(buffer, offset, size * 8);
+                offset += size * 8;
+                IntBuffer[] levels = new IntBuffer[levelCount];
+                for (int k = 0; k < levelCount; k++) {
+                    levels[k] = slice(buffer, offset, binCounts[k] * 4).asIntBuffer();
+                    offset += binCounts[k] * 4;
+                }
+                chrData.put(chr, new GWASData.ChrData(size, positions.asIntBuffer(), values.asFloatBuffer(),
+                        offsets.asLongBuffer(), null, binSizes, levels));
+            }
+            return new GWASData(columns, chrData, sourceFile);
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int position, int length) {
+        ByteBuffer dup = buffer.duplicate();
+        dup.position(position);
+        dup.limit(position + length);
+        return dup.slice();
+    }
+}
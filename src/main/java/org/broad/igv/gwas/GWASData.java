@@ -0,0 +1,414 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.gwas;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.DirectoryManager;
+import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.util.FileLineReader;
+import org.broad.igv.util.ResourceLocator;
+import org.broad.igv.util.SidecarFiles;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.*;
+
+/**
+ * Columnar GWAS results.  For each chromosome the positions and -log10(p) values of the SNPs, sorted by position,
+ * are held in primitive buffers, either on the heap or memory mapped from a {@link GWASBinaryFile}.
+ * <p>
+ * Each chromosome also has a pyramid of summary levels.  At level k the chromosome is divided into bins of
+ * BASE_BIN_SIZE * BIN_FACTOR^k bp, and the level lists, for each non-empty bin, the index of the SNP with the
+ * largest value.  When zoomed out it is sufficient to draw the SNPs of the coarsest level whose bins are no larger
+ * than a pixel, as every SNP omitted is then dominated by a drawn SNP less than a pixel away.
+ * <p>
+ * Source lines, used for popup text, are either held in memory or read on demand from the source file at recorded
+ * offsets.
+ */
+public class GWASData {
+
+    private static final Logger log = Logger.getLogger(GWASData.class);
+
+    static final int BASE_BIN_SIZE = 1000;
+    static final int BIN_FACTOR = 4;
+    static final int MAX_LEVELS = 16;
+
+    private final String[] columnHeaders;
+    private final Map<String, ChrData> chrData;
+    private final float maxValue;
+    private final File sourceFile;
+
+    GWASData(String[] columnHeaders, Map<String, ChrData> chrData, File sourceFile) {
+        this.columnHeaders = columnHeaders;
+        this.chrData = chrData;
+        this.sourceFile = sourceFile;
+        float max = 0;
+        for (ChrData cd : chrData.values()) {
+            max = Math.max(max, cd.getMaxValue());
+        }
+        this.maxValue = max;
+    }
+
+    /**
+     * Load GWAS results.  Local, uncompressed files are converted to a binary file in the IGV index directory on first
+     * load, and memory mapped from it thereafter.  Other files are parsed into memory.
+     */
+    public static GWASData load(ResourceLocator locator, Genome genome) throws IOException {
+
+        GWASParser parser = new GWASParser(locator, genome);
+        if (!isIndexable(locator)) {
+            return parser.parseData();
+        }
+
+        File sourceFile = new File(locator.getPath());
+        File binaryFile = getBinaryFile(sourceFile);
+        String genomeId = genome == null ? "" : genome.getId();
+        if (!GWASBinaryFile.isCurrent(sourceFile, binaryFile, genomeId)) {
+            long t0 = System.currentTimeMillis();
+            GWASData data = parser.parseData();
+            try {
+                GWASBinaryFile.write(data, sourceFile, binaryFile, genomeId);
+            } catch (IOException e) {
+                log.error("Error writing binary GWAS file " + binaryFile.getAbsolutePath(), e);
+                return data;
+            }
+            log.info("Converted " + sourceFile.getName() + " in " + (System.currentTimeMillis() - t0) + " ms");
+        }
+        return GWASBinaryFile.read(sourceFile, binaryFile);
+    }
+
+    static boolean isIndexable(ResourceLocator locator) {
+        String path = locator.getPath().toLowerCase();
+        return locator.isLocal() && !path.endsWith(".gz") && !path.endsWith(".bgz");
+    }
+
+    private static File getBinaryFile(File sourceFile) {
+        return SidecarFiles.getFile(DirectoryManager.getFeatureIndexDirectory(), sourceFile, ".gwasb");
+    }
+
+    public String[] getColumnHeaders() {
+        return columnHeaders;
+    }
+
+    public float getMaxValue() {
+        return maxValue;
+    }
+
+    public Collection<String> getChromosomeNames() {
+        return chrData.keySet();
+    }
+
+    public ChrData getChrData(String chr) {
+        return chrData.get(chr);
+    }
+
+    /**
+     * Return the source line of the SNP at {@code index} on {@code chr}
+     */
+    public String getLine(String chr, int index) {
+        ChrData cd = chrData.get(chr);
+        if (cd == null) {
+            return null;
+        }
+        if (cd.lines != null) {
+            return cd.lines[index];
+        }
+        try (FileLineReader reader = new FileLineReader(sourceFile)) {
+            String line = reader.readLine(cd.offsets.get(index));
+            return line == null ? null : line.trim();
+        } catch (IOException e) {
+            log.error("Error reading " + sourceFile.getAbsolutePath(), e);
+            return null;
+        }
+    }
+
+    /**
+     * The SNPs of a chromosome
+     */
+    public static class ChrData {
+
+        final int size;
+        final IntBuffer positions;
+        final FloatBuffer values;
+        final LongBuffer offsets;
+        final String[] lines;
+        final int[] binSizes;
+        final IntBuffer[] levels;
+        private final float maxValue;
+
+        ChrData(int size, IntBuffer positions, FloatBuffer values, LongBuffer offsets, String[] lines,
+                int[] binSizes, IntBuffer[] levels) {
+            this.size = size;
+            this.positions = positions;
+            this.values = values;
+            this.offsets = offsets;
+            this.lines = lines;
+            this.binSizes = binSizes;
+            this.levels = levels;
+            float max = 0;
+            IntBuffer top = levels.length == 0 ? null : levels[levels.length - 1];
+            if (top == null) {
+                for (int i = 0; i < size; i++) max = Math.max(max, values.get(i));
+            } else {
+                for (int i = 0; i < top.limit(); i++) max = Math.max(max, values.get(top.get(i)));
+            }
+            this.maxValue = max;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int getPosition(int index) {
+            return positions.get(index);
+        }
+
+        public float getValue(int index) {
+            return values.get(index);
+        }
+
+        public float getMaxValue() {
+            return maxValue;
+        }
+
+        /**
+         * Return the indices, in position order, of the SNPs to draw in [start, end) at the given resolution.  When
+         * zoomed in this is every SNP in the range, otherwise the maximum SNP of each bin of the coarsest summary
+         * level whose bins are no larger than {@code bpPerPixel}.
+         */
+        public int[] getIndices(int start, int end, double bpPerPixel) {
+
+            int level = -1;
+            for (int k = 0; k < binSizes.length && binSizes[k] <= bpPerPixel; k++) {
+                level = k;
+            }
+
+            if (level < 0) {
+                int i0 = lowerBound(start);
+                int i1 = lowerBound(end);
+                int[] indices = new int[Math.max(0, i1 - i0)];
+                for (int i = i0; i < i1; i++) {
+                    indices[i - i0] = i;
+                }
+                return indices;
+            } else {
+                IntBuffer bins = levels[level];
+                int i0 = lowerBound(bins, start);
+                int i1 = lowerBound(bins, end);
+                int[] indices = new int[Math.max(0, i1 - i0)];
+                for (int i = i0; i < i1; i++) {
+                    indices[i - i0] = bins.get(i);
+                }
+                return indices;
+            }
+        }
+
+        /**
+         * Index of the first SNP with position >= {@code position}
+         */
+        int lowerBound(int position) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (positions.get(mid) < position) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        private int lowerBound(IntBuffer indices, int position) {
+            int lo = 0;
+            int hi = indices.limit();
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (positions.get(indices.get(mid)) < position) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+
+    /**
+     * Compute the summary levels for SNPs sorted by position.  Each level is computed from the previous one, and
+     * levels are added until one has a single bin.  Returns the levels, and fills {@code binSizes}.
+     */
+    static IntBuffer[] computeLevels(int size, IntBuffer positions, FloatBuffer values, List<Integer> binSizes) {
+
+        List<IntBuffer> levels = new ArrayList<>();
+        int[] previous = null;
+        int previousCount = size;
+        long binSize = BASE_BIN_SIZE;
+
+        while (previousCount > 1 && levels.size() < MAX_LEVELS && binSize <= Integer.MAX_VALUE) {
+            int[] bins = new int[previousCount];
+            int count = 0;
+            int currentBin = Integer.MIN_VALUE;
+            for (int j = 0; j < previousCount; j++) {
+                int i = previous == null ? j : previous[j];
+                int bin = (int) (positions.get(i) / binSize);
+                if (count == 0 || bin != currentBin) {
+                    bins[count++] = i;
+                    currentBin = bin;
+                } else if (values.get(i) > values.get(bins[count - 1])) {
+                    bins[count - 1] = i;
+                }
+            }
+            bins = Arrays.copyOf(bins, count);
+            levels.add(IntBuffer.wrap(bins));
+            binSizes.add((int) binSize);
+            previous = bins;
+            previousCount = count;
+            binSize *= BIN_FACTOR;
+        }
+        return levels.toArray(new IntBuffer[0]);
+    }
+
+    /**
+     * Accumulates SNPs per chromosome in primitive arrays
+     */
+    static class Builder {
+
+        private final String[] columnHeaders;
+        private final File sourceFile;
+        private final Map<String, ChrBuilder> chromosomes = new LinkedHashMap<>();
+
+        /**
+         * @param sourceFile if not null, source line offsets are recorded rather than lines
+         */
+        Builder(String[] columnHeaders, File sourceFile) {
+            this.columnHeaders = columnHeaders;
+            this.sourceFile = sourceFile;
+        }
+
+        void add(String chr, int position, float value, String line, long offset) {
+            chromosomes.computeIfAbsent(chr, k -> new ChrBuilder(sourceFile == null)).add(position, value, line, offset);
+        }
+
+        GWASData build() {
+            Map<String, ChrData> chrData = new LinkedHashMap<>();
+            for (Map.Entry<String, ChrBuilder> entry : chromosomes.entrySet()) {
+                chrData.put(entry.getKey(), entry.getValue().build());
+            }
+            return new GWASData(columnHeaders, chrData, sourceFile);
+        }
+    }
+
+    private static class ChrBuilder {
+
+        int size = 0;
+        int[] positions = new int[1024];
+        float[] values = new float[1024];
+        long[] offsets;
+        String[] lines;
+
+        ChrBuilder(boolean keepLines) {
+            if (keepLines) {
+                lines = new String[1024];
+            } else {
+                offsets = new long[1024];
+            }
+        }
+
+        void add(int position, float value, String line, long offset) {
+            if (size == positions.length) {
+                int newCapacity = size + (size >> 1);
+                positions = Arrays.copyOf(positions, newCapacity);
+                values = Arrays.copyOf(values, newCapacity);
+                if (lines != null) {
+                    lines = Arrays.copyOf(lines, newCapacity);
+                } else {
+                    offsets = Arrays.copyOf(offsets, newCapacity);
+                }
+            }
+            positions[size] = position;
+            values[size] = value;
+            if (lines != null) {
+                lines[size] = line;
+            } else {
+                offsets[size] = offset;
+            }
+            size++;
+        }
+
+        ChrData build() {
+
+            boolean sorted = true;
+            for (int i = 1; i < size && sorted; i++) {
+                sorted = positions[i] >= positions[i - 1];
+            }
+
+            int[] p;
+            float[] v;
+            long[] o = null;
+            String[] l = null;
+            if (sorted) {
+                p = Arrays.copyOf(positions, size);
+                v = Arrays.copyOf(values, size);
+                if (lines != null) l = Arrays.copyOf(lines, size);
+                else o = Arrays.copyOf(offsets, size);
+            } else {
+                // Sort by packing (position, index) into a long, positions are shifted to be non-negative
+                long[] keys = new long[size];
+                for (int i = 0; i < size; i++) {
+                    keys[i] = (((long) positions[i] - Integer.MIN_VALUE) << 32) | i;
+                }
+                Arrays.parallelSort(keys);
+                p = new int[size];
+                v = new float[size];
+                if (lines != null) l = new String[size];
+                else o = new long[size];
+                for (int i = 0; i < size; i++) {
+                    int idx = (int) (keys[i] & 0xFFFFFFFFL);
+                    p[i] = positions[idx];
+                    v[i] = values[idx];
+                    if (l != null) l[i] = lines[idx];
+                    else o[i] = offsets[idx];
+                }
+            }
+            positions = null;
+            values = null;
+            offsets = null;
+            lines = null;
+
+            IntBuffer pb = IntBuffer.wrap(p);
+            FloatBuffer vb = FloatBuffer.wrap(v);
+            List<Integer> binSizes = new ArrayList<>();
+            IntBuffer[] levels = computeLevels(size, pb, vb, binSizes);
+            return new ChrData(size, pb, vb, o == null ? null : LongBuffer.wrap(o), l,
+                    binSizes.stream().mapToInt(Integer::intValue).toArray(), levels);
+        }
+    }
+}
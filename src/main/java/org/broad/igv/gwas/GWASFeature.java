@@ -9,8 +9,6 @@ public class GWASFeature  {
     int position;
     double value;
     String line;
-    int pixelX;
-    int pixelY;
 
     public GWASFeature(String chr, int position, double value, String line) {
         this.chr = chr;
@@ -28,10 +28,12 @@ package org.broad.igv.gwas;
 import org.apache.log4j.Logger;
 import org.broad.igv.exceptions.ParserException;
 import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.util.FileLineReader;
 import org.broad.igv.util.ParsingUtils;
 import org.broad.igv.util.ResourceLocator;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.util.*;
 import java.util.regex.Pattern;
@@ -71,38 +73,76 @@ public class GWASParser {
 
     public Map<String, List<GWASFeature>> parse() throws IOException {
 
-        BufferedReader reader = null;
+        GWASData data = parseData(true);
+        Map<String, List<GWASFeature>> features = new HashMap<>();
+        for (String chr : data.getChromosomeNames()) {
+            GWASData.ChrData cd = data.getChrData(chr);
+            List<GWASFeature> featureList = new ArrayList<>(cd.size());
+            for (int i = 0; i < cd.size(); i++) {
+                featureList.add(new GWASFeature(chr, cd.getPosition(i), cd.getValue(i), cd.lines[i]));
+            }
+            features.put(chr, featureList);
+        }
+        return features;
+    }
+
+    /**
+     * Parse the file into columnar form.  Source lines of local, uncompressed files are not kept, only their offsets.
+     */
+    public GWASData parseData() throws IOException {
+        return parseData(!GWASData.isIndexable(locator));
+    }
+
+    GWASData parseData(boolean keepLines) throws IOException {
+        if (keepLines) {
+            try (BufferedReader reader = ParsingUtils.openBufferedReader(locator)) {
+                return parseData(reader::readLine, null);
+            }
+        } else {
+            File file = new File(locator.getPath());
+            try (FileLineReader reader = new FileLineReader(file)) {
+                return parseData(new LineSource() {
+                    long offset = 0;
+
+                    public String readLine() throws IOException {
+                        String line = reader.readLine(offset);
+                        offset = reader.getNextLineOffset();
+                        return line;
+                    }
+
+                    public long getOffset() {
+                        return offset;
+                    }
+                }, file);
+            }
+        }
+    }
+
+    private GWASData parseData(LineSource lineSource, File sourceFile) throws IOException {
+
         String nextLine = null;
         int rowCounter = 0;
-        Map<String, List<GWASFeature>> features = new HashMap<>();
 
         try {
-            reader = ParsingUtils.openBufferedReader(locator);
+            String headerLine = lineSource.readLine();
 
-            String headerLine = reader.readLine();
-
-            if (!this.columns.parseHeader(headerLine))
+            if (headerLine == null || !this.columns.parseHeader(headerLine))
                 throw new ParserException("Error while parsing header line.", 0, nextLine);
 
-            while ((nextLine = reader.readLine()) != null && (nextLine.trim().length() > 0)) {
+            GWASData.Builder builder = new GWASData.Builder(this.columns.columnHeaders, sourceFile);
+
+            long offset = lineSource.getOffset();
+            while ((nextLine = lineSource.readLine()) != null && (nextLine.trim().length() > 0)) {
                 nextLine = nextLine.trim();
                 rowCounter++;
-                GWASFeature f = null;
-                f = parseLine(nextLine, rowCounter);
-                List<GWASFeature> featureList = features.get(f.chr);
-                if (featureList == null) {
-                    featureList = new ArrayList<>();
-                    features.put(f.chr, featureList);
+                GWASFeature f = parseLine(nextLine, rowCounter);
+                if (f != null) {
+                    builder.add(f.chr, f.position, (float) f.value, sourceFile == null ? nextLine : null, offset);
                 }
-                featureList.add(f);
-            }
-
-            // Sort features by position
-            for (List<GWASFeature> featureList : features.values()) {
-                featureList.sort(Comparator.comparingInt(o -> o.position));
+                offset = lineSource.getOffset();
             }
 
-            return features;
+            return builder.build();
 
         } catch (Exception e) {
             if (nextLine != null && rowCounter != 0) {
@@ -110,8 +150,18 @@ public class GWASParser {
             } else {
                 throw new RuntimeException(e);
             }
-        } finally {
-            if (reader != null) reader.close();
+        }
+    }
+
+    private interface LineSource {
+
+        String readLine() throws IOException;
+
+        /**
+         * Offset of the next line, if known
+         */
+        default long getOffset() {
+            return -1;
         }
     }
 
@@ -53,7 +53,6 @@ import java.awt.event.ActionListener;
 import java.text.DecimalFormat;
 import java.util.List;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * @author jussi
@@ -78,11 +77,14 @@ public class GWASTrack extends AbstractTrack {
     private boolean drawYAxis = true;
     private boolean showAxis = true;
     double maxValue = -1;
-    private Map<String, List<GWASFeature>> gData;
+    private GWASData gData;
     Genome genome;
     private String[] columns;
     IGV igv;
 
+    // Points drawn by the last render of each frame, for mouse over text
+    private final Map<String, DrawnPoints> drawnPoints = Collections.synchronizedMap(new HashMap<>());
+
     /**
      * Constructor for a new GWAS track
      *
@@ -94,7 +96,7 @@ public class GWASTrack extends AbstractTrack {
     public GWASTrack(ResourceLocator locator,
                      String id,
                      String name,
-                     Map<String, List<GWASFeature>> gData,
+                     GWASData gData,
                      String[] columns,
                      Genome genome) {
         super(locator, id, name);
@@ -105,7 +107,7 @@ public class GWASTrack extends AbstractTrack {
         IGVPreferences prefs = PreferencesManager.getPreferences();
 
         // Set range from 0 to highest value rounded to greater integer
-        setMaxValue(gData);
+        maxValue = gData.getMaxValue();
         int mv = (int) Math.ceil(maxValue);
         super.setDataRange(new DataRange(0, (mv / 2), mv));
 
@@ -126,14 +128,6 @@ public class GWASTrack extends AbstractTrack {
     public GWASTrack() {
     }
 
-    private void setMaxValue(Map<String, List<GWASFeature>> gData) {
-        for (List<GWASFeature> features : gData.values()) {
-            for (GWASFeature f : features) {
-                if (f.value > maxValue) maxValue = f.value;
-            }
-        }
-    }
-
     @Override
     public boolean isNumeric() {
         return true;
@@ -159,9 +153,6 @@ public class GWASTrack extends AbstractTrack {
         double adjustedRectY = adjustedRect.getY();
         this.maxY = adjustedRectMaxY;
         this.scale = context.getScale();
-        int bufferX = (int) adjustedRectMaxX;
-        int bufferY = (int) adjustedRectMaxY;
-        Color[][] drawBuffer = new Color[bufferX + 1][bufferY + 1];
         double origin = context.getOrigin();
         double locScale = context.getScale();
 
@@ -177,8 +168,9 @@ public class GWASTrack extends AbstractTrack {
 
         //int lastPx = 0;
         String chrName = context.getChr();
+        boolean isWholeGenome = chrName.equals(Globals.CHR_ALL);
         List<String> chrList;
-        if (chrName.equals("All")) {
+        if (isWholeGenome) {
             chrList = genome.getLongChromosomeNames();
         } else {
             chrList = Arrays.asList(chrName);
@@ -192,14 +184,21 @@ public class GWASTrack extends AbstractTrack {
 
         int xMinPointSize = (int) (1 / locScale);
 
+        // Whole genome coordinates are in kb
+        double bpPerUnit = isWholeGenome ? 1000 : 1;
+        double bpPerPixel = locScale * bpPerUnit;
+
+        DrawnPoints points = new DrawnPoints();
+        Graphics2D g = context.getGraphics();
+
         // Loop through data points, chromosome by chromosome
 
         int chrCounter = 0;
         for (String chr : chrList) {
 
-            List<GWASFeature> featureList = gData.get(chr);
+            GWASData.ChrData chrData = gData.getChrData(chr);
 
-            if (featureList != null) {
+            if (chrData != null) {
 
                 // Choose a color for the chromosome
                 // Use specific color for each chromosome
@@ -213,27 +212,25 @@ public class GWASTrack extends AbstractTrack {
                     else
                         drawColor = this.primaryColor;
                 }
+                g.setColor(drawColor);
 
-                // Loop through data points in a chromosome
-                Graphics2D g = context.getGraphics();
-                for (GWASFeature feature : featureList) {
+                // Visible range of the chromosome in bp, padded by a pixel on either side
+                double chrOffset = isWholeGenome ? genome.getCumulativeOffset(chr) : 0;
+                double startBP = origin * bpPerUnit - chrOffset - dx * bpPerPixel;
+                double endBP = (origin + (adjustedRectMaxX + 1) * locScale) * bpPerUnit - chrOffset;
+                int start = (int) Math.max(0, Math.min(Integer.MAX_VALUE, startBP));
+                int end = (int) Math.max(0, Math.min(Integer.MAX_VALUE, endBP));
 
-                    // Get location, e.g. start for the data point
-                    int start;
-                    if (chrName.equalsIgnoreCase("all"))
-                        start = genome.getGenomeCoordinate(feature.chr, feature.position);
-                    else
-                        start = feature.position;
+                // Only the maximum of each pixel is needed when zoomed out, the data summaries provide these
+                int[] indices = chrData.getIndices(start, end, bpPerPixel);
+
+                for (int index : indices) {
 
-                    // Based on location, calculate X-coordinate, or break if outside of the view
-                    double pX = ((start - origin) / locScale);
-                    if ((pX + dx < 0))
-                        continue;
-                    else if (pX > adjustedRectMaxX)
-                        break;
+                    // Based on location, calculate X-coordinate
+                    double pX = ((chrOffset + chrData.getPosition(index)) / bpPerUnit - origin) / locScale;
 
                     // Based on value of the data point, calculate Y-coordinate
-                    double dataY = feature.value;
+                    double dataY = chrData.getValue(index);
 
                     if (!Double.isNaN(dataY)) {
 
@@ -267,15 +264,14 @@ public class GWASTrack extends AbstractTrack {
                         if (maxDrawY > adjustedRectMaxY)
                             maxDrawY = (int) adjustedRectMaxY;
 
-                        g.setColor(drawColor);
                         g.fillRect(x, y, maxDrawX - x, maxDrawY - y);
-                        feature.pixelX = (x + maxDrawX) / 2;
-                        feature.pixelY = (y + maxDrawY) / 2;
+                        points.add(chr, index, (x + maxDrawX) / 2, (y + maxDrawY) / 2);
                     }
                 }
             }
             chrCounter++;
         }
+        drawnPoints.put(context.getReferenceFrame().getName(), points);
 
         // Draw the legend axis
         if (showAxis) {
@@ -376,41 +372,61 @@ public class GWASTrack extends AbstractTrack {
     }
 
     /**
-     * Find index of data point closest to given chromosomal location and y-coordinate
+     * Find the data point drawn closest to the given pixel location in the frame
      */
-    GWASFeature findFeature(String chr, int mouseX, int mouseY) {
+    GWASFeature findFeature(ReferenceFrame frame, int mouseX, int mouseY) {
         final int pixelThreshold = 3;
-        List<GWASFeature> featureList;
-        if ("all".equalsIgnoreCase(chr)) {
-            featureList = new ArrayList<>();
-            for (List<GWASFeature> chrFeatures : this.gData.values()) {
-                for (GWASFeature f : chrFeatures) {
-                    if (Math.abs(mouseX - f.pixelX) <= pixelThreshold && Math.abs(mouseY - f.pixelY) <= pixelThreshold) {
-                        featureList.add(f);
-                    }
+        DrawnPoints points = frame == null ? null : drawnPoints.get(frame.getName());
+        if (points == null) {
+            return null;
+        }
+        int closest = -1;
+        int closestDistance = Integer.MAX_VALUE;
+        for (int i = 0; i < points.size; i++) {
+            int dx = mouseX - points.pixelX[i];
+            int dy = mouseY - points.pixelY[i];
+            if (Math.abs(dx) <= pixelThreshold && Math.abs(dy) <= pixelThreshold) {
+                int d = dx * dx + dy * dy;
+                if (d < closestDistance) {
+                    closestDistance = d;
+                    closest = i;
                 }
             }
-        } else {
-            featureList = this.gData.get(chr);
         }
-        if (featureList == null) {
+        if (closest < 0) {
             return null;
         } else {
-            List<GWASFeature> closeFeatures = featureList.stream()
-                    .filter(f -> Math.abs(mouseX - f.pixelX) <= pixelThreshold && Math.abs(mouseY - f.pixelY) <= pixelThreshold)
-                    .collect(Collectors.toList());
-            if (closeFeatures.isEmpty()) {
-                return null;
-            } else {
-                closeFeatures.sort((o1, o2) -> {
-                    double d1 = Math.sqrt((mouseX - o1.pixelX) * (mouseX - o1.pixelX) + (mouseY - o1.pixelY) * (mouseY - o1.pixelY));
-                    double d2 = Math.sqrt((mouseX - o2.pixelX) * (mouseX - o2.pixelX) + (mouseY - o2.pixelY) * (mouseY - o2.pixelY));
-                    if (d1 == d2) return 0;
-                    else if (d1 > d2) return 1;
-                    else return -1;
-                });
-                return closeFeatures.get(0);
+            String chr = points.chrs[closest];
+            int index = points.indices[closest];
+            GWASData.ChrData chrData = gData.getChrData(chr);
+            return new GWASFeature(chr, chrData.getPosition(index), chrData.getValue(index), gData.getLine(chr, index));
+        }
+    }
+
+    /**
+     * Pixel locations of the points drawn in a frame, with the chromosome and index of their SNPs
+     */
+    private static class DrawnPoints {
+
+        int size = 0;
+        String[] chrs = new String[256];
+        int[] indices = new int[256];
+        int[] pixelX = new int[256];
+        int[] pixelY = new int[256];
+
+        void add(String chr, int index, int x, int y) {
+            if (size == indices.length) {
+                int newCapacity = size * 2;
+                chrs = Arrays.copyOf(chrs, newCapacity);
+                indices = Arrays.copyOf(indices, newCapacity);
+                pixelX = Arrays.copyOf(pixelX, newCapacity);
+                pixelY = Arrays.copyOf(pixelY, newCapacity);
             }
+            chrs[size] = chr;
+            indices[size] = index;
+            pixelX[size] = x;
+            pixelY[size] = y;
+            size++;
         }
     }
 
@@ -443,7 +459,7 @@ public class GWASTrack extends AbstractTrack {
     public String getValueStringAt(String chr, double position, int mouseX, int mouseY, ReferenceFrame frame) {
 
 
-        GWASFeature feature = findFeature(chr, mouseX, mouseY);
+        GWASFeature feature = findFeature(frame, mouseX, mouseY);
 
         // If there is a data point at the given location, fetch description
         return feature != null ? getDescriptionString(feature) : null;
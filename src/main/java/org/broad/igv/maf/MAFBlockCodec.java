@@ -0,0 +1,178 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.maf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Compact binary encoding of a list of {@link MultipleAlignmentBlock}s, used to hold many tiles of a multi-species
+ * alignment in memory.
+ * <p>
+ * Species and chromosome names are written once per tile in a string table.  Aligned text over the common alphabet
+ * (ACGTN, either case, gap and '.') is packed 2 symbols per byte, other text is stored as raw bytes.  Gaps are not
+ * stored, they are recomputed from the reference text when blocks are decoded.
+ * <pre>
+ *   int stringCount, stringCount x { short length, byte[] UTF-8 }
+ *   int blockCount, blockCount x {
+ *       int sequenceCount, sequenceCount x {
+ *           int speciesIdx, int chrIdx, int start, int size, byte strand, int srcSize,
+ *           int textLength, byte packed, byte[] text
+ *       }
+ *   }
+ * </pre>
+ */
+public class MAFBlockCodec {
+
+    private static final String ALPHABET = "-ACGTNacgtn.";
+    private static final byte[] CODES = new byte[128];
+
+    static {
+        Arrays.fill(CODES, (byte) -1);
+        for (int i = 0; i < ALPHABET.length(); i++) {
+            CODES[ALPHABET.charAt(i)] = (byte) i;
+        }
+    }
+
+    public static byte[] encode(List<MultipleAlignmentBlock> blocks) {
+
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        for (MultipleAlignmentBlock block : blocks) {
+            for (MultipleAlignmentBlock.Sequence seq : block.getSequences()) {
+                strings.putIfAbsent(seq.getSpecies(), strings.size());
+                strings.putIfAbsent(seq.getChr(), strings.size());
+            }
+        }
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream dos = new DataOutputStream(bytes);
+            dos.writeInt(strings.size());
+            for (String s : strings.keySet()) {
+                byte[] b = s.getBytes(StandardCharsets.UTF_8);
+                dos.writeShort(b.length);
+                dos.write(b);
+            }
+            dos.writeInt(blocks.size());
+            for (MultipleAlignmentBlock block : blocks) {
+                List<MultipleAlignmentBlock.Sequence> sequences = block.getSequences();
+                dos.writeInt(sequences.size());
+                for (MultipleAlignmentBlock.Sequence seq : sequences) {
+                    dos.writeInt(strings.get(seq.getSpecies()));
+                    dos.writeInt(strings.get(seq.getChr()));
+                    dos.writeInt(seq.getStart());
+                    dos.writeInt(seq.getSize());
+                    dos.writeByte(seq.getStrand());
+                    dos.writeInt(seq.getSrcSize());
+                    writeText(seq.getText(), dos);
+                }
+            }
+            dos.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            // Not expected, writing to memory
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static List<MultipleAlignmentBlock> decode(byte[] data) {
+
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+
+        int nStrings = buffer.getInt();
+        String[] strings = new String[nStrings];
+        for (int i = 0; i < nStrings; i++) {
+            int len = buffer.getShort() & 0xFFFF;
+            strings[i] = new String(data, buffer.position(), len, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + len);
+        }
+
+        int nBlocks = buffer.getInt();
+        List<MultipleAlignmentBlock> blocks = new ArrayList<>(nBlocks);
+        for (int b = 0; b < nBlocks; b++) {
+            MultipleAlignmentBlock block = new MultipleAlignmentBlock();
+            int nSequences = buffer.getInt();
+            for (int i = 0; i < nSequences; i++) {
+                String species = strings[buffer.getInt()];
+                String chr = strings[buffer.getInt()];
+                int start = buffer.getInt();
+                int size = buffer.getInt();
+                char strand = (char) buffer.get();
+                int srcSize = buffer.getInt();
+                String text = readText(buffer);
+                block.addSequence(new MultipleAlignmentBlock.Sequence(species, chr, start, size, strand, srcSize, text));
+            }
+            blocks.add(block);
+        }
+        return blocks;
+    }
+
+    private static void writeText(String text, DataOutputStream dos) throws IOException {
+
+        int len = text.length();
+        boolean packable = true;
+        for (int i = 0; i < len && packable; i++) {
+            char c = text.charAt(i);
+            packable = c < 128 && CODES[c] >= 0;
+        }
+
+        dos.writeInt(len);
+        if (packable) {
+            dos.writeByte(1);
+            for (int i = 0; i < len; i += 2) {
+                int hi = CODES[text.charAt(i)];
+                int lo = i + 1 < len ? CODES[text.charAt(i + 1)] : 0;
+                dos.writeByte((hi << 4) | lo);
+            }
+        } else {
+            dos.writeByte(0);
+            dos.write(text.getBytes(StandardCharsets.ISO_8859_1));
+        }
+    }
+
+    private static String readText(ByteBuffer buffer) {
+
+        int len = buffer.getInt();
+        boolean packed = buffer.get() == 1;
+        byte[] text = new byte[len];
+        if (packed) {
+            for (int i = 0; i < len; i += 2) {
+                int b = buffer.get();
+                text[i] = (byte) ALPHABET.charAt((b >> 4) & 0x0F);
+                if (i + 1 < len) {
+                    text[i + 1] = (byte) ALPHABET.charAt(b & 0x0F);
+                }
+            }
+        } else {
+            buffer.get(text);
+        }
+        return new String(text, StandardCharsets.ISO_8859_1);
+    }
+}
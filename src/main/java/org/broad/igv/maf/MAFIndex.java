@@ -25,15 +25,21 @@
 
 package org.broad.igv.maf;
 
+import htsjdk.samtools.seekablestream.SeekableStream;
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import htsjdk.samtools.util.BlockCompressedStreamConstants;
+import org.apache.log4j.Logger;
 import org.broad.igv.Globals;
+import org.broad.igv.util.FileUtils;
 import org.broad.igv.util.ParsingUtils;
-import org.broad.igv.util.ResourceLocator;
 import org.broad.igv.util.index.Interval;
 import org.broad.igv.util.index.IntervalTree;
+import org.broad.igv.util.stream.IGVSeekableStreamFactory;
 import htsjdk.tribble.readers.AsciiLineReader;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * @author jrobinso
@@ -42,6 +48,14 @@ import java.util.*;
  */
 public class MAFIndex {
 
+    private static Logger log = Logger.getLogger(MAFIndex.class);
+
+    /**
+     * Minimum size, in bytes, of a range scanned by one thread when creating an index.
+     * Note: This is not private so that it can be manipulated by unit tests.
+     */
+    static long minRangeSize = 16 * 1024 * 1024;
+
     private List<String> species;
 
     /**
@@ -189,115 +203,316 @@ public class MAFIndex {
      * a score=34237.000000
      * s hg19.chr1     10917 479 + 249250621 gagaggc
      * s panTro2.chr15 13606 455 - 100063
+     * <p/>
+     * Local files are split into byte ranges which are scanned in parallel.  For bgzipped files ranges start on
+     * BGZF block boundaries and the recorded offsets are virtual file pointers.  Each range owns the alignment blocks
+     * whose "a" line starts within it, so every block is indexed exactly once.
      *
      * @param alignmentFile
      * @throws IOException
      */
     public static MAFIndex createIndex(String alignmentFile) throws IOException {
+        return createIndex(alignmentFile, Runtime.getRuntime().availableProcessors());
+    }
 
-        MAFIndex index = new MAFIndex();
-        AsciiLineReader reader = ParsingUtils.openAsciiReader(new ResourceLocator(alignmentFile));
+    /**
+     * Create an index scanning at most {@code maxRanges} ranges of the file in parallel.
+     */
+    static MAFIndex createIndex(String alignmentFile, int maxRanges) throws IOException {
 
+        boolean bgzipped = isBgzipped(alignmentFile);
+        long[] boundaries = computeRangeBoundaries(alignmentFile, bgzipped, maxRanges);
+        int nRanges = boundaries.length - 1;
 
-        try {
+        List<RangeScan> scans = new ArrayList<RangeScan>(nRanges);
+        for (int i = 0; i < nRanges; i++) {
+            scans.add(new RangeScan(alignmentFile, bgzipped, boundaries[i], boundaries[i + 1]));
+        }
 
-            String lastChr = null;
-            int intervalStart = 0;
-            int intervalEnd = 0;
-            int blockCount = 0;
-            String line;
-            long lastOffset = 0;
-            boolean newBlock = false;
-
-            Set<String> allSpecies = new HashSet<String>();
-            List<String> blockSpecies = new ArrayList<String>();
-            Map<String, RunningAverage> speciesRanks = new HashMap<String, RunningAverage>();
-
-            while ((line = reader.readLine()) != null) {
-                //Ignore all comment lines
-                if (line.startsWith("#") || line.trim().length() == 0) {
-                    continue;
+        if (nRanges == 1) {
+            scans.get(0).call();
+        } else {
+            long t0 = System.currentTimeMillis();
+            ExecutorService executor = Executors.newFixedThreadPool(nRanges);
+            try {
+                for (Future<RangeScan> future : executor.invokeAll(scans)) {
+                    future.get();
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted indexing " + alignmentFile);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+            } finally {
+                executor.shutdown();
+            }
+            log.info("Indexed " + alignmentFile + " in " + (System.currentTimeMillis() - t0) + " ms using " + nRanges + " threads");
+        }
 
-                if (line.startsWith("a")) {
-                    newBlock = true;
-                    blockCount++;
-
-                    // Merge species list, if any, from previous block and start new one
-                    mergeSpecies(blockSpecies, allSpecies, speciesRanks);
-                    blockSpecies.clear();
-
-                } else if (line.startsWith("s")) {
-
-                    String[] tokens = Globals.whitespacePattern.split(line);
-
-                    String src = tokens[1];
-                    String species = src;
-                    String chr = src;
-                    if (src.contains(".")) {
-                        String[] srcTokens = ParsingUtils.PERIOD_PATTERN.split(src, 2);
-                        species = srcTokens[0];
-                        chr = srcTokens[1];
-                    }
-                    if (lastChr == null) lastChr = chr;
+        MAFIndex index = new MAFIndex();
+        Set<String> allSpecies = new HashSet<String>();
+        Map<String, RunningAverage> speciesRanks = new HashMap<String, RunningAverage>();
+        for (RangeScan scan : scans) {
+            for (String chr : scan.index.getChromosomes()) {
+                for (Interval iv : scan.index.getIntervalTree(chr).getIntervals()) {
+                    index.insertInterval(chr, iv.getLow(), iv.getHigh(), iv.getValue());
+                }
+            }
+            allSpecies.addAll(scan.allSpecies);
+            for (Map.Entry<String, RunningAverage> entry : scan.speciesRanks.entrySet()) {
+                RunningAverage rank = speciesRanks.get(entry.getKey());
+                if (rank == null) {
+                    rank = new RunningAverage();
+                    speciesRanks.put(entry.getKey(), rank);
+                }
+                rank.merge(entry.getValue());
+            }
+        }
+        index.setSpecies(sortSpecies(allSpecies, speciesRanks));
+        return index;
+    }
 
-                    blockSpecies.add(species);
+    /**
+     * Return true if the file is block gzipped (bgzip).  Offsets into such files are virtual file pointers.
+     */
+    public static boolean isBgzipped(String path) throws IOException {
+        if (!path.toLowerCase().endsWith(".gz")) {
+            return false;
+        }
+        InputStream is = null;
+        try {
+            is = new BufferedInputStream(IGVSeekableStreamFactory.getInstance().getStreamFor(path));
+            return BlockCompressedInputStream.isValidFile(is);
+        } finally {
+            if (is != null) is.close();
+        }
+    }
 
-                    if (newBlock) {
-                        // This will be the reference sequence line (its always first after the "a")
-                        int start = Integer.parseInt(tokens[2]);
-                        int end = Integer.parseInt(tokens[3]) + start;
+    /**
+     * Split a local file into at most maxRanges roughly equal ranges, no smaller than minRangeSize.
+     * For bgzipped files the boundaries are moved forward to the next BGZF block.  Remote files are scanned as
+     * a single range.
+     */
+    private static long[] computeRangeBoundaries(String path, boolean bgzipped, int maxRanges) throws IOException {
 
-                        if ((!chr.equals(lastChr) && blockCount > 0) ||
-                                blockCount > blockSize) {
+        File file = new File(path);
+        if (FileUtils.isRemote(path) || !file.exists()) {
+            return new long[]{0, Long.MAX_VALUE};
+        }
 
-                            // Record previous interval and start a new one.
-                            index.insertInterval(lastChr, intervalStart, intervalEnd, lastOffset);
+        long length = file.length();
+        int nRanges = (int) Math.max(1, Math.min(maxRanges, length / minRangeSize));
+        List<Long> boundaries = new ArrayList<Long>();
+        boundaries.add(0L);
+        RandomAccessFile raf = bgzipped ? new RandomAccessFile(file, "r") : null;
+        try {
+            for (int i = 1; i < nRanges; i++) {
+                long b = length * i / nRanges;
+                if (bgzipped) {
+                    b = nextBgzfBlock(raf, b);
+                }
+                if (b > boundaries.get(boundaries.size() - 1) && b < length) {
+                    boundaries.add(b);
+                }
+            }
+        } finally {
+            if (raf != null) raf.close();
+        }
+        boundaries.add(length);
 
-                            blockCount = 1;
-                            lastOffset = reader.getPosition();
-                            intervalStart = start;
-                        }
+        long[] result = new long[boundaries.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = boundaries.get(i);
+        }
+        return result;
+    }
 
-                        lastChr = chr;
-                        intervalEnd = end;
-                        newBlock = false;
+    /**
+     * Return the address of the first BGZF block starting at or after {@code position}, or the file length if there
+     * is none.  A candidate is accepted if it starts with the BGZF preamble and is followed by another block or the
+     * end of the file.
+     */
+    static long nextBgzfBlock(RandomAccessFile raf, long position) throws IOException {
+
+        byte[] preamble = BlockCompressedStreamConstants.GZIP_BLOCK_PREAMBLE;
+        long length = raf.length();
+        byte[] buffer = new byte[BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE + preamble.length + 2];
+        raf.seek(position);
+        int n = read(raf, buffer);
+        for (int i = 0; i + preamble.length + 2 <= n; i++) {
+            boolean match = true;
+            for (int j = 0; j < preamble.length && match; j++) {
+                match = buffer[i + j] == preamble[j];
+            }
+            if (match) {
+                long candidate = position + i;
+                int blockSize = ((buffer[i + preamble.length] & 0xFF) | ((buffer[i + preamble.length + 1] & 0xFF) << 8)) + 1;
+                long next = candidate + blockSize;
+                if (next == length) {
+                    return candidate;
+                } else if (next < length) {
+                    raf.seek(next);
+                    if (raf.read() == 0x1f && raf.read() == 0x8b) {
+                        return candidate;
                     }
-
-                } else if (line.startsWith("i")) {
-                    //We do not handle information lines yet.
-                    continue;
-                } else if (line.startsWith("q")) {
-                    //We do not handle quality lines yet.
-                    continue;
                 }
             }
+        }
+        return length;
+    }
+
+    private static int read(RandomAccessFile raf, byte[] buffer) throws IOException {
+        int n = 0;
+        while (n < buffer.length) {
+            int count = raf.read(buffer, n, buffer.length - n);
+            if (count < 0) break;
+            n += count;
+        }
+        return n;
+    }
+
+    /**
+     * Scans the alignment blocks whose "a" line starts in (rangeStart, rangeEnd], or [0, rangeEnd] for the first
+     * range.  For bgzipped files the range is in compressed block addresses.
+     */
+    private static class RangeScan implements Callable<RangeScan> {
+
+        final String path;
+        final boolean bgzipped;
+        final long rangeStart;
+        final long rangeEnd;
+
+        final MAFIndex index = new MAFIndex();
+        final Set<String> allSpecies = new HashSet<String>();
+        final Map<String, RunningAverage> speciesRanks = new HashMap<String, RunningAverage>();
+
+        RangeScan(String path, boolean bgzipped, long rangeStart, long rangeEnd) {
+            this.path = path;
+            this.bgzipped = bgzipped;
+            this.rangeStart = rangeStart;
+            this.rangeEnd = rangeEnd;
+        }
 
+        public RangeScan call() throws IOException {
 
-            if (blockCount > 0) {
-                index.insertInterval(lastChr, intervalStart, intervalEnd, lastOffset);
+            SeekableStream ss = IGVSeekableStreamFactory.getInstance().getStreamFor(path);
+            BlockCompressedInputStream bgzReader = null;
+            AsciiLineReader reader = null;
+            long endPosition;
+            if (bgzipped) {
+                bgzReader = new BlockCompressedInputStream(ss);
+                bgzReader.seek(rangeStart << 16);
+                endPosition = rangeEnd == Long.MAX_VALUE ? Long.MAX_VALUE : rangeEnd << 16;
+            } else {
+                ss.seek(rangeStart);
+                reader = new AsciiLineReader(ss);
+                endPosition = rangeEnd;
             }
 
-            // Merge species list, if any, from previous block and start new one
-            mergeSpecies(blockSpecies, allSpecies, speciesRanks);
-            index.setSpecies(sortSpecies(allSpecies, speciesRanks));
+            try {
+                // Skip the first, possibly partial, line.  A line starting exactly at the boundary belongs to the
+                // previous range.
+                if (rangeStart > 0) {
+                    if (bgzipped) bgzReader.readLine();
+                    else reader.readLine();
+                }
 
-            return index;
+                String chunkChr = null;
+                int chunkStart = 0;
+                int chunkEnd = 0;
+                int chunkCount = 0;
+                long chunkOffset = 0;
+                boolean inBlock = false;
+                boolean newBlock = false;
+                long blockOffset = 0;
+                List<String> blockSpecies = new ArrayList<String>();
+
+                while (true) {
+                    long position = bgzipped ? bgzReader.getFilePointer() : rangeStart + reader.getPosition();
+                    String line = bgzipped ? bgzReader.readLine() : reader.readLine();
+                    if (line == null) {
+                        break;
+                    }
 
+                    if (line.startsWith("a")) {
+                        mergeSpecies(blockSpecies, allSpecies, speciesRanks);
+                        blockSpecies.clear();
+                        if (position > endPosition) {
+                            inBlock = false;
+                            break;
+                        }
+                        inBlock = true;
+                        newBlock = true;
+                        blockOffset = position;
+
+                    } else if (inBlock && line.startsWith("s")) {
+
+                        String[] tokens = Globals.whitespacePattern.split(line, 5);
+                        String src = tokens[1];
+                        String species = src;
+                        String chr = src;
+                        int dotIdx = src.indexOf('.');
+                        if (dotIdx >= 0) {
+                            species = src.substring(0, dotIdx);
+                            chr = src.substring(dotIdx + 1);
+                        }
+                        blockSpecies.add(species);
+
+                        if (newBlock) {
+                            // This will be the reference sequence line (its always first after the "a")
+                            int start = Integer.parseInt(tokens[2]);
+                            int end = Integer.parseInt(tokens[3]) + start;
+
+                            if (chunkCount > 0 && (!chr.equals(chunkChr) || chunkCount >= blockSize)) {
+                                // Record previous interval and start a new one.
+                                index.insertInterval(chunkChr, chunkStart, chunkEnd, chunkOffset);
+                                chunkCount = 0;
+                            }
+                            if (chunkCount == 0) {
+                                chunkChr = chr;
+                                chunkStart = start;
+                                chunkOffset = blockOffset;
+                            }
+                            chunkEnd = end;
+                            chunkCount++;
+                            newBlock = false;
+                        }
+                    }
+                    // "i", "e", and "q" lines are not used
+                }
 
-        } finally {
-            reader.close();
+                if (inBlock) {
+                    mergeSpecies(blockSpecies, allSpecies, speciesRanks);
+                }
+                if (chunkCount > 0) {
+                    index.insertInterval(chunkChr, chunkStart, chunkEnd, chunkOffset);
+                }
+                return this;
 
+            } finally {
+                if (bgzipped) bgzReader.close();
+                else reader.close();
+            }
         }
-
     }
 
     private static class RunningAverage {
-        int nPts = 1;
-        double average = 0;
+        int nPts = 0;
+        double sum = 0;
 
         void addValue(double value) {
-            average = (nPts * average + value) / nPts++;
+            sum += value;
+            nPts++;
+        }
+
+        void merge(RunningAverage other) {
+            sum += other.sum;
+            nPts += other.nPts;
+        }
+
+        double getAverage() {
+            return nPts == 0 ? 0 : sum / nPts;
         }
     }
 
@@ -320,7 +535,7 @@ public class MAFIndex {
         Collections.sort(speciesList, new Comparator<String>() {
             @Override
             public int compare(String o1, String o2) {
-                double v = speciesRank.get(o1).average - speciesRank.get(o2).average;
+                double v = speciesRank.get(o1).getAverage() - speciesRank.get(o2).getAverage();
                 return v > 0 ? 1 : (v < 0 ? -1 : 0);
             }
         });
@@ -178,7 +178,7 @@ public class MAFListReader implements MAFReader {
         return reader == null ? null : reader.loadAlignments(chr, start, end);
     }
 
-    private MAFParser getReader(final String chr) {
+    private synchronized MAFParser getReader(final String chr) {
         MAFParser reader = readerMap.get(chr);
         if (reader == null) {
             final String path = filenameMap.get(chr);
@@ -26,6 +26,7 @@
 package org.broad.igv.maf;
 
 import htsjdk.samtools.seekablestream.SeekableStream;
+import htsjdk.samtools.util.BlockCompressedInputStream;
 import org.broad.igv.Globals;
 import org.broad.igv.util.ParsingUtils;
 import org.broad.igv.util.index.Interval;
@@ -54,10 +55,12 @@ public class MAFParser implements MAFReader {
     MAFIndex index;
     List<String> species;
     String trackName;
+    boolean bgzipped;
 
     public MAFParser(String path) {
         this.path = path;
         try {
+            bgzipped = MAFIndex.isBgzipped(path);
             parseHeader();
         } catch (IOException e) {
             e.printStackTrace();  //To change body of catch statement use File | Settings | File Templates.
@@ -100,32 +103,48 @@ public class MAFParser implements MAFReader {
         }
 
 
-        SeekableStream is = null;
-
-
-        is = IGVSeekableStreamFactory.getInstance().getStreamFor(path);
-        is.seek(startPosition);
-
-        BufferedReader reader = new BufferedReader(new InputStreamReader(is), 256000);
+        BufferedReader reader = null;
+        try {
+            reader = openReader(startPosition);
 
-        List<MultipleAlignmentBlock> alignments = new ArrayList<>();
+            List<MultipleAlignmentBlock> alignments = new ArrayList<>();
 
-        String line;
-        while ((line = reader.readLine()) != null) {
-            if (line.startsWith("a")) {
-                // TODO -- parse score (optional)
-                MultipleAlignmentBlock block = parseBlock(reader);
-                if(block.getEnd() < start) {
-                    continue;
-                }
-                if (block.getStart() > end || !block.getChr().equals(chr)) {
-                    break;
-                } else {
-                    alignments.add(block);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("a")) {
+                    // TODO -- parse score (optional)
+                    MultipleAlignmentBlock block = parseBlock(reader);
+                    if (block.getEnd() < start) {
+                        continue;
+                    }
+                    if (block.getStart() > end || !block.getChr().equals(chr)) {
+                        break;
+                    } else {
+                        alignments.add(block);
+                    }
                 }
             }
+            return alignments;
+        } finally {
+            if (reader != null) reader.close();
         }
-        return alignments;
+    }
+
+    /**
+     * Open a reader positioned at an index offset, which is a virtual file pointer if the file is bgzipped.
+     */
+    private BufferedReader openReader(long position) throws IOException {
+        SeekableStream ss = IGVSeekableStreamFactory.getInstance().getStreamFor(path);
+        InputStream is;
+        if (bgzipped) {
+            BlockCompressedInputStream bgzStream = new BlockCompressedInputStream(ss);
+            bgzStream.seek(position);
+            is = bgzStream;
+        } else {
+            ss.seek(position);
+            is = ss;
+        }
+        return new BufferedReader(new InputStreamReader(is), 256000);
     }
 
 
@@ -155,8 +174,7 @@ public class MAFParser implements MAFReader {
         BufferedReader reader = null;
 
         try {
-            InputStream is = IGVSeekableStreamFactory.getInstance().getStreamFor(path);
-            reader = new BufferedReader(new InputStreamReader(is));
+            reader = openReader(0);
 
             String line;
             while ((line = reader.readLine()) != null) {
@@ -218,7 +236,8 @@ public class MAFParser implements MAFReader {
 
 
     /**
-     * Parse an alignment block.
+     * Parse an alignment block.  Lines are tokenized by hand, sequence lines in multi-species alignments are long
+     * and splitting them with a regular expression dominates load time.
      *
      * @param reader
      */
@@ -226,22 +245,21 @@ public class MAFParser implements MAFReader {
 
         String line;
         MultipleAlignmentBlock ma = new MultipleAlignmentBlock();
+        String[] tokens = new String[7];
 
         while ((line = reader.readLine()) != null) {
-            if (line.trim().length() == 0) {
+            if (isBlank(line)) {
                 return ma;
             }
-            if (line.startsWith("s")) {
-
-                String[] tokens = Globals.whitespacePattern.split(line);
+            if (line.startsWith("s") && tokenize(line, tokens) == 7) {
 
                 String src = tokens[1];
                 String species = src;
                 String chr = src;
-                if (src.contains(".")) {
-                    String[] srcTokens = ParsingUtils.PERIOD_PATTERN.split(src, 2);
-                    species = srcTokens[0];
-                    chr = srcTokens[1];
+                int dotIdx = src.indexOf('.');
+                if (dotIdx >= 0) {
+                    species = src.substring(0, dotIdx);
+                    chr = src.substring(dotIdx + 1);
                 }
                 int start = Integer.parseInt(tokens[2]);
                 int size = Integer.parseInt(tokens[3]);
@@ -250,13 +268,35 @@ public class MAFParser implements MAFReader {
                 String text = tokens[6];
 
                 ma.addSequence(new MultipleAlignmentBlock.Sequence(species, chr, start, size, strand, srcSize, text));
-
-
             }
+        }
+        return ma;
+    }
 
+    private static boolean isBlank(String line) {
+        for (int i = 0; i < line.length(); i++) {
+            if (!Character.isWhitespace(line.charAt(i))) return false;
+        }
+        return true;
+    }
 
+    /**
+     * Split a line on runs of whitespace into at most tokens.length tokens.
+     *
+     * @return the number of tokens found
+     */
+    static int tokenize(String line, String[] tokens) {
+        int n = 0;
+        int len = line.length();
+        int i = 0;
+        while (n < tokens.length) {
+            while (i < len && Character.isWhitespace(line.charAt(i))) i++;
+            if (i == len) break;
+            int tokenStart = i;
+            while (i < len && !Character.isWhitespace(line.charAt(i))) i++;
+            tokens[n++] = line.substring(tokenStart, i);
         }
-        return ma;
+        return n;
     }
 
 }
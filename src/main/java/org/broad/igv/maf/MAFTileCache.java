@@ -0,0 +1,159 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.maf;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.util.LoadScheduler;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Cache of fixed size tiles of alignment blocks loaded through a {@link MAFReader}.  Tiles are held in the compact
+ * encoding of {@link MAFBlockCodec}, and the least recently used tiles are evicted when the total encoded size
+ * exceeds the byte budget.
+ * <p>
+ * A block overlapping several tiles is stored in each of them, {@link #getAlignments(String, int, int)} includes it
+ * once.
+ */
+public class MAFTileCache {
+
+    private static Logger log = Logger.getLogger(MAFTileCache.class);
+
+    public static final int TILE_SIZE = 10000;
+    public static final long DEFAULT_BUDGET = 64L * 1024 * 1024;
+
+    private final MAFReader reader;
+    private final long budget;
+
+    // Guarded by this
+    private final LinkedHashMap<String, byte[]> tiles = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<String> pending = new HashSet<>();
+    private long totalBytes = 0;
+
+    public MAFTileCache(MAFReader reader) {
+        this(reader, DEFAULT_BUDGET);
+    }
+
+    public MAFTileCache(MAFReader reader, long budget) {
+        this.reader = reader;
+        this.budget = budget;
+    }
+
+    /**
+     * Return the alignment blocks overlapping [start, end], loading tiles not in the cache.
+     */
+    public List<MultipleAlignmentBlock> getAlignments(String chr, int start, int end) throws IOException {
+
+        int firstTile = start / TILE_SIZE;
+        int lastTile = end / TILE_SIZE;
+        List<MultipleAlignmentBlock> alignments = new ArrayList<>();
+        for (int t = firstTile; t <= lastTile; t++) {
+            int tileStart = t * TILE_SIZE;
+            for (MultipleAlignmentBlock block : MAFBlockCodec.decode(getTile(chr, t))) {
+                if (t > firstTile && block.getStart() < tileStart) {
+                    continue;    // Included from the previous tile
+                }
+                if (block.getEnd() >= start && block.getStart() <= end) {
+                    alignments.add(block);
+                }
+            }
+        }
+        return alignments;
+    }
+
+    /**
+     * Load the tiles on either side of [start, end] in the background, if they are not already cached.
+     */
+    public void prefetch(final String chr, int start, int end) {
+        int[] neighbors = {start / TILE_SIZE - 1, end / TILE_SIZE + 1};
+        for (final int t : neighbors) {
+            if (t < 0) continue;
+            final String key = getKey(chr, t);
+            synchronized (this) {
+                if (tiles.containsKey(key) || !pending.add(key)) continue;
+            }
+            LoadScheduler.getInstance().submitTask(() -> {
+                try {
+                    getTile(chr, t);
+                } catch (IOException e) {
+                    log.error("Error prefetching alignments " + key, e);
+                } finally {
+                    synchronized (MAFTileCache.this) {
+                        pending.remove(key);
+                    }
+                }
+            });
+        }
+    }
+
+    public synchronized boolean contains(String chr, int tileNumber) {
+        return tiles.containsKey(getKey(chr, tileNumber));
+    }
+
+    /**
+     * Total size in bytes of the encoded tiles held
+     */
+    public synchronized long getSize() {
+        return totalBytes;
+    }
+
+    byte[] getTile(String chr, int tileNumber) throws IOException {
+
+        String key = getKey(chr, tileNumber);
+        synchronized (this) {
+            byte[] tile = tiles.get(key);
+            if (tile != null) return tile;
+        }
+
+        int tileStart = tileNumber * TILE_SIZE;
+        List<MultipleAlignmentBlock> blocks = reader.loadAlignments(chr, tileStart, tileStart + TILE_SIZE - 1);
+        byte[] tile = MAFBlockCodec.encode(blocks == null ? Collections.<MultipleAlignmentBlock>emptyList() : blocks);
+        put(key, tile);
+        return tile;
+    }
+
+    private synchronized void put(String key, byte[] tile) {
+        byte[] previous = tiles.put(key, tile);
+        if (previous != null) {
+            totalBytes -= previous.length;
+        }
+        totalBytes += tile.length;
+
+        // Evict least recently used tiles, but always keep the new one
+        Iterator<Map.Entry<String, byte[]>> iter = tiles.entrySet().iterator();
+        while (totalBytes > budget && tiles.size() > 1 && iter.hasNext()) {
+            Map.Entry<String, byte[]> entry = iter.next();
+            if (entry.getKey().equals(key)) continue;
+            totalBytes -= entry.getValue().length;
+            iter.remove();
+        }
+    }
+
+    private static String getKey(String chr, int tileNumber) {
+        return chr + ":" + tileNumber;
+    }
+}
@@ -66,12 +66,8 @@ public class MultipleAlignmentTrack extends AbstractTrack {
     Rectangle visibleNameRect;
 
 
-    private int tileSize = 500;
-
-    //MafChunk currentChunk
-
-
     MAFReader reader;
+    MAFTileCache tileCache;
 
     MAFCache loadedAlignments;
 
@@ -102,6 +98,7 @@ public class MultipleAlignmentTrack extends AbstractTrack {
             }
             reader = parser;
         }
+        tileCache = new MAFTileCache(reader);
 
         refId = reader.getRefId();
         Collection<String> mafChrNames = getChrNames();
@@ -211,13 +208,16 @@ public class MultipleAlignmentTrack extends AbstractTrack {
 
         List<MultipleAlignmentBlock> alignments = null;
         try {
-            alignments = reader.loadAlignments(mafChr, start, end);
+            alignments = tileCache.getAlignments(mafChr, start, end);
         } catch (IOException e) {
             log.error(e);
             throw new RuntimeException(e);
         }
 
         loadedAlignments = new MAFCache(chr, start, end, alignments);
+
+        // Neighboring tiles are loaded in the background so panning does not wait on the file
+        tileCache.prefetch(mafChr, start, end);
     }
 
     public void render(RenderContext context, Rectangle rect) {
@@ -369,11 +369,6 @@ public class MultipleAlignmentTrack extends AbstractTrack {
         return reader.getChrNames();
     }
 
-
-    static String getKey(String chr, int tileNo) {
-        return chr + tileNo;
-    }
-
     static class MAFCache {
 
         String chr;
@@ -71,6 +71,53 @@ public class BBMethylDataSource implements MethylDataSource {
         return new WrappedIterator(bedIterator, type);
     }
 
+    /**
+     * Decode records directly into {@code columns}, without creating a {@link MethylScore} per site
+     */
+    @Override
+    public void load(String chr, int start, int end, MethylColumns columns) throws IOException {
+        String tmp = chrNameMap.get(chr);
+        String querySeq = tmp == null ? chr : tmp;
+        BigBedIterator bedIterator = reader.getBigBedIterator(querySeq, start, chr, end, false);
+        while (bedIterator.hasNext()) {
+            BedFeature feat = bedIterator.next();
+            String[] restOfFields = feat.getRestOfFields();
+            if (type == Type.ZILLER) {
+                float[] percentAndCount = parseZiller(restOfFields[0]);
+                columns.add(feat.getStartBase(), feat.getEndBase(), Strand.NONE, percentAndCount[0], (int) percentAndCount[1]);
+            } else {
+                columns.add(feat.getStartBase(), feat.getEndBase(), parseStrand(restOfFields[2]),
+                        Float.parseFloat(restOfFields[3]), Integer.parseInt(restOfFields[4]));
+            }
+        }
+    }
+
+    /**
+     * Parse the percent methylated and the read count from the name field of a Ziller format record
+     */
+    static float[] parseZiller(String name) {
+        float percent;
+        float count;
+        if (name.contains("%")) {
+            //'92%[51]'
+            String[] tokens = percentPattern.split(name.replace("'", "").replace("[", "").replace("]", ""));
+            percent = Float.parseFloat(tokens[0]);
+            count = Float.parseFloat(tokens[1]);
+        } else {
+            //  methylatedReads/totalreads
+            String[] tokens = Globals.forwardSlashPattern.split(name.replace("'", ""));
+            float methylatedReads = Float.parseFloat(tokens[0]);
+            count = Float.parseFloat(tokens[1]);
+            percent = (methylatedReads / count) * 100;
+        }
+        return new float[]{percent, count};
+    }
+
+    static Strand parseStrand(String field) {
+        char strandChar = field.charAt(0);
+        return strandChar == '+' ? Strand.POSITIVE : (strandChar == '-' ? Strand.NEGATIVE : Strand.NONE);
+    }
+
     private void init(Genome genome) {
         chrNameMap = new HashMap<String, String>();
         if (genome != null) {
@@ -116,30 +163,15 @@ public class BBMethylDataSource implements MethylDataSource {
         }
 
         private MethylScore createZillerScore(BedFeature feat, String[] restOfFields) {
-
-            float percent;
-            float count;
-            String name = restOfFields[0];
-            if (name.contains("%")) {
-                //'92%[51]'
-                String[] tokens = percentPattern.split(name.replace("'", "").replace("[", "").replace("]", ""));
-                percent = Float.parseFloat(tokens[0]);
-                count = Float.parseFloat(tokens[1]);
-            } else {
-                //  methylatedReads/totalreads
-                String[] tokens = Globals.forwardSlashPattern.split(name.replace("'", ""));
-                float methylatedReads = Float.parseFloat(tokens[0]);
-                count = Float.parseFloat(tokens[1]);
-                percent = (methylatedReads / count) * 100;
-            }
-            return new MethylScore(feat.getChromosome(), feat.getStartBase(), feat.getEndBase(), Strand.NONE, percent, (int) count);
+            float[] percentAndCount = parseZiller(restOfFields[0]);
+            return new MethylScore(feat.getChromosome(), feat.getStartBase(), feat.getEndBase(), Strand.NONE,
+                    percentAndCount[0], (int) percentAndCount[1]);
         }
 
         private MethylScore createUSCScore(BedFeature feat, String[] restOfFields) {
             //String name = restOfFields[0];
             //int score = Integer.parseInt(restOfFields[1]);
-            char strandChar = restOfFields[2].charAt(0);
-            Strand strand = strandChar == '+' ? Strand.POSITIVE : (strandChar == '-' ? Strand.NEGATIVE : Strand.NONE);
+            Strand strand = parseStrand(restOfFields[2]);
             float percentMethyl = Float.parseFloat(restOfFields[3]);
             int count = Integer.parseInt(restOfFields[4]);
             return new MethylScore(feat.getChromosome(), feat.getStartBase(), feat.getEndBase(), strand, percentMethyl, count);
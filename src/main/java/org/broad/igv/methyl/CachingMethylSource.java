@@ -29,12 +29,18 @@ import org.apache.log4j.Logger;
 import org.broad.igv.ui.util.MessageUtils;
 import org.broad.igv.util.collections.LRUCache;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
+ * Caches methylation scores in bins of {@code binSize} bases.  Bins hold the scores as {@link MethylColumns}, and
+ * score objects are created only for the range queried.  Summaries for views wider than a bin are provided by
+ * {@link #getSummaryScores(String, int, int, double)} for local sources, see {@link #hasSummaries()}.
+ *
  * @author jrobinso
  * @date Jun 24, 2010
  */
@@ -46,6 +52,8 @@ public class CachingMethylSource implements MethylDataSource {
 
     MethylDataSource reader;
     LRUCache<String, Bin> cache;
+    LRUCache<String, MethylSummary> summaryCache;
+    private File sourceFile;
 
 
     public CachingMethylSource(MethylDataSource reader, int binSize) {
@@ -56,9 +64,18 @@ public class CachingMethylSource implements MethylDataSource {
     public CachingMethylSource(MethylDataSource reader, int tileCount, int binSize) {
         this.reader = reader;
         this.cache = new LRUCache(tileCount);
+        this.summaryCache = new LRUCache(2);
         this.binSize = binSize;
     }
 
+    /**
+     * Set the local file the data is read from.  If set, summaries are available and are saved in the IGV index
+     * directory.
+     */
+    public void setSourceFile(File sourceFile) {
+        this.sourceFile = sourceFile;
+    }
+
 
     /**
      * Set the bin size.   This invalidates the cache.
@@ -86,21 +103,41 @@ public class CachingMethylSource implements MethylDataSource {
         if (tiles.size() == 0) {
             return null;
         }
+        return new BinIterator(start, end, tiles);
+    }
 
-        // Count total # of records
-        int recordCount = 0;
-        for (Bin t : tiles) {
-            recordCount += t.getContainedRecords().size();
-        }
+    /**
+     * Return true if summary scores are available.  Computing a summary reads every record of the chromosome, this
+     * is done only for local sources, where the result is saved and reused.
+     */
+    public boolean hasSummaries() {
+        return sourceFile != null;
+    }
 
-        List<MethylScore> alignments = new ArrayList(recordCount);
-        for (Bin t : tiles) {
-            alignments.addAll(t.getContainedRecords());
+    /**
+     * Return summary scores for [start, end) on {@code chr}, one per {@code scale} bases.  The summary of a
+     * chromosome is computed on first request, or read from the saved summaries if available.
+     */
+    public List<MethylScore> getSummaryScores(String chr, int start, int end, double scale) throws IOException {
+        MethylSummary summary = summaryCache.get(chr);
+        if (summary == null) {
+            File cacheFile = sourceFile == null ? null : MethylSummary.getCacheFile(sourceFile);
+            if (cacheFile != null) {
+                summary = MethylSummary.load(sourceFile, cacheFile, chr);
+            }
+            if (summary == null) {
+                long t0 = System.currentTimeMillis();
+                summary = MethylSummary.compute(reader, chr);
+                log.info("Summarized methylation scores for " + chr + " in " + (System.currentTimeMillis() - t0) + " ms");
+                if (cacheFile != null) {
+                    MethylSummary.save(sourceFile, cacheFile, summary);
+                }
+            }
+            summaryCache.put(chr, summary);
         }
-        return new BinIterator(start, end, alignments);
+        return summary.getSummaryScores(start, end, scale);
     }
 
-
     /**
      * Return loaded tiles that span the query interval.
      *
@@ -124,7 +161,7 @@ public class CachingMethylSource implements MethylDataSource {
                 }
                 int start = t * binSize;
                 int end = start + binSize;
-                tile = new Bin(t, start, end);
+                tile = new Bin(seq, t, start, end);
                 cache.put(key, tile);
             }
 
@@ -163,60 +200,37 @@ public class CachingMethylSource implements MethylDataSource {
         // Convert start to 1-based coordinates
         int start = tiles.get(0).start + 1;
         int end = tiles.get(tiles.size() - 1).end;
-        Iterator<MethylScore> iter = null;
-
-        //log.debug("Loading : " + start + " - " + end);
         int featureCount = 0;
         long t0 = System.currentTimeMillis();
         try {
+            MethylColumns columns = new MethylColumns(seq);
+            reader.load(seq, start, end, columns);
+            featureCount = columns.size();
 
+            for (int i = 0; i < featureCount; i++) {
 
-            try {
-                iter = reader.query(seq, start, end);
-                while (iter != null && iter.hasNext()) {
-                    MethylScore record = iter.next();
-
-                    // Range of tile indeces that this alignment contributes to.
-                    int aStart = record.getStart();
-                    int aEnd = record.getEnd();
-                    int idx0 = 0;
-                    int idx1 = 0;
-                    if (binSize > 0) {
-                        idx0 = Math.max(0, (aStart - start) / binSize);
-                        idx1 = Math.min(tiles.size() - 1, (aEnd - start) / binSize);
-                    }
-
-                    // Loop over tiles this read overlaps
-                    for (int i = idx0; i <= idx1; i++) {
-                        Bin t = tiles.get(i);
-
-                        // A bin size == 0 means use a single bin for the entire chromosome.  This is a confusing convention.
-                        if (binSize == 0 || ((aStart >= t.start) && (aStart < t.end))) {
-                            t.containedRecords.add(record);
-                        }
-                    }
+                // A bin size == 0 means use a single bin for the entire chromosome.  This is a confusing convention.
+                int idx = 0;
+                if (binSize > 0) {
+                    idx = (columns.getStart(i) - tiles.get(0).start) / binSize;
+                    if (idx < 0 || idx >= tiles.size()) continue;
                 }
-            } catch (IOException e) {
-                MessageUtils.showMessage("Error: " + e.getMessage());
-                log.error(e);
-            }
-
-            for (Bin t : tiles) {
-                t.setLoaded(true);
+                tiles.get(idx).columns.add(columns, i);
             }
-            if (log.isDebugEnabled()) {
-                long dt = System.currentTimeMillis() - t0;
-                long rate = dt == 0 ? Long.MAX_VALUE : featureCount / dt;
-                log.debug("Loaded " + featureCount + " reads in " + dt + "ms.  (" + rate + " reads/ms)");
-            }
-            return true;
+        } catch (IOException e) {
+            MessageUtils.showMessage("Error: " + e.getMessage());
+            log.error(e);
+        }
 
-        } finally {
-            if (iter != null) {
-                //iter.close();
-            }
-            //IGV.getInstance().resetStatusMessage();
+        for (Bin t : tiles) {
+            t.setLoaded(true);
+        }
+        if (log.isDebugEnabled()) {
+            long dt = System.currentTimeMillis() - t0;
+            long rate = dt == 0 ? Long.MAX_VALUE : featureCount / dt;
+            log.debug("Loaded " + featureCount + " reads in " + dt + "ms.  (" + rate + " reads/ms)");
         }
+        return true;
     }
 
 
@@ -226,13 +240,13 @@ public class CachingMethylSource implements MethylDataSource {
         private int start;
         private int end;
         private int binNumber;
-        private List<MethylScore> containedRecords;
+        private MethylColumns columns;
 
-        Bin(int binNumber, int start, int end) {
+        Bin(String chr, int binNumber, int start, int end) {
             this.binNumber = binNumber;
             this.start = start;
             this.end = end;
-            containedRecords = new ArrayList(1000);
+            columns = new MethylColumns(chr);
         }
 
         public int getBinNumber() {
@@ -248,8 +262,8 @@ public class CachingMethylSource implements MethylDataSource {
             this.start = start;
         }
 
-        public List<MethylScore> getContainedRecords() {
-            return containedRecords;
+        public MethylColumns getColumns() {
+            return columns;
         }
 
 
@@ -264,23 +278,22 @@ public class CachingMethylSource implements MethylDataSource {
     }
 
     /**
-     * TODO -- this is a pointeless class.  It would make sense if it actually took tiles, instead of the collection
-     * TODO -- of alignments.
+     * Iterates over the scores of consecutive bins overlapping [start, end], creating score objects as they are
+     * requested.
      */
     public class BinIterator implements Iterator<MethylScore> {
 
-        Iterator<MethylScore> currentSamIterator;
+        List<Bin> bins;
         int end;
-        MethylScore nextRecord;
-        int start;
-        List<MethylScore> alignments;
+        int binIndex;
+        int index;
 
-        BinIterator(int start, int end, List<MethylScore> alignments) {
-            this.alignments = alignments;
-            this.start = start;
+        BinIterator(int start, int end, List<Bin> bins) {
+            this.bins = bins;
             this.end = end;
-            currentSamIterator = alignments.iterator();
-            advanceToFirstRecord();
+            this.binIndex = 0;
+            this.index = 0;
+            advance(start);
         }
 
         public void close() {
@@ -288,41 +301,37 @@ public class CachingMethylSource implements MethylDataSource {
         }
 
         public boolean hasNext() {
-            return nextRecord != null;
+            return binIndex < bins.size() && bins.get(binIndex).columns.getStart(index) <= end;
         }
 
         public MethylScore next() {
-            MethylScore ret = nextRecord;
-
-            advanceToNextRecord();
-
-            return ret;
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            MethylScore score = bins.get(binIndex).columns.getScore(index);
+            index++;
+            advance(Integer.MIN_VALUE);
+            return score;
         }
 
         public void remove() {
             // ignored
         }
 
-        private void advanceToFirstRecord() {
-            advanceToNextRecord();
-        }
-
-        private void advanceToNextRecord() {
-            advance();
-
-            while ((nextRecord != null) && (nextRecord.getEnd() < start)) {
-                advance();
-            }
-        }
-
-        private void advance() {
-            if (currentSamIterator.hasNext()) {
-                nextRecord = currentSamIterator.next();
-                if (nextRecord.getStart() > end) {
-                    nextRecord = null;
+        /**
+         * Move to the next entry, at or after the current one, that ends at or after {@code start}
+         */
+        private void advance(int start) {
+            while (binIndex < bins.size()) {
+                MethylColumns columns = bins.get(binIndex).columns;
+                while (index < columns.size() && columns.getEnd(index) < start) {
+                    index++;
                 }
-            } else {
-                nextRecord = null;
+                if (index < columns.size()) {
+                    return;
+                }
+                binIndex++;
+                index = 0;
             }
         }
 
@@ -331,4 +340,3 @@ public class CachingMethylSource implements MethylDataSource {
         }
     }
 }
-
@@ -0,0 +1,117 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.methyl;
+
+import org.broad.igv.feature.Strand;
+import org.broad.igv.util.collections.FloatArrayList;
+import org.broad.igv.util.collections.IntArrayList;
+
+import java.util.Arrays;
+
+/**
+ * Methylation scores of a chromosome region stored as primitive columns, one entry per site.  Entries are added in
+ * order of start position, as returned by a data source query.  {@link MethylScore} objects are created only when
+ * an entry is requested with {@link #getScore(int)}.
+ */
+public class MethylColumns {
+
+    private static final Strand[] STRANDS = Strand.values();
+
+    private final String chr;
+    private final IntArrayList starts;
+    private final IntArrayList ends;
+    private final FloatArrayList percents;
+    private final IntArrayList counts;
+    private byte[] strands;
+
+    public MethylColumns(String chr) {
+        this(chr, 1000);
+    }
+
+    public MethylColumns(String chr, int initialCapacity) {
+        this.chr = chr;
+        this.starts = new IntArrayList(initialCapacity);
+        this.ends = new IntArrayList(initialCapacity);
+        this.percents = new FloatArrayList(initialCapacity);
+        this.counts = new IntArrayList(initialCapacity);
+        this.strands = new byte[Math.max(1, initialCapacity)];
+    }
+
+    public void add(int start, int end, Strand strand, float percent, int count) {
+        int size = starts.size();
+        if (size == strands.length) {
+            strands = Arrays.copyOf(strands, size + (size >> 1) + 1);
+        }
+        strands[size] = (byte) (strand == null ? Strand.NONE : strand).ordinal();
+        starts.add(start);
+        ends.add(end);
+        percents.add(percent);
+        counts.add(count);
+    }
+
+    public void add(MethylScore score) {
+        add(score.getStart(), score.getEnd(), score.getStrand(), score.getScore(), score.getCount());
+    }
+
+    /**
+     * Append entry {@code i} of {@code other}
+     */
+    public void add(MethylColumns other, int i) {
+        add(other.getStart(i), other.getEnd(i), other.getStrand(i), other.getPercent(i), other.getCount(i));
+    }
+
+    public String getChr() {
+        return chr;
+    }
+
+    public int size() {
+        return starts.size();
+    }
+
+    public int getStart(int i) {
+        return starts.get(i);
+    }
+
+    public int getEnd(int i) {
+        return ends.get(i);
+    }
+
+    public float getPercent(int i) {
+        return percents.get(i);
+    }
+
+    public int getCount(int i) {
+        return counts.get(i);
+    }
+
+    public Strand getStrand(int i) {
+        return STRANDS[strands[i]];
+    }
+
+    public MethylScore getScore(int i) {
+        return new MethylScore(chr, getStart(i), getEnd(i), getStrand(i), getPercent(i), getCount(i));
+    }
+}
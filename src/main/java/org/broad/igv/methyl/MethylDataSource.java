@@ -38,4 +38,17 @@ public interface MethylDataSource  {
 
     Iterator<MethylScore> query(String chr, int start, int end) throws IOException;
 
+    /**
+     * Add the scores overlapping [start, end] to {@code columns}
+     */
+    default void load(String chr, int start, int end, MethylColumns columns) throws IOException {
+        Iterator<MethylScore> iter = query(chr, start, end);
+        while (iter != null && iter.hasNext()) {
+            MethylScore score = iter.next();
+            if (score != null) {
+                columns.add(score);
+            }
+        }
+    }
+
 }
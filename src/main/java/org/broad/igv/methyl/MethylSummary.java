@@ -0,0 +1,275 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.methyl;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.DirectoryManager;
+import org.broad.igv.feature.Strand;
+import org.broad.igv.util.SidecarFiles;
+import org.broad.igv.util.collections.FloatArrayList;
+import org.broad.igv.util.collections.IntArrayList;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Summary of the methylation scores of a chromosome in fixed windows of {@link #WINDOW_SIZE} bases, used to render
+ * views too wide to load individual sites.  Each non-empty window records the number of sites, the total read
+ * coverage, and the coverage weighted mean percent methylation.  Coarser zoom levels are computed by merging
+ * windows.
+ * <p>
+ * BigBed zoom levels summarize feature coverage rather than the methylation values, so summaries are computed from
+ * the records in a single streaming pass over the chromosome.  Summaries of local files are saved in the IGV index
+ * directory and reused while the source file is unchanged.
+ * <p>
+ * File layout (big endian)
+ * <pre>
+ *   header (see {@link SidecarFiles})
+ *   int entryCount, entryCount x { UTF chr, int windowCount, int[] window, int[] sites, int[] coverage, float[] percent }
+ * </pre>
+ */
+public class MethylSummary {
+
+    private static Logger log = Logger.getLogger(MethylSummary.class);
+
+    public static final int WINDOW_SIZE = 1000;
+
+    static final int MAGIC = 0x49474d53;   // "IGMS"
+    static final int VERSION = 2;
+
+    private final String chr;
+    private final int[] windows;
+    private final int[] sites;
+    private final int[] coverage;
+    private final float[] percents;
+
+    MethylSummary(String chr, int[] windows, int[] sites, int[] coverage, float[] percents) {
+        this.chr = chr;
+        this.windows = windows;
+        this.sites = sites;
+        this.coverage = coverage;
+        this.percents = percents;
+    }
+
+    /**
+     * Compute the summary of {@code chr} from all records of {@code source}.  Records are expected in order of start
+     * position.
+     */
+    public static MethylSummary compute(MethylDataSource source, String chr) throws IOException {
+
+        IntArrayList windows = new IntArrayList(10000);
+        IntArrayList sites = new IntArrayList(10000);
+        IntArrayList coverage = new IntArrayList(10000);
+        FloatArrayList percents = new FloatArrayList(10000);
+
+        int window = -1;
+        int nSites = 0;
+        long totalCount = 0;
+        double weightedSum = 0;
+        double sum = 0;
+
+        Iterator<MethylScore> iter = source.query(chr, 0, Integer.MAX_VALUE);
+        while (iter != null && iter.hasNext()) {
+            MethylScore score = iter.next();
+            if (score == null) continue;
+            int w = score.getStart() / WINDOW_SIZE;
+            if (w != window) {
+                if (nSites > 0) {
+                    windows.add(window);
+                    sites.add(nSites);
+                    coverage.add((int) Math.min(Integer.MAX_VALUE, totalCount));
+                    percents.add((float) (totalCount > 0 ? weightedSum / totalCount : sum / nSites));
+                }
+                window = w;
+                nSites = 0;
+                totalCount = 0;
+                weightedSum = 0;
+                sum = 0;
+            }
+            nSites++;
+            totalCount += score.getCount();
+            weightedSum += (double) score.getScore() * score.getCount();
+            sum += score.getScore();
+        }
+        if (nSites > 0) {
+            windows.add(window);
+            sites.add(nSites);
+            coverage.add((int) Math.min(Integer.MAX_VALUE, totalCount));
+            percents.add((float) (totalCount > 0 ? weightedSum / totalCount : sum / nSites));
+        }
+
+        return new MethylSummary(chr, windows.toArray(), sites.toArray(), coverage.toArray(), percents.toArray());
+    }
+
+    public String getChr() {
+        return chr;
+    }
+
+    public int getWindowCount() {
+        return windows.length;
+    }
+
+    /**
+     * Return summary scores over [start, end), merging windows so each summary spans about {@code scale} bases, i.e.
+     * one pixel at that scale.  The count of each summary is its total read coverage.
+     */
+    public List<MethylScore> getSummaryScores(int start, int end, double scale) {
+
+        int factor = Math.max(1, (int) Math.ceil(scale / WINDOW_SIZE));
+        int span = factor * WINDOW_SIZE;
+
+        List<MethylScore> scores = new ArrayList<>();
+        int i = firstWindowAtOrAfter((start / span) * factor);
+        while (i < windows.length && (long) windows[i] * WINDOW_SIZE < end) {
+            int group = windows[i] / factor;
+            long totalCount = 0;
+            double weightedSum = 0;
+            double sum = 0;
+            int nSites = 0;
+            int j = i;
+            for (; j < windows.length && windows[j] / factor == group; j++) {
+                totalCount += coverage[j];
+                weightedSum += (double) percents[j] * coverage[j];
+                sum += (double) percents[j] * sites[j];
+                nSites += sites[j];
+            }
+            float percent = (float) (totalCount > 0 ? weightedSum / totalCount : sum / nSites);
+            int groupStart = group * span;
+            scores.add(new MethylScore(chr, groupStart, groupStart + span, Strand.NONE, percent,
+                    (int) Math.min(Integer.MAX_VALUE, totalCount)));
+            i = j;
+        }
+        return scores;
+    }
+
+    private int firstWindowAtOrAfter(int window) {
+        int lo = 0;
+        int hi = windows.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (windows[mid] < window) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    void write(DataOutputStream dos) throws IOException {
+        dos.writeUTF(chr);
+        dos.writeInt(windows.length);
+        for (int v : windows) dos.writeInt(v);
+        for (int v : sites) dos.writeInt(v);
+        for (int v : coverage) dos.writeInt(v);
+        for (float v : percents) dos.writeFloat(v);
+    }
+
+    static MethylSummary read(DataInputStream dis, String chr, int n) throws IOException {
+        int[] windows = readInts(dis, n);
+        int[] sites = readInts(dis, n);
+        int[] coverage = readInts(dis, n);
+        float[] percents = new float[n];
+        for (int i = 0; i < n; i++) percents[i] = dis.readFloat();
+        return new MethylSummary(chr, windows, sites, coverage, percents);
+    }
+
+    private static int[] readInts(DataInputStream dis, int n) throws IOException {
+        int[] values = new int[n];
+        for (int i = 0; i < n; i++) values[i] = dis.readInt();
+        return values;
+    }
+
+    public static File getCacheFile(File sourceFile) {
+        return SidecarFiles.getFile(DirectoryManager.getFeatureIndexDirectory(), sourceFile, ".methsum");
+    }
+
+    /**
+     * Return the saved summary of {@code chr}, or null if there is none for the current version of the source file
+     */
+    static synchronized MethylSummary load(File sourceFile, File cacheFile, String chr) {
+
+        try (DataInputStream dis = SidecarFiles.openIfCurrent(cacheFile, MAGIC, VERSION, sourceFile)) {
+            if (dis == null) {
+                return null;
+            }
+            int entryCount = dis.readInt();
+            for (int e = 0; e < entryCount; e++) {
+                String entryChr = dis.readUTF();
+                int n = dis.readInt();
+                if (entryChr.equals(chr)) {
+                    return read(dis, chr, n);
+                }
+                dis.skipBytes(16 * n);
+            }
+        } catch (IOException e) {
+            log.error("Error reading methylation summary " + cacheFile.getName(), e);
+        }
+        return null;
+    }
+
+    /**
+     * Add {@code summary} to the saved summaries, replacing any previous summary of the same chromosome
+     */
+    static synchronized void save(File sourceFile, File cacheFile, MethylSummary summary) {
+
+        List<MethylSummary> entries = new ArrayList<>();
+        entries.add(summary);
+        if (cacheFile.exists()) {
+            try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+                if (SidecarFiles.readHeader(dis, MAGIC, VERSION, Collections.singletonList(sourceFile))) {
+                    int entryCount = dis.readInt();
+                    for (int e = 0; e < entryCount; e++) {
+                        String entryChr = dis.readUTF();
+                        MethylSummary entry = read(dis, entryChr, dis.readInt());
+                        if (!entryChr.equals(summary.chr)) {
+                            entries.add(entry);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                log.info("Replacing unreadable methylation summary " + cacheFile.getName());
+            }
+        }
+
+        try {
+            SidecarFiles.write(cacheFile, tmpFile -> {
+                try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+                    SidecarFiles.writeHeader(dos, MAGIC, VERSION, sourceFile);
+                    dos.writeInt(entries.size());
+                    for (MethylSummary entry : entries) {
+                        entry.write(dos);
+                    }
+                }
+            });
+        } catch (IOException e) {
+            log.error("Error writing methylation summary " + cacheFile.getName(), e);
+        }
+    }
+}
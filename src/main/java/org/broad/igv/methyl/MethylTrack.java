@@ -40,6 +40,7 @@ import org.broad.igv.util.LongRunningTask;
 import org.broad.igv.util.ResourceLocator;
 
 import java.awt.*;
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -59,7 +60,7 @@ public class MethylTrack extends AbstractTrack {
     public static final int FIVE_MB = 5000000;
     public static final int FIFTY_MB = 50000000;
 
-    private MethylDataSource dataSource;
+    private CachingMethylSource dataSource;
     private Range loadedRange;
     private Renderer renderer;
     private int resolutionThreshold;
@@ -82,25 +83,46 @@ public class MethylTrack extends AbstractTrack {
             //dataSource = new BBMethylDataSource(reader, BBMethylDataSource.Type.USC, genome);
         }
 
-        loadedRange = new Range("", -1, -1, Collections.<MethylScore>emptyList());
+        if (dataResourceLocator.isLocal()) {
+            dataSource.setSourceFile(new File(dataResourceLocator.getPath()));
+        }
+
+        loadedRange = new Range("", -1, -1, 0, Collections.<MethylScore>emptyList());
         setDataRange(new DataRange(0, 100));
     }
 
     @Override
     public boolean isReadyToPaint(ReferenceFrame frame) {
-        if (frame.getChrName().equals(Globals.CHR_ALL) || frame.getScale() > resolutionThreshold) {
+        if (frame.getChrName().equals(Globals.CHR_ALL) || isZoomedOutTooFar(frame.getScale())) {
             return true;
         } else {
             String chr = frame.getChrName();
             int start = (int) frame.getOrigin();
             int end = (int) frame.getEnd();
-            return loadedRange.contains(chr, start, end);
+            return loadedRange.contains(chr, start, end) && loadedRange.scale == summaryScale(frame.getScale());
         }
     }
 
+    /**
+     * Return true if the view is too wide to render sites and no summaries are available (remote sources)
+     */
+    private boolean isZoomedOutTooFar(double scale) {
+        return scale > resolutionThreshold && !dataSource.hasSummaries();
+    }
+
+    /**
+     * Scale of the summaries used to render at {@code scale}, or 0 if individual sites are rendered
+     */
+    private double summaryScale(double scale) {
+        return scale > resolutionThreshold ? scale : 0;
+    }
+
     @Override
     public void load(ReferenceFrame frame) {
 
+        if (isZoomedOutTooFar(frame.getScale())) {
+            return;
+        }
         String chr = frame.getChrName();
         int start = (int) frame.getOrigin();
         int end = (int) frame.getEnd();
@@ -108,16 +130,22 @@ public class MethylTrack extends AbstractTrack {
         int expandedStart = Math.max(0, start - width);
         int expandedEnd = end + width;
 
+        double scale = summaryScale(frame.getScale());
         List<MethylScore> scores = new ArrayList<MethylScore>(1000);
         try {
-            Iterator<MethylScore> iter = dataSource.query(chr, expandedStart, expandedEnd);
-            while (iter.hasNext()) {
-                scores.add(iter.next());
+            if (scale > 0) {
+                // Zoomed out, render window summaries rather than individual sites
+                scores = dataSource.getSummaryScores(chr, expandedStart, expandedEnd, scale);
+            } else {
+                Iterator<MethylScore> iter = dataSource.query(chr, expandedStart, expandedEnd);
+                while (iter != null && iter.hasNext()) {
+                    scores.add(iter.next());
+                }
             }
         } catch (IOException e) {
             MessageUtils.showErrorMessage("Error", e);
         }
-        loadedRange = new Range(chr, expandedStart, expandedEnd, scores);
+        loadedRange = new Range(chr, expandedStart, expandedEnd, scale, scores);
 
     }
 
@@ -130,13 +158,12 @@ public class MethylTrack extends AbstractTrack {
      */
     public void render(final RenderContext context, final Rectangle rect) {
 
-        if (context.getChr().equals(Globals.CHR_ALL) || context.getScale() > resolutionThreshold) {
+        if (context.getChr().equals(Globals.CHR_ALL) || isZoomedOutTooFar(context.getScale())) {
             Graphics2D g = context.getGraphic2DForColor(Color.gray);
             Rectangle textRect = new Rectangle(rect);
 
             // Keep text near the top of the track rectangle
             textRect.height = Math.min(rect.height, 20);
-            textRect.height = Math.min(rect.height, 20);
             String message = context.getChr().equals(Globals.CHR_ALL) ? "Zoom in to see features." :
                     "Zoom in to see features, or right-click to increase Feature Visibility Window.";
             GraphicUtils.drawCenteredText(message, textRect, g);
@@ -146,7 +173,7 @@ public class MethylTrack extends AbstractTrack {
         final String chr = context.getChr();
         final int start = (int) context.getOrigin();
         final int end = (int) context.getEndLocation();
-        if (loadedRange.contains(chr, start, end)) {
+        if (loadedRange.contains(chr, start, end) && loadedRange.scale == summaryScale(context.getScale())) {
             renderer.render(loadedRange.scores, context, rect, this);
         }
     }
@@ -156,10 +183,12 @@ public class MethylTrack extends AbstractTrack {
     }
 
     static class Range extends org.broad.igv.feature.Range {
+        double scale;
         List<MethylScore> scores;
 
-        Range(String chr, int start, int end, List<MethylScore> scores) {
+        Range(String chr, int start, int end, double scale, List<MethylScore> scores) {
             super(chr, start, end);
+            this.scale = scale;
             this.scores = scores;
         }
     }
@@ -22,6 +22,8 @@ final public class Constants {
     public static final String DEFAULT_FONT_FAMILY = "DEFAULT_FONT_FAMILY";
     public static final String DEFAULT_FONT_ATTRIBUTE = "DEFAULT_FONT_ATTRIBUTE";
     public static final String ENABLE_ANTIALISING = "ENABLE_ANTIALIASING";
+    public static final String ENABLE_RASTER_CACHE = "ENABLE_RASTER_CACHE";
+    public static final String SESSION_LOAD_HOST_LIMIT = "SESSION_LOAD_HOST_LIMIT";
     public static final String SCALE_FONTS = "SCALE_FONTS";
     public static final String NAME_PANEL_WIDTH = "NAME_PANEL_WIDTH";
     public static final String BACKGROUND_COLOR = "BACKGROUND_COLOR";
@@ -107,6 +109,7 @@ final public class Constants {
     public static final String SAM_SHOW_CENTER_LINE = "SAM.SHOW_CENTER_LINE";
     public static final String SAM_SHOW_REF_SEQ = "SAM.SHOW_REF_SEQ";
     public static final String SAM_SHOW_COV_TRACK = "SAM.SHOW_COV_TRACK";
+    public static final String SAM_COVERAGE_SIDECAR = "SAM.COVERAGE_SIDECAR";
     public static final String SAM_SHADE_BASES = "SAM.SHADE_BASE_QUALITY";
     public static final String SAM_BASE_QUALITY_MIN = "SAM.BASE_QUALITY_MIN";
     public static final String SAM_BASE_QUALITY_MAX = "SAM.BASE_QUALITY_MAX";
@@ -140,6 +143,7 @@ final public class Constants {
     public static final String SAM_SHOW_JUNCTION_TRACK = "SAM.SHOW_JUNCTION_TRACK";
     public static final String SAM_JUNCTION_MIN_FLANKING_WIDTH = "SAM.JUNCTION_MIN_FLANKING_WIDTH";
     public static final String SAM_JUNCTION_MIN_COVERAGE = "SAM.JUNCTION_MIN_COVERAGE";
+    public static final String SAM_JUNCTION_CACHE = "SAM.JUNCTION_CACHE";
     public static final String SAM_SHOW_INSERTION_MARKERS = "SAM.SHOW_INSERTION_MARKERS";
     public static final String SAM_SHOW_JUNCTION_FLANKINGREGIONS = "SAM.SHOW_JUNCTION_FLANKINGREGIONS";
     public static final String SAM_NOMESEQ_ENABLED = "SAM.NOMESEQ_ENABLED";
@@ -244,6 +248,8 @@ final public class Constants {
     public static final String PROXY_PW = "PROXY.PW";
     public static final String PROXY_TYPE = "PROXY.TYPE";
     public static final String PROXY_WHITELIST = "PROXY.WHITELIST";
+    public static final String HTTP_CLIENT_ENABLE = "HTTP_CLIENT.ENABLE";
+    public static final String HTTP_CLIENT_HOST_LIMIT = "HTTP_CLIENT.HOST_LIMIT";
 
     // Port settings
     public static final String PORT_ENABLED = "PORT_ENABLED";
@@ -36,17 +36,15 @@ import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.prefs.IGVPreferences;
 import org.broad.igv.prefs.PreferencesManager;
 import org.broad.igv.sam.AlignmentTrack.SortOption;
-import org.broad.igv.sam.reader.AlignmentReaderFactory;
 import org.broad.igv.track.RenderContext;
 import org.broad.igv.track.Track;
 import org.broad.igv.ui.panel.FrameManager;
 import org.broad.igv.ui.panel.ReferenceFrame;
-import org.broad.igv.util.AmazonUtils;
 import org.broad.igv.util.ResourceLocator;
 
 import java.io.IOException;
-import java.net.MalformedURLException;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static org.broad.igv.prefs.Constants.*;
 
@@ -64,24 +62,27 @@ public class AlignmentDataManager implements IGVEventObserver {
     private CoverageTrack coverageTrack;
     private Set<Track> subscribedTracks;
 
-    private List<AlignmentInterval> intervalCache;
+    private final List<AlignmentInterval> intervalCache = new CopyOnWriteArrayList<>();
     private ResourceLocator locator;
     private HashMap<String, String> chrMappings = new HashMap();
-    private AlignmentTileLoader reader;
-    private Map<String, PEStats> peStats;
+    private AlignmentLoaderRegistry.Resource resource;
+    private Map<AlignmentInterval, AlignmentLoaderRegistry.SharedInterval> sharedIntervals;
+    private volatile Map<String, PEStats> peStats;
     private SpliceJunctionHelper.LoadOptions loadOptions;
-    private Range currentlyLoading;
+
+    /**
+     * Lock serializing loads and changes to the interval cache.  Reads of the cache do not lock.
+     */
+    private final Object loadLock = new Object();
 
     public AlignmentDataManager(ResourceLocator locator, Genome genome) throws IOException {
         this.locator = locator;
-        // The time-gated limit for an AWS signed URL has expired, we need to re-sign the URL with the newly acquired
-        // access token, otherwise we will face an Access Denied error. CheckReader() provides a very low overhead
-        // mechanism to refresh expired presigned URLs.
-        reader = new AlignmentTileLoader(AlignmentReaderFactory.getReader(locator));
-        peStats = new HashMap();
+        // The reader, and the intervals decoded with it, are shared with other managers for the same file
+        resource = AlignmentLoaderRegistry.getInstance().acquire(locator);
+        peStats = Collections.emptyMap();
+        sharedIntervals = Collections.synchronizedMap(new IdentityHashMap<>());
         initLoadOptions();
         initChrMap(genome);
-        intervalCache = Collections.synchronizedList(new ArrayList<>());
         subscribedTracks = Collections.synchronizedSet(new HashSet<>());
 
         IGVEventBus.getInstance().subscribe(FrameManager.ChangeEvent.class, this);
@@ -332,23 +333,19 @@ public class AlignmentDataManager implements IGVEventObserver {
         if (frame.getChrName().equals(Globals.CHR_ALL) || frame.getScale() > getMinVisibleScale())
             return; // should not happen
 
-        if (isLoaded(frame)) {
-            return;  // Already loaded
-        }
+        // Loads for several frames, e.g. parallel snapshots, are serialized.  A load waiting on one for the same
+        // range finds it loaded.
+        synchronized (loadLock) {
+            if (isLoaded(frame)) {
+                return;  // Already loaded
+            }
 
-        Range range = frame.getCurrentRange();
-        final String chr = frame.getChrName();
-        final int start = range.getStart();
-        final int end = range.getEnd();
-        int adjustedStart = start;
-        int adjustedEnd = end;
-        Range adjustedRange = new Range(chr, start, end);
-
-        if(currentlyLoading != null && currentlyLoading.contains(adjustedRange)) {
-            return;  // Already loading
-        }
-        try {
-            currentlyLoading = adjustedRange;
+            Range range = frame.getCurrentRange();
+            final String chr = frame.getChrName();
+            final int start = range.getStart();
+            final int end = range.getEnd();
+            int adjustedStart = start;
+            int adjustedEnd = end;
 
             // Expand the interval by the lesser of  +/- a 2 screens, or max visible range
             int windowSize = Math.min(4 * (end - start), PreferencesManager.getPreferences().getAsInt(SAM_MAX_VISIBLE_RANGE) * 1000);
@@ -365,11 +362,9 @@ public class AlignmentDataManager implements IGVEventObserver {
             trimCache();
 
             intervalCache.add(loadedInterval);
+            InsertionManager.getInstance().register(loadedInterval);
 
             packAlignments(renderOptions);
-
-        } finally {
-            currentlyLoading = null;
         }
 
         //  IGVEventBus.getInstance().post(new DataLoadedEvent(frame));
@@ -378,22 +373,25 @@ public class AlignmentDataManager implements IGVEventObserver {
 
     /**
      * Remove out-of-view intervals from the cache.  This is O(N) where N = #frames X #intervals.   It is assumed
-     * that N is small
+     * that N is small.  Insertions of the removed intervals are evicted with them.  Intervals in view of an
+     * offscreen frame are kept.
      */
     private void trimCache() {
-        List<AlignmentInterval> trimmedIntervals = new ArrayList<>();
-        for (AlignmentInterval interval : intervalCache) {
-            if (intervalInView(interval)) {
-                trimmedIntervals.add(interval);
+        synchronized (loadLock) {
+            for (AlignmentInterval interval : intervalCache) {
+                if (!intervalInView(interval, FrameManager.getFrames()) &&
+                        !intervalInView(interval, FrameManager.getOffscreenFrames())) {
+                    intervalCache.remove(interval);
+                    release(interval);
+                }
             }
         }
-        intervalCache = trimmedIntervals;
     }
 
 
-    private boolean intervalInView(AlignmentInterval interval) {
+    private static boolean intervalInView(AlignmentInterval interval, List<ReferenceFrame> frames) {
 
-        for (ReferenceFrame frame : FrameManager.getFrames()) {
+        for (ReferenceFrame frame : frames) {
             if (interval.contains(frame.getCurrentRange())) {
                 return true;
             }
@@ -406,26 +404,52 @@ public class AlignmentDataManager implements IGVEventObserver {
 
         String sequence = chrMappings.containsKey(chr) ? chrMappings.get(chr) : chr;
 
-        DownsampleOptions downsampleOptions = new DownsampleOptions();
-
         final AlignmentTrack.BisulfiteContext bisulfiteContext =
                 renderOptions != null ? renderOptions.bisulfiteContext : null;
 
-        SpliceJunctionHelper spliceJunctionHelper = new SpliceJunctionHelper(this.loadOptions);
+        // Concurrent and repeated requests for the same range of this file, from this or other managers, share
+        // a single decoded interval
+        String settings = AlignmentLoaderRegistry.getSettings(this.loadOptions, bisulfiteContext);
+        AlignmentLoaderRegistry.SharedInterval shared = resource.load(chr, start, end, settings,
+                () -> decodeInterval(chr, sequence, start, end, bisulfiteContext));
+
+        if (getExperimentType() == null) {
+            inferType(shared.getReadStats());
+        }
+        refreshPEStats(renderOptions);
+
+        AlignmentTileLoader.AlignmentTile t = shared.getTile();
+        AlignmentInterval interval = new AlignmentInterval(chr, shared.getStart(), shared.getEnd(),
+                t.getAlignments(), t.getCounts(),
+                shared.getSpliceJunctionHelper().view(this.loadOptions), t.getDownsampledIntervals(),
+                t.getInsertionIndex());
+        sharedIntervals.put(interval, shared);
+        return interval;
+    }
+
+    private AlignmentLoaderRegistry.DecodedInterval decodeInterval(String chr, String sequence, int start, int end,
+                                                                   AlignmentTrack.BisulfiteContext bisulfiteContext) {
+
+        DownsampleOptions downsampleOptions = new DownsampleOptions();
+
+        // Junctions are read from the junction cache if available, in which case they are not counted while loading
+        boolean cacheJunctions = SpliceJunctionCache.isEnabled(locator);
+        SpliceJunctionHelper cachedJunctions = cacheJunctions ?
+                SpliceJunctionCache.load(locator, chr, start, end, this.loadOptions) : null;
+        SpliceJunctionHelper spliceJunctionHelper = cachedJunctions != null ?
+                cachedJunctions : new SpliceJunctionHelper(this.loadOptions);
 
         ReadStats readStats = new ReadStats();
 
-        AlignmentTileLoader.AlignmentTile t = checkReader().loadTile(sequence, start, end, spliceJunctionHelper,
-                downsampleOptions, readStats, peStats, bisulfiteContext);
-//
-        if (getExperimentType() == null) {
-            readStats.compute();
-            inferType(readStats);
+        AlignmentTileLoader.AlignmentTile t = checkReader().loadTile(sequence, start, end,
+                cachedJunctions != null ? null : spliceJunctionHelper,
+                downsampleOptions, readStats, resource.getPEStats(), bisulfiteContext);
+
+        if (cacheJunctions && cachedJunctions == null && t.isLoaded()) {
+            SpliceJunctionCache.save(locator, chr, start, end, spliceJunctionHelper, this.loadOptions);
         }
 
-        List<Alignment> alignments = t.getAlignments();
-        List<DownsampledInterval> downsampledIntervals = t.getDownsampledIntervals();
-        return new AlignmentInterval(chr, start, end, alignments, t.getCounts(), spliceJunctionHelper, downsampledIntervals);
+        return new AlignmentLoaderRegistry.DecodedInterval(t, spliceJunctionHelper, readStats);
     }
 
     /**
@@ -463,15 +487,34 @@ public class AlignmentDataManager implements IGVEventObserver {
     }
 
     public void clear() {
-        intervalCache.clear();
+        synchronized (loadLock) {
+            for (AlignmentInterval interval : intervalCache) {
+                release(interval);
+            }
+            intervalCache.clear();
+        }
     }
 
     public void dumpAlignments() {
-        for (AlignmentInterval interval : intervalCache) {
-            interval.dumpAlignments();
+        synchronized (loadLock) {
+            for (AlignmentInterval interval : intervalCache) {
+                // Alignments shared with other subscribers are left for them
+                if (release(interval)) {
+                    interval.dumpAlignments();
+                }
+            }
         }
     }
 
+    /**
+     * Release an interval dropped from the cache.  Returns true if no other subscriber shares its alignments.
+     */
+    private boolean release(AlignmentInterval interval) {
+        InsertionManager.getInstance().unregister(interval);
+        AlignmentLoaderRegistry.SharedInterval shared = sharedIntervals.remove(interval);
+        return shared == null || shared.release();
+    }
+
     /**
      * Find the first loaded interval for the specified chromosome and genomic {@code positon},
      * return the grouped alignments
@@ -531,15 +574,29 @@ public class AlignmentDataManager implements IGVEventObserver {
 
 
     private void dispose()  {
-        if (reader != null) {
-            try {
-                reader.close();
-            } catch (IOException ex) {
-                log.error("Error closing AlignmentQueryReader. ", ex);
-            }
+        if (resource != null) {
+            resource.release();
         }
     }
 
+    /**
+     * Replace this manager's paired end statistics with a copy of those accumulated for the file.  Samples are
+     * shared with other managers for the file, thresholds are computed here from this manager's render options.
+     */
+    private void refreshPEStats(AlignmentTrack.RenderOptions renderOptions) {
+        IGVPreferences prefs = PreferencesManager.getPreferences();
+        double minPercentile = renderOptions != null ? renderOptions.getMinInsertSizePercentile() :
+                prefs.getAsFloat(SAM_MIN_INSERT_SIZE_PERCENTILE);
+        double maxPercentile = renderOptions != null ? renderOptions.getMaxInsertSizePercentile() :
+                prefs.getAsFloat(SAM_MAX_INSERT_SIZE_PERCENTILE);
+        Map<String, PEStats> stats = resource.copyPEStats();
+        for (PEStats s : stats.values()) {
+            s.computeInsertSize(minPercentile, maxPercentile);
+            s.computeExpectedOrientation();
+        }
+        peStats = stats;
+    }
+
     public void updatePEStats(AlignmentTrack.RenderOptions renderOptions) {
         if (this.peStats != null) {
             for (PEStats stats : peStats.values()) {
@@ -580,18 +637,7 @@ public class AlignmentDataManager implements IGVEventObserver {
     }
 
     private AlignmentTileLoader checkReader() {
-        try {
-            String aPath = locator.getPath();
-            if (AmazonUtils.isAwsS3Path(aPath) && !AmazonUtils.isS3PresignedValid(aPath)) {
-                reader = new AlignmentTileLoader(AlignmentReaderFactory.getReader(locator));
-            }
-        } catch (MalformedURLException e) {
-            e.printStackTrace();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-
-        return reader;
+        return resource.getLoader();
     }
 
     public static class DownsampleOptions {
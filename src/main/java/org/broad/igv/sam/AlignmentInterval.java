@@ -46,12 +46,22 @@ public class AlignmentInterval extends Locus {
     private SpliceJunctionHelper spliceJunctionHelper;
     private List<DownsampledInterval> downsampledIntervals;
     private PackedAlignments packedAlignments;
+    private InsertionIndex insertionIndex;
 
     public AlignmentInterval(String chr, int start, int end,
                              List<Alignment> alignments,
                              AlignmentCounts counts,
                              SpliceJunctionHelper spliceJunctionHelper,
                              List<DownsampledInterval> downsampledIntervals) {
+        this(chr, start, end, alignments, counts, spliceJunctionHelper, downsampledIntervals, null);
+    }
+
+    public AlignmentInterval(String chr, int start, int end,
+                             List<Alignment> alignments,
+                             AlignmentCounts counts,
+                             SpliceJunctionHelper spliceJunctionHelper,
+                             List<DownsampledInterval> downsampledIntervals,
+                             InsertionIndex insertionIndex) {
 
         super(chr, start, end);
         this.alignments = alignments;
@@ -60,6 +70,7 @@ public class AlignmentInterval extends Locus {
 
         this.spliceJunctionHelper = spliceJunctionHelper;
         this.downsampledIntervals = downsampledIntervals;
+        this.insertionIndex = insertionIndex;
     }
 
     static Alignment getFeatureContaining(List<Alignment> features, int right) {
@@ -160,6 +171,10 @@ public class AlignmentInterval extends Locus {
         return this.spliceJunctionHelper;
     }
 
+    public InsertionIndex getInsertionIndex() {
+        return insertionIndex;
+    }
+
     public Range getRange() {
         return new Range(getChr(), getStart(), getEnd());
     }
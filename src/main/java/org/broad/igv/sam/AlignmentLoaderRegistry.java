@@ -0,0 +1,368 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.sam;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.prefs.IGVPreferences;
+import org.broad.igv.prefs.PreferencesManager;
+import org.broad.igv.sam.reader.AlignmentReaderFactory;
+import org.broad.igv.util.AmazonUtils;
+import org.broad.igv.util.ResourceLocator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import static org.broad.igv.prefs.Constants.*;
+
+/**
+ * Process wide registry of open alignment resources.
+ * <p>
+ * All {@link AlignmentDataManager}s for the same file, e.g. for the same BAM loaded in more than one panel or
+ * session, share a single {@link Resource} keyed by the canonical path of the file and its index.  The resource
+ * owns the {@link AlignmentTileLoader}, and queries against it are de-duplicated:  a request for a range contained
+ * in a range already loaded, or being loaded, with the same settings waits for and shares that decoded interval
+ * instead of reading the same bytes again.
+ * <p>
+ * Resources and decoded intervals are reference counted.  The reader is closed when the last manager releases the
+ * resource, and a decoded interval is dropped from the registry when the last subscriber releases it.
+ */
+public class AlignmentLoaderRegistry {
+
+    private static Logger log = Logger.getLogger(AlignmentLoaderRegistry.class);
+
+    private static AlignmentLoaderRegistry instance = new AlignmentLoaderRegistry();
+
+    private final Map<String, Resource> resources = new HashMap<>();
+
+    public static AlignmentLoaderRegistry getInstance() {
+        return instance;
+    }
+
+    AlignmentLoaderRegistry() {
+    }
+
+    /**
+     * Return the shared resource for {@code locator}, opening a reader if this is the first subscriber.  Each call
+     * must be balanced by a call to {@link Resource#release()}.
+     */
+    public synchronized Resource acquire(ResourceLocator locator) throws IOException {
+        String key = getKey(locator);
+        Resource resource = resources.get(key);
+        if (resource == null) {
+            resource = new Resource(key, locator, new AlignmentTileLoader(AlignmentReaderFactory.getReader(locator)));
+            resources.put(key, resource);
+        }
+        resource.refCount++;
+        return resource;
+    }
+
+    /**
+     * Return the number of subscribers to the resource for {@code locator}, or 0 if it is not open
+     */
+    public synchronized int getReferenceCount(ResourceLocator locator) {
+        Resource resource = resources.get(getKey(locator));
+        return resource == null ? 0 : resource.refCount;
+    }
+
+    private synchronized void release(Resource resource) {
+        if (resource.refCount == 0) {
+            return;
+        }
+        resource.refCount--;
+        if (resource.refCount == 0) {
+            resources.remove(resource.key);
+            resource.close();
+        }
+    }
+
+    static String getKey(ResourceLocator locator) {
+        String path = locator.getPath();
+        if (locator.isLocal()) {
+            File file = new File(path);
+            try {
+                path = file.getCanonicalPath();
+            } catch (IOException e) {
+                path = file.getAbsolutePath();
+            }
+        }
+        return path + "|" + locator.getIndexPath() + "|" + locator.getType();
+    }
+
+    /**
+     * Key for the preferences and options that determine the content of a decoded interval.  Intervals are only
+     * shared between requests with equal keys.
+     */
+    static String getSettings(SpliceJunctionHelper.LoadOptions loadOptions,
+                              AlignmentTrack.BisulfiteContext bisulfiteContext) {
+        IGVPreferences prefs = PreferencesManager.getPreferences();
+        return SpliceJunctionCache.getSettings(loadOptions) + ";" +
+                prefs.getAsBoolean(SAM_DOWNSAMPLE_READS) + ";" +
+                prefs.getAsInt(SAM_SAMPLING_WINDOW) + ";" +
+                prefs.getAsInt(SAM_SAMPLING_COUNT) + ";" +
+                prefs.getAsBoolean(SAM_HIDE_SMALL_INDEL) + ";" +
+                prefs.getAsBoolean(SAM_SHOW_SOFT_CLIPPED) + ";" +
+                prefs.getAsBoolean(SAM_FILTER_ALIGNMENTS) + ";" +
+                prefs.get(SAM_FILTER_URL) + ";" +
+                bisulfiteContext;
+    }
+
+    /**
+     * An open alignment file, shared by all subscribers
+     */
+    public class Resource {
+
+        private final String key;
+        private final ResourceLocator locator;
+        private AlignmentTileLoader loader;
+        private int refCount;
+        private final Map<String, PEStats> peStats = new ConcurrentHashMap<>();
+        private final List<SharedInterval> intervals = new ArrayList<>();
+        private final Object queryLock = new Object();
+
+        private Resource(String key, ResourceLocator locator, AlignmentTileLoader loader) {
+            this.key = key;
+            this.locator = locator;
+            this.loader = loader;
+        }
+
+        /**
+         * Return the tile loader for this resource.  The time-gated limit for an AWS signed URL might have expired,
+         * in which case the URL is re-signed and a new loader created.
+         */
+        public synchronized AlignmentTileLoader getLoader() {
+            try {
+                String aPath = locator.getPath();
+                if (AmazonUtils.isAwsS3Path(aPath) && !AmazonUtils.isS3PresignedValid(aPath)) {
+                    loader = new AlignmentTileLoader(AlignmentReaderFactory.getReader(locator));
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            return loader;
+        }
+
+        /**
+         * Paired end statistics, accumulated over all intervals loaded from this resource.  Subscribers compute
+         * insert size thresholds on copies, see {@link #copyPEStats()}.
+         */
+        public Map<String, PEStats> getPEStats() {
+            return peStats;
+        }
+
+        /**
+         * Return a copy of the paired end statistics accumulated so far
+         */
+        public Map<String, PEStats> copyPEStats() {
+            Map<String, PEStats> copy = new HashMap<>();
+            for (Map.Entry<String, PEStats> entry : peStats.entrySet()) {
+                copy.put(entry.getKey(), entry.getValue().copy());
+            }
+            return copy;
+        }
+
+        public int getReferenceCount() {
+            synchronized (AlignmentLoaderRegistry.this) {
+                return refCount;
+            }
+        }
+
+        /**
+         * Return the number of decoded intervals, in flight or complete, currently shared through this resource
+         */
+        public synchronized int getIntervalCount() {
+            return intervals.size();
+        }
+
+        /**
+         * Return a decoded interval containing [start, end) on {@code chr}.  If an interval with the same settings
+         * containing the range is loaded, or being loaded, it is shared, otherwise {@code decoder} is run.  Decoding
+         * is serialized per resource, as the underlying reader supports one query at a time.  The returned interval
+         * must be released with {@link SharedInterval#release()} when the caller no longer needs it.
+         */
+        public SharedInterval load(String chr, int start, int end, String settings, Supplier<DecodedInterval> decoder) {
+
+            SharedInterval shared = null;
+            boolean owner = false;
+            synchronized (this) {
+                for (SharedInterval s : intervals) {
+                    if (s.chr.equals(chr) && s.start <= start && s.end >= end && s.settings.equals(settings)) {
+                        shared = s;
+                        break;
+                    }
+                }
+                if (shared == null) {
+                    shared = new SharedInterval(this, chr, start, end, settings);
+                    intervals.add(shared);
+                    owner = true;
+                }
+                shared.refCount++;
+            }
+
+            if (owner) {
+                try {
+                    DecodedInterval decoded;
+                    synchronized (queryLock) {
+                        decoded = decoder.get();
+                    }
+                    if (!decoded.tile.isLoaded()) {
+                        // Cancelled, the partial result is returned to current waiters but not shared further
+                        remove(shared);
+                    }
+                    shared.future.complete(decoded);
+                } catch (RuntimeException | Error e) {
+                    remove(shared);
+                    shared.future.completeExceptionally(e);
+                }
+            }
+
+            try {
+                shared.future.join();
+            } catch (CompletionException e) {
+                shared.release();
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+            return shared;
+        }
+
+        private synchronized void remove(SharedInterval shared) {
+            intervals.remove(shared);
+        }
+
+        private synchronized void release(SharedInterval shared) {
+            if (shared.refCount == 0) {
+                return;
+            }
+            shared.refCount--;
+            if (shared.refCount == 0) {
+                intervals.remove(shared);
+            }
+        }
+
+        /**
+         * Release this subscriber's reference.  The reader is closed when the last subscriber releases it.
+         */
+        public void release() {
+            AlignmentLoaderRegistry.this.release(this);
+        }
+
+        private synchronized void close() {
+            intervals.clear();
+            try {
+                loader.close();
+            } catch (IOException ex) {
+                log.error("Error closing AlignmentQueryReader. ", ex);
+            }
+        }
+    }
+
+    /**
+     * The result of decoding an interval:  the tile, the splice junctions, and read statistics
+     */
+    public static class DecodedInterval {
+
+        final AlignmentTileLoader.AlignmentTile tile;
+        final SpliceJunctionHelper spliceJunctionHelper;
+        final ReadStats readStats;
+
+        public DecodedInterval(AlignmentTileLoader.AlignmentTile tile, SpliceJunctionHelper spliceJunctionHelper,
+                               ReadStats readStats) {
+            this.tile = tile;
+            this.spliceJunctionHelper = spliceJunctionHelper;
+            this.readStats = readStats;
+        }
+    }
+
+    /**
+     * A decoded interval shared between subscribers
+     */
+    public static class SharedInterval {
+
+        private final Resource resource;
+        private final String chr;
+        private final int start;
+        private final int end;
+        private final String settings;
+        private final CompletableFuture<DecodedInterval> future = new CompletableFuture<>();
+        private int refCount;
+
+        private SharedInterval(Resource resource, String chr, int start, int end, String settings) {
+            this.resource = resource;
+            this.chr = chr;
+            this.start = start;
+            this.end = end;
+            this.settings = settings;
+        }
+
+        public String getChr() {
+            return chr;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+
+        public AlignmentTileLoader.AlignmentTile getTile() {
+            return future.join().tile;
+        }
+
+        public SpliceJunctionHelper getSpliceJunctionHelper() {
+            return future.join().spliceJunctionHelper;
+        }
+
+        public ReadStats getReadStats() {
+            return future.join().readStats;
+        }
+
+        public int getReferenceCount() {
+            synchronized (resource) {
+                return refCount;
+            }
+        }
+
+        /**
+         * Release this subscriber's reference.  Returns true if this was the last reference, in which case the
+         * interval is no longer shared and the caller may free its contents.
+         */
+        public boolean release() {
+            synchronized (resource) {
+                resource.release(this);
+                return refCount == 0;
+            }
+        }
+    }
+}
@@ -279,7 +279,7 @@ public class AlignmentRenderer {
     /**
      * Render a row of alignments in the given rectangle.
      */
-    public void renderAlignments(List<Alignment> alignments,
+    public void renderAlignments(Row row,
                                  AlignmentCounts alignmentCounts,
                                  RenderContext context,
                                  Rectangle rowRect,
@@ -291,10 +291,13 @@ public class AlignmentRenderer {
         double origin = context.getOrigin();
         double locScale = context.getScale();
 
-        if ((alignments != null) && (alignments.size() > 0)) {
+        if ((row.alignments != null) && (row.alignments.size() > 0)) {
 
             int lastPixelDrawn = -1;
 
+            // Only visit alignments in the visible slice of the row
+            List<Alignment> alignments = row.getAlignmentsOverlapping(origin + rowRect.x * locScale, origin + rowRect.getMaxX() * locScale);
+
             for (Alignment alignment : alignments) {
                 // Compute the start and dend of the alignment in pixels
                 double pixelStart = ((alignment.getStart() - origin) / locScale);
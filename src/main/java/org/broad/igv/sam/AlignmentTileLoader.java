@@ -270,6 +270,7 @@ public class AlignmentTileLoader implements IGVEventObserver {
                 }
             }
             // End iteration over alignments
+            t.loaded = !cancel;
 
             // Compute peStats
             if (peStats != null) {
@@ -299,9 +300,6 @@ public class AlignmentTileLoader implements IGVEventObserver {
             }
             t.finish();
 
-            // TODO -- make this optional (on a preference)
-            InsertionManager.getInstance().processAlignments(chr, t.alignments);
-
 
         } catch (java.nio.BufferUnderflowException e) {
             // This almost always indicates a corrupt BAM index, or less frequently a corrupt bam file
@@ -408,6 +406,7 @@ public class AlignmentTileLoader implements IGVEventObserver {
         private List<Alignment> alignments;
         private List<DownsampledInterval> downsampledIntervals;
         private SpliceJunctionHelper spliceJunctionHelper;
+        private InsertionIndex insertionIndex;
 
         private static final Random RAND = new Random();
 
@@ -442,6 +441,8 @@ public class AlignmentTileLoader implements IGVEventObserver {
             this.downsampledIntervals = new ArrayList<DownsampledInterval>();
 
             this.indelLimit = PreferencesManager.getPreferences().getAsInt(SAM_SMALL_INDEL_BP_THRESHOLD);
+            this.insertionIndex = new InsertionIndex(
+                    PreferencesManager.getPreferences().getAsBoolean(SAM_HIDE_SMALL_INDEL) ? indelLimit : 0);
 
             long seed = System.currentTimeMillis();
             //System.out.println("seed: " + seed);
@@ -492,6 +493,9 @@ public class AlignmentTileLoader implements IGVEventObserver {
          */
         public void addRecord(Alignment alignment, boolean reducedMemory) {
 
+            // Insertions are indexed for all records, before downsampling or reduced memory mode drops any
+            insertionIndex.add(alignment);
+
             if (reducedMemory) {
                 alignment = new ReducedMemoryAlignment(alignment, this.indelLimit);
             }
@@ -665,16 +669,28 @@ public class AlignmentTileLoader implements IGVEventObserver {
             }
             finalizeSpliceJunctions();
             counts.finish();
+            insertionIndex.finish();
         }
 
         public AlignmentCounts getCounts() {
             return counts;
         }
 
+        /**
+         * @return true if all records in the tile's range were read, i.e. loading was not cancelled or interrupted
+         */
+        public boolean isLoaded() {
+            return loaded;
+        }
+
+        public InsertionIndex getInsertionIndex() {
+            return insertionIndex;
+        }
+
 
         private void finalizeSpliceJunctions() {
             if (spliceJunctionHelper != null) {
-                //     spliceJunctionHelper.finish();
+                spliceJunctionHelper.finish();
             }
         }
 
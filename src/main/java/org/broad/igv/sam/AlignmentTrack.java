@@ -574,7 +574,7 @@ public class AlignmentTrack extends AbstractTrack implements IGVEventObserver {
                 assert visibleRect != null;
                 if (y + h > visibleRect.getY()) {
                     Rectangle rowRectangle = new Rectangle(inputRect.x, (int) y, inputRect.width, (int) h);
-                    renderer.renderAlignments(row.alignments, alignmentCounts, context, rowRectangle, renderOptions);
+                    renderer.renderAlignments(row, alignmentCounts, context, rowRectangle, renderOptions);
                     row.y = y;
                     row.h = h;
                 }
@@ -717,7 +717,8 @@ public class AlignmentTrack extends AbstractTrack implements IGVEventObserver {
                 assert visibleRect != null;
                 if (y + h > visibleRect.getY()) {
                     Rectangle rowRectangle = new Rectangle(inputRect.x, (int) y, inputRect.width, (int) h);
-                    renderer.renderExpandedInsertion(insertionMarker, row.alignments, context, rowRectangle, leaveMargin);
+                    renderer.renderExpandedInsertion(insertionMarker, row.getAlignmentsOverlapping(insertionMarker.position, insertionMarker.position),
+                            context, rowRectangle, leaveMargin);
                     row.y = y;
                     row.h = h;
                 }
@@ -982,11 +983,8 @@ public class AlignmentTrack extends AbstractTrack implements IGVEventObserver {
         for (List<Row> rows : groups.values()) {
             for (Row row : rows) {
                 if (y >= row.y && y <= row.y + row.h) {
-                    List<Alignment> features = row.alignments;
-
                     // No buffer for alignments,  you must zoom in far enough for them to be visible
-                    int buffer = 0;
-                    return FeatureUtils.getFeatureAt(position, buffer, features);
+                    return row.getAlignmentAt(position);
                 }
             }
         }
@@ -1160,6 +1158,10 @@ public class AlignmentTrack extends AbstractTrack implements IGVEventObserver {
         return getPreferences(experimentType);
     }
 
+    public boolean isShowCenterLine() {
+        return getPreferences().getAsBoolean(SAM_SHOW_CENTER_LINE);
+    }
+
     private static IGVPreferences getPreferences(ExperimentType type) {
 
         try {
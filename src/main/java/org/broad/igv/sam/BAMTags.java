@@ -0,0 +1,210 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.sam;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Static utilities for reading optional fields directly from the binary tag block of a BAM record, without
+ * decoding the whole block.
+ * <p>
+ * A 64 bit mask summarizes the tags present in a record.  Tags checked while loading (RG, YC, BX, HP, ...) have
+ * dedicated bits, so a test for them is exact.  Other tags are hashed to the remaining bits, a set bit means the
+ * tag might be present and the block must be searched.
+ */
+class BAMTags {
+
+    /**
+     * Returned by {@link #decode(byte[], int)} for value types that are not decoded here (arrays, hex strings,
+     * unsigned integers too large for an Integer).  Callers should fall back to htsjdk.
+     */
+    static final Object UNDECODED = new Object();
+
+    private static final String[] KNOWN_TAGS = {"RG", "YC", "BX", "HP", "MI", "XS", "AS", "NM", "MD", "SA",
+            "OQ", "MC", "MQ", "ZF", "XA", "PS"};
+
+    private static final int HASHED_BITS = 64 - KNOWN_TAGS.length;
+
+    private static final short[] KNOWN_KEYS = new short[KNOWN_TAGS.length];
+
+    static {
+        for (int i = 0; i < KNOWN_TAGS.length; i++) {
+            KNOWN_KEYS[i] = key(KNOWN_TAGS[i].charAt(0), KNOWN_TAGS[i].charAt(1));
+        }
+    }
+
+    private BAMTags() {
+    }
+
+    /**
+     * Compute the tag mask of a binary tag block.
+     *
+     * @param data   record data
+     * @param offset start of the tag block, which extends to the end of {@code data}
+     * @throws IllegalArgumentException if the block is malformed
+     */
+    static long mask(byte[] data, int offset) {
+        long mask = 0;
+        int pos = offset;
+        while (pos < data.length) {
+            if (pos + 3 > data.length) {
+                throw new IllegalArgumentException("Truncated tag at " + pos);
+            }
+            mask |= bit(key((char) data[pos], (char) data[pos + 1]));
+            pos = skip(data, pos + 2);
+        }
+        if (pos != data.length) {
+            throw new IllegalArgumentException("Truncated tag block");
+        }
+        return mask;
+    }
+
+    /**
+     * Return false if the tag is certainly absent from a record with the given mask
+     */
+    static boolean mayContain(long mask, String tag) {
+        return (mask & bit(key(tag.charAt(0), tag.charAt(1)))) != 0;
+    }
+
+    /**
+     * Return the position of the type character of {@code tag}, or -1 if it is not present
+     */
+    static int find(byte[] data, int offset, String tag) {
+        char c0 = tag.charAt(0);
+        char c1 = tag.charAt(1);
+        int pos = offset;
+        while (pos + 3 <= data.length) {
+            if (data[pos] == c0 && data[pos + 1] == c1) {
+                return pos + 2;
+            }
+            pos = skip(data, pos + 2);
+        }
+        return -1;
+    }
+
+    /**
+     * Decode the value whose type character is at {@code typePos}.  Values are boxed as htsjdk's
+     * {@code SAMRecord.getAttribute} boxes them: all integer types except large unsigned values as Integer,
+     * 'f' as Float, 'A' as Character, and 'Z' as String.
+     */
+    static Object decode(byte[] data, int typePos) {
+        int pos = typePos + 1;
+        switch (data[typePos]) {
+            case 'A':
+                return (char) data[pos];
+            case 'c':
+                return (int) data[pos];
+            case 'C':
+                return data[pos] & 0xff;
+            case 's':
+                return (int) (short) readShort(data, pos);
+            case 'S':
+                return readShort(data, pos);
+            case 'i':
+                return readInt(data, pos);
+            case 'I':
+                int value = readInt(data, pos);
+                return value >= 0 ? value : UNDECODED;
+            case 'f':
+                return Float.intBitsToFloat(readInt(data, pos));
+            case 'Z':
+                int end = pos;
+                while (data[end] != 0) end++;
+                return new String(data, pos, end - pos, StandardCharsets.ISO_8859_1);
+            default:
+                return UNDECODED;
+        }
+    }
+
+    /**
+     * Return the position following the value whose type character is at {@code typePos}
+     */
+    private static int skip(byte[] data, int typePos) {
+        int pos = typePos + 1;
+        char type = (char) data[typePos];
+        switch (type) {
+            case 'Z':
+            case 'H':
+                while (pos < data.length && data[pos] != 0) pos++;
+                if (pos == data.length) {
+                    throw new IllegalArgumentException("Unterminated string at " + typePos);
+                }
+                return pos + 1;
+            case 'B':
+                if (pos + 5 > data.length) {
+                    throw new IllegalArgumentException("Truncated array at " + typePos);
+                }
+                int size = typeSize((char) data[pos]);
+                long count = readInt(data, pos + 1) & 0xffffffffL;
+                long next = pos + 5 + count * size;
+                if (next > data.length) {
+                    throw new IllegalArgumentException("Truncated array at " + typePos);
+                }
+                return (int) next;
+            default:
+                return pos + typeSize(type);
+        }
+    }
+
+    private static int typeSize(char type) {
+        switch (type) {
+            case 'A':
+            case 'c':
+            case 'C':
+                return 1;
+            case 's':
+            case 'S':
+                return 2;
+            case 'i':
+            case 'I':
+            case 'f':
+                return 4;
+            default:
+                throw new IllegalArgumentException("Unknown tag type: " + type);
+        }
+    }
+
+    private static long bit(short key) {
+        for (int i = 0; i < KNOWN_KEYS.length; i++) {
+            if (KNOWN_KEYS[i] == key) {
+                return 1L << i;
+            }
+        }
+        return 1L << (KNOWN_TAGS.length + (((key & 0xffff) * 0x9E37) >>> 8) % HASHED_BITS);
+    }
+
+    private static short key(char c0, char c1) {
+        return (short) ((c0 & 0xff) << 8 | (c1 & 0xff));
+    }
+
+    private static int readShort(byte[] data, int pos) {
+        return (data[pos] & 0xff) | (data[pos + 1] & 0xff) << 8;
+    }
+
+    private static int readInt(byte[] data, int pos) {
+        return (data[pos] & 0xff) | (data[pos + 1] & 0xff) << 8 | (data[pos + 2] & 0xff) << 16 | data[pos + 3] << 24;
+    }
+}
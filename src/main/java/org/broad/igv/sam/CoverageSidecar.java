@@ -0,0 +1,207 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.sam;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.DirectoryManager;
+import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.tdf.TDFDataSource;
+import org.broad.igv.tdf.TDFGroup;
+import org.broad.igv.tdf.TDFReader;
+import org.broad.igv.tools.CoverageCounter;
+import org.broad.igv.tools.Preprocessor;
+import org.broad.igv.tools.StatusMonitor;
+import org.broad.igv.track.TrackType;
+import org.broad.igv.track.WindowFunction;
+import org.broad.igv.ui.util.UIUtilities;
+import org.broad.igv.util.FileUtils;
+import org.broad.igv.util.ResourceLocator;
+import org.broad.igv.util.SidecarFiles;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Multi-resolution coverage summaries for local BAM files, computed in the background the first time a file is
+ * loaded and kept in the IGV coverage cache directory.
+ * <p>
+ * The sidecar is a TDF file produced the same way as "igvtools count", by a {@link CoverageCounter} feeding a
+ * {@link Preprocessor}, so it has the usual zoom levels and indexed tiles.  The source file's length and
+ * modification time are recorded as attributes of the root group, a sidecar is rebuilt if they change.
+ */
+public class CoverageSidecar {
+
+    private static Logger log = Logger.getLogger(CoverageSidecar.class);
+
+    /**
+     * Size in bp of the windows counted at the finest resolution.
+     */
+    public static final int WINDOW_SIZE = 25;
+
+    static final String VERSION = "1";
+    static final String VERSION_KEY = "coverageSidecarVersion";
+    static final String SOURCE_LENGTH_KEY = "sourceLength";
+    static final String SOURCE_LAST_MODIFIED_KEY = "sourceLastModified";
+
+    // Paths of files being computed, guarded by the class
+    private static final Set<String> pending = new HashSet<>();
+
+    // Sidecars are computed one at a time, at low priority, so they don't hold up interactive loads and tasks
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "igv-coverage-sidecar");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    /**
+     * Return true if a sidecar can be computed for the resource, i.e. it is a local BAM file.
+     */
+    public static boolean isSupported(ResourceLocator locator) {
+        String path = locator.getPath();
+        return !FileUtils.isRemote(path) &&
+                path.toLowerCase().endsWith(".bam") &&
+                new File(path).isFile();
+    }
+
+    public static File getSidecarFile(File alignmentFile) {
+        return SidecarFiles.getFile(DirectoryManager.getCoverageCacheDirectory(), alignmentFile, ".tdf");
+    }
+
+    /**
+     * Return true if {@code sidecarFile} exists and was computed from the current version of {@code alignmentFile}
+     * for the given genome.
+     */
+    public static boolean isCurrent(File alignmentFile, File sidecarFile, String genomeId) {
+        if (!sidecarFile.exists()) {
+            return false;
+        }
+        try {
+            TDFGroup root = TDFReader.getReader(sidecarFile.getAbsolutePath()).getGroup("/");
+            boolean current = VERSION.equals(root.getAttribute(VERSION_KEY)) &&
+                    String.valueOf(alignmentFile.length()).equals(root.getAttribute(SOURCE_LENGTH_KEY)) &&
+                    String.valueOf(alignmentFile.lastModified()).equals(root.getAttribute(SOURCE_LAST_MODIFIED_KEY)) &&
+                    genomeId.equals(root.getAttribute("genome"));
+            if (current) {
+                SidecarFiles.touch(sidecarFile);
+            }
+            return current;
+        } catch (Exception e) {
+            log.info("Unreadable coverage summary " + sidecarFile.getAbsolutePath() + ", it will be recomputed");
+            return false;
+        }
+    }
+
+    /**
+     * Compute coverage for an alignment file.  The output is written to a temporary file which replaces the sidecar
+     * on success.
+     */
+    public static void compute(File alignmentFile, File sidecarFile, Genome genome) throws IOException {
+
+        SidecarFiles.write(sidecarFile, tmpFile -> {
+            Preprocessor p = new Preprocessor(tmpFile, genome, Arrays.asList(WindowFunction.mean), -1, new QuietMonitor());
+            p.setSkipZeroes(true);
+
+            CoverageCounter counter = new CoverageCounter(alignmentFile.getAbsolutePath(), p, WINDOW_SIZE, 0, null,
+                    genome, null, 0, 0);
+            p.setTrackParameters(TrackType.COVERAGE, null, counter.getTrackNames(alignmentFile.getName() + " "));
+            p.setSizeEstimate((int) (genome.getNominalLength() / WINDOW_SIZE));
+            p.setAttribute(VERSION_KEY, VERSION);
+            p.setAttribute(SOURCE_LENGTH_KEY, String.valueOf(alignmentFile.length()));
+            p.setAttribute(SOURCE_LAST_MODIFIED_KEY, String.valueOf(alignmentFile.lastModified()));
+
+            counter.parse();
+            p.finish();
+        });
+    }
+
+    /**
+     * Attach the sidecar for the track's alignment file to the coverage track.  If the sidecar is missing or out of
+     * date it is computed in the background and attached when done.  Tracks which already have precomputed coverage
+     * are left alone.
+     */
+    public static void attach(final CoverageTrack track, ResourceLocator locator, final Genome genome) {
+
+        final File alignmentFile = new File(locator.getPath());
+        final File sidecarFile = getSidecarFile(alignmentFile);
+        final String name = track.getName();
+
+        if (isCurrent(alignmentFile, sidecarFile, genome.getId())) {
+            track.setDataSource(new TDFDataSource(TDFReader.getReader(sidecarFile.getAbsolutePath()), 0, name, genome));
+            return;
+        }
+
+        synchronized (CoverageSidecar.class) {
+            if (!pending.add(sidecarFile.getAbsolutePath())) {
+                return;
+            }
+        }
+
+        executor.submit(() -> {
+            try {
+                long t0 = System.currentTimeMillis();
+                compute(alignmentFile, sidecarFile, genome);
+                log.info("Computed coverage summary for " + alignmentFile.getName() + " in " +
+                        (System.currentTimeMillis() - t0) + " ms");
+
+                final TDFDataSource ds = new TDFDataSource(TDFReader.getReader(sidecarFile.getAbsolutePath()), 0, name, genome);
+                UIUtilities.invokeOnEventThread(() -> {
+                    if (!track.isRemoved() && !track.hasDataSource()) {
+                        track.setDataSource(ds);
+                        track.repaint();
+                    }
+                });
+            } catch (Exception e) {
+                log.error("Error computing coverage summary for " + alignmentFile.getAbsolutePath(), e);
+            } finally {
+                synchronized (CoverageSidecar.class) {
+                    pending.remove(sidecarFile.getAbsolutePath());
+                }
+            }
+        });
+    }
+
+    /**
+     * Status monitor that reports nothing, the Preprocessor default writes progress to the console.
+     */
+    private static class QuietMonitor implements StatusMonitor {
+
+        public void setPercentComplete(double percentComplete) {
+        }
+
+        public void incrementPercentComplete(double increment) {
+        }
+
+        public boolean isInterrupted() {
+            return false;
+        }
+    }
+}
@@ -161,10 +161,24 @@ public class CoverageTrack extends AbstractTrack implements ScalableTrack {
 
     }
 
+    public boolean hasDataSource() {
+        return dataSource != null;
+    }
+
+    /**
+     * Return true if coverage is drawn from precomputed data alone.  This is the case when the alignment track is
+     * hidden, alignments are then not loaded just to count coverage.
+     */
+    private boolean isPrecomputedOnly() {
+        return dataSource != null && (alignmentTrack == null || !alignmentTrack.isVisible());
+    }
+
     @Override
     public boolean isReadyToPaint(ReferenceFrame frame) {
         if (frame.getChrName().equals(Globals.CHR_ALL) || frame.getScale() > dataManager.getMinVisibleScale()) {
             return true;   // Nothing to paint
+        } else if (isPrecomputedOnly()) {
+            return true;
         } else {
             return dataManager.isLoaded(frame);
         }
@@ -172,6 +186,9 @@ public class CoverageTrack extends AbstractTrack implements ScalableTrack {
 
     @Override
     public void load(ReferenceFrame referenceFrame) {
+        if (isPrecomputedOnly()) {
+            return;
+        }
         dataManager.load(referenceFrame, alignmentTrack.renderOptions, true);
     }
 
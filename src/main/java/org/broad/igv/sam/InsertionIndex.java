@@ -0,0 +1,153 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.sam;
+
+import java.util.Arrays;
+
+/**
+ * Insertion positions of a loaded alignment interval, collected while the interval's alignments are streamed and
+ * then sorted into primitive arrays for binary search.
+ * <p>
+ * During loading each insertion is recorded as a long key packing (position, size).  When the key buffer fills it
+ * is sorted and collapsed to one key per position before it is allowed to grow, so memory is bounded by the number
+ * of distinct insertion sites rather than by read depth.
+ */
+public class InsertionIndex {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final int minLength;
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private int keyCount = 0;
+
+    private int[] positions = new int[0];
+    private int[] sizes = new int[0];
+
+    /**
+     * @param minLength insertions shorter than this are ignored
+     */
+    public InsertionIndex(int minLength) {
+        this.minLength = minLength;
+    }
+
+    public void add(Alignment alignment) {
+        AlignmentBlock[] blocks = alignment.getInsertions();
+        if (blocks != null) {
+            for (AlignmentBlock block : blocks) {
+                if (block.getBases() == null || block.getBases().length < minLength) continue;
+                add(block.getStart(), block.getLength());
+            }
+        }
+    }
+
+    public void add(int position, int size) {
+        if (keys == null) {
+            throw new IllegalStateException("Insertion index is finished");
+        }
+        if (keyCount == keys.length) {
+            compact();
+            if (keyCount > keys.length / 2) {
+                keys = Arrays.copyOf(keys, keys.length * 2);
+            }
+        }
+        keys[keyCount++] = pack(position, size);
+    }
+
+    /**
+     * Sort and collapse the collected insertions.  Must be called before the index is queried.
+     */
+    public void finish() {
+        if (keys == null) return;   // Already finished
+        compact();
+        positions = new int[keyCount];
+        sizes = new int[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            positions[i] = (int) ((keys[i] >>> 32) + Integer.MIN_VALUE);
+            sizes[i] = (int) keys[i];
+        }
+        keys = null;
+        keyCount = 0;
+    }
+
+    public int size() {
+        return positions.length;
+    }
+
+    public int getPosition(int idx) {
+        return positions[idx];
+    }
+
+    public int getSize(int idx) {
+        return sizes[idx];
+    }
+
+    /**
+     * Return the index of the first insertion at or after {@code position}, or {@link #size()} if there is none.
+     */
+    public int firstIndexAtOrAfter(double position) {
+        int low = 0;
+        int high = positions.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (positions[mid] < position) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Return the size of the largest insertion at {@code position}, or -1 if there is none.
+     */
+    public int getSizeAt(int position) {
+        int idx = Arrays.binarySearch(positions, position);
+        return idx < 0 ? -1 : sizes[idx];
+    }
+
+    /**
+     * Sort the key buffer and keep one key, with the largest size, per position.
+     */
+    private void compact() {
+        if (keyCount == 0) return;
+        Arrays.sort(keys, 0, keyCount);
+        int n = 0;
+        for (int i = 0; i < keyCount; i++) {
+            // Keys are ordered by position, then size, so the last key of a run has the largest size
+            if (n > 0 && (keys[n - 1] >>> 32) == (keys[i] >>> 32)) {
+                keys[n - 1] = keys[i];
+            } else {
+                keys[n++] = keys[i];
+            }
+        }
+        keyCount = n;
+    }
+
+    static long pack(int position, int size) {
+        return (((long) position - Integer.MIN_VALUE) << 32) | (size & 0xFFFFFFFFL);
+    }
+}
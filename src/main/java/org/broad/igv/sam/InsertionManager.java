@@ -26,58 +26,91 @@
 
 package org.broad.igv.sam;
 
-import org.broad.igv.feature.genome.Genome;
-import org.broad.igv.feature.genome.GenomeManager;
-import org.broad.igv.prefs.PreferencesManager;
-
 import java.util.*;
-
-import static org.broad.igv.prefs.Constants.SAM_HIDE_SMALL_INDEL;
-import static org.broad.igv.prefs.Constants.SAM_SMALL_INDEL_BP_THRESHOLD;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Created by jrobinso on 12/22/16.
  * <p>
  * Experimental class to test strategies for drawing insertions
+ * <p>
+ * Insertions are not collected here.  Each loaded {@link AlignmentInterval} carries an {@link InsertionIndex} built
+ * during its load, which is registered when the interval enters an {@link AlignmentDataManager}'s cache and
+ * unregistered when it is evicted.  Queries merge the indexes registered for a chromosome.
  */
 public class InsertionManager {
 
     private static InsertionManager theInstance = new InsertionManager();
 
-    private Map<String, Map<Integer, InsertionMarker>> insertionMaps;
-    private Map<String, List<Integer>> positionsMap;
-    private Map<String, Integer> selectedInsertions;
+    private Map<String, List<AlignmentInterval>> intervalMap;
+    private Map<String, InsertionMarker> selectedInsertions;
 
     public static InsertionManager getInstance() {
         return theInstance;
     }
 
     private InsertionManager() {
-        this.insertionMaps = Collections.synchronizedMap(new HashMap<>(100));
-        this.positionsMap = Collections.synchronizedMap(new HashMap<>(100));
+        this.intervalMap = Collections.synchronizedMap(new HashMap<>(100));
         this.selectedInsertions = Collections.synchronizedMap(new HashMap<>(100));
     }
 
     public void clear() {
-        this.insertionMaps.clear();
-        this.positionsMap.clear();
-        this.selectedInsertions.clear();;
+        this.intervalMap.clear();
+        this.selectedInsertions.clear();
     }
 
-    public List<InsertionMarker> getInsertions(String chrName, double start, double end) {
+    /**
+     * Make the insertions of a loaded interval visible
+     */
+    public void register(AlignmentInterval interval) {
+        if (interval.getInsertionIndex() == null) return;
+        intervalMap.computeIfAbsent(interval.getChr(), k -> new CopyOnWriteArrayList<>()).add(interval);
+    }
+
+    /**
+     * Remove the insertions of an evicted interval
+     */
+    public void unregister(AlignmentInterval interval) {
+        List<AlignmentInterval> intervals = intervalMap.get(interval.getChr());
+        if (intervals != null) {
+            intervals.remove(interval);
+        }
+    }
 
+    public List<InsertionMarker> getInsertions(String chrName, double start, double end) {
 
-        Map<Integer, InsertionMarker> insertionMap = insertionMaps.get(chrName);
-        List<Integer> positions = positionsMap.get(chrName);
-        if(insertionMap == null || positions == null) return null;
+        List<AlignmentInterval> intervals = intervalMap.get(chrName);
+        if (intervals == null || intervals.isEmpty()) return null;
 
+        InsertionMarker selected = selectedInsertions.get(chrName);
         List<InsertionMarker> insertionMarkers = new ArrayList<>();
-        for (int i = 0; i < positions.size(); i++) {
-            final Integer key = positions.get(i);
-            if (key > end) break;
-            if (key >= start) {
-                final InsertionMarker insertionMarker = insertionMap.get(key);
-                insertionMarkers.add(insertionMarker);
+
+        if (intervals.size() == 1) {
+            InsertionIndex index = intervals.get(0).getInsertionIndex();
+            for (int i = index.firstIndexAtOrAfter(start); i < index.size(); i++) {
+                int position = index.getPosition(i);
+                if (position > end) break;
+                insertionMarkers.add(getMarker(selected, position, index.getSize(i)));
+            }
+        } else {
+            // Overlapping intervals (e.g. from several alignment tracks) can share positions.  Merge through packed
+            // (position, size) keys, keeping the largest size at each position.
+            long[] keys = new long[64];
+            int n = 0;
+            for (AlignmentInterval interval : intervals) {
+                InsertionIndex index = interval.getInsertionIndex();
+                for (int i = index.firstIndexAtOrAfter(start); i < index.size(); i++) {
+                    int position = index.getPosition(i);
+                    if (position > end) break;
+                    if (n == keys.length) keys = Arrays.copyOf(keys, 2 * n);
+                    keys[n++] = InsertionIndex.pack(position, index.getSize(i));
+                }
+            }
+            Arrays.sort(keys, 0, n);
+            for (int i = 0; i < n; i++) {
+                if (i + 1 < n && (keys[i] >>> 32) == (keys[i + 1] >>> 32)) continue;
+                int position = (int) ((keys[i] >>> 32) + Integer.MIN_VALUE);
+                insertionMarkers.add(getMarker(selected, position, (int) keys[i]));
             }
         }
         return insertionMarkers;
@@ -85,62 +118,47 @@ public class InsertionManager {
     }
 
     public void setSelected(String chrName, int position) {
-        this.selectedInsertions.put(chrName, position);
+        int size = getSizeAt(chrName, position);
+        if (size >= 0) {
+            this.selectedInsertions.put(chrName, new InsertionMarker(position, size));
+        }
     }
 
     public void clearSelected() {
         this.selectedInsertions.clear();
     }
 
+    /**
+     * Return the selected insertion, or null if there is none or if no loaded interval contains it any longer
+     */
     public InsertionMarker getSelectedInsertion(String chrName) {
-        Integer selectedInsertion = selectedInsertions.get(chrName);
-        Map<Integer, InsertionMarker> insertionMap = insertionMaps.get(chrName);
-        return (selectedInsertion == null  || insertionMap == null) ? null : insertionMap.get(selectedInsertion);
+        InsertionMarker selected = selectedInsertions.get(chrName);
+        if (selected == null) return null;
+        int size = getSizeAt(chrName, selected.position);
+        if (size < 0) return null;
+        selected.size = Math.max(selected.size, size);
+        return selected;
     }
 
-    
-    public synchronized void processAlignments(String chr, List<Alignment> alignments) {
-
-        Genome genome = GenomeManager.getInstance().getCurrentGenome();
-        chr = genome == null ? chr : genome.getCanonicalChrName(chr);
-
-        Map<Integer, InsertionMarker> insertionMap = insertionMaps.get(chr);
-        if(insertionMap == null) {
-            insertionMap =  Collections.synchronizedMap(new HashMap<>());
-            insertionMaps.put(chr, insertionMap);
-        }
-        List<Integer> positions = positionsMap.get(chr);
-        if(positions == null) {
-            positions = new ArrayList<>();
-            positionsMap.put(chr, positions);
-        }
-
-        int minLength = 0;
-        if (PreferencesManager.getPreferences().getAsBoolean(SAM_HIDE_SMALL_INDEL)) {
-            minLength = PreferencesManager.getPreferences().getAsInt(SAM_SMALL_INDEL_BP_THRESHOLD);
-        }
-
-        for (Alignment a : alignments) {
-            AlignmentBlock[] blocks = a.getInsertions();
-            if (blocks != null) {
-                for (AlignmentBlock block : blocks) {
-                    if (block.getBases() == null || block.getBases().length < minLength) continue;
-                    Integer key = block.getStart();
-                    InsertionMarker insertionMarker = insertionMap.get(key);
-                    if (insertionMarker == null) {
-                        insertionMarker = new InsertionMarker(block.getStart(), block.getLength());
-                        insertionMap.put(key, insertionMarker);
-                        positions.add(block.getStart());
-                    } else {
-                        insertionMarker.size = Math.max(insertionMarker.size, block.getLength());
-                    }
-                }
+    private int getSizeAt(String chrName, int position) {
+        List<AlignmentInterval> intervals = intervalMap.get(chrName);
+        int size = -1;
+        if (intervals != null) {
+            for (AlignmentInterval interval : intervals) {
+                size = Math.max(size, interval.getInsertionIndex().getSizeAt(position));
             }
         }
-
-        positions.addAll(insertionMap.keySet());
-        positions.sort((o1, o2) -> o1 - o2);
+        return size;
     }
 
-
+    /**
+     * The selected marker is shared with renderers, which record its pixel position, so return it rather than a copy
+     */
+    private static InsertionMarker getMarker(InsertionMarker selected, int position, int size) {
+        if (selected != null && selected.position == position) {
+            selected.size = Math.max(selected.size, size);
+            return selected;
+        }
+        return new InsertionMarker(position, size);
+    }
 }
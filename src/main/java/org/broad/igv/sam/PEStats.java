@@ -76,7 +76,24 @@ public class PEStats {
     }
 
 
-    public void update(Alignment alignment) {
+    /**
+     * Return a copy of the samples and orientation counts, with thresholds and orientation computed independently
+     * of this instance
+     */
+    public synchronized PEStats copy() {
+        PEStats copy = new PEStats(library);
+        for (int i = 0; i < insertSizes.size(); i++) {
+            copy.insertSizes.add(insertSizes.get(i));
+        }
+        copy.frCount = frCount;
+        copy.rfCount = rfCount;
+        copy.f1f2Count = f1f2Count;
+        copy.f2f1Count = f2f1Count;
+        copy.totalCount = totalCount;
+        return copy;
+    }
+
+    public synchronized void update(Alignment alignment) {
 
         if (alignment.isProperPair()) {
             insertSizes.add(Math.abs(alignment.getInferredInsertSize()));
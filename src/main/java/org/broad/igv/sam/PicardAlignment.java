@@ -27,6 +27,7 @@ package org.broad.igv.sam;
 
 //~--- non-JDK imports --------------------------------------------------------
 
+import htsjdk.samtools.BAMRecord;
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMReadGroupRecord;
 import htsjdk.samtools.SAMRecord;
@@ -39,10 +40,17 @@ import org.broad.igv.prefs.IGVPreferences;
 import org.broad.igv.prefs.PreferencesManager;
 import org.broad.igv.ui.color.ColorUtilities;
 
+import java.awt.Color;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
+ * Alignment backed by an htsjdk SAMRecord.
+ * <p>
+ * Alignment blocks, the read group record, and the YC color are computed on first use.  For BAM records optional
+ * fields are read directly from the record's binary tag block, see {@link BAMTags}, so tests for absent tags
+ * don't require decoding all of them.
+ *
  * @author jrobinso
  */
 public class PicardAlignment extends SAMAlignment implements Alignment {
@@ -64,8 +72,20 @@ public class PicardAlignment extends SAMAlignment implements Alignment {
     private static final int SUPPLEMENTARY_ALIGNMENT_FLAG = 0x800;
 
     private SAMReadGroupRecord readGroupRecord;
+    private boolean readGroupResolved;
+    private boolean ycColorResolved;
     private int flags;
 
+    /**
+     * Binary data of a BAM record, and the offset of its tag block.  Null if the record is not a BAMRecord.
+     */
+    private byte[] tagData;
+    private int tagOffset;
+    private long tagMask;
+
+    private final boolean showSoftClipped;
+    private volatile boolean blocksCreated;
+
     /**
      * Picard object upon which this PicardAlignment is based
      */
@@ -97,33 +117,29 @@ public class PicardAlignment extends SAMAlignment implements Alignment {
                     record.getMateUnmappedFlag()));
         }
 
-        SAMFileHeader header = record.getHeader();
-        String keySequence = null;
-        String flowOrder = null;
-        if (header != null) {
-            String readGroup = (String) record.getAttribute("RG");
-            if (readGroup != null) {
-                this.readGroupRecord = header.getReadGroup(readGroup);
-                if(this.readGroupRecord != null) {
-                    keySequence = this.readGroupRecord.getKeySequence();
-                    flowOrder = this.readGroupRecord.getFlowOrder();
+        if (record instanceof BAMRecord) {
+            BAMRecord bamRecord = (BAMRecord) record;
+            byte[] data = bamRecord.getVariableBinaryRepresentation();
+            if (data != null) {
+                try {
+                    int offset = data.length - bamRecord.getAttributesBinarySize();
+                    this.tagMask = BAMTags.mask(data, offset);
+                    this.tagOffset = offset;
+                    this.tagData = data;
+                } catch (RuntimeException e) {
+                    log.debug("Error reading tags of " + record.getReadName(), e);
                 }
             }
         }
 
-        Object colorTag = record.getAttribute("YC");
-        if (colorTag != null) {
-            try {
-                ycColor = ColorUtilities.stringToColor(colorTag.toString(), null);
-            } catch (Exception e) {
-                log.error("Error interpreting color tag: " + colorTag, e);
-            }
-        }
-
         setPairOrientation();
         setPairStrands();
-        createAlignmentBlocks(record.getCigarString(), record.getReadBases(), record.getBaseQualities());
 
+        // Start and end must be final when the alignment is placed, blocks are created on demand
+        this.showSoftClipped = prefMgr.getAsBoolean(Constants.SAM_SHOW_SOFT_CLIPPED);
+        if (showSoftClipped) {
+            adjustForSoftClips(buildOperators(record.getCigarString()), true);
+        }
 
     }      // End constructor
 
@@ -136,8 +152,83 @@ public class PicardAlignment extends SAMAlignment implements Alignment {
 
     public Object getAttribute(String key) {
         // SAM alignment tag keys must be of length 2
-        return key.length() == 2 ? record.getAttribute(key) :
-                (key.equals("TEMPLATE_ORIENTATION") ? pairOrientation : null);
+        if (key.length() != 2) {
+            return key.equals("TEMPLATE_ORIENTATION") ? pairOrientation : null;
+        }
+        if (tagData != null) {
+            if (!BAMTags.mayContain(tagMask, key)) {
+                return null;
+            }
+            int typePos = BAMTags.find(tagData, tagOffset, key);
+            if (typePos < 0) {
+                return null;
+            }
+            Object value = BAMTags.decode(tagData, typePos);
+            if (value != BAMTags.UNDECODED) {
+                return value;
+            }
+        }
+        return record.getAttribute(key);
+    }
+
+    @Override
+    public Color getYcColor() {
+        if (!ycColorResolved) {
+            Object colorTag = getAttribute("YC");
+            if (colorTag != null) {
+                try {
+                    ycColor = ColorUtilities.stringToColor(colorTag.toString(), null);
+                } catch (Exception e) {
+                    log.error("Error interpreting color tag: " + colorTag, e);
+                }
+            }
+            ycColorResolved = true;
+        }
+        return ycColor;
+    }
+
+    @Override
+    public AlignmentBlock[] getAlignmentBlocks() {
+        ensureBlocks();
+        return alignmentBlocks;
+    }
+
+    @Override
+    public AlignmentBlockImpl[] getInsertions() {
+        ensureBlocks();
+        return insertions;
+    }
+
+    @Override
+    public List<Gap> getGaps() {
+        ensureBlocks();
+        return gaps;
+    }
+
+    private void ensureBlocks() {
+        if (!blocksCreated) {
+            synchronized (this) {
+                if (!blocksCreated) {
+                    createAlignmentBlocks(record.getCigarString(), record.getReadBases(), record.getBaseQualities(),
+                            showSoftClipped, false);
+                    blocksCreated = true;
+                }
+            }
+        }
+    }
+
+    private SAMReadGroupRecord getReadGroupRecord() {
+        if (!readGroupResolved) {
+            SAMFileHeader header = record.getHeader();
+            if (header != null) {
+                String readGroup = (String) getAttribute("RG");
+                if (readGroup != null) {
+                    readGroupRecord = header.getReadGroup(readGroup);
+                }
+            }
+            readGroupResolved = true;
+        }
+        return readGroupRecord;
     }
 
 
@@ -306,14 +397,17 @@ public class PicardAlignment extends SAMAlignment implements Alignment {
     }
 
     public String getSample() {
+        SAMReadGroupRecord readGroupRecord = getReadGroupRecord();
         return readGroupRecord == null ? null : readGroupRecord.getSample();
     }
 
     public String getReadGroup() {
+        SAMReadGroupRecord readGroupRecord = getReadGroupRecord();
         return readGroupRecord == null ? null : readGroupRecord.getId();
     }
 
     public String getLibrary() {
+        SAMReadGroupRecord readGroupRecord = getReadGroupRecord();
         return readGroupRecord == null ? null : readGroupRecord.getLibrary();
     }
 }
@@ -28,6 +28,7 @@ package org.broad.igv.sam;
 import org.broad.igv.feature.Strand;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -44,6 +45,9 @@ public class Row implements Comparable<Row> {
     public double y;
     public double h;
 
+    // Viewport index, built on first use
+    private volatile Index index;
+
     public Row() {
         nextIdx = 0;
         this.alignments = new ArrayList(100);
@@ -57,6 +61,105 @@ public class Row implements Comparable<Row> {
 //        } else {
         alignments.add(alignment);
 //        }
+        index = null;
+    }
+
+    /**
+     * Return the alignments in this row which might overlap the closed interval [start, end].  The result is a
+     * view of the row's alignment list, in row order, found by binary search on the viewport index.
+     * Callers should still test each alignment, a returned alignment is not guaranteed to overlap.
+     */
+    public List<Alignment> getAlignmentsOverlapping(double start, double end) {
+        Index idx = getIndex();
+        int first = idx.firstIndexEndingAfter(start);
+        int last = idx.firstIndexStartingAfter(end);
+        return first < last ? alignments.subList(first, last) : Collections.emptyList();
+    }
+
+    /**
+     * Return the first alignment containing {@code position}, inclusive of the end, or null if there is none.
+     */
+    public Alignment getAlignmentAt(double position) {
+        for (Alignment alignment : getAlignmentsOverlapping(position, position)) {
+            if (position >= alignment.getStart() && position <= alignment.getEnd()) {
+                return alignment;
+            }
+        }
+        return null;
+    }
+
+    private Index getIndex() {
+        Index idx = index;
+        if (idx == null || idx.size != alignments.size()) {
+            idx = new Index(alignments);
+            index = idx;
+        }
+        return idx;
+    }
+
+    /**
+     * Alignment starts in row order, and a running maximum of alignment ends.  Alignments are packed into rows in
+     * order of start, so both arrays are non-decreasing and can be binary searched.  If a row is not sorted by start
+     * the index covers the entire row.
+     */
+    private static class Index {
+
+        final int size;
+        final int[] starts;
+        final int[] maxEnds;
+        final boolean sorted;
+
+        Index(List<Alignment> alignments) {
+            size = alignments.size();
+            starts = new int[size];
+            maxEnds = new int[size];
+            boolean sorted = true;
+            int maxEnd = Integer.MIN_VALUE;
+            for (int i = 0; i < size; i++) {
+                Alignment a = alignments.get(i);
+                starts[i] = a.getStart();
+                maxEnd = Math.max(maxEnd, a.getEnd());
+                maxEnds[i] = maxEnd;
+                if (i > 0 && starts[i] < starts[i - 1]) {
+                    sorted = false;
+                }
+            }
+            this.sorted = sorted;
+        }
+
+        /**
+         * Index of the first alignment which could end at or after {@code position}
+         */
+        int firstIndexEndingAfter(double position) {
+            if (!sorted) return 0;
+            int lo = 0, hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (maxEnds[mid] < position) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        /**
+         * Index of the first alignment starting after {@code position}
+         */
+        int firstIndexStartingAfter(double position) {
+            if (!sorted) return size;
+            int lo = 0, hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (starts[mid] <= position) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
     }
 
     public void updateScore(AlignmentTrack.SortOption option, double center, AlignmentInterval interval, String tag) {
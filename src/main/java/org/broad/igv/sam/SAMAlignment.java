@@ -162,7 +162,7 @@ public abstract class SAMAlignment implements Alignment {
 
     public byte getBase(double position) {
         int basePosition = (int) position;
-        for (AlignmentBlock block : this.alignmentBlocks) {
+        for (AlignmentBlock block : getAlignmentBlocks()) {
             if (block.contains(basePosition)) {
                 int offset = basePosition - block.getStart();
                 byte base = block.getBase(offset);
@@ -174,7 +174,7 @@ public abstract class SAMAlignment implements Alignment {
 
     public byte getPhred(double position) {
         int basePosition = (int) position;
-        for (AlignmentBlock block : this.alignmentBlocks) {
+        for (AlignmentBlock block : getAlignmentBlocks()) {
             if (block.contains(basePosition)) {
                 int offset = basePosition - block.getStart();
                 byte qual = block.getQuality(offset);
@@ -239,6 +239,17 @@ public abstract class SAMAlignment implements Alignment {
      * @param readBaseQualities
      */
     protected void createAlignmentBlocks(String cigarString, byte[] readBases, byte[] readBaseQualities) {
+        boolean showSoftClipped = PreferencesManager.getPreferences().getAsBoolean(Constants.SAM_SHOW_SOFT_CLIPPED);
+        createAlignmentBlocks(cigarString, readBases, readBaseQualities, showSoftClipped, true);
+    }
+
+    /**
+     * Create the alignment blocks.  If {@code adjustStartEnd} is false start and end are assumed to have been
+     * extended for soft clipped bases already, see {@link #adjustForSoftClips(List, boolean)}.  This allows blocks
+     * to be created on demand, after the alignment has been placed.
+     */
+    protected void createAlignmentBlocks(String cigarString, byte[] readBases, byte[] readBaseQualities,
+                                         boolean showSoftClipped, boolean adjustStartEnd) {
 
         if (cigarString.equals("*")) {
             alignmentBlocks = new AlignmentBlockImpl[1];
@@ -249,8 +260,6 @@ public abstract class SAMAlignment implements Alignment {
         // Create list of cigar operators
         java.util.List<CigarOperator> operators = buildOperators(cigarString);
 
-        boolean showSoftClipped = PreferencesManager.getPreferences().getAsBoolean(Constants.SAM_SHOW_SOFT_CLIPPED);
-
         int nInsertions = 0;
         int nBlocks = 0;
         boolean firstOperator = true;
@@ -299,9 +308,9 @@ public abstract class SAMAlignment implements Alignment {
             gaps = new ArrayList<Gap>();
         }
 
-        // Adjust start to include soft clipped bases a
-        if (showSoftClipped) {
-            start -= softClippedBaseCount;
+        // Adjust start and end to include soft clipped bases
+        if (adjustStartEnd) {
+            adjustForSoftClips(operators, showSoftClipped);
         }
         int fromIdx = showSoftClipped ? 0 : softClippedBaseCount;
         int blockStart = start;
@@ -380,9 +389,26 @@ public abstract class SAMAlignment implements Alignment {
             }
             prevOp = op.operator;
         }
+    }
+
+    /**
+     * Extend start and end to include leading and trailing soft clipped bases, if soft clips are shown
+     */
+    protected void adjustForSoftClips(List<CigarOperator> operators, boolean showSoftClipped) {
 
-        // Check for soft clipping at end
-        if (showSoftClipped && operators.size() > 0) {
+        if (!showSoftClipped) {
+            return;
+        }
+        for (CigarOperator operator : operators) {
+            if (operator.operator == HARD_CLIP) {
+                continue;
+            }
+            if (operator.operator != SOFT_CLIP) {
+                break;
+            }
+            start -= operator.nBases;
+        }
+        if (operators.size() > 0) {
             CigarOperator last = operators.get(operators.size() - 1);
             if (last.operator == SOFT_CLIP) {
                 end += last.nBases;
@@ -484,8 +510,9 @@ public abstract class SAMAlignment implements Alignment {
         }
 
         // First check insertions.  Position is zero based, block coords 1 based
-        if (this.insertions != null) {
-            for (AlignmentBlock block : this.insertions) {
+        AlignmentBlock[] insertions = getInsertions();
+        if (insertions != null) {
+            for (AlignmentBlock block : insertions) {
 
                 if (block.containsPixel(mouseX)) {
 
@@ -631,7 +658,7 @@ public abstract class SAMAlignment implements Alignment {
 
         // Specific base
 
-        for (AlignmentBlock block : this.alignmentBlocks) {
+        for (AlignmentBlock block : getAlignmentBlocks()) {
             if (block.contains(basePosition)) {
 
                 buf.append("<hr>");
@@ -743,7 +770,7 @@ public abstract class SAMAlignment implements Alignment {
 
     @Override
     public AlignmentBlock getInsertionAt(int position) {
-        for (AlignmentBlock block : insertions) {
+        for (AlignmentBlock block : getInsertions()) {
             if (block.getStart() == position) return block;
             if (block.getStart() > position) return null;  // Blocks increase lineraly
         }
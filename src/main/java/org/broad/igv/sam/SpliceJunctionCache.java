@@ -0,0 +1,230 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.sam;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.DirectoryManager;
+import org.broad.igv.feature.Strand;
+import org.broad.igv.prefs.IGVPreferences;
+import org.broad.igv.prefs.PreferencesManager;
+import org.broad.igv.sam.reader.ReadGroupFilter;
+import org.broad.igv.util.ResourceLocator;
+import org.broad.igv.util.SidecarFiles;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.broad.igv.prefs.Constants.*;
+
+/**
+ * Sidecar cache of splice junctions computed from a local alignment file, stored in the IGV index directory.  When
+ * a loaded interval is contained in a cached interval the junctions are read from the cache, and junction counting
+ * is skipped for that load.
+ * <p>
+ * Junction depths depend on the filters applied while loading, so the cache records the settings it was computed
+ * with and is discarded if they change.  A junction's depth does not depend on the extent of the loaded interval
+ * as long as the junction overlaps it, since every supporting read overlaps the interval too.
+ * <p>
+ * File layout (big endian)
+ * <pre>
+ *   header (see {@link SidecarFiles}), UTF settings
+ *   int entryCount, entryCount x { UTF chr, int start, int end, int length, byte[length] junctions }
+ *   junctions:  UTF alignmentChr, + strand columns, - strand columns (see SpliceJunctionHelper.JunctionColumns)
+ * </pre>
+ * Entries are ordered most recent first.
+ */
+public class SpliceJunctionCache {
+
+    private static Logger log = Logger.getLogger(SpliceJunctionCache.class);
+
+    static final int MAGIC = 0x49474a43;   // "IGJC"
+    static final int VERSION = 2;
+    static final int MAX_ENTRIES = 32;
+
+    /**
+     * Return true if junctions for this resource should be read from, and saved to, the cache
+     */
+    public static boolean isEnabled(ResourceLocator locator) {
+        return PreferencesManager.getPreferences().getAsBoolean(SAM_JUNCTION_CACHE) &&
+                locator.isLocal() &&
+                new File(locator.getPath()).isFile() &&
+                ReadGroupFilter.getFilter() == null;
+    }
+
+    public static File getCacheFile(File alignmentFile) {
+        return SidecarFiles.getFile(DirectoryManager.getFeatureIndexDirectory(), alignmentFile, ".junctions");
+    }
+
+    /**
+     * Key for the preferences that determine which alignments are counted
+     */
+    static String getSettings(SpliceJunctionHelper.LoadOptions loadOptions) {
+        IGVPreferences prefs = PreferencesManager.getPreferences();
+        return loadOptions.minReadFlankingWidth + ";" +
+                prefs.getAsBoolean(SAM_FILTER_DUPLICATES) + ";" +
+                prefs.getAsBoolean(SAM_FILTER_FAILED_READS) + ";" +
+                prefs.getAsBoolean(SAM_FILTER_SECONDARY_ALIGNMENTS) + ";" +
+                prefs.getAsBoolean(SAM_FILTER_SUPPLEMENTARY_ALIGNMENTS) + ";" +
+                prefs.getAsInt(SAM_QUALITY_THRESHOLD) + ";" +
+                prefs.getAsInt(SAM_ALIGNMENT_SCORE_THRESHOLD) + ";" +
+                prefs.getAsBoolean(SAM_REDUCED_MEMORY_MODE) + ";" +
+                prefs.getAsInt(SAM_SMALL_INDEL_BP_THRESHOLD);
+    }
+
+    /**
+     * Return junctions for [start, end) on {@code chr} from the cache, or null if no cached interval contains it
+     */
+    public static SpliceJunctionHelper load(ResourceLocator locator, String chr, int start, int end,
+                                            SpliceJunctionHelper.LoadOptions loadOptions) {
+        File alignmentFile = new File(locator.getPath());
+        try {
+            return load(alignmentFile, getCacheFile(alignmentFile), getSettings(loadOptions), chr, start, end, loadOptions);
+        } catch (IOException e) {
+            log.error("Error reading junction cache for " + alignmentFile.getName(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Add the junctions of a fully loaded interval to the cache
+     */
+    public static void save(ResourceLocator locator, String chr, int start, int end, SpliceJunctionHelper helper,
+                            SpliceJunctionHelper.LoadOptions loadOptions) {
+        File alignmentFile = new File(locator.getPath());
+        try {
+            save(alignmentFile, getCacheFile(alignmentFile), getSettings(loadOptions), chr, start, end, helper);
+        } catch (IOException e) {
+            log.error("Error writing junction cache for " + alignmentFile.getName(), e);
+        }
+    }
+
+    static synchronized SpliceJunctionHelper load(File alignmentFile, File cacheFile, String settings,
+                                                  String chr, int start, int end,
+                                                  SpliceJunctionHelper.LoadOptions loadOptions) throws IOException {
+
+        try (DataInputStream dis = SidecarFiles.openIfCurrent(cacheFile, MAGIC, VERSION, alignmentFile)) {
+            if (dis == null || !dis.readUTF().equals(settings)) {
+                return null;
+            }
+            int entryCount = dis.readInt();
+            for (int i = 0; i < entryCount; i++) {
+                String entryChr = dis.readUTF();
+                int entryStart = dis.readInt();
+                int entryEnd = dis.readInt();
+                int length = dis.readInt();
+                if (entryChr.equals(chr) && entryStart <= start && entryEnd >= end) {
+                    String alignmentChr = dis.readUTF();
+                    SpliceJunctionHelper.JunctionColumns pos =
+                            SpliceJunctionHelper.JunctionColumns.read(dis, alignmentChr, Strand.POSITIVE);
+                    SpliceJunctionHelper.JunctionColumns neg =
+                            SpliceJunctionHelper.JunctionColumns.read(dis, alignmentChr, Strand.NEGATIVE);
+                    if (entryStart < start || entryEnd > end) {
+                        pos = pos.subset(start, end);
+                        neg = neg.subset(start, end);
+                    }
+                    return new SpliceJunctionHelper(loadOptions, pos, neg);
+                }
+                dis.skipBytes(length);
+            }
+        }
+        return null;
+    }
+
+    static synchronized void save(File alignmentFile, File cacheFile, String settings,
+                                  String chr, int start, int end, SpliceJunctionHelper helper) throws IOException {
+
+        SpliceJunctionHelper.JunctionColumns pos = helper.getJunctions(Strand.POSITIVE);
+        SpliceJunctionHelper.JunctionColumns neg = helper.getJunctions(Strand.NEGATIVE);
+        String alignmentChr = pos.chr != null ? pos.chr : (neg.chr != null ? neg.chr : chr);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream eos = new DataOutputStream(bytes);
+        eos.writeUTF(alignmentChr);
+        pos.write(eos);
+        neg.write(eos);
+        eos.flush();
+
+        List<Entry> entries = new ArrayList<>();
+        entries.add(new Entry(chr, start, end, bytes.toByteArray()));
+
+        // Keep existing entries, unless made redundant by the new one
+        if (cacheFile.exists()) {
+            try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+                if (readHeader(dis, alignmentFile, settings)) {
+                    int entryCount = dis.readInt();
+                    for (int i = 0; i < entryCount && entries.size() < MAX_ENTRIES; i++) {
+                        String entryChr = dis.readUTF();
+                        int entryStart = dis.readInt();
+                        int entryEnd = dis.readInt();
+                        byte[] data = new byte[dis.readInt()];
+                        dis.readFully(data);
+                        if (!(entryChr.equals(chr) && entryStart >= start && entryEnd <= end)) {
+                            entries.add(new Entry(entryChr, entryStart, entryEnd, data));
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                log.info("Replacing unreadable junction cache " + cacheFile.getName());
+            }
+        }
+
+        SidecarFiles.write(cacheFile, tmpFile -> {
+            try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+                SidecarFiles.writeHeader(dos, MAGIC, VERSION, alignmentFile);
+                dos.writeUTF(settings);
+                dos.writeInt(entries.size());
+                for (Entry entry : entries) {
+                    dos.writeUTF(entry.chr);
+                    dos.writeInt(entry.start);
+                    dos.writeInt(entry.end);
+                    dos.writeInt(entry.data.length);
+                    dos.write(entry.data);
+                }
+            }
+        });
+    }
+
+    private static boolean readHeader(DataInputStream dis, File alignmentFile, String settings) throws IOException {
+        return SidecarFiles.readHeader(dis, MAGIC, VERSION, Collections.singletonList(alignmentFile)) &&
+                dis.readUTF().equals(settings);
+    }
+
+    private static class Entry {
+        final String chr;
+        final int start;
+        final int end;
+        final byte[] data;
+
+        Entry(String chr, int start, int end, byte[] data) {
+            this.chr = chr;
+            this.start = start;
+            this.end = end;
+            this.data = data;
+        }
+    }
+}
@@ -23,11 +23,8 @@
  * THE SOFTWARE.
  */
 
-
 package org.broad.igv.sam;
 
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.Table;
 import org.apache.log4j.Logger;
 import org.broad.igv.feature.FeatureUtils;
 import org.broad.igv.feature.SpliceJunctionFeature;
@@ -35,14 +32,22 @@ import org.broad.igv.feature.Strand;
 import org.broad.igv.prefs.Constants;
 import org.broad.igv.prefs.IGVPreferences;
 import org.broad.igv.prefs.PreferencesManager;
+import org.broad.igv.util.collections.IntArrayList;
+import org.broad.igv.util.collections.LongIntHashMap;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.*;
 
 /**
  * A helper class for computing splice junctions from alignments.
  * Junctions are filtered based on minimum flanking width on loading, so data
  * needs to be
+ * <p>
+ * During loading junction depths, and the flanking widths of supporting reads, are counted per strand in primitive
+ * hash tables keyed by (start, end).  {@link #finish()} freezes the counts into {@link JunctionColumns} and
+ * materializes the features for every {@link SpliceJunctionTrack.StrandOption} once.
  *
  * @author dhmay, jrobinso
  * @date Jul 3, 2011
@@ -51,12 +56,15 @@ public class SpliceJunctionHelper {
 
     static Logger log = Logger.getLogger(SpliceJunctionHelper.class);
 
-    List<SpliceJunctionFeature> allSpliceJunctionFeatures = new ArrayList<SpliceJunctionFeature>();
-    //  List<SpliceJunctionFeature> filteredSpliceJunctionFeatures = null;
-    List<SpliceJunctionFeature> filteredCombinedFeatures = null;
+    private StrandCounts posCounts = new StrandCounts();
+    private StrandCounts negCounts = new StrandCounts();
+    private String chr;
 
-    Table<Integer, Integer, SpliceJunctionFeature> posStartEndJunctionsMap = HashBasedTable.create();
-    Table<Integer, Integer, SpliceJunctionFeature> negStartEndJunctionsMap = HashBasedTable.create();
+    private JunctionColumns posJunctions;
+    private JunctionColumns negJunctions;
+    private Map<SpliceJunctionTrack.StrandOption, List<SpliceJunctionFeature>> junctions;
+    private Map<SpliceJunctionTrack.StrandOption, List<SpliceJunctionFeature>> filteredJunctions =
+            new EnumMap<>(SpliceJunctionTrack.StrandOption.class);
 
     private LoadOptions loadOptions;
 
@@ -64,31 +72,38 @@ public class SpliceJunctionHelper {
         this.loadOptions = loadOptions;
     }
 
-    public List<SpliceJunctionFeature> getFilteredJunctions(SpliceJunctionTrack.StrandOption strandOption) {
-
-        List<SpliceJunctionFeature> junctions;
-
-        switch (strandOption) {
-            case FORWARD:
-                junctions = new ArrayList<>(posStartEndJunctionsMap.values());
-                break;
-            case REVERSE:
-                junctions = new ArrayList<>(negStartEndJunctionsMap.values());
-                break;
-            case BOTH:
-                junctions = new ArrayList<>(posStartEndJunctionsMap.values());
-                junctions.addAll(negStartEndJunctionsMap.values());
-                break;
-            default:
-                junctions = combineStrandJunctionsMaps();
-        }
+    /**
+     * Create a helper for junctions computed previously, e.g. read from a {@link SpliceJunctionCache} file
+     */
+    SpliceJunctionHelper(LoadOptions loadOptions, JunctionColumns posJunctions, JunctionColumns negJunctions) {
+        this.loadOptions = loadOptions;
+        this.posCounts = null;
+        this.negCounts = null;
+        this.posJunctions = posJunctions;
+        this.negJunctions = negJunctions;
+        materialize();
+    }
 
-        List<SpliceJunctionFeature> filteredJunctions = filterJunctionList(this.loadOptions, junctions);
+    /**
+     * Return a helper over the same junctions, with its own load options.  Used to share the junctions of an
+     * interval between subscribers that filter them differently.
+     */
+    SpliceJunctionHelper view(LoadOptions loadOptions) {
+        return new SpliceJunctionHelper(loadOptions, getJunctions(Strand.POSITIVE), getJunctions(Strand.NEGATIVE));
+    }
 
-        FeatureUtils.sortFeatureList(filteredJunctions);
+    public synchronized List<SpliceJunctionFeature> getFilteredJunctions(SpliceJunctionTrack.StrandOption strandOption) {
 
-        return filteredJunctions;
+        if (junctions == null) {
+            finish();
+        }
 
+        List<SpliceJunctionFeature> filtered = filteredJunctions.get(strandOption);
+        if (filtered == null) {
+            filtered = filterJunctionList(this.loadOptions, junctions.get(strandOption));
+            filteredJunctions.put(strandOption, filtered);
+        }
+        return filtered;
     }
 
     public void addAlignment(Alignment alignment) {
@@ -110,8 +125,7 @@ public class SpliceJunctionHelper {
                 isNegativeStrand = alignment.isNegativeStrand(); // <= TODO -- this isn't correct for all libraries.
             }
         }
-        Table<Integer, Integer, SpliceJunctionFeature> startEndJunctionsTableThisStrand =
-                isNegativeStrand ? negStartEndJunctionsMap : posStartEndJunctionsMap;
+        StrandCounts countsThisStrand = isNegativeStrand ? negCounts : posCounts;
 
 
         // For each gap marked "skip" (cigar N), create or add evidence to a splice junction
@@ -129,18 +143,11 @@ public class SpliceJunctionHelper {
 
                         int junctionStart = spliceGap.getStart();
                         int junctionEnd = junctionStart + spliceGap.getnBases();
-                        int flankingStart = junctionStart - spliceGap.getFlankingLeft();
-                        int flankingEnd = junctionEnd + spliceGap.getFlankingRight();
-
-                        SpliceJunctionFeature junction = startEndJunctionsTableThisStrand.get(junctionStart, junctionEnd);
-
-                        if (junction == null) {
-                            junction = new SpliceJunctionFeature(alignment.getChr(), junctionStart, junctionEnd,
-                                    isNegativeStrand ? Strand.NEGATIVE : Strand.POSITIVE);
-                            startEndJunctionsTableThisStrand.put(junctionStart, junctionEnd, junction);
-                            allSpliceJunctionFeatures.add(junction);
+                        if (chr == null) {
+                            chr = alignment.getChr();
                         }
-                        junction.addRead(flankingStart, flankingEnd);
+                        countsThisStrand.addRead(junctionStart, junctionEnd,
+                                spliceGap.getFlankingLeft(), spliceGap.getFlankingRight());
                     }
 
                 }
@@ -148,6 +155,50 @@ public class SpliceJunctionHelper {
         }
     }
 
+    /**
+     * Freeze the junction counts and build the features for each strand option.  Called when loading is complete.
+     */
+    public synchronized void finish() {
+        if (junctions != null) {
+            return;
+        }
+        posJunctions = posCounts.toColumns(chr, Strand.POSITIVE);
+        negJunctions = negCounts.toColumns(chr, Strand.NEGATIVE);
+        posCounts = null;
+        negCounts = null;
+        materialize();
+    }
+
+    JunctionColumns getJunctions(Strand strand) {
+        if (junctions == null) {
+            finish();
+        }
+        return strand == Strand.NEGATIVE ? negJunctions : posJunctions;
+    }
+
+    private void materialize() {
+
+        List<SpliceJunctionFeature> posFeatures = posJunctions.toFeatures();
+        List<SpliceJunctionFeature> negFeatures = negJunctions.toFeatures();
+        List<SpliceJunctionFeature> bothFeatures = new ArrayList<>(posFeatures.size() + negFeatures.size());
+        bothFeatures.addAll(posFeatures);
+        bothFeatures.addAll(negFeatures);
+        List<SpliceJunctionFeature> combinedFeatures = combineStrandJunctions(posJunctions, negJunctions);
+
+        FeatureUtils.sortFeatureList(posFeatures);
+        FeatureUtils.sortFeatureList(negFeatures);
+        FeatureUtils.sortFeatureList(bothFeatures);
+        FeatureUtils.sortFeatureList(combinedFeatures);
+
+        Map<SpliceJunctionTrack.StrandOption, List<SpliceJunctionFeature>> map =
+                new EnumMap<>(SpliceJunctionTrack.StrandOption.class);
+        map.put(SpliceJunctionTrack.StrandOption.FORWARD, posFeatures);
+        map.put(SpliceJunctionTrack.StrandOption.REVERSE, negFeatures);
+        map.put(SpliceJunctionTrack.StrandOption.BOTH, bothFeatures);
+        map.put(SpliceJunctionTrack.StrandOption.COMBINE, combinedFeatures);
+        junctions = map;
+    }
+
     private static List<SpliceJunctionFeature> filterJunctionList(LoadOptions loadOptions, List<SpliceJunctionFeature> unfiltered) {
 
         if (loadOptions.minJunctionCoverage > 1) {
@@ -167,51 +218,301 @@ public class SpliceJunctionHelper {
     /**
      * Combine junctions from both strands.  Used for Sashimi plot.
      * Note: Flanking depth arrays are not combined.
+     * <p>
+     * Both column sets are sorted by (start, end), so they are merged in a single pass.
      */
-    private List<SpliceJunctionFeature> combineStrandJunctionsMaps() {
+    private static List<SpliceJunctionFeature> combineStrandJunctions(JunctionColumns pos, JunctionColumns neg) {
+
+        List<SpliceJunctionFeature> combined = new ArrayList<>(pos.size() + neg.size());
+        int i = 0, j = 0;
+        while (i < pos.size() || j < neg.size()) {
+            int cmp;
+            if (i == pos.size()) {
+                cmp = 1;
+            } else if (j == neg.size()) {
+                cmp = -1;
+            } else {
+                cmp = Long.compare(pack(pos.starts[i], pos.ends[i]), pack(neg.starts[j], neg.ends[j]));
+            }
 
-        // Start with all + junctions
-        Table<Integer, Integer, SpliceJunctionFeature> combinedMap = HashBasedTable.create();
+            SpliceJunctionFeature combinedFeature;
+            if (cmp <= 0) {
+                combinedFeature = new SpliceJunctionFeature(pos.chr, pos.starts[i], pos.ends[i]);
+                combinedFeature.setJunctionDepth(pos.depths[i] + (cmp == 0 ? neg.depths[j] : 0));
+                i++;
+                if (cmp == 0) j++;
+            } else {
+                combinedFeature = new SpliceJunctionFeature(neg.chr, neg.starts[j], neg.ends[j]);
+                combinedFeature.setJunctionDepth(neg.depths[j]);
+                j++;
+            }
+            combined.add(combinedFeature);
+        }
+        return combined;
+    }
 
-        for (SpliceJunctionFeature posFeature : posStartEndJunctionsMap.values()) {
-            final int junctionStart = posFeature.getJunctionStart();
-            final int junctionEnd = posFeature.getJunctionEnd();
 
-            SpliceJunctionFeature combinedFeature = new SpliceJunctionFeature(posFeature.getChr(), junctionStart, junctionEnd);
-            combinedFeature.setJunctionDepth(posFeature.getJunctionDepth());
-            combinedMap.put(junctionStart, junctionEnd, combinedFeature);
+    synchronized void setLoadOptions(LoadOptions loadOptions) {
+        int oldMinJunctionCoverage = this.loadOptions.minJunctionCoverage;
+        //Can't change this, need to reload everything
+        assert this.loadOptions.minReadFlankingWidth == loadOptions.minReadFlankingWidth;
+        this.loadOptions = loadOptions;
+        if (loadOptions.minJunctionCoverage != oldMinJunctionCoverage) {
+            filteredJunctions.clear();
         }
+    }
 
+    static long pack(int start, int end) {
+        return ((long) start << 32) | (end & 0xFFFFFFFFL);
+    }
 
-        // Merge in - junctions
-        for (SpliceJunctionFeature negFeature: negStartEndJunctionsMap.values()) {
+    /**
+     * Junction counts for one strand, accumulated while loading.  Junctions are numbered in order of discovery.
+     * Flanking widths are counted per (junction, width) rather than per read, so memory grows with the number of
+     * distinct widths, which is bounded by read length, and not with depth.
+     */
+    private static class StrandCounts {
+
+        final LongIntHashMap junctionIndex = new LongIntHashMap(256, -1);
+        final IntArrayList starts = new IntArrayList(256);
+        final IntArrayList ends = new IntArrayList(256);
+        final IntArrayList depths = new IntArrayList(256);
+        final LongIntHashMap leftFlanks = new LongIntHashMap(1024, 0);
+        final LongIntHashMap rightFlanks = new LongIntHashMap(1024, 0);
+
+        void addRead(int junctionStart, int junctionEnd, int flankingLeft, int flankingRight) {
+            long key = pack(junctionStart, junctionEnd);
+            int idx = junctionIndex.get(key);
+            if (idx < 0) {
+                idx = starts.size();
+                junctionIndex.put(key, idx);
+                starts.add(junctionStart);
+                ends.add(junctionEnd);
+                depths.add(0);
+            }
+            depths.set(idx, depths.get(idx) + 1);
+            leftFlanks.increment(((long) idx << 32) | flankingLeft, 1);
+            rightFlanks.increment(((long) idx << 32) | flankingRight, 1);
+        }
 
-            int junctionStart = negFeature.getJunctionStart();
-            int junctionEnd = negFeature.getJunctionEnd();
+        JunctionColumns toColumns(String chr, Strand strand) {
 
-            SpliceJunctionFeature junction = combinedMap.get(junctionStart, junctionEnd);
+            int n = starts.size();
 
-            if (junction == null) {
-                // No existing (+) junction here, just add the (-) one\
-                SpliceJunctionFeature combinedFeature = new SpliceJunctionFeature(negFeature.getChr(), junctionStart, junctionEnd);
-                combinedFeature.setJunctionDepth(negFeature.getJunctionDepth());
-                combinedMap.put(junctionStart, junctionEnd, negFeature);
-            } else {
-                int newJunctionDepth = junction.getJunctionDepth() + negFeature.getJunctionDepth();
-                junction.setJunctionDepth(newJunctionDepth);
+            // Order junctions by (start, end)
+            long[] keys = new long[n];
+            for (int i = 0; i < n; i++) {
+                keys[i] = pack(starts.get(i), ends.get(i));
             }
+            Arrays.sort(keys);
+            int[] rank = new int[n];
+            JunctionColumns columns = new JunctionColumns(chr, strand, n);
+            for (int r = 0; r < n; r++) {
+                int idx = junctionIndex.get(keys[r]);
+                rank[idx] = r;
+                columns.starts[r] = starts.get(idx);
+                columns.ends[r] = ends.get(idx);
+                columns.depths[r] = depths.get(idx);
+            }
+            columns.setLeftFlanks(histogram(leftFlanks, rank, n));
+            columns.setRightFlanks(histogram(rightFlanks, rank, n));
+            return columns;
         }
 
-        return new ArrayList<>(combinedMap.values());
+        /**
+         * Bucket (junction, width) -> count entries by junction rank.  Returns {offsets, widths, counts}.
+         */
+        private static int[][] histogram(LongIntHashMap flanks, int[] rank, int n) {
+            int[] offsets = new int[n + 1];
+            flanks.forEach((key, count) -> offsets[rank[(int) (key >>> 32)] + 1]++);
+            for (int r = 0; r < n; r++) {
+                offsets[r + 1] += offsets[r];
+            }
+            int[] widths = new int[flanks.size()];
+            int[] counts = new int[flanks.size()];
+            int[] next = Arrays.copyOf(offsets, n);
+            flanks.forEach((key, count) -> {
+                int pos = next[rank[(int) (key >>> 32)]]++;
+                widths[pos] = (int) key;
+                counts[pos] = count;
+            });
+            return new int[][]{offsets, widths, counts};
+        }
     }
 
+    /**
+     * Frozen junctions for one strand, sorted by (start, end).  For junction i, the flanking widths of supporting
+     * reads are stored as (width, count) pairs in [leftOffsets[i], leftOffsets[i+1]) of leftWidths / leftCounts, and
+     * likewise for the right flank.  Feature flanking depth arrays are computed from these.
+     */
+    static class JunctionColumns {
+
+        final String chr;
+        final Strand strand;
+        final int[] starts;
+        final int[] ends;
+        final int[] depths;
+        int[] leftOffsets, leftWidths, leftCounts;
+        int[] rightOffsets, rightWidths, rightCounts;
+
+        JunctionColumns(String chr, Strand strand, int n) {
+            this.chr = chr;
+            this.strand = strand;
+            this.starts = new int[n];
+            this.ends = new int[n];
+            this.depths = new int[n];
+        }
 
-    void setLoadOptions(LoadOptions loadOptions) {
-        int oldMinJunctionCoverage = this.loadOptions.minJunctionCoverage;
-        //Can't change this, need to reload everything
-        assert this.loadOptions.minReadFlankingWidth == loadOptions.minReadFlankingWidth;
-        this.loadOptions = loadOptions;
+        void setLeftFlanks(int[][] hist) {
+            leftOffsets = hist[0];
+            leftWidths = hist[1];
+            leftCounts = hist[2];
+        }
+
+        void setRightFlanks(int[][] hist) {
+            rightOffsets = hist[0];
+            rightWidths = hist[1];
+            rightCounts = hist[2];
+        }
+
+        int size() {
+            return starts.length;
+        }
+
+        int maxLeftWidth(int i) {
+            return maxWidth(leftOffsets, leftWidths, i);
+        }
+
+        int maxRightWidth(int i) {
+            return maxWidth(rightOffsets, rightWidths, i);
+        }
+
+        private static int maxWidth(int[] offsets, int[] widths, int i) {
+            int max = 0;
+            for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+                max = Math.max(max, widths[k]);
+            }
+            return max;
+        }
+
+        /**
+         * Create the junction features.  The result is equivalent to adding each supporting read to the feature
+         * with {@link SpliceJunctionFeature#addRead(int, int)}.
+         */
+        List<SpliceJunctionFeature> toFeatures() {
+            List<SpliceJunctionFeature> features = new ArrayList<>(size());
+            for (int i = 0; i < size(); i++) {
+                SpliceJunctionFeature feature = new SpliceJunctionFeature(chr, starts[i], ends[i], strand);
+                feature.setJunctionDepth(depths[i]);
+
+                int maxLeft = maxLeftWidth(i);
+                if (maxLeft > 0) {
+                    // Element k counts reads starting at or before start + k
+                    int[] depth = new int[maxLeft];
+                    for (int k = leftOffsets[i]; k < leftOffsets[i + 1]; k++) {
+                        if (leftWidths[k] > 0) depth[maxLeft - leftWidths[k]] += leftCounts[k];
+                    }
+                    for (int k = 1; k < maxLeft; k++) {
+                        depth[k] += depth[k - 1];
+                    }
+                    feature.setStart(starts[i] - maxLeft);
+                    feature.setStartFlankingRegionDepthArray(depth);
+                }
+
+                int maxRight = maxRightWidth(i);
+                if (maxRight > 0) {
+                    // Element k counts reads ending after junction end + k
+                    int[] depth = new int[maxRight];
+                    for (int k = rightOffsets[i]; k < rightOffsets[i + 1]; k++) {
+                        if (rightWidths[k] > 0) depth[rightWidths[k] - 1] += rightCounts[k];
+                    }
+                    for (int k = maxRight - 2; k >= 0; k--) {
+                        depth[k] += depth[k + 1];
+                    }
+                    feature.setEnd(ends[i] + maxRight);
+                    feature.setEndFlankingRegionDepthArray(depth);
+                }
+                features.add(feature);
+            }
+            return features;
+        }
+
+        /**
+         * Return the junctions whose span, including flanking regions, overlaps [start, end)
+         */
+        JunctionColumns subset(int start, int end) {
+            IntArrayList selected = new IntArrayList(size());
+            for (int i = 0; i < size(); i++) {
+                if (starts[i] - maxLeftWidth(i) < end && ends[i] + maxRightWidth(i) > start) {
+                    selected.add(i);
+                }
+            }
+            int n = selected.size();
+            JunctionColumns subset = new JunctionColumns(chr, strand, n);
+            int[][] left = {new int[n + 1], null, null};
+            int[][] right = {new int[n + 1], null, null};
+            IntArrayList lw = new IntArrayList(), lc = new IntArrayList(), rw = new IntArrayList(), rc = new IntArrayList();
+            for (int r = 0; r < n; r++) {
+                int i = selected.get(r);
+                subset.starts[r] = starts[i];
+                subset.ends[r] = ends[i];
+                subset.depths[r] = depths[i];
+                for (int k = leftOffsets[i]; k < leftOffsets[i + 1]; k++) {
+                    lw.add(leftWidths[k]);
+                    lc.add(leftCounts[k]);
+                }
+                left[0][r + 1] = lw.size();
+                for (int k = rightOffsets[i]; k < rightOffsets[i + 1]; k++) {
+                    rw.add(rightWidths[k]);
+                    rc.add(rightCounts[k]);
+                }
+                right[0][r + 1] = rw.size();
+            }
+            left[1] = lw.toArray();
+            left[2] = lc.toArray();
+            right[1] = rw.toArray();
+            right[2] = rc.toArray();
+            subset.setLeftFlanks(left);
+            subset.setRightFlanks(right);
+            return subset;
+        }
+
+        void write(DataOutputStream dos) throws IOException {
+            int n = size();
+            dos.writeInt(n);
+            for (int i = 0; i < n; i++) dos.writeInt(starts[i]);
+            for (int i = 0; i < n; i++) dos.writeInt(ends[i]);
+            for (int i = 0; i < n; i++) dos.writeInt(depths[i]);
+            writeHistogram(dos, leftOffsets, leftWidths, leftCounts);
+            writeHistogram(dos, rightOffsets, rightWidths, rightCounts);
+        }
 
+        static JunctionColumns read(DataInputStream dis, String chr, Strand strand) throws IOException {
+            int n = dis.readInt();
+            JunctionColumns columns = new JunctionColumns(chr, strand, n);
+            for (int i = 0; i < n; i++) columns.starts[i] = dis.readInt();
+            for (int i = 0; i < n; i++) columns.ends[i] = dis.readInt();
+            for (int i = 0; i < n; i++) columns.depths[i] = dis.readInt();
+            columns.setLeftFlanks(readHistogram(dis, n));
+            columns.setRightFlanks(readHistogram(dis, n));
+            return columns;
+        }
+
+        private static void writeHistogram(DataOutputStream dos, int[] offsets, int[] widths, int[] counts) throws IOException {
+            for (int o : offsets) dos.writeInt(o);
+            for (int w : widths) dos.writeInt(w);
+            for (int c : counts) dos.writeInt(c);
+        }
+
+        private static int[][] readHistogram(DataInputStream dis, int n) throws IOException {
+            int[] offsets = new int[n + 1];
+            for (int i = 0; i <= n; i++) offsets[i] = dis.readInt();
+            int[] widths = new int[offsets[n]];
+            int[] counts = new int[offsets[n]];
+            for (int i = 0; i < widths.length; i++) widths[i] = dis.readInt();
+            for (int i = 0; i < counts.length; i++) counts[i] = dis.readInt();
+            return new int[][]{offsets, widths, counts};
+        }
     }
 
     public static class LoadOptions {
@@ -273,6 +273,14 @@ public class SpliceJunctionTrack extends FeatureTrack {
 
     }
 
+    @Override
+    public void load(List<ReferenceFrame> frames) {
+        // Junctions are derived from the alignment data manager, load frame by frame
+        for (ReferenceFrame frame : frames) {
+            load(frame);
+        }
+    }
+
     @Override
     public boolean isReadyToPaint(ReferenceFrame frame) {
         if (frame.getChrName().equals(Globals.CHR_ALL) ||  frame.getScale() > dataManager.getMinVisibleScale()) {
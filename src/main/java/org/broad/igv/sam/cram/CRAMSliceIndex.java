@@ -0,0 +1,99 @@
+package org.broad.igv.sam.cram;
+
+import htsjdk.samtools.cram.CRAIEntry;
+import org.broad.igv.util.ParsingUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The slices of a CRAM file, read from its .crai index.  Used to compute the reference spans needed to decode the
+ * containers overlapping a query, so only those spans need be fetched.
+ * <p>
+ * CRAI lines are: sequence id, alignment start (1-based), alignment span, container offset, slice offset, slice size.
+ */
+public class CRAMSliceIndex {
+
+    private final Map<Integer, List<CRAIEntry>> entries;
+    private final boolean multiRef;
+
+    CRAMSliceIndex(List<CRAIEntry> craiEntries) {
+        entries = new HashMap<>();
+        boolean multiRef = false;
+        for (CRAIEntry e : craiEntries) {
+            if (e.getSequenceId() == -2) {
+                multiRef = true;
+            }
+            entries.computeIfAbsent(e.getSequenceId(), k -> new ArrayList<>()).add(e);
+        }
+        for (List<CRAIEntry> list : entries.values()) {
+            list.sort(Comparator.comparingLong(CRAIEntry::getContainerStartByteOffset));
+        }
+        this.multiRef = multiRef;
+    }
+
+    public static CRAMSliceIndex load(String craiPath) throws IOException {
+        List<CRAIEntry> craiEntries = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(ParsingUtils.openInputStream(craiPath))))) {
+            String nextLine;
+            while ((nextLine = br.readLine()) != null) {
+                if (nextLine.trim().length() > 0) {
+                    craiEntries.add(new CRAIEntry(nextLine));
+                }
+            }
+        }
+        return new CRAMSliceIndex(craiEntries);
+    }
+
+    /**
+     * Return the reference spans, as merged 0-based half open intervals sorted by start, covering every slice of every
+     * container with a slice overlapping the query.  Returns null if the spans cannot be determined, which is the case
+     * for files with multi-reference slices.
+     *
+     * @param sequenceId index of the sequence in the CRAM header
+     * @param start      0-based query start
+     * @param end        query end, exclusive
+     */
+    public int[][] getReferenceSpans(int sequenceId, int start, int end) {
+
+        if (multiRef) {
+            return null;
+        }
+        List<CRAIEntry> list = entries.get(sequenceId);
+        if (list == null) {
+            return new int[0][];
+        }
+
+        Set<Long> containers = new HashSet<>();
+        for (CRAIEntry e : list) {
+            int s = e.getAlignmentStart() - 1;
+            if (s < end && s + e.getAlignmentSpan() > start) {
+                containers.add(e.getContainerStartByteOffset());
+            }
+        }
+
+        List<int[]> spans = new ArrayList<>();
+        for (CRAIEntry e : list) {
+            if (containers.contains(e.getContainerStartByteOffset())) {
+                int s = Math.max(0, e.getAlignmentStart() - 1);
+                spans.add(new int[]{s, s + e.getAlignmentSpan()});
+            }
+        }
+        spans.sort(Comparator.comparingInt(span -> span[0]));
+
+        List<int[]> merged = new ArrayList<>();
+        for (int[] span : spans) {
+            int[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && span[0] <= last[1]) {
+                last[1] = Math.max(last[1], span[1]);
+            } else {
+                merged.add(span);
+            }
+        }
+        return merged.toArray(new int[0][]);
+    }
+}
@@ -42,6 +42,7 @@ import org.broad.igv.event.IGVEventObserver;
 import org.broad.igv.util.ObjectCache;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 /**
  * Provide a reference sequence for CRAM decompression.  Note the rule for MD5 calculation.
@@ -49,16 +50,48 @@ import java.io.IOException;
  * M5 (sequence MD5 checksum) field of @SQ sequence record in the BAM header is required and UR (URI
  * for the sequence fasta optionally gzipped file) field is strongly advised. The rule for calculating MD5 is
  * to remove any non-base symbols (like \n, sequence name or length and spaces) and upper case the rest.
+ * <p>
+ * htsjdk expects an array indexed by chromosome position.  If the reference spans needed by a query are known, see
+ * {@link #setQuerySpans(String, int[][])}, the array is sized to the last span and only the spans are fetched,
+ * through the genome's sequence tile cache.  Otherwise, or if the spans extend past {@link #MAX_SPAN_ARRAY_SIZE},
+ * the whole chromosome is loaded.  Both kinds of array are cached.
  */
 
 public class IGVReferenceSource implements CRAMReferenceSource {
 
     private static Logger log = Logger.getLogger(IGVReferenceSource.class);
 
+    /**
+     * Largest array filled from query spans.  Beyond this the cached whole chromosome is used, rather than allocating
+     * an array nearly as large for each query.
+     */
+    static final int MAX_SPAN_ARRAY_SIZE = 10000000;
+
     static ObjectCache<String, byte[]> cachedSequences = new ObjectCache<String, byte[]>(2);
 
+    static ObjectCache<String, byte[]> cachedSpanSequences = new ObjectCache<String, byte[]>(2);
+
     static GenomeChangeListener genomeChangeListener;
 
+    private String querySequence;
+    private int[][] querySpans;
+
+    /**
+     * Limit requests for {@code sequenceName} to the given reference spans until {@link #clearQuerySpans()} is called.
+     *
+     * @param sequenceName sequence name as it appears in the CRAM header
+     * @param spans        merged 0-based half open intervals, sorted by start
+     */
+    public void setQuerySpans(String sequenceName, int[][] spans) {
+        this.querySequence = sequenceName;
+        this.querySpans = spans;
+    }
+
+    public void clearQuerySpans() {
+        this.querySequence = null;
+        this.querySpans = null;
+    }
+
     @Override
     public  byte[] getReferenceBases(SAMSequenceRecord record, boolean tryNameVariants) {
 
@@ -67,6 +100,16 @@ public class IGVReferenceSource implements CRAMReferenceSource {
         final Genome currentGenome = GenomeManager.getInstance().getCurrentGenome();
         String chrName = currentGenome.getCanonicalChrName(name);
         Chromosome chromosome = currentGenome.getChromosome(chrName);
+        if (chromosome == null) {
+            return null;
+        }
+
+        if (querySpans != null && name.equals(querySequence) && cachedSequences.get(chrName) == null) {
+            byte[] bases = getReferenceBases(currentGenome, chrName, chromosome.getLength(), querySpans);
+            if (bases != null) {
+                return bases;
+            }
+        }
 
         byte[] bases = cachedSequences.get(chrName);
 
@@ -75,12 +118,11 @@ public class IGVReferenceSource implements CRAMReferenceSource {
             try {
                 if (bases == null) {
                     if (IGV.hasInstance()) IGV.getInstance().setStatusBarMessage("Loading sequence");
+                    long t0 = System.currentTimeMillis();
                     bases = currentGenome.getSequence(chrName, 0, chromosome.getLength(), false);
-
-                    // CRAM spec requires upper case
-                    for (int i = 0; i < bases.length; i++) {
-                        if (bases[i] >= 97) bases[i] -= 32;
-                    }
+                    toUpperCase(bases, 0, bases.length);
+                    log.info("Loaded reference for " + chrName + ": " + bases.length + " bases in " +
+                            (System.currentTimeMillis() - t0) + " ms");
                 }
 
                 cachedSequences.put(chrName, bases);
@@ -92,11 +134,69 @@ public class IGVReferenceSource implements CRAMReferenceSource {
         return bases;
     }
 
+    /**
+     * Return an array of reference bases, indexed by position, with only {@code spans} filled.  Returns null if the
+     * array would be larger than {@link #MAX_SPAN_ARRAY_SIZE}.
+     */
+    private byte[] getReferenceBases(Genome genome, String chrName, int chrLength, int[][] spans) {
+
+        int length = 0;
+        for (int[] span : spans) {
+            length = Math.max(length, Math.min(span[1], chrLength));
+        }
+        if (length > MAX_SPAN_ARRAY_SIZE) {
+            return null;
+        }
+
+        String key = chrName + ":" + Arrays.deepToString(spans);
+        byte[] bases = cachedSpanSequences.get(key);
+        if (bases != null) {
+            return bases;
+        }
+
+        long t0 = System.currentTimeMillis();
+        bases = new byte[length];
+        int fetched = 0;
+        for (int[] span : spans) {
+            int start = span[0];
+            int end = Math.min(span[1], chrLength);
+            if (start >= end) continue;
+
+            byte[] seq = genome.getSequence(chrName, start, end, true);
+            int n = seq == null ? 0 : Math.min(seq.length, end - start);
+            if (n > 0) {
+                System.arraycopy(seq, 0, bases, start, n);
+            }
+            if (n < end - start) {
+                Arrays.fill(bases, start + n, end, (byte) 'N');
+            }
+            toUpperCase(bases, start, end);
+            fetched += end - start;
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Loaded reference for " + chrName + ": " + fetched + " bases in " + spans.length +
+                    " spans, array size " + length + ", " + (System.currentTimeMillis() - t0) + " ms");
+        }
+        cachedSpanSequences.put(key, bases);
+        return bases;
+    }
+
+    /**
+     * CRAM spec requires upper case
+     */
+    static void toUpperCase(byte[] bases, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (bases[i] >= 97) bases[i] -= 32;
+        }
+    }
+
     public static class GenomeChangeListener implements IGVEventObserver {
 
         @Override
         public void receiveEvent(Object event) {
             cachedSequences.clear();
+            cachedSpanSequences.clear();
         }
     }
 
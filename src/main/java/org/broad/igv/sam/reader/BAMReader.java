@@ -32,6 +32,7 @@ import org.apache.log4j.Logger;
 import org.broad.igv.exceptions.DataLoadException;
 import org.broad.igv.sam.EmptyAlignmentIterator;
 import org.broad.igv.sam.PicardAlignment;
+import org.broad.igv.sam.cram.CRAMSliceIndex;
 import org.broad.igv.sam.cram.IGVReferenceSource;
 import org.broad.igv.ui.util.MessageUtils;
 import org.broad.igv.util.FileUtils;
@@ -64,6 +65,9 @@ public class BAMReader implements AlignmentReader<PicardAlignment> {
     List<String> sequenceNames;
     private boolean indexed = false; // False until proven otherwise
     private Map<String, Long> sequenceDictionary;
+    private IGVReferenceSource referenceSource;
+    private String craiPath;
+    private CRAMSliceIndex sliceIndex;
 
     public BAMReader(ResourceLocator locator, boolean requireIndex) throws IOException {
         this.locator = locator;
@@ -74,8 +78,9 @@ public class BAMReader implements AlignmentReader<PicardAlignment> {
     private SamReader getSamReader(ResourceLocator locator, boolean requireIndex) throws IOException {
 
         boolean isLocal = locator.isLocal();
+        referenceSource = new IGVReferenceSource();
         final SamReaderFactory factory = SamReaderFactory.makeDefault().
-                referenceSource(new IGVReferenceSource()).
+                referenceSource(referenceSource).
                 validationStringency(ValidationStringency.SILENT);
         SamInputResource resource;
 
@@ -98,6 +103,9 @@ public class BAMReader implements AlignmentReader<PicardAlignment> {
             }
 
             indexed = true;
+            if (indexPath.toLowerCase().endsWith(".crai")) {
+                craiPath = indexPath;
+            }
             if (isLocal) {
                 File indexFile = new File(indexPath);
                 resource = resource.index(indexFile);
@@ -176,14 +184,41 @@ public class BAMReader implements AlignmentReader<PicardAlignment> {
             return EMPTY_ITERATOR;
         } else {
             CloseableIterator<SAMRecord> iter = null;
+            int[][] spans = getReferenceSpans(sequence, start, end);
+            if (spans != null) {
+                referenceSource.setQuerySpans(sequence, spans);
+            }
             try {
                 iter = reader.query(sequence, start + 1, end, contained);
+                return new ListIterator(iter);
             } catch (IllegalArgumentException e) {
                 log.error("Error querying for sequence: " + sequence, e);
                 return new EmptyAlignmentIterator();
+            } finally {
+                referenceSource.clearQuerySpans();
+            }
+        }
+    }
+
+    /**
+     * Return the reference spans needed to decode the CRAM containers overlapping the query, or null if they are not
+     * known.  Requires a .crai index.
+     */
+    private int[][] getReferenceSpans(String sequence, int start, int end) {
+        if (craiPath == null) {
+            return null;
+        }
+        if (sliceIndex == null) {
+            try {
+                sliceIndex = CRAMSliceIndex.load(craiPath);
+            } catch (IOException e) {
+                log.error("Error reading CRAM index: " + craiPath, e);
+                craiPath = null;
+                return null;
             }
-            return new ListIterator(iter);
         }
+        int sequenceId = getFileHeader().getSequenceIndex(sequence);
+        return sequenceId < 0 ? null : sliceIndex.getReferenceSpans(sequenceId, start, end);
     }
 
     /**
@@ -26,7 +26,6 @@
 package org.broad.igv.session;
 
 import org.apache.log4j.Logger;
-import org.broad.igv.Globals;
 import org.broad.igv.bedpe.InteractionTrack;
 import org.broad.igv.data.CombinedDataSource;
 import org.broad.igv.feature.Locus;
@@ -39,6 +38,8 @@ import org.broad.igv.feature.sprite.ClusterTrack;
 import org.broad.igv.lists.GeneList;
 import org.broad.igv.lists.GeneListManager;
 import org.broad.igv.maf.MultipleAlignmentTrack;
+import org.broad.igv.prefs.Constants;
+import org.broad.igv.prefs.PreferencesManager;
 import org.broad.igv.renderer.ColorScale;
 import org.broad.igv.renderer.ColorScaleFactory;
 import org.broad.igv.renderer.ContinuousColorScale;
@@ -69,6 +70,8 @@ import java.io.InputStream;
 import java.lang.ref.WeakReference;
 import java.util.List;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Class to parse an IGV session file
@@ -120,6 +123,7 @@ public class IGVSessionReader implements SessionReader {
     private Track geneTrack = null;
     private Track seqTrack = null;
     private boolean hasTrackElments;
+    private NodeList trackElements;
 
     static {
         attributeSynonymMap.put("DATA FILE", "DATA SET");
@@ -152,7 +156,7 @@ public class IGVSessionReader implements SessionReader {
             throw new RuntimeException(e);
         }
 
-        NodeList trackElements = document.getElementsByTagName("Track");
+        trackElements = document.getElementsByTagName("Track");
         hasTrackElments = trackElements.getLength() > 0;
 
         HashMap additionalInformation = new HashMap();
@@ -408,66 +412,70 @@ public class IGVSessionReader implements SessionReader {
 
             final List<String> errors = new ArrayList<String>();
 
-            // Load files concurrently -- TODO, put a limit on # of threads?
-            List<Thread> threads = new ArrayList(dataFiles.size());
+            // Load files concurrently, limiting concurrent loads per host.  Files with tracks visible at the session
+            // locus are loaded first.  Results are collected by file and added in session order, so the track order
+            // does not depend on which loads finish first.
             long t0 = System.currentTimeMillis();
-
-            List<Runnable> synchronousLoads = new ArrayList<Runnable>();
-
-            for (final ResourceLocator locator : dataFiles) {
+            int hostLimit = PreferencesManager.getPreferences().getAsInt(Constants.SESSION_LOAD_HOST_LIMIT);
+            Set<String> visibleTrackIds = getVisibleTrackIds(session.getLocus());
+            final List<ResourceLocator> locators = new ArrayList<>(dataFiles);
+            final List<List<Track>> loadedTracks = new ArrayList<>(Collections.nCopies(locators.size(), null));
+            final String[] loadErrors = new String[locators.size()];
+            List<CompletableFuture<Void>> futures = new ArrayList<>(locators.size());
+
+            for (int i = 0; i < locators.size(); i++) {
+                final ResourceLocator locator = locators.get(i);
+                final int index = i;
                 Runnable runnable = () -> {
-
                     try {
-                        List<Track> tracks = igv.load(locator);
-                        for (Track track : tracks) {
-
-                            if (track == null) {
-                                log.info("Null track for resource " + locator.getPath());
-                                continue;
-                            }
-
-                            String id = track.getId();
-                            if (id == null) {
-                                log.info("Null track id for resource " + locator.getPath());
-                                continue;
-                            }
-
-                            List<Track> trackList = leftoverTrackDictionary.get(id);
-                            if (trackList == null) {
-                                trackList = new ArrayList();
-                                leftoverTrackDictionary.put(id, trackList);
-                                allTracks.put(id, trackList);
-                            }
-                            trackList.add(track);
-                        }
+                        loadedTracks.set(index, igv.load(locator));
                     } catch (Exception e) {
                         log.error("Error loading resource " + locator.getPath(), e);
-                        String ms = "<b>" + locator.getPath() + "</b><br>&nbsp;&nbsp;" + e.toString() + "<br>";
-                        errors.add(ms);
+                        loadErrors[index] = "<b>" + locator.getPath() + "</b><br>&nbsp;&nbsp;" + e.toString() + "<br>";
                     }
                 };
 
-                // Run synchronously if in batch mode or if there are no "track"  elements
-                if (Globals.isBatch() || !hasTrackElments) {
-                    synchronousLoads.add(runnable);
-                } else {
-                    Thread t = new Thread(runnable);
-                    threads.add(t);
-                    t.start();
-                }
+                LoadScheduler.Priority priority = !hasTrackElments || isVisible(locator, visibleTrackIds) ?
+                        LoadScheduler.Priority.VISIBLE : LoadScheduler.Priority.BACKGROUND;
+                futures.add(LoadScheduler.getInstance().submitLoad(getHost(locator), hostLimit, null, priority, runnable));
             }
-            // Wait for all threads to complete
-            for (Thread t : threads) {
-                try {
-                    t.join();
-                } catch (InterruptedException ignore) {
-                    log.error(ignore);
-                }
+
+            try {
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            } catch (CompletionException e) {
+                log.error("Error loading session resources", e);
             }
 
-            // Now load data that must be loaded synchronously
-            for (Runnable runnable : synchronousLoads) {
-                runnable.run();
+            for (int i = 0; i < locators.size(); i++) {
+                ResourceLocator locator = locators.get(i);
+                List<Track> tracks = loadedTracks.get(i);
+                if (loadErrors[i] != null) {
+                    errors.add(loadErrors[i]);
+                }
+                if (tracks == null) {
+                    continue;
+                }
+                for (Track track : tracks) {
+
+                    if (track == null) {
+                        log.info("Null track for resource " + locator.getPath());
+                        continue;
+                    }
+
+                    String id = track.getId();
+                    if (id == null) {
+                        log.info("Null track id for resource " + locator.getPath());
+                        continue;
+                    }
+
+                    List<Track> trackList = leftoverTrackDictionary.get(id);
+                    if (trackList == null) {
+                        trackList = new ArrayList();
+                        leftoverTrackDictionary.put(id, trackList);
+                        allTracks.put(id, trackList);
+                    }
+                    trackList.add(track);
+                }
             }
 
             long dt = System.currentTimeMillis() - t0;
@@ -486,6 +494,68 @@ public class IGVSessionReader implements SessionReader {
         dataFiles = null;
     }
 
+    /**
+     * Return the ids of track elements that are visible, and within their visibility window, at {@code locusString}
+     */
+    private Set<String> getVisibleTrackIds(String locusString) {
+
+        Locus locus = locusString == null ? null : Locus.fromString(locusString);
+        Set<String> ids = new HashSet<>();
+        if (trackElements == null) {
+            return ids;
+        }
+        for (int i = 0; i < trackElements.getLength(); i++) {
+            Element trackElement = (Element) trackElements.item(i);
+            String id = getAttribute(trackElement, SessionAttribute.ID);
+            if (id == null || "false".equalsIgnoreCase(getAttribute(trackElement, SessionAttribute.VISIBLE))) {
+                continue;
+            }
+            String window = getAttribute(trackElement, "featureVisibilityWindow");
+            if (locus != null && window != null) {
+                try {
+                    int visibilityWindow = Integer.parseInt(window);
+                    if (visibilityWindow >= 0 && locus.getEnd() - locus.getStart() > visibilityWindow) {
+                        continue;
+                    }
+                } catch (NumberFormatException e) {
+                    // Ignore, treat as visible
+                }
+            }
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    /**
+     * Return true if a track id in {@code visibleTrackIds} derives from the resource.  Track ids are the resource path,
+     * as written in the session, or the path with a suffix for resources producing multiple tracks.
+     */
+    private boolean isVisible(ResourceLocator locator, Set<String> visibleTrackIds) {
+        String path = locator.getPath();
+        String relPath = fullToRelPathMap.get(path);
+        for (String id : visibleTrackIds) {
+            if ((path != null && id.startsWith(path)) || (relPath != null && id.startsWith(relPath))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Key used to limit concurrent loads from one server
+     */
+    static String getHost(ResourceLocator locator) {
+        String path = locator.getDBUrl() != null ? locator.getDBUrl() : locator.getPath();
+        if (path != null && HttpUtils.isRemoteURL(path)) {
+            try {
+                return HttpUtils.createURL(path).getHost();
+            } catch (java.net.MalformedURLException e) {
+                return path;
+            }
+        }
+        return "localhost";
+    }
+
     /**
      * Load a single resource.
      * <p/>
@@ -29,12 +29,12 @@
  */
 package org.broad.igv.tdf;
 
-import org.apache.commons.math3.stat.StatUtils;
 import org.apache.log4j.Logger;
 import org.broad.igv.track.WindowFunction;
-import org.broad.igv.util.collections.DownsampledDoubleArrayList;
 
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Random;
 import java.util.Set;
 
 /**
@@ -50,6 +50,8 @@ public class Accumulator {
 
     private static int MAX_VALUE_COUNT = 100000;
 
+    private static final Random RAND = new Random(System.currentTimeMillis());
+
     boolean isFinished = false;
     WindowFunction windowFunction;
     float sum = 0.0f;
@@ -57,7 +59,10 @@ public class Accumulator {
     int nPts = 0;
     float value = Float.NaN;
 
-    DownsampledDoubleArrayList valueList;  // List used to accumulate values for percentile calculations
+    // Values accumulated for percentile calculations.  Beyond MAX_VALUE_COUNT values are uniformly downsampled.
+    float[] values;
+    int valueCount = 0;
+    int downsampledCount = 0;
 
 
     // Optional -- keep some representative data and probe names for popup text
@@ -78,7 +83,7 @@ public class Accumulator {
     public Accumulator(WindowFunction windowFunction) {
         this.windowFunction = windowFunction;
         if (PERCENTILE_WINDOW_FUNCTIONS.contains(windowFunction)) {
-            valueList = new DownsampledDoubleArrayList(100, MAX_VALUE_COUNT);
+            values = new float[16];
         }
     }
 
@@ -113,8 +118,8 @@ public class Accumulator {
                     sum += nBases * v;
                     break;
                 default:
-                    if (valueList != null) {
-                        valueList.add(v);
+                    if (values != null) {
+                        addValue(v);
                     }
             }
             nPts++;
@@ -123,6 +128,22 @@ public class Accumulator {
     }
 
 
+    private void addValue(float v) {
+        if (valueCount < MAX_VALUE_COUNT) {
+            if (valueCount == values.length) {
+                values = Arrays.copyOf(values, Math.min(MAX_VALUE_COUNT, valueCount + (valueCount >> 1)));
+            }
+            values[valueCount++] = v;
+        } else {
+            double samplingProb = ((double) MAX_VALUE_COUNT) / (MAX_VALUE_COUNT + downsampledCount + 1);
+            if (RAND.nextDouble() < samplingProb) {
+                // Replace a random value with this one
+                values[(int) (RAND.nextDouble() * (valueCount - 1))] = v;
+            }
+            downsampledCount++;
+        }
+    }
+
     public void finish() {
 
         if (isFinished) {
@@ -131,24 +152,12 @@ public class Accumulator {
 
         if (windowFunction == WindowFunction.mean) {
             value = Float.isNaN(sum) ? Float.NaN : sum / basesCovered;
-        } else if (valueList != null) {
-            if (valueList.size() == 0) {
-                value = Float.NaN;
-            } else if (valueList.size() == 1) {
-                value = (float) valueList.get(0);
-            } else {
-                double[] valueArray = valueList.toArray();
-                double p = this.getPercentile(windowFunction);
-                if (p > 0) {
-                    value = (float) StatUtils.percentile(valueArray, p);
-                } else {
-                    value = Float.NaN;
-                }
-            }
-
+        } else if (values != null) {
+            double p = WindowKernels.getPercentile(windowFunction);
+            value = p > 0 ? WindowKernels.percentile(values, 0, valueCount, p) : Float.NaN;
         }
 
-        valueList = null;
+        values = null;
         isFinished = true;
 
     }
@@ -169,20 +178,7 @@ public class Accumulator {
 
 
     public double getPercentile(WindowFunction wf) {
-        switch (wf) {
-            case percentile2:
-                return 2;
-            case percentile10:
-                return 10;
-            case percentile90:
-                return 90;
-            case percentile98:
-                return 98;
-            case median:
-                return 50;
-            default:
-                return -1.0;
-        }
+        return WindowKernels.getPercentile(wf);
     }
 
     public float[] getRepData() {
@@ -0,0 +1,265 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.tdf;
+
+import org.broad.igv.track.WindowFunction;
+
+/**
+ * Window function kernels over primitive float arrays.
+ * <p>
+ * Each kernel operates on the range [from, to) of its input.  The loops are simple counted loops over a single
+ * array, with no calls or allocation, which the JIT can unroll and in the case of min and max vectorize.  Percentiles
+ * are computed by selection rather than sorting, and match the default ("legacy") estimate of commons-math
+ * {@code StatUtils.percentile}.
+ *
+ * @see Accumulator
+ * @see org.broad.igv.tools.ListAccumulator
+ */
+public final class WindowKernels {
+
+    /**
+     * Ranges at or below this size are finished with an insertion sort
+     */
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private WindowKernels() {
+    }
+
+    /**
+     * @return the minimum of the non-NaN values in the range, or NaN if there are none
+     */
+    public static float min(float[] values, int from, int to) {
+        float min = Float.POSITIVE_INFINITY;
+        boolean found = false;
+        for (int i = from; i < to; i++) {
+            float v = values[i];
+            // NaN compares false, so is skipped
+            if (v <= min) {
+                min = v;
+                found = true;
+            }
+        }
+        return found ? min : Float.NaN;
+    }
+
+    /**
+     * @return the maximum of the non-NaN values in the range, or NaN if there are none
+     */
+    public static float max(float[] values, int from, int to) {
+        float max = Float.NEGATIVE_INFINITY;
+        boolean found = false;
+        for (int i = from; i < to; i++) {
+            float v = values[i];
+            if (v >= max) {
+                max = v;
+                found = true;
+            }
+        }
+        return found ? max : Float.NaN;
+    }
+
+    /**
+     * @return the number of non-NaN values in the range
+     */
+    public static int count(float[] values, int from, int to) {
+        int n = 0;
+        for (int i = from; i < to; i++) {
+            if (values[i] == values[i]) n++;
+        }
+        return n;
+    }
+
+    /**
+     * @return the mean of the non-NaN values in the range, or NaN if there are none
+     */
+    public static float mean(float[] values, int from, int to) {
+        double sum = 0;
+        int n = 0;
+        for (int i = from; i < to; i++) {
+            float v = values[i];
+            if (v == v) {
+                sum += v;
+                n++;
+            }
+        }
+        return n == 0 ? Float.NaN : (float) (sum / n);
+    }
+
+    /**
+     * @return the mean of the non-NaN values in the range, weighted by {@code weights}, or NaN if there are none
+     */
+    public static float weightedMean(float[] values, int[] weights, int from, int to) {
+        double sum = 0;
+        long totalWeight = 0;
+        for (int i = from; i < to; i++) {
+            float v = values[i];
+            if (v == v) {
+                sum += (double) weights[i] * v;
+                totalWeight += weights[i];
+            }
+        }
+        return totalWeight == 0 ? Float.NaN : (float) (sum / totalWeight);
+    }
+
+    /**
+     * Estimate the p-th percentile (0 < p <= 100) of the values in the range.  Values must not be NaN.
+     * The range is reordered.
+     *
+     * @return the percentile, or NaN if the range is empty
+     */
+    public static float percentile(float[] values, int from, int to, double p) {
+        return percentile(values, from, to, from, p);
+    }
+
+    /**
+     * Estimate several percentiles of the values in the range.  Values must not be NaN.  The range is reordered.
+     * When percentiles are supplied in ascending order each selection starts where the previous one ended.
+     *
+     * @param p      percentiles to compute (0 < p <= 100)
+     * @param result array to receive the results, one per element of {@code p}
+     */
+    public static void percentiles(float[] values, int from, int to, double[] p, float[] result) {
+        int selected = from;
+        for (int i = 0; i < p.length; i++) {
+            if (i > 0 && p[i] < p[i - 1]) {
+                selected = from;
+            }
+            result[i] = percentile(values, from, to, selected, p[i]);
+            int k = from + (int) Math.floor(p[i] * (to - from + 1) / 100) - 1;
+            if (k > selected && k < to - 1) {
+                selected = k;
+            }
+        }
+    }
+
+    /**
+     * @param selectFrom start of the range to select from.  Elements in [from, selectFrom) must be no larger than
+     *                   any element after them.
+     */
+    private static float percentile(float[] values, int from, int to, int selectFrom, double p) {
+        int length = to - from;
+        if (length == 0) {
+            return Float.NaN;
+        } else if (length == 1) {
+            return values[from];
+        }
+
+        double pos = p * (length + 1) / 100;
+        double fpos = Math.floor(pos);
+        int intPos = (int) fpos;
+        double dif = pos - fpos;
+
+        if (pos < 1) {
+            return min(values, from, to);
+        } else if (pos >= length) {
+            return max(values, from, to);
+        }
+
+        // Select the intPos-th smallest value, the next smallest is then the minimum of the values above it
+        int k = from + intPos - 1;
+        double lower = select(values, Math.min(selectFrom, k), to, k);
+        double upper = min(values, k + 1, to);
+        return (float) (lower + dif * (upper - lower));
+    }
+
+    /**
+     * Rearrange the range so the element at {@code k} is the one that would be there if the range were sorted,
+     * with no larger element before it and no smaller element after it.
+     *
+     * @return the value at k
+     */
+    public static float select(float[] values, int from, int to, int k) {
+        int lo = from;
+        int hi = to - 1;
+        while (hi - lo > INSERTION_SORT_THRESHOLD) {
+
+            // Median of three pivot, moved to lo
+            int mid = (lo + hi) >>> 1;
+            if (values[mid] < values[lo]) swap(values, mid, lo);
+            if (values[hi] < values[lo]) swap(values, hi, lo);
+            if (values[hi] < values[mid]) swap(values, hi, mid);
+            swap(values, lo, mid);
+            float pivot = values[lo];
+
+            // Hoare partition.  Elements equal to the pivot are split between both sides, so ranges of equal
+            // values are not quadratic.
+            int i = lo;
+            int j = hi + 1;
+            while (true) {
+                do i++; while (i <= hi && values[i] < pivot);
+                do j--; while (values[j] > pivot);
+                if (i >= j) break;
+                swap(values, i, j);
+            }
+            swap(values, lo, j);
+
+            if (j == k) {
+                return values[k];
+            } else if (j < k) {
+                lo = j + 1;
+            } else {
+                hi = j - 1;
+            }
+        }
+
+        for (int i = lo + 1; i <= hi; i++) {
+            float v = values[i];
+            int j = i - 1;
+            while (j >= lo && values[j] > v) {
+                values[j + 1] = values[j];
+                j--;
+            }
+            values[j + 1] = v;
+        }
+        return values[k];
+    }
+
+    /**
+     * @return the percentile computed by the window function, or -1 if it is not a percentile function
+     */
+    public static double getPercentile(WindowFunction wf) {
+        switch (wf) {
+            case percentile2:
+                return 2;
+            case percentile10:
+                return 10;
+            case percentile90:
+                return 90;
+            case percentile98:
+                return 98;
+            case median:
+                return 50;
+            default:
+                return -1.0;
+        }
+    }
+
+    private static void swap(float[] values, int i, int j) {
+        float tmp = values[i];
+        values[i] = values[j];
+        values[j] = tmp;
+    }
+}
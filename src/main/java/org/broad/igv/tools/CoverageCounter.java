@@ -461,8 +461,6 @@ public class CoverageCounter {
             consumer.setAttribute("totalCount", String.valueOf(totalCount));
             consumer.parsingComplete();
 
-        } catch (Exception e) {
-            e.printStackTrace();
         } finally {
 
             if (counter != null) {
@@ -898,7 +898,7 @@ public class IgvTools {
             if (tdfFile != null && tdfFile.exists()) {
                 tdfFile.delete();
             }
-            if (tdfFile != null && wigFile.exists()) {
+            if (wigFile != null && wigFile.exists()) {
                 wigFile.delete();
             }
         }
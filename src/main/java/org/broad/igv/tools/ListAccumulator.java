@@ -29,9 +29,8 @@
  */
 package org.broad.igv.tools;
 
-import org.broad.igv.util.collections.DoubleArrayList;
-import org.apache.commons.math3.stat.StatUtils;
 import org.apache.log4j.Logger;
+import org.broad.igv.tdf.WindowKernels;
 import org.broad.igv.track.WindowFunction;
 
 import java.util.*;
@@ -61,7 +60,8 @@ public class ListAccumulator {
     List<WindowFunction> windowFunctions;
     List<WindowFunction> quantileFunctions;
     Map<WindowFunction, List<PercentileValue>> percentiles = new HashMap();
-    DoubleArrayList values = null;
+    float[] values = null;
+    int valueCount = 0;
     float sum = 0.0f;
     int basesCovered = 0;
     int nPts = 0;
@@ -83,10 +83,12 @@ public class ListAccumulator {
             if (PERCENTILE_WINDOW_FUNCTIONS.contains(wf)) {
                 quantileFunctions.add(wf);
                 if (values == null) {
-                    values = new DoubleArrayList();
+                    values = new float[1024];
                 }
             }
         }
+        // Ascending percentiles let each selection start where the last ended
+        quantileFunctions.sort(Comparator.comparingDouble(WindowKernels::getPercentile));
     }
 
     public void add(int w, float v) {
@@ -97,10 +99,13 @@ public class ListAccumulator {
             basesCovered +=w;
             nPts++;
             if (values != null) {
-                values.add(v);
-                if (values.size() > MAX_VALUE_COUNT) {
+                if (valueCount == values.length) {
+                    values = Arrays.copyOf(values, valueCount + (valueCount >> 1));
+                }
+                values[valueCount++] = v;
+                if (valueCount > MAX_VALUE_COUNT) {
                     computePercentiles();
-                    values.clear();
+                    valueCount = 0;
                 }
             }
         }
@@ -121,7 +126,7 @@ public class ListAccumulator {
                     setValue(wf, mean);
                 }
             } else {
-                if (values.size() > 1) {
+                if (valueCount > 1) {
                     computePercentiles();
                 }
                 for (WindowFunction wf : quantileFunctions) {
@@ -151,11 +156,16 @@ public class ListAccumulator {
 
     private void computePercentiles() {
         if (values != null) {
-            double[] valueArray = values.toArray();
-            for (WindowFunction wf : quantileFunctions) {
-                double p = this.getPercentile(wf);
-                if (p > 0) {
-                    float v = (float) StatUtils.percentile(valueArray, p);
+            double[] p = new double[quantileFunctions.size()];
+            for (int i = 0; i < p.length; i++) {
+                p[i] = getPercentile(quantileFunctions.get(i));
+            }
+            float[] result = new float[p.length];
+            WindowKernels.percentiles(values, 0, valueCount, p, result);
+            for (int i = 0; i < p.length; i++) {
+                WindowFunction wf = quantileFunctions.get(i);
+                if (p[i] > 0) {
+                    float v = result[i];
                     if (Float.isInfinite(v)) {
                         log.error("Infinite percentile (" + wf + ")");
                     } else {
@@ -164,7 +174,7 @@ public class ListAccumulator {
                             pList = new ArrayList();
                             percentiles.put(wf, pList);
                         }
-                        pList.add(new PercentileValue(valueArray.length, v));
+                        pList.add(new PercentileValue(valueCount, v));
                     }
                 }
             }
@@ -236,20 +246,7 @@ public class ListAccumulator {
 
 
     public double getPercentile(WindowFunction wf) {
-        switch (wf) {
-            case percentile2:
-                return 2;
-            case percentile10:
-                return 10;
-            case percentile90:
-                return 90;
-            case percentile98:
-                return 98;
-            case median:
-                return 50;
-            default:
-                return -1.0;
-        }
+        return WindowKernels.getPercentile(wf);
     }
 
 
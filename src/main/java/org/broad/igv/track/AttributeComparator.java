@@ -25,7 +25,10 @@
 
 package org.broad.igv.track;
 
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.List;
+import java.util.ListIterator;
 
 /**
  * Sort tracks by attribute value
@@ -34,15 +37,107 @@ public abstract class AttributeComparator<T> implements Comparator<T> {
 
     private final String[] attributeNames;
     private final boolean[] ascending;
+    private final boolean[] numeric;
 
     AttributeComparator(String[] attributeNames, boolean[] ascending) {
         assert attributeNames.length == ascending.length;
         this.attributeNames = attributeNames;
         this.ascending = ascending;
+        this.numeric = new boolean[attributeNames.length];
+        for (int i = 0; i < attributeNames.length; i++) {
+            numeric[i] = attributeNames[i] != null && AttributeManager.getInstance().isNumeric(attributeNames[i]);
+        }
     }
 
     protected abstract String getAttributeValue(T track, String attName);
 
+    /**
+     * Sort {@code items} in the order defined by {@link #compare(Object, Object)}.  The attribute values of each
+     * item are fetched, and numeric values parsed, once; items are then sorted on precomputed integer ranks.  The
+     * sort is stable.
+     */
+    public void sort(List<T> items) {
+
+        int n = items.size();
+        int[][] ranks = new int[attributeNames.length][];
+        for (int i = 0; i < attributeNames.length; i++) {
+            if (attributeNames[i] != null) {
+                String[] values = new String[n];
+                for (int j = 0; j < n; j++) {
+                    values[j] = getAttributeValue(items.get(j), attributeNames[i]);
+                }
+                ranks[i] = rank(AttributeTable.Column.of(attributeNames[i], values), numeric[i]);
+            }
+        }
+
+        Integer[] order = new Integer[n];
+        for (int j = 0; j < n; j++) {
+            order[j] = j;
+        }
+        Arrays.sort(order, (a, b) -> {
+            for (int i = 0; i < ranks.length; i++) {
+                if (ranks[i] != null) {
+                    int c = Integer.compare(ranks[i][a], ranks[i][b]);
+                    if (c != 0) {
+                        return ascending[i] ? c : -c;
+                    }
+                }
+            }
+            return 0;
+        });
+
+        Object[] sorted = new Object[n];
+        for (int j = 0; j < n; j++) {
+            sorted[j] = items.get(order[j]);
+        }
+        ListIterator<T> iter = items.listIterator();
+        for (Object item : sorted) {
+            iter.next();
+            iter.set((T) item);
+        }
+    }
+
+    /**
+     * Return the rank of each row's value among the distinct values of the column, ordered as in
+     * {@link #compare(Object, Object)}
+     */
+    private static int[] rank(AttributeTable.Column column, boolean numeric) {
+
+        int nCodes = column.getValueCount() + 1;
+        Integer[] codes = new Integer[nCodes];
+        for (int code = 0; code < nCodes; code++) {
+            codes[code] = code;
+        }
+        Comparator<Integer> codeComparator = numeric ?
+                (a, b) -> Double.compare(keyOf(column, a), keyOf(column, b)) :
+                (a, b) -> valueOf(column, a).compareTo(valueOf(column, b));
+        Arrays.sort(codes, codeComparator);
+
+        // Equal values, e.g. "1" and "1.0", share a rank
+        int[] codeRanks = new int[nCodes];
+        int rank = 0;
+        for (int k = 1; k < nCodes; k++) {
+            if (codeComparator.compare(codes[k], codes[k - 1]) != 0) rank++;
+            codeRanks[codes[k]] = rank;
+        }
+
+        int[] ranks = new int[column.getRowCount()];
+        for (int row = 0; row < ranks.length; row++) {
+            ranks[row] = codeRanks[column.getCode(row)];
+        }
+        return ranks;
+    }
+
+    private static double keyOf(AttributeTable.Column column, int code) {
+        double d = column.getNumericValue(code);
+        return Double.isNaN(d) ? Double.MIN_VALUE : d;
+    }
+
+    private static String valueOf(AttributeTable.Column column, int code) {
+        String v = column.getValue(code);
+        return v == null ? "" : v;
+    }
+
     public int compare(T t1, T t2) {
         // Loop through the attributes in order (primary, secondary, tertiary, ...).  The
         // first attribute to yield a non-zero comparison wins
@@ -53,7 +148,7 @@ public abstract class AttributeComparator<T> implements Comparator<T> {
                 String value1 = getAttributeValue(t1, attName);
                 String value2 = getAttributeValue(t2, attName);
 
-                boolean isNumeric = AttributeManager.getInstance().isNumeric(attName);
+                boolean isNumeric = numeric[i];
 
                 int c = 0;
                 if (isNumeric) {
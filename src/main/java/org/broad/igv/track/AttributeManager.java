@@ -81,10 +81,10 @@ public class AttributeManager {
 
 
     /**
-     * Sample table. Key is sample name, identifying a "row" in the table.  Value is a map of column name / value
-     * pairs.   (e.g.  {TCGA-001  ->  { (gender->male),  (treated -> true), etc}}
+     * Sample table. Rows are identified by sample name, columns by upper case attribute name.
+     * (e.g.  {TCGA-001  ->  { (gender->male),  (treated -> true), etc}}
      */
-    Map<String, Map<String, String>> attributeMap = Collections.synchronizedMap(new LinkedHashMap());
+    AttributeTable attributeTable = new AttributeTable();
 
 
     /**
@@ -104,12 +104,6 @@ public class AttributeManager {
     Map<String, ColumnMetaData> columnMetaData = Collections.synchronizedMap(new HashMap());
 
 
-    /**
-     * The complete set of unique attribute values per attribute key.  This is useful in
-     * assigning unique colors
-     */
-    Map<String, Set<String>> uniqueAttributeValues = Collections.synchronizedMap(new HashMap());
-
     /**
      * Maps symbolic (discrete) attribute values to colors. Key is a composite of attribute name and value
      */
@@ -152,14 +146,12 @@ public class AttributeManager {
      * Return the attribute value for the given track (trackName) and key.
      */
     public String getAttribute(String trackName, String attributeName) {
-        Map<String, String> attributes = attributeMap.get(trackName);
         String key = attributeName.toUpperCase();
-        String value = attributes == null ? null : attributes.get(key);
-        if (value == null && trackSampleMappings.containsKey(trackName)) {
+        String value = attributeTable.get(trackName, key);
+        if (value == null) {
             final String sample = trackSampleMappings.get(trackName);
-            attributes = attributeMap.get(sample);
-            if (attributes != null) {
-                value = attributes.get(key);
+            if (sample != null) {
+                value = attributeTable.get(sample, key);
             }
         }
         return value;
@@ -205,9 +197,8 @@ public class AttributeManager {
     }
 
     public void clearAllAttributes() {
-        attributeMap.clear();
+        attributeTable.clear();
         attributeNames.clear();
-        uniqueAttributeValues.clear();
         //hiddenAttributes.clear();
         loadedResources = new HashSet();
     }
@@ -235,31 +226,16 @@ public class AttributeManager {
         addAttributeName(attributeName);
 
         String key = attributeName.toUpperCase();
-        Set<String> uniqueSet = uniqueAttributeValues.get(key);
-        if (uniqueSet == null) {
-            uniqueSet = new HashSet<String>();
-            uniqueAttributeValues.put(key, uniqueSet);
-        }
-        uniqueSet.add(attributeValue);
-
-        Map attributes = attributeMap.get(rowId);
-        if (attributes == null) {
-            attributes = new LinkedHashMap();
-            attributeMap.put(rowId, attributes);
-        }
 
         // attributeKey = column header, attributeValue = value for header
         // and track name (trackIdentifier) row intersection
-        attributes.put(key, attributeValue);
+        attributeTable.set(rowId, key, attributeValue);
         updateMetaData(key, attributeValue);
     }
 
     public void removeAttribute(String rowId, String attributeName) {
 
-        Map attributes = attributeMap.get(rowId);
-        if (attributes != null) {
-            attributes.remove(attributeName.toUpperCase());
-        }
+        attributeTable.remove(rowId, attributeName.toUpperCase());
 
     }
 
@@ -352,9 +328,9 @@ public class AttributeManager {
 
     public List<String> getGroupableAttributes() {
         List<String> seriesNames = new ArrayList<String>();
-        for (Map.Entry<String, Set<String>> entry : uniqueAttributeValues.entrySet()) {
-            int cnt = entry.getValue().size();
-            String att = entry.getKey();
+        for (AttributeTable.Column column : attributeTable.getColumns()) {
+            int cnt = column.getValueCount();
+            String att = column.getKey();
             if (cnt > 1 && cnt < 10 && !nonGroupable.contains(att)) {
                 seriesNames.add(att);
             }
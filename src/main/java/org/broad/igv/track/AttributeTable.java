@@ -0,0 +1,289 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.track;
+
+import java.util.*;
+
+/**
+ * Columnar table of attribute values.  Rows are samples or tracks, columns are attributes keyed by upper case name.
+ * <p>
+ * Each column interns its values: a row stores an int code, and the distinct values are held once in the column's
+ * dictionary, together with their parsed numeric value.  Columns are typed from their values as
+ * {@link Type#NUMERIC}, {@link Type#CATEGORICAL} (few distinct values) or {@link Type#STRING}.  Categorical columns
+ * provide a bitmap of the rows holding each value, built on first use, so filters can be evaluated once per
+ * distinct value rather than once per row.
+ */
+public class AttributeTable {
+
+    public enum Type {NUMERIC, CATEGORICAL, STRING}
+
+    /**
+     * Columns with at most this many distinct values have bitmap indexes
+     */
+    static final int CATEGORICAL_LIMIT = 1024;
+
+    private final Map<String, Integer> rowIndices = new HashMap<>();
+    private final List<String> rowIds = new ArrayList<>();
+    private final Map<String, Column> columns = new LinkedHashMap<>();
+
+    public synchronized void set(String rowId, String key, String value) {
+        Integer row = rowIndices.get(rowId);
+        if (row == null) {
+            row = rowIds.size();
+            rowIndices.put(rowId, row);
+            rowIds.add(rowId);
+        }
+        Column column = columns.get(key);
+        if (column == null) {
+            column = new Column(key);
+            columns.put(key, column);
+        }
+        column.set(row, value);
+    }
+
+    public synchronized void remove(String rowId, String key) {
+        Integer row = rowIndices.get(rowId);
+        Column column = columns.get(key);
+        if (row != null && column != null) {
+            column.set(row, null);
+        }
+    }
+
+    public synchronized String get(String rowId, String key) {
+        Integer row = rowIndices.get(rowId);
+        Column column = columns.get(key);
+        return row == null || column == null ? null : column.getValue(column.getCode(row));
+    }
+
+    /**
+     * Return the row index for {@code rowId}, or -1 if there is no such row
+     */
+    public synchronized int getRow(String rowId) {
+        Integer row = rowIndices.get(rowId);
+        return row == null ? -1 : row;
+    }
+
+    public synchronized String getRowId(int row) {
+        return rowIds.get(row);
+    }
+
+    public synchronized int getRowCount() {
+        return rowIds.size();
+    }
+
+    public synchronized Column getColumn(String key) {
+        return columns.get(key);
+    }
+
+    public synchronized Collection<Column> getColumns() {
+        return new ArrayList<>(columns.values());
+    }
+
+    public synchronized void clear() {
+        rowIndices.clear();
+        rowIds.clear();
+        columns.clear();
+    }
+
+    /**
+     * One attribute column.  Code 0 denotes a missing value; value codes start at 1.
+     */
+    public static class Column {
+
+        private final String key;
+        private int[] codes = new int[16];
+        private int rowCount = 0;
+        private final Map<String, Integer> codeMap = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+        private double[] numericValues = new double[16];
+        private int numericCount = 0;
+        private BitSet[] bitmaps;
+
+        public Column(String key) {
+            this.key = key;
+            values.add(null);
+            numericValues[0] = Double.NaN;
+        }
+
+        /**
+         * Create a column holding {@code values}, one row per element
+         */
+        public static Column of(String key, String[] values) {
+            Column column = new Column(key);
+            column.codes = new int[Math.max(16, values.length)];
+            for (int row = 0; row < values.length; row++) {
+                column.set(row, values[row]);
+            }
+            return column;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        void set(int row, String value) {
+            if (row >= codes.length) {
+                codes = Arrays.copyOf(codes, Math.max(row + 1, codes.length * 2));
+            }
+            codes[row] = intern(value);
+            rowCount = Math.max(rowCount, row + 1);
+            bitmaps = null;
+        }
+
+        private int intern(String value) {
+            if (value == null) {
+                return 0;
+            }
+            Integer code = codeMap.get(value);
+            if (code == null) {
+                code = values.size();
+                codeMap.put(value, code);
+                values.add(value);
+                if (code == numericValues.length) {
+                    numericValues = Arrays.copyOf(numericValues, code * 2);
+                }
+                double numeric = parseNumeric(value);
+                numericValues[code] = numeric;
+                if (!Double.isNaN(numeric)) {
+                    numericCount++;
+                }
+            }
+            return code;
+        }
+
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        /**
+         * Number of distinct non-missing values
+         */
+        public int getValueCount() {
+            return values.size() - 1;
+        }
+
+        public int getCode(int row) {
+            return row < rowCount ? codes[row] : 0;
+        }
+
+        /**
+         * Return the code for {@code value}, or -1 if the column does not contain it
+         */
+        public int getCode(String value) {
+            if (value == null) return 0;
+            Integer code = codeMap.get(value);
+            return code == null ? -1 : code;
+        }
+
+        public String getValue(int code) {
+            return values.get(code);
+        }
+
+        /**
+         * Return the numeric value for {@code code}, or NaN if the value is missing or not a number
+         */
+        public double getNumericValue(int code) {
+            return numericValues[code];
+        }
+
+        /**
+         * The numeric test of {@link AttributeManager.ColumnMetaData#isNumeric()}: at least 2 distinct numeric
+         * values and at most 1 distinct non-numeric value.
+         */
+        public Type getType() {
+            int alphaCount = getValueCount() - numericCount;
+            if (numericCount > 1 && alphaCount < 2) {
+                return Type.NUMERIC;
+            } else if (getValueCount() <= CATEGORICAL_LIMIT) {
+                return Type.CATEGORICAL;
+            } else {
+                return Type.STRING;
+            }
+        }
+
+        /**
+         * Return the rows holding the value with this code
+         */
+        public BitSet getRows(int code) {
+            BitSet[] b = getBitmaps();
+            if (b != null) {
+                return (BitSet) b[code].clone();
+            }
+            BitSet rows = new BitSet(rowCount);
+            for (int row = 0; row < rowCount; row++) {
+                if (codes[row] == code) rows.set(row);
+            }
+            return rows;
+        }
+
+        /**
+         * Return the rows whose value code is set in {@code codeSet}
+         */
+        public BitSet getRows(BitSet codeSet) {
+            BitSet rows = new BitSet(rowCount);
+            BitSet[] b = getBitmaps();
+            if (b != null) {
+                for (int code = codeSet.nextSetBit(0); code >= 0; code = codeSet.nextSetBit(code + 1)) {
+                    rows.or(b[code]);
+                }
+            } else {
+                for (int row = 0; row < rowCount; row++) {
+                    if (codeSet.get(codes[row])) rows.set(row);
+                }
+            }
+            return rows;
+        }
+
+        /**
+         * Return bitmaps of the rows holding each code, building them on first call, or null if the column has too
+         * many distinct values to index
+         */
+        private synchronized BitSet[] getBitmaps() {
+            if (getValueCount() > CATEGORICAL_LIMIT) {
+                return null;
+            }
+            if (bitmaps == null) {
+                BitSet[] b = new BitSet[values.size()];
+                for (int i = 0; i < b.length; i++) {
+                    b[i] = new BitSet(rowCount);
+                }
+                for (int row = 0; row < rowCount; row++) {
+                    b[codes[row]].set(row);
+                }
+                bitmaps = b;
+            }
+            return bitmaps;
+        }
+
+        private static double parseNumeric(String value) {
+            try {
+                return Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                return Double.NaN;
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.track;
+
+import htsjdk.tribble.Feature;
+import org.broad.igv.feature.IGVFeature;
+import org.broad.igv.feature.Locus;
+import org.broad.igv.ui.panel.ReferenceFrame;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Loads features for a {@link FeatureTrack} across several reference frames (gene list mode).
+ * <p>
+ * Frame intervals are expanded as in {@link FeatureTrack#loadFeatures}, grouped by chromosome, and merged when they
+ * overlap or lie close together.  Each merged region is queried once, in coordinate order per chromosome so
+ * sequential readers (e.g. tabix) move forward through the file.  Packing of each region is done in parallel,
+ * and frames within a region receive views of the shared packing (see {@link PackedFeatures}).  A failure to query
+ * or pack a region is reported once, and leaves its frames empty, without affecting other regions.
+ */
+class FeatureFrameLoader {
+
+    private final FeatureTrack track;
+
+    FeatureFrameLoader(FeatureTrack track) {
+        this.track = track;
+    }
+
+    void load(List<ReferenceFrame> frames) {
+
+        List<FrameRegion> regions = mergeRegions(frames);
+
+        // Queries are issued serially -- feature sources are not, in general, thread safe.  Packing is
+        // handed off as each query completes.
+        List<CompletableFuture<Void>> futures = new ArrayList<>(regions.size());
+        for (FrameRegion region : regions) {
+            final List<Feature> features;
+            try {
+                features = query(region);
+            } catch (Exception e) {
+                track.handleLoadError(region.chr, region.start, region.end, region.frames, e);
+                continue;
+            }
+            futures.add(CompletableFuture.runAsync(() -> pack(region, features))
+                    .exceptionally(e -> {
+                        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                        track.handleLoadError(region.chr, region.start, region.end, region.frames,
+                                cause instanceof Exception ? (Exception) cause : new RuntimeException(cause));
+                        return null;
+                    }));
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()])).join();
+    }
+
+    private List<Feature> query(FrameRegion region) throws java.io.IOException {
+        Iterator<Feature> iter = track.source.getFeatures(region.chr, region.start, region.end);
+        if (iter == null) {
+            return Collections.emptyList();
+        }
+        List<Feature> features = new ArrayList<>();
+        while (iter.hasNext()) {
+            features.add(iter.next());
+        }
+        return features;
+    }
+
+    private void pack(FrameRegion region, List<Feature> features) {
+
+        PackedFeatures<IGVFeature> regionPacking =
+                new PackedFeatures(region.chr, region.start, region.end, features.iterator(), track.getName());
+
+        for (int i = 0; i < region.frames.size(); i++) {
+            ReferenceFrame frame = region.frames.get(i);
+            Locus interval = region.intervals.get(i);
+            PackedFeatures<IGVFeature> pf = region.frames.size() == 1 ?
+                    regionPacking :
+                    new PackedFeatures(regionPacking, interval.getStart(), interval.getEnd());
+            track.packedFeaturesMap.put(frame.getName(), pf);
+        }
+    }
+
+    /**
+     * Group frames by chromosome and merge expanded intervals that overlap, or are separated by a gap no
+     * larger than the smaller of the two.  The gap rule bounds over-fetching to at most 2x while still
+     * collapsing clusters of nearby loci into a single query.
+     */
+    List<FrameRegion> mergeRegions(List<ReferenceFrame> frames) {
+
+        Map<String, List<FrameRegion>> regionsByChr = new LinkedHashMap<>();
+        for (ReferenceFrame frame : frames) {
+            Locus interval = track.getExpandedInterval(frame.getChrName(), (int) frame.getOrigin(), (int) frame.getEnd());
+            regionsByChr.computeIfAbsent(interval.getChr(), k -> new ArrayList<>()).add(new FrameRegion(frame, interval));
+        }
+
+        List<FrameRegion> merged = new ArrayList<>();
+        for (List<FrameRegion> chrRegions : regionsByChr.values()) {
+            chrRegions.sort(Comparator.comparingInt(r -> r.start));
+            FrameRegion current = null;
+            for (FrameRegion r : chrRegions) {
+                if (current == null) {
+                    current = r;
+                } else {
+                    int gap = r.start - current.end;
+                    int minLength = Math.min(current.end - current.start, r.end - r.start);
+                    if (gap <= minLength) {
+                        current.absorb(r);
+                    } else {
+                        merged.add(current);
+                        current = r;
+                    }
+                }
+            }
+            if (current != null) {
+                merged.add(current);
+            }
+        }
+        return merged;
+    }
+
+    static class FrameRegion {
+
+        final String chr;
+        int start;
+        int end;
+        final List<ReferenceFrame> frames = new ArrayList<>();
+        final List<Locus> intervals = new ArrayList<>();
+
+        FrameRegion(ReferenceFrame frame, Locus interval) {
+            this.chr = interval.getChr();
+            this.start = interval.getStart();
+            this.end = interval.getEnd();
+            frames.add(frame);
+            intervals.add(interval);
+        }
+
+        void absorb(FrameRegion other) {
+            start = Math.min(start, other.start);
+            end = Math.max(end, other.end);
+            frames.addAll(other.frames);
+            intervals.addAll(other.intervals);
+        }
+    }
+}
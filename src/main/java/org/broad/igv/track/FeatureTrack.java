@@ -691,6 +691,21 @@ public class FeatureTrack extends AbstractTrack implements IGVEventObserver {
         loadFeatures(frame.getChrName(), (int) frame.getOrigin(), (int) frame.getEnd(), frame);
     }
 
+    /**
+     * Load features for several reference frames at once (gene list / multi-locus mode).  Overlapping and nearby
+     * frame ranges are merged so each region is queried once, and the features are packed once per merged region.
+     * Frames sharing a region are given views of the same packing, so shared features keep their row assignment.
+     *
+     * @param frames
+     */
+    public void load(List<ReferenceFrame> frames) {
+        if (frames.size() == 1) {
+            load(frames.get(0));
+        } else {
+            new FeatureFrameLoader(this).load(frames);
+        }
+    }
+
     /**
      * Loads and segregates features into rows such that they do not overlap.
      *
@@ -702,22 +717,9 @@ public class FeatureTrack extends AbstractTrack implements IGVEventObserver {
 
         try {
 
-            int delta = (end - start) / 2;
-            int expandedStart = start - delta;
-            int expandedEnd = end + delta;
-
-            //Make sure we are only querying within the chromosome we allow for somewhat pathological cases of start
-            //being negative and end being outside, but only if directly queried. Our expansion should not
-            //set start < 0 or end > chromosomeLength
-            if (start >= 0) {
-                expandedStart = Math.max(0, expandedStart);
-            }
-
-            Genome genome = GenomeManager.getInstance().getCurrentGenome();
-            if (genome != null) {
-                Chromosome c = genome.getChromosome(chr);
-                if (c != null && end < c.getLength()) expandedEnd = Math.min(c.getLength(), expandedEnd);
-            }
+            Locus range = getExpandedInterval(chr, start, end);
+            int expandedStart = range.getStart();
+            int expandedEnd = range.getEnd();
 
             Iterator<Feature> iter = source.getFeatures(chr, expandedStart, expandedEnd);
 
@@ -732,15 +734,52 @@ public class FeatureTrack extends AbstractTrack implements IGVEventObserver {
 
         } catch (Exception e) {
             // Mark the interval with an empty feature list to prevent an endless loop of load attempts.
-            PackedFeatures pf = new PackedFeatures(chr, start, end);
-            packedFeaturesMap.put(frame.getName(), pf);
-            String msg = "Error loading features for interval: " + chr + ":" + start + "-" + end + " <br>" + e.toString();
-            MessageUtils.showMessage(msg);
-            log.error(msg, e);
+            handleLoadError(chr, start, end, frame, e);
         }
 
     }
 
+    /**
+     * Return the interval to query for a view of chr:start-end.  The view is expanded by 50% on each side to
+     * allow some panning without a reload.
+     */
+    Locus getExpandedInterval(String chr, int start, int end) {
+
+        int delta = (end - start) / 2;
+        int expandedStart = start - delta;
+        int expandedEnd = end + delta;
+
+        //Make sure we are only querying within the chromosome we allow for somewhat pathological cases of start
+        //being negative and end being outside, but only if directly queried. Our expansion should not
+        //set start < 0 or end > chromosomeLength
+        if (start >= 0) {
+            expandedStart = Math.max(0, expandedStart);
+        }
+
+        Genome genome = GenomeManager.getInstance().getCurrentGenome();
+        if (genome != null) {
+            Chromosome c = genome.getChromosome(chr);
+            if (c != null && end < c.getLength()) expandedEnd = Math.min(c.getLength(), expandedEnd);
+        }
+        return new Locus(chr, expandedStart, expandedEnd);
+    }
+
+    void handleLoadError(String chr, int start, int end, ReferenceFrame frame, Exception e) {
+        handleLoadError(chr, start, end, Collections.singletonList(frame), e);
+    }
+
+    /**
+     * Record empty features for each of {@code frames}, so they are not reloaded, and report the error once
+     */
+    void handleLoadError(String chr, int start, int end, List<ReferenceFrame> frames, Exception e) {
+        for (ReferenceFrame frame : frames) {
+            packedFeaturesMap.put(frame.getName(), new PackedFeatures(chr, start, end));
+        }
+        String msg = "Error loading features for interval: " + chr + ":" + start + "-" + end + " <br>" + e.toString();
+        MessageUtils.showMessage(msg);
+        log.error(msg, e);
+    }
+
     @Override
     public void render(RenderContext context, Rectangle rect) {
         Rectangle renderRect = new Rectangle(rect);
@@ -74,6 +74,48 @@ public class PackedFeatures<T extends Feature>{
         rows = packFeatures(iter);
     }
 
+    /**
+     * Construct a view of {@code parent} restricted to the interval start-end.  Row assignments are inherited from
+     * the parent, so a feature shared by several views is placed in the same relative row in each.  Rows with
+     * no features in the interval are dropped.
+     *
+     * @param parent
+     * @param start
+     * @param end
+     */
+    PackedFeatures(PackedFeatures<T> parent, int start, int end) {
+        this.trackName = parent.trackName;
+        this.chr = parent.chr;
+        this.start = start;
+        this.end = end;
+        features = new ArrayList(Math.min(1000, parent.features.size()));
+        rows = new ArrayList(parent.rows.size());
+
+        for (T feature : parent.features) {
+            if (overlaps(feature, start, end)) {
+                features.add(feature);
+                maxFeatureLength = Math.max(maxFeatureLength,
+                        getFeatureEndForPacking(feature) - getFeatureStartForPacking(feature));
+            }
+        }
+
+        for (FeatureRow parentRow : parent.rows) {
+            FeatureRow row = new FeatureRow();
+            for (T feature : parentRow.features) {
+                if (overlaps(feature, start, end)) {
+                    row.addFeature(feature);
+                }
+            }
+            if (row.features.size() > 0) {
+                rows.add(row);
+            }
+        }
+    }
+
+    private boolean overlaps(Feature feature, int start, int end) {
+        return getFeatureEndForPacking(feature) > start && getFeatureStartForPacking(feature) < end;
+    }
+
 
     /**
      * Some types of Features (splice junctions) should be packed on the same row even if start and end overlap.
@@ -37,6 +37,7 @@ import org.broad.igv.data.*;
 import org.broad.igv.data.cufflinks.*;
 import org.broad.igv.data.expression.ExpressionDataset;
 import org.broad.igv.data.expression.ExpressionFileParser;
+import org.broad.igv.data.expression.GeneToLocusHelper;
 import org.broad.igv.data.seg.*;
 import org.broad.igv.exceptions.DataLoadException;
 import org.broad.igv.feature.BasePairFileUtils;
@@ -44,6 +45,7 @@ import org.broad.igv.feature.GisticFileParser;
 import org.broad.igv.feature.MutationTrackLoader;
 import org.broad.igv.feature.ShapeFileUtils;
 import org.broad.igv.feature.basepair.BasePairTrack;
+import org.broad.igv.bedpe.BedPEIndex;
 import org.broad.igv.bedpe.BedPEParser;
 import org.broad.igv.bedpe.InteractionTrack;
 import org.broad.igv.feature.bionano.SMAPParser;
@@ -366,6 +368,14 @@ public class TrackLoader {
 
 
     private void loadBedPEFile(ResourceLocator locator, List<Track> newTracks, Genome genome) throws IOException {
+        if (BedPEIndex.isIndexable(locator)) {
+            try {
+                newTracks.add(new InteractionTrack(locator, BedPEIndex.open(locator, genome), genome));
+                return;
+            } catch (IOException e) {
+                log.error("Error indexing " + locator.getPath() + ", loading into memory", e);
+            }
+        }
         BedPEParser.Dataset features = BedPEParser.parse(locator, genome);
         newTracks.add(new InteractionTrack(locator, features, genome));
     }
@@ -469,10 +479,9 @@ public class TrackLoader {
 
     private void loadGWASFile(ResourceLocator locator, List<Track> newTracks, Genome genome) throws IOException {
 
-        GWASParser gwasParser = new GWASParser(locator, genome);
-        Map<String, List<GWASFeature>> gwasData = gwasParser.parse();
+        GWASData gwasData = GWASData.load(locator, genome);
 
-        GWASTrack gwasTrack = new GWASTrack(locator, locator.getPath(), locator.getFileName(), gwasData, gwasParser.getColumnHeaders(), genome);
+        GWASTrack gwasTrack = new GWASTrack(locator, locator.getPath(), locator.getFileName(), gwasData, gwasData.getColumnHeaders(), genome);
         newTracks.add(gwasTrack);
 
     }
@@ -486,11 +495,40 @@ public class TrackLoader {
             }
         }
 
-        ExpressionFileParser parser = null;
-        ExpressionDataset ds = null;
-        parser = new ExpressionFileParser(locator, null, genome);
-        ds = parser.createDataset();
-        if (ds.isEmpty()) {
+        Dataset ds = null;
+        boolean isEmpty;
+        if (locator.isLocal()) {
+            // Local files are converted to a memory mapped matrix on first load, and read from that on demand
+            try {
+                MatrixDataset matrix = MatrixDataset.open(locator, genome, GeneToLocusHelper.getMappingKey(),
+                        new MatrixDataset.Source() {
+                            ExpressionDataset eds;
+
+                            public Dataset load() throws IOException {
+                                eds = createExpressionDataset(locator, genome);
+                                return eds;
+                            }
+
+                            public String getTrackLine() {
+                                return eds == null ? null : eds.getTrackLine();
+                            }
+                        });
+                matrix.setName(locator.getTrackName());
+                ds = matrix;
+            } catch (IOException e) {
+                log.error("Error converting expression file " + locator.getPath(), e);
+            }
+        }
+        if (ds == null) {
+            ExpressionDataset eds = createExpressionDataset(locator, genome);
+            eds.setName(locator.getTrackName());
+            ds = eds;
+            isEmpty = eds.isEmpty();
+        } else {
+            isEmpty = ((MatrixDataset) ds).isEmpty();
+        }
+
+        if (isEmpty) {
             String message = "The probes in the file <br>&nbsp;&nbsp;&nbsp;" + locator.getPath() + "<br>" +
                     "could not be mapped to genomic positions.  This can be corrected by specify a probe mapping<br>" +
                     "file from the Preferences window (Probes tab), or by specifing the genomic positions in the<br>" +
@@ -498,9 +536,6 @@ public class TrackLoader {
             MessageUtils.showMessage(message);
 
         } else {
-            ds.setName(locator.getTrackName());
-            ds.setNormalized(true);
-            ds.setLogValues(true);
 
             /*
              * File outputFile = new File(IGV.DEFAULT_USER_DIRECTORY, file.getName() + ".h5");
@@ -526,6 +561,14 @@ public class TrackLoader {
 
     }
 
+    private static ExpressionDataset createExpressionDataset(ResourceLocator locator, Genome genome) throws IOException {
+        ExpressionFileParser parser = new ExpressionFileParser(locator, null, genome);
+        ExpressionDataset ds = parser.createDataset();
+        ds.setNormalized(true);
+        ds.setLogValues(true);
+        return ds;
+    }
+
     /**
      * Load features from a genbank (.gbk)file.  This method ignores the fasta section.  To define a genome from
      * a genbank file use GenomeManager.
@@ -553,8 +596,32 @@ public class TrackLoader {
 
 
         String dsName = locator.getTrackName();
-        IGVDataset ds = new IGVDataset(locator, genome);
-        ds.setName(dsName);
+        Dataset ds = null;
+        if (locator.isLocal()) {
+            try {
+                MatrixDataset matrix = MatrixDataset.open(locator, genome, "", new MatrixDataset.Source() {
+                    IGVDataset igvDataset;
+
+                    public Dataset load() {
+                        igvDataset = new IGVDataset(locator, genome);
+                        return igvDataset;
+                    }
+
+                    public String getTrackLine() {
+                        return igvDataset == null ? null : igvDataset.getTrackLine();
+                    }
+                });
+                matrix.setName(dsName);
+                ds = matrix;
+            } catch (IOException e) {
+                log.error("Error converting igv file " + locator.getPath(), e);
+            }
+        }
+        if (ds == null) {
+            IGVDataset igvDataset = new IGVDataset(locator, genome);
+            igvDataset.setName(dsName);
+            ds = igvDataset;
+        }
 
         TrackProperties trackProperties = ds.getTrackProperties();
         String path = locator.getPath();
@@ -918,6 +985,13 @@ public class TrackLoader {
                     }
 
                 }
+
+                // No precomputed coverage, compute a summary in the background
+                if (!covTrack.hasDataSource() &&
+                        PreferencesManager.getPreferences().getAsBoolean(SAM_COVERAGE_SIDECAR) &&
+                        CoverageSidecar.isSupported(locator)) {
+                    CoverageSidecar.attach(covTrack, locator, genome);
+                }
             }
 
             boolean showSpliceJunctionTrack = PreferencesManager.getPreferences().getAsBoolean(SAM_SHOW_JUNCTION_TRACK);
@@ -996,8 +1070,19 @@ public class TrackLoader {
         if (path.endsWith("seg.zip")) {
             ds = new SegmentedBinaryDataSet(locator);
         } else {
-            SegmentFileParser parser = new SegmentFileParser(locator);
-            ds = parser.loadSegments(locator, genome);
+            ds = null;
+            if (locator.isLocal()) {
+                // Local files are converted to a columnar form on first load, and read from that on demand
+                try {
+                    ds = new SegmentedBinaryDataSet(SegmentedColumnarReader.open(locator, genome));
+                } catch (IOException e) {
+                    log.error("Error converting segmented data file " + locator.getPath(), e);
+                }
+            }
+            if (ds == null) {
+                SegmentFileParser parser = new SegmentFileParser(locator);
+                ds = parser.loadSegments(locator, genome);
+            }
         }
         loadSegTrack(locator, newTracks, genome, ds);
     }
@@ -1017,6 +1102,8 @@ public class TrackLoader {
         TrackProperties props = null;
         if (ds instanceof SegmentedAsciiDataSet) {
             props = ((SegmentedAsciiDataSet) ds).getTrackProperties();
+        } else if (ds instanceof SegmentedBinaryDataSet) {
+            props = ((SegmentedBinaryDataSet) ds).getTrackProperties();
         }
 
         // The "freq" track.  TODO - make this optional
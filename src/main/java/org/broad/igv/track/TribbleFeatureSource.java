@@ -27,6 +27,8 @@ package org.broad.igv.track;
 
 import htsjdk.tribble.*;
 import htsjdk.tribble.index.Index;
+import org.apache.log4j.Logger;
+import org.broad.igv.DirectoryManager;
 import org.broad.igv.Globals;
 import org.broad.igv.data.AbstractDataSource;
 import org.broad.igv.data.DataTile;
@@ -42,8 +44,12 @@ import org.broad.igv.util.collections.CollUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
 
 /**
  * @author jrobinso
@@ -51,6 +57,13 @@ import java.util.*;
  */
 abstract public class TribbleFeatureSource implements org.broad.igv.track.FeatureSource {
 
+    private static Logger log = Logger.getLogger(TribbleFeatureSource.class);
+
+    /**
+     * The feature cache holds about this many bins, see {@link #getCacheRecordCount()}
+     */
+    private static final int CACHED_BIN_COUNT = 5;
+
     private final ResourceLocator locator;
     private AbstractFeatureReader abstractReader;
     private final boolean useIndex;
@@ -63,6 +76,11 @@ abstract public class TribbleFeatureSource implements org.broad.igv.track.Featur
      */
     Map<String, String> chrNameMap = new HashMap<String, String>();
     private int featureWindowSize;
+
+    /**
+     * Feature density sampled by {@link #estimateFeatureWindowSize(FeatureReader)}, or 0 if not known
+     */
+    double featuresPerBase;
     Object header;
     Class featureClass;
 
@@ -99,12 +117,14 @@ abstract public class TribbleFeatureSource implements org.broad.igv.track.Featur
             }
         }
 
-        // Optionally let the user create an index.
+        // Large local text files are indexed automatically into the IGV index directory.  Otherwise optionally
+        // let the user create an index.
         final int hundredMB = 100000000;
         final int oneGB = 1000000000;
         long size = FileUtils.getLength(locator.getPath());
-        final boolean indexRequired = size > oneGB;
-        if (!Globals.isHeadless() && locator.isLocal() && !locator.getPath().endsWith(".gz") && !indexExists) {
+        final boolean cacheIndex = !indexExists && size > hundredMB && FileIndexedFeatureSource.isIndexable(locator, codec);
+        final boolean indexRequired = size > oneGB && !cacheIndex;
+        if (!Globals.isHeadless() && locator.isLocal() && !locator.getPath().endsWith(".gz") && !indexExists && !cacheIndex) {
             if (size > hundredMB) {
                 createIndex(locator, indexRequired);   // Note, might return null.
             }
@@ -119,6 +139,8 @@ abstract public class TribbleFeatureSource implements org.broad.igv.track.Featur
 
         if (indexExists) { //basicReader.hasIndex()) {
             return new IndexedFeatureSource(basicReader, codec, locator, genome, useCache, true);
+        } else if (cacheIndex) {
+            return new FileIndexedFeatureSource(basicReader, codec, locator, genome);
         } else {
             return new NonIndexedFeatureSource(basicReader, codec, locator, genome);
         }
@@ -166,7 +188,7 @@ abstract public class TribbleFeatureSource implements org.broad.igv.track.Featur
         this.header = reader.getHeader();
         this.featureWindowSize = estimateFeatureWindowSize(reader);
         this.reader = useCache ?
-                new CachingFeatureReader(reader, 5, featureWindowSize) :
+                new CachingFeatureReader(reader, featureWindowSize, getCacheRecordCount()) :
                 new TribbleReaderWrapper(reader);
     }
 
@@ -195,7 +217,7 @@ abstract public class TribbleFeatureSource implements org.broad.igv.track.Featur
                     }
 
                     abstractReader = AbstractFeatureReader.getFeatureReader(path, idxPath, CodecFactory.getCodec(locator, genome), useIndex);
-                    this.reader = new CachingFeatureReader(abstractReader, 5, featureWindowSize);
+                    this.reader = new CachingFeatureReader(abstractReader, featureWindowSize, getCacheRecordCount());
                 } else {
                     this.reader = new TribbleReaderWrapper(abstractReader);
                 }
@@ -210,6 +232,18 @@ abstract public class TribbleFeatureSource implements org.broad.igv.track.Featur
 
     protected abstract int estimateFeatureWindowSize(FeatureReader reader);
 
+    /**
+     * Return the record budget of the feature cache, the expected number of records in {@link #CACHED_BIN_COUNT}
+     * bins.  If the density was not sampled (VCF) one record per base is assumed, an upper bound for variants.
+     */
+    long getCacheRecordCount() {
+        if (featureWindowSize <= 0 || featureWindowSize == Integer.MAX_VALUE) {
+            return AbstractCacher.DEFAULT_MAX_RECORD_COUNT;
+        }
+        double density = featuresPerBase > 0 && !Double.isInfinite(featuresPerBase) ? featuresPerBase : 1;
+        return Math.max(1000, (long) (CACHED_BIN_COUNT * featureWindowSize * density));
+    }
+
     protected abstract Collection<String> getSequenceNames();
 
     public abstract boolean isIndexed();
@@ -336,7 +370,7 @@ abstract public class TribbleFeatureSource implements org.broad.igv.track.Featur
                     double bytesPerFeature = Math.max(100, dMem / n);
 
                     len += lastFeature.getEnd() - firstFeature.getStart() + 1;
-                    double featuresPerBase = ((double) n) / len;
+                    featuresPerBase = ((double) n) / len;
 
                     double targetBinMemory = 20000000;  // 20  mega bytes
                     int maxBinSize = Integer.MAX_VALUE;
@@ -355,6 +389,96 @@ abstract public class TribbleFeatureSource implements org.broad.igv.track.Featur
     }
 
 
+    /**
+     * Source for large, local, non-indexed text files (e.g. BED, GFF).  Rather than loading every feature into
+     * memory an index is built in the background into the IGV index directory, and reused on later loads until
+     * the file changes.  Queries wait for the index to become available.  See {@link FeatureFileIndex}.
+     */
+    static class FileIndexedFeatureSource extends IndexedFeatureSource {
+
+        private final File sourceFile;
+        private final CompletableFuture<FeatureFileIndex> indexFuture;
+        private final AsciiFeatureCodec queryCodec;
+
+        static boolean isIndexable(ResourceLocator locator, FeatureCodec codec) {
+            String path = locator.getPath().toLowerCase();
+            return locator.isLocal() && !path.endsWith(".gz") && !path.endsWith(".bgz") &&
+                    codec instanceof AsciiFeatureCodec && !(codec instanceof VCFWrapperCodec);
+        }
+
+        private FileIndexedFeatureSource(AbstractFeatureReader basicReader, FeatureCodec codec, ResourceLocator locator,
+                                         Genome genome) throws IOException {
+            super(basicReader, codec, locator, genome, false, false);
+
+            sourceFile = new File(locator.getPath());
+            final File indexFile = getIndexFile(sourceFile);
+            final Supplier<AsciiFeatureCodec> codecSupplier = () -> (AsciiFeatureCodec) CodecFactory.getCodec(locator, genome);
+            queryCodec = codecSupplier.get();
+
+            indexFuture = CompletableFuture.supplyAsync(() -> {
+                try {
+                    FeatureFileIndex index = FeatureFileIndex.loadOrCreate(sourceFile, indexFile, codecSupplier);
+                    for (String line : index.getHeaderLines()) {
+                        queryCodec.decode(line);
+                    }
+                    if (genome != null) {
+                        for (String seqName : index.getSequenceNames()) {
+                            String igvChr = genome.getCanonicalChrName(seqName);
+                            if (igvChr != null && !igvChr.equals(seqName)) {
+                                chrNameMap.put(igvChr, seqName);
+                            }
+                        }
+                    }
+                    return index;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, LongRunningTask.getThreadExecutor());
+        }
+
+        private static File getIndexFile(File sourceFile) {
+            return SidecarFiles.getFile(DirectoryManager.getFeatureIndexDirectory(), sourceFile, ".fidx");
+        }
+
+        private FeatureFileIndex getIndex() throws IOException {
+            try {
+                return indexFuture.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+                throw new IOException("Error indexing " + sourceFile.getAbsolutePath() + ": " + cause.getMessage(), cause);
+            }
+        }
+
+        @Override
+        public boolean isLoaded(ReferenceFrame frame) {
+            return indexFuture.isDone();
+        }
+
+        @Override
+        public Iterator<Feature> getFeatures(String chr, int start, int end) throws IOException {
+            FeatureFileIndex index = getIndex();
+            String seqName = chrNameMap.get(chr);
+            if (seqName == null) seqName = chr;
+            synchronized (queryCodec) {
+                return index.query(seqName, start, end, queryCodec).iterator();
+            }
+        }
+
+        @Override
+        protected Collection<String> getSequenceNames() {
+            try {
+                return getIndex().getSequenceNames();
+            } catch (IOException e) {
+                log.error(e.getMessage(), e);
+                return Collections.emptyList();
+            }
+        }
+    }
+
+
     static class NonIndexedFeatureSource extends TribbleFeatureSource {
 
         /**
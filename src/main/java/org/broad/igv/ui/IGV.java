@@ -78,9 +78,9 @@ import java.net.URL;
 import java.util.List;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.prefs.Preferences;
 import java.util.stream.Collectors;
 
@@ -2325,9 +2325,10 @@ public class IGV implements IGVEventObserver {
 
 
     public void receiveEvent(Object event) {
-        if (event instanceof ViewChange || event instanceof InsertionSelectionEvent) {
-            repaint();
-        } else if (event instanceof GenomeChangeEvent) {
+        if (event instanceof ViewChange) {
+            // A view change alone does not invalidate the data panels' cached images, which can be shifted when panning
+            repaint(contentPane);
+        } else if (event instanceof InsertionSelectionEvent || event instanceof GenomeChangeEvent) {
             repaint();
         } else {
             log.info("Unknown event type: " + event.getClass());
@@ -2365,14 +2366,17 @@ public class IGV implements IGVEventObserver {
 
 
     public void repaint() {
+        DataPanelRasterCache.invalidateAll();
         repaint(contentPane);
     }
 
     public void repaint(Track track) {
+        DataPanelRasterCache.invalidateAll();
         this.repaint(contentPane, List.of(track));
     }
 
     public void repaint(Collection<? extends Track> tracks) {
+        DataPanelRasterCache.invalidateAll();
         this.repaint(contentPane, tracks);
     }
 
@@ -2384,8 +2388,9 @@ public class IGV implements IGVEventObserver {
         repaint(component, trackList);
     }
 
-    private boolean isLoading = false;
-    private Collection<? extends Track> pending = null;
+    // Number of load batches in flight, and components to repaint when the last completes
+    private final AtomicInteger loadingBatches = new AtomicInteger();
+    private final Set<JComponent> pendingRepaints = ConcurrentHashMap.newKeySet();
 
     private void repaint(final JComponent component, Collection<? extends Track> trackList) {
 
@@ -2393,72 +2398,127 @@ public class IGV implements IGVEventObserver {
             // In batch mode everything is done synchronously on the event thread
             UIUtilities.invokeAndWaitOnEventThread(() -> {
 
-                for (ReferenceFrame frame : FrameManager.getFrames()) {
-                    for (Track track : trackList) {
-                        if (track.isReadyToPaint(frame) == false) {
+                for (Track track : trackList) {
+                    List<ReferenceFrame> frames = framesToLoad(track);
+                    if (frames.size() > 1 && track instanceof FeatureTrack) {
+                        ((FeatureTrack) track).load(frames);
+                    } else {
+                        for (ReferenceFrame frame : frames) {
                             track.load(frame);
                         }
                     }
                 }
                 checkPanelLayouts();
+                DataPanelRasterCache.invalidateAll();
                 component.paintImmediately(component.getBounds());
             });
 
         } else {
+            // The on screen tracks are determined from component geometry, schedule from the event thread
+            UIUtilities.invokeOnEventThread(() -> scheduleLoads(component, trackList));
+        }
+    }
 
-            if (isLoading) {
-                // Track data is being loaded, do a repaint with existing data and mark this request for future execution
-                UIUtilities.invokeOnEventThread(() -> contentPane.repaint());
-                pending = trackList;
-                return;
-            }
-
-            List<CompletableFuture> futures = new ArrayList();
+    private void scheduleLoads(final JComponent component, Collection<? extends Track> trackList) {
 
-            for (ReferenceFrame frame : FrameManager.getFrames()) {
-                for (Track track : trackList) {
-                    if (track.isReadyToPaint(frame) == false) {
-                        futures.add(CompletableFuture.runAsync(() -> track.load(frame), threadExecutor));
+        // Loads are keyed by track, so a load queued by a previous repaint for the same track is superseded by
+        // this one rather than waited on.  Loads of a track never run concurrently.
+        // Tracks scrolled out of view are loaded at background priority
+        LoadScheduler scheduler = LoadScheduler.getInstance();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        Set<Track> onScreenTracks = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (TrackPanel tp : getTrackPanels()) {
+            onScreenTracks.addAll(tp.getOnScreenTracks());
+        }
+
+        for (Track track : trackList) {
+            List<ReferenceFrame> frames = framesToLoad(track);
+            if (frames.isEmpty()) continue;
+            String resource = getResourceKey(track);
+            LoadScheduler.Priority priority = onScreenTracks.contains(track) ?
+                    LoadScheduler.Priority.VISIBLE : LoadScheduler.Priority.BACKGROUND;
+            futures.add(scheduler.submitLoad(resource, track, priority, () -> {
+                // A load of the track that was running when this was submitted might have covered some frames
+                List<ReferenceFrame> pending = new ArrayList<>();
+                for (ReferenceFrame frame : frames) {
+                    if (!track.isReadyToPaint(frame)) {
+                        pending.add(frame);
+                    }
+                }
+                if (pending.size() > 1 && track instanceof FeatureTrack) {
+                    // Feature tracks merge overlapping frames and load them together
+                    ((FeatureTrack) track).load(pending);
+                } else {
+                    for (ReferenceFrame frame : pending) {
+                        track.load(frame);
                     }
                 }
+            }));
+        }
+
+        if (futures.size() == 0) {
+            checkPanelLayouts();
+            repaintView(component);
+        } else {
+            // One ore more tracks require loading before repaint.   Load all needed tracks, autscale if needed, then
+            // repaint.  The autoscale step is key, since tracks can be grouped for autoscaling it is neccessary that
+            // all data is loaded before any track is repainted.  Otherwise tracks be loaded an painted independently.
+
+            if (loadingBatches.getAndIncrement() > 0) {
+                // Track data is being loaded, do a repaint with existing data
+                repaintView(contentPane);
             }
 
-            if (futures.size() == 0) {
-                UIUtilities.invokeOnEventThread(() -> {
-                    checkPanelLayouts();
-                    component.repaint();
-                });
-            } else {
-                // One ore more tracks require loading before repaint.   Load all needed tracks, autscale if needed, then
-                // repaint.  The autoscale step is key, since tracks can be grouped for autoscaling it is neccessary that
-                // all data is loaded before any track is repainted.  Otherwise tracks be loaded an painted independently.
-
-                final CompletableFuture[] futureArray = futures.toArray(new CompletableFuture[futures.size()]);
-                WaitCursorManager.CursorToken token = WaitCursorManager.showWaitCursor();
-                isLoading = true;
-                CompletableFuture.allOf(futureArray).thenApplyAsync(future -> {
-                    WaitCursorManager.removeWaitCursor(token);
+            final CompletableFuture[] futureArray = futures.toArray(new CompletableFuture[futures.size()]);
+            WaitCursorManager.CursorToken token = WaitCursorManager.showWaitCursor();
+            pendingRepaints.add(component);
+            CompletableFuture.allOf(futureArray).whenCompleteAsync((result, ex) -> {
+                WaitCursorManager.removeWaitCursor(token);
+                if (ex != null) {
+                    log.error("Error loading track data", ex);
+                }
+                if (loadingBatches.decrementAndGet() == 0) {
                     // Autoscale as required, check layouts (for scrollbar changes), and repaint.
                     Autoscaler.autoscale(getAllTracks());
                     UIUtilities.invokeOnEventThread(() -> {
                         checkPanelLayouts();
-                        component.repaint();
-                        isLoading = false;
-                        if (pending != null) {
-                            Collection<? extends Track> tmp = pending;
-                            pending = null;
-                            repaint(tmp);
+                        DataPanelRasterCache.invalidateAll();
+                        Iterator<JComponent> iter = pendingRepaints.iterator();
+                        while (iter.hasNext()) {
+                            iter.next().repaint();
+                            iter.remove();
                         }
                     });
-                    return null;
-                }).exceptionally(ex -> {
-                    log.error("Error loading track data", ex);
-                    isLoading = false;
-                    pending = null;
-                    return null;
-                });
+                    if (log.isDebugEnabled()) {
+                        log.debug("Load scheduler: " + scheduler.getStatistics());
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Schedule a repaint of the component without invalidating cached data panel images.  Callers are responsible
+     * for invalidating if anything other than the view has changed.  Component.repaint() is bypassed as
+     * IGVContentPane overrides it to invalidate.
+     */
+    private static void repaintView(JComponent component) {
+        RepaintManager.currentManager(component).addDirtyRegion(component, 0, 0, component.getWidth(), component.getHeight());
+    }
+
+    private static String getResourceKey(Track track) {
+        ResourceLocator locator = track.getResourceLocator();
+        return locator == null ? null : locator.getPath();
+    }
+
+    private static List<ReferenceFrame> framesToLoad(Track track) {
+        List<ReferenceFrame> frames = new ArrayList<>();
+        for (ReferenceFrame frame : FrameManager.getFrames()) {
+            if (track.isReadyToPaint(frame) == false) {
+                frames.add(frame);
             }
         }
+        return frames;
     }
 
     private void checkPanelLayouts() {
@@ -2476,7 +2536,4 @@ public class IGV implements IGVEventObserver {
                 flatMap(trackGroup -> trackGroup.getVisibleTracks().stream()).
                 collect(Collectors.toList());
     }
-
-    // Thread pool for loading data
-    private static final ExecutorService threadExecutor = Executors.newFixedThreadPool(5);
 }
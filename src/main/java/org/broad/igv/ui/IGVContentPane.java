@@ -27,6 +27,7 @@ package org.broad.igv.ui;
 
 import org.apache.log4j.Logger;
 import org.broad.igv.ui.commandbar.IGVCommandBar;
+import org.broad.igv.ui.panel.DataPanelRasterCache;
 import org.broad.igv.ui.panel.MainPanel;
 import org.broad.igv.ui.panel.TrackPanel;
 import org.broad.igv.ui.util.ApplicationStatusBar;
@@ -133,4 +134,13 @@ public class IGVContentPane extends JPanel {
         return statusBar;
     }
 
+
+    /**
+     * Direct repaint requests typically follow a change to track state, so invalidate the data panels' cached images.
+     */
+    @Override
+    public void repaint(long tm, int x, int y, int width, int height) {
+        DataPanelRasterCache.invalidateAll();
+        super.repaint(tm, x, y, width, height);
+    }
 }
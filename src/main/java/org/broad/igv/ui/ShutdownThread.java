@@ -30,6 +30,7 @@ import org.broad.igv.batch.CommandListener;
 import org.broad.igv.feature.RegionOfInterest;
 import org.broad.igv.prefs.PreferencesManager;
 import org.broad.igv.track.Track;
+import org.broad.igv.util.HttpUtils;
 
 import java.io.File;
 import java.io.PrintWriter;
@@ -46,6 +47,7 @@ public class ShutdownThread extends Thread {
     public static void runS() {
         log.info("Shutting down");
         CommandListener.halt();
+        HttpUtils.getInstance().shutdown();
         if (IGV.hasInstance()) {
             IGV.getInstance().saveStateForExit();
             PreferencesManager.getPreferences().setApplicationFrameBounds(IGV.getMainFrame().getBounds());
@@ -30,13 +30,12 @@
 
 package org.broad.igv.ui;
 
+import org.broad.igv.track.AttributeTable;
 import org.broad.igv.track.Track;
 import org.broad.igv.util.Filter;
 import org.broad.igv.util.FilterElement;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
+import java.util.*;
 
 /**
  * @author eflakes
@@ -66,7 +65,8 @@ public class TrackFilter extends Filter {
     }
 
     /**
-     * Evaluate the TrackFilterElement set.
+     * Evaluate the TrackFilterElement set.  Attribute values are collected into a column per attribute, so each
+     * element is evaluated once per distinct value and combined with the others as bitsets over the tracks.
      *
      * @return
      */
@@ -76,32 +76,50 @@ public class TrackFilter extends Filter {
         if (currentTrackList == null || currentTrackList.isEmpty())
             return;
 
-        boolean filterEnabled = isEnabled();
-
-        for (Track track : currentTrackList) {
-
-            // Must start as null which means no previous results
-            Boolean result = null;
-
-            // If filter is not enabled just show all tracks
-            if (!filterEnabled) {
-                track.setVisible(!filterEnabled);
-                continue;
+        // If filter is not enabled just show all tracks
+        if (!isEnabled()) {
+            for (Track track : currentTrackList) {
+                track.setVisible(true);
             }
+            return;
+        }
 
+        List<Track> filterableTracks = new ArrayList<Track>(currentTrackList.size());
+        for (Track track : currentTrackList) {
             if (track.isFilterable()) {
+                filterableTracks.add(track);
+            }
+        }
 
-                // Evaluate tracks
-                Iterator iterator = getFilterElements();
-                while (iterator.hasNext()) {
+        // Must start as null which means no previous results
+        BitSet result = null;
+        Map<String, AttributeTable.Column> columns = new HashMap<String, AttributeTable.Column>();
+        Iterator iterator = getFilterElements();
+        while (iterator.hasNext()) {
+            FilterElement element = (FilterElement) iterator.next();
+            String key = element.getSelectedItem();
+            AttributeTable.Column column = columns.get(key);
+            if (column == null) {
+                column = getColumn(filterableTracks, key);
+                columns.put(key, column);
+            }
+            result = element.test(column, result);
+        }
 
-                    FilterElement element = (FilterElement) iterator.next();
-                    result = element.evaluate(track, result);
-                }
-                track.setVisible(result);
+        if (result != null) {
+            for (int i = 0; i < filterableTracks.size(); i++) {
+                filterableTracks.get(i).setVisible(result.get(i));
             }
         }
     }
 
+    private static AttributeTable.Column getColumn(List<Track> tracks, String key) {
+        String[] values = new String[tracks.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = tracks.get(i).getAttributeValue(key);
+        }
+        return AttributeTable.Column.of(key, values);
+    }
+
 
 }
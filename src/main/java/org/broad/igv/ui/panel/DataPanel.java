@@ -82,6 +82,7 @@ public class DataPanel extends JComponent implements Paintable, IGVEventObserver
     private ReferenceFrame frame;
     private DataPanelContainer parent;
     private DataPanelPainter painter;
+    private DataPanelRasterCache rasterCache = new DataPanelRasterCache();
     private String tooltipText = "";
 
     public DataPanel(ReferenceFrame frame, DataPanelContainer parent) {
@@ -128,6 +129,17 @@ public class DataPanel extends JComponent implements Paintable, IGVEventObserver
 
     long lastPaintTime = 0;
 
+    /**
+     * Repaint requests made directly on this panel, rather than through a view change, invalidate the cached image.
+     */
+    @Override
+    public void repaint(long tm, int x, int y, int width, int height) {
+        if (rasterCache != null) {
+            rasterCache.invalidate();
+        }
+        super.repaint(tm, x, y, width, height);
+    }
+
     @Override
     public void paintComponent(final Graphics g) {
         
@@ -136,6 +148,7 @@ public class DataPanel extends JComponent implements Paintable, IGVEventObserver
         try {
 
             lastPaintTime = System.currentTimeMillis();
+            long t0 = System.nanoTime();
 
             Rectangle clipBounds = g.getClipBounds();
             final Rectangle visibleRect = getVisibleRect();
@@ -150,7 +163,19 @@ public class DataPanel extends JComponent implements Paintable, IGVEventObserver
 
             computeMousableRegions(groups, trackWidth);
 
-            painter.paint(groups, context, trackWidth, getBackground(), damageRect);
+            if (DataPanelRasterCache.isCacheable(frame, groups, graphics2D)) {
+                rasterCache.paint(graphics2D, frame, groups, getBackground(), visibleRect, damageRect, (imageGraphics, rect) -> {
+                    RenderContext imageContext = new RenderContext(this, imageGraphics, frame, visibleRect);
+                    try {
+                        painter.paint(groups, imageContext, trackWidth, getBackground(), rect);
+                    } finally {
+                        imageContext.dispose();
+                    }
+                });
+            } else {
+                rasterCache.invalidate();
+                painter.paint(groups, context, trackWidth, getBackground(), damageRect);
+            }
 
             // If there is a partial ROI in progress draw it first
             if (currentTool instanceof RegionOfInterestTool) {
@@ -165,8 +190,7 @@ public class DataPanel extends JComponent implements Paintable, IGVEventObserver
             drawAllRegions(g);
 
 
-            long dt = System.currentTimeMillis() - lastPaintTime;
-            PanTool.repaintTime(dt);
+            PanTool.repaintTime((System.nanoTime() - t0) / 1.0e6);
 
         } finally {
 
@@ -228,6 +252,13 @@ public class DataPanel extends JComponent implements Paintable, IGVEventObserver
      */
 
     public void paintOffscreen(final Graphics2D g, Rectangle rect, boolean batch) {
+        paintOffscreen(g, rect, frame, batch);
+    }
+
+    /**
+     * Paint tracks for {@code frame} rather than this panel's frame
+     */
+    public void paintOffscreen(final Graphics2D g, Rectangle rect, ReferenceFrame frame, boolean batch) {
 
         RenderContext context = null;
         Graphics borderGraphics = g.create();
@@ -240,7 +271,7 @@ public class DataPanel extends JComponent implements Paintable, IGVEventObserver
             int width = rect.width;
             painter.paint(groups, context, width, getBackground(), rect);
 
-            drawAllRegions(g);
+            drawAllRegions(g, frame);
 
             borderGraphics.drawRect(rect.x, rect.y, rect.width-1, rect.height-1);
 
@@ -262,6 +293,10 @@ public class DataPanel extends JComponent implements Paintable, IGVEventObserver
      * Draw vertical lines demarcating regions of interest.
      */
     public void drawAllRegions(final Graphics g) {
+        drawAllRegions(g, frame);
+    }
+
+    private void drawAllRegions(final Graphics g, ReferenceFrame frame) {
 
         // TODO -- get rid of this ugly reference to IGV
         Collection<RegionOfInterest> regions =
@@ -277,7 +312,7 @@ public class DataPanel extends JComponent implements Paintable, IGVEventObserver
 
             for (RegionOfInterest regionOfInterest : regions) {
                 if (drawBars || regionOfInterest == RegionOfInterestPanel.getSelectedRegion()) {
-                    drawRegion(graphics2D, regionOfInterest);
+                    drawRegion(graphics2D, regionOfInterest, frame);
                 }
             }
         } finally {
@@ -287,7 +322,7 @@ public class DataPanel extends JComponent implements Paintable, IGVEventObserver
         }
     }
 
-    private boolean drawRegion(Graphics2D graphics2D, RegionOfInterest regionOfInterest) {
+    private boolean drawRegion(Graphics2D graphics2D, RegionOfInterest regionOfInterest, ReferenceFrame referenceFrame) {
         Integer regionStart = regionOfInterest.getStart();
         if (regionStart == null) {
             return true;
@@ -297,7 +332,6 @@ public class DataPanel extends JComponent implements Paintable, IGVEventObserver
         if (regionEnd == null) {
             regionEnd = regionStart;
         }
-        ReferenceFrame referenceFrame = frame;
         int start = referenceFrame.getScreenPosition(regionStart);
         int end = referenceFrame.getScreenPosition(regionEnd);
 
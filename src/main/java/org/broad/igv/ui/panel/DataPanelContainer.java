@@ -148,6 +148,23 @@ public class DataPanelContainer extends TrackPanelComponent implements Paintable
         //super.paintBorder(g);
     }
 
+    /**
+     * Paint the tracks for {@code frame} across the full width of {@code rect}.  The frame need not be one of the
+     * displayed frames.
+     */
+    public void paintOffscreen(Graphics2D g, Rectangle rect, ReferenceFrame frame, boolean batch) {
+        for (Component c : this.getComponents()) {
+            if (c instanceof DataPanel) {
+                Graphics2D g2d = (Graphics2D) g.create();
+                Rectangle clipRect = new Rectangle(0, 0, rect.width, rect.height);
+                g2d.setClip(clipRect);
+                ((DataPanel) c).paintOffscreen(g2d, clipRect, frame, batch);
+                g2d.dispose();
+                break;
+            }
+        }
+    }
+
     @Override
     public int getSnapshotHeight(boolean batch) {
         return getHeight();
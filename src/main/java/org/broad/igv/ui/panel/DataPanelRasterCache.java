@@ -0,0 +1,321 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.ui.panel;
+
+import org.broad.igv.Globals;
+import org.broad.igv.bedpe.InteractionTrack;
+import org.broad.igv.event.*;
+import org.broad.igv.prefs.Constants;
+import org.broad.igv.prefs.PreferencesChangeEvent;
+import org.broad.igv.prefs.PreferencesManager;
+import org.broad.igv.renderer.IGVFeatureRenderer;
+import org.broad.igv.renderer.SpliceJunctionRenderer;
+import org.broad.igv.sam.AlignmentTrack;
+import org.broad.igv.sam.InsertionManager;
+import org.broad.igv.sam.InsertionSelectionEvent;
+import org.broad.igv.track.FeatureTrack;
+import org.broad.igv.track.Track;
+import org.broad.igv.track.TrackGroup;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Cache of the rendered track image of a {@link DataPanel}.
+ * <p>
+ * The image is reused as long as nothing but the frame origin has changed.  When the view is panned by a whole
+ * number of pixels the cached image is shifted and only the newly exposed strip is rendered.  Any other change,
+ * including the chromosome, scale, panel geometry, the visible tracks or their heights and display modes, invalidates
+ * the image.  Changes which are not visible in that state, such as newly loaded data, preference changes or track
+ * menu actions, invalidate every cache through {@link #invalidateAll()}, which is called on repaint requests that
+ * are not view changes, and on refresh and preference events.
+ * <p>
+ * Views whose rendering depends on the position of the viewport, rather than just genomic coordinates, are not cached:
+ * whole genome view, expanded insertions, alignment center lines, tracks zoomed out beyond their visibility window
+ * (which draw a centered message), and feature tracks showing names (names are centered on the visible part of a
+ * feature, and drawn only if they fit in the clip).  Nor are views with tracks which autoscale to the features in view as they are
+ * rendered, a shifted image and a newly rendered strip could be drawn at different scales.  Tracks autoscaled by
+ * {@link org.broad.igv.ui.Autoscaler} are cached, it runs after loads and all caches are invalidated when it does.
+ */
+public class DataPanelRasterCache {
+
+    private static final AtomicInteger generation = new AtomicInteger();
+    private static final AtomicInteger hits = new AtomicInteger();
+    private static final AtomicInteger misses = new AtomicInteger();
+
+    private static final IGVEventObserver observer = event -> invalidateAll();
+
+    static {
+        IGVEventBus.getInstance().subscribe(RefreshEvent.class, observer);
+        IGVEventBus.getInstance().subscribe(PreferencesChangeEvent.class, observer);
+        IGVEventBus.getInstance().subscribe(TrackGroupEvent.class, observer);
+        IGVEventBus.getInstance().subscribe(AlignmentTrackEvent.class, observer);
+        IGVEventBus.getInstance().subscribe(InsertionSelectionEvent.class, observer);
+    }
+
+    /**
+     * Invalidate the images of all data panels
+     */
+    public static void invalidateAll() {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Number of paints satisfied, entirely or by shifting, from a cached image
+     */
+    public static int getHitCount() {
+        return hits.get();
+    }
+
+    public static int getMissCount() {
+        return misses.get();
+    }
+
+    private BufferedImage image;
+    private BufferedImage spareImage;
+    private Key key;
+    private double origin;
+
+    public void invalidate() {
+        key = null;
+    }
+
+    /**
+     * Release the images, e.g. when the panel is removed
+     */
+    public void dispose() {
+        key = null;
+        image = null;
+        spareImage = null;
+    }
+
+    /**
+     * Return true if the current view of {@code frame} can be painted from a cache
+     */
+    static boolean isCacheable(ReferenceFrame frame, Collection<TrackGroup> groups, Graphics2D g) {
+
+        if (!PreferencesManager.getPreferences().getAsBoolean(Constants.ENABLE_RASTER_CACHE) ||
+                FrameManager.isGeneListMode() ||
+                Globals.CHR_ALL.equals(frame.getChrName()) ||
+                InsertionManager.getInstance().getSelectedInsertion(frame.getChrName()) != null) {
+            return false;
+        }
+
+        AffineTransform transform = g.getTransform();
+        if (transform.getScaleX() != transform.getScaleY() || transform.getShearX() != 0 || transform.getShearY() != 0) {
+            return false;
+        }
+
+        double widthBP = frame.getEnd() - frame.getOrigin();
+        for (TrackGroup group : groups) {
+            if (!group.isVisible()) continue;
+            for (Track track : group.getVisibleTracks()) {
+                if (track == null || !track.isVisible()) continue;
+                int visibilityWindow = track.getVisibilityWindow();
+                if (visibilityWindow > 0 && widthBP > visibilityWindow) {
+                    return false;
+                }
+                if (track instanceof AlignmentTrack && ((AlignmentTrack) track).isShowCenterLine()) {
+                    return false;
+                }
+                if (isAutoscaledOnRender(track) || isDrawingFeatureNames(track)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean isAutoscaledOnRender(Track track) {
+        if (track instanceof InteractionTrack) {
+            return ((InteractionTrack) track).isAutoscaledOnRender();
+        }
+        return track instanceof FeatureTrack &&
+                ((FeatureTrack) track).getRenderer() instanceof SpliceJunctionRenderer &&
+                track.getAutoScale();
+    }
+
+    private static boolean isDrawingFeatureNames(Track track) {
+        return track instanceof FeatureTrack &&
+                ((FeatureTrack) track).getRenderer() instanceof IGVFeatureRenderer &&
+                track.getDisplayMode() != Track.DisplayMode.SQUISHED &&
+                track.isShowFeatureNames();
+    }
+
+    /**
+     * Paint the tracks in {@code visibleRect}, using and updating the cached image.
+     *
+     * @param g           panel graphics
+     * @param frame       the panel's frame
+     * @param groups      track groups to paint
+     * @param background  background color
+     * @param visibleRect visible region of the panel
+     * @param damageRect  region which must be painted
+     * @param painter     paints tracks into the given graphics, restricted to the given rectangle in panel coordinates
+     */
+    void paint(Graphics2D g,
+               ReferenceFrame frame,
+               Collection<TrackGroup> groups,
+               Color background,
+               Rectangle visibleRect,
+               Rectangle damageRect,
+               BiConsumer<Graphics2D, Rectangle> painter) {
+
+        double deviceScale = g.getTransform().getScaleX();
+        Key newKey = new Key(frame, groups, background, visibleRect, deviceScale);
+        double newOrigin = frame.getOrigin();
+
+        int shift = Integer.MAX_VALUE;
+        if (image != null && newKey.equals(key)) {
+            double dx = (origin - newOrigin) / frame.getScale();
+            long rounded = Math.round(dx);
+            if (Math.abs(dx - rounded) < 1.0e-3 && Math.abs(rounded) < visibleRect.width) {
+                shift = (int) rounded;
+            }
+        }
+
+        if (shift == Integer.MAX_VALUE) {
+            misses.incrementAndGet();
+            if (!damageRect.equals(visibleRect)) {
+                // Partial repaint of an invalid image, paint directly and leave the cache invalid
+                key = null;
+                painter.accept(g, damageRect);
+                return;
+            }
+            image = createImage(visibleRect, deviceScale, image);
+            renderStrip(image, visibleRect, deviceScale, g, painter, visibleRect);
+        } else {
+            hits.incrementAndGet();
+            if (shift != 0) {
+                // Shift the cached image, then render the exposed strip
+                BufferedImage shifted = createImage(visibleRect, deviceScale, spareImage);
+                Graphics2D sg = shifted.createGraphics();
+                sg.drawImage(image, (int) Math.round(shift * deviceScale), 0, null);
+                sg.dispose();
+                spareImage = image;
+                image = shifted;
+
+                Rectangle strip = shift > 0 ?
+                        new Rectangle(visibleRect.x, visibleRect.y, shift, visibleRect.height) :
+                        new Rectangle(visibleRect.x + visibleRect.width + shift, visibleRect.y, -shift, visibleRect.height);
+                renderStrip(image, visibleRect, deviceScale, g, painter, strip);
+            }
+        }
+
+        key = newKey;
+        origin = newOrigin;
+        g.drawImage(image, visibleRect.x, visibleRect.y, visibleRect.width, visibleRect.height, null);
+    }
+
+    private static BufferedImage createImage(Rectangle visibleRect, double deviceScale, BufferedImage reuse) {
+        int w = (int) Math.ceil(visibleRect.width * deviceScale);
+        int h = (int) Math.ceil(visibleRect.height * deviceScale);
+        if (reuse != null && reuse.getWidth() == w && reuse.getHeight() == h) {
+            return reuse;
+        }
+        return new BufferedImage(Math.max(1, w), Math.max(1, h), BufferedImage.TYPE_INT_RGB);
+    }
+
+    private static void renderStrip(BufferedImage image, Rectangle visibleRect, double deviceScale, Graphics2D panelGraphics,
+                                    BiConsumer<Graphics2D, Rectangle> painter, Rectangle strip) {
+        Graphics2D ig = image.createGraphics();
+        try {
+            ig.setRenderingHints(panelGraphics.getRenderingHints());
+            ig.scale(deviceScale, deviceScale);
+            ig.translate(-visibleRect.x, -visibleRect.y);
+            ig.setClip(strip);
+            painter.accept(ig, strip);
+        } finally {
+            ig.dispose();
+        }
+    }
+
+    /**
+     * Everything, other than the origin, which determines the rendered image
+     */
+    private static class Key {
+
+        final String chr;
+        final double scale;
+        final Rectangle visibleRect;
+        final Color background;
+        final double deviceScale;
+        final int generation;
+        final List<Object> tracks;
+
+        Key(ReferenceFrame frame, Collection<TrackGroup> groups, Color background, Rectangle visibleRect, double deviceScale) {
+            this.chr = frame.getChrName();
+            this.scale = frame.getScale();
+            this.visibleRect = new Rectangle(visibleRect);
+            this.background = background;
+            this.deviceScale = deviceScale;
+            this.generation = DataPanelRasterCache.generation.get();
+            this.tracks = new ArrayList<>();
+            for (TrackGroup group : groups) {
+                if (!group.isVisible()) continue;
+                tracks.add(group);
+                for (Track track : group.getVisibleTracks()) {
+                    if (track == null || !track.isVisible()) continue;
+                    tracks.add(track);
+                    tracks.add(track.getHeight());
+                    tracks.add(track.getDisplayMode());
+                }
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            // Tracks are compared by identity
+            if (tracks.size() != other.tracks.size()) return false;
+            for (int i = 0; i < tracks.size(); i++) {
+                Object a = tracks.get(i);
+                Object b = other.tracks.get(i);
+                if (a instanceof Track || a instanceof TrackGroup ? a != b : !Objects.equals(a, b)) return false;
+            }
+            return generation == other.generation &&
+                    scale == other.scale &&
+                    deviceScale == other.deviceScale &&
+                    chr.equals(other.chr) &&
+                    visibleRect.equals(other.visibleRect) &&
+                    Objects.equals(background, other.background);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(chr, scale, visibleRect, generation);
+        }
+    }
+}
@@ -43,6 +43,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * @author jrobinso
@@ -52,6 +53,7 @@ public class FrameManager implements IGVEventObserver {
 
     private static List<ReferenceFrame> frames = new ArrayList();
     private static ReferenceFrame defaultFrame;
+    private static final List<ReferenceFrame> offscreenFrames = new CopyOnWriteArrayList<>();
 
     public static final String DEFAULT_FRAME_NAME = "genome";
 
@@ -87,6 +89,22 @@ public class FrameManager implements IGVEventObserver {
         return frames;
     }
 
+    /**
+     * Frames rendered offscreen, e.g. by parallel snapshots.  Data loaded for these frames is retained, as it is for
+     * the frames in view, until they are removed.
+     */
+    public static List<ReferenceFrame> getOffscreenFrames() {
+        return offscreenFrames;
+    }
+
+    public static void addOffscreenFrame(ReferenceFrame frame) {
+        offscreenFrames.add(frame);
+    }
+
+    public static void removeOffscreenFrame(ReferenceFrame frame) {
+        offscreenFrames.remove(frame);
+    }
+
     public static ReferenceFrame getFrame(String frameName) {
         for (ReferenceFrame frame : frames) {
             if (frame.getName().equals(frameName)) {
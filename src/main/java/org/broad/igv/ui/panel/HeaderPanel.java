@@ -35,6 +35,7 @@
 package org.broad.igv.ui.panel;
 
 
+import org.broad.igv.event.IGVEventBus;
 import org.broad.igv.feature.RegionOfInterest;
 import org.broad.igv.track.TrackMenuUtils;
 import org.broad.igv.ui.IGV;
@@ -256,6 +257,15 @@ public class HeaderPanel extends JPanel implements Transferable {
         return popupMenu;
     }
 
+    /**
+     * Release event subscriptions.  Used for panels created for offscreen rendering, which are never added to the UI.
+     */
+    public void dispose() {
+        if (cytobandPanel != null) {
+            IGVEventBus.getInstance().unsubscribe(cytobandPanel);
+        }
+    }
+
     private void removeFrame(ReferenceFrame frame) {
         FrameManager.removeFrame(frame);
         java.util.List<ReferenceFrame> remainingFrames = FrameManager.getFrames();
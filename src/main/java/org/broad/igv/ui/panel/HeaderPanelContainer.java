@@ -111,6 +111,35 @@ public class HeaderPanelContainer extends JPanel implements Paintable {
        paint(g);
     }
 
+    /**
+     * Paint a header for {@code frame}, which need not be one of the frames displayed by this container.
+     *
+     * @param frame the frame to paint, or null to paint this container's frames
+     */
+    public void paintOffscreen(Graphics2D g, Rectangle rect, ReferenceFrame frame, boolean batch) {
+        if (frame == null) {
+            paintOffscreen(g, rect, batch);
+            return;
+        }
+        HeaderPanel headerPanel = new HeaderPanel(frame);
+        try {
+            headerPanel.setBounds(0, 0, rect.width, rect.height);
+            layoutTree(headerPanel);
+            headerPanel.paint(g);
+        } finally {
+            headerPanel.dispose();
+        }
+    }
+
+    private static void layoutTree(Container container) {
+        container.doLayout();
+        for (Component c : container.getComponents()) {
+            if (c instanceof Container) {
+                layoutTree((Container) c);
+            }
+        }
+    }
+
     @Override
     public int getSnapshotHeight(boolean batch) {
         return getHeight();
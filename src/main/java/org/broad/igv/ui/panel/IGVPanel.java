@@ -95,6 +95,13 @@ public class IGVPanel extends JPanel implements Paintable {
     }
 
     public void paintOffscreen(Graphics2D g, Rectangle rect, boolean batch) {
+        paintOffscreen(g, rect, null, batch);
+    }
+
+    /**
+     * @param frame frame to paint the data panel for, or null for the frames currently displayed
+     */
+    public void paintOffscreen(Graphics2D g, Rectangle rect, ReferenceFrame frame, boolean batch) {
 
         g.setColor(Color.black);
 
@@ -124,7 +131,11 @@ public class IGVPanel extends JPanel implements Paintable {
         dataGraphics.translate(dataRect.x, 0);
         dataRect.x = 0;
         g.setClip(dataRect);
-        ((Paintable) dataPanel).paintOffscreen(dataGraphics, dataRect, batch);
+        if (frame != null && dataPanel instanceof HeaderPanelContainer) {
+            ((HeaderPanelContainer) dataPanel).paintOffscreen(dataGraphics, dataRect, frame, batch);
+        } else {
+            ((Paintable) dataPanel).paintOffscreen(dataGraphics, dataRect, batch);
+        }
         dataGraphics.dispose();
     }
 
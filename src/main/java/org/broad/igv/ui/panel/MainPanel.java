@@ -497,6 +497,17 @@ public class MainPanel extends JPanel implements Paintable {
 
 
     public void paintOffscreen(Graphics2D g, Rectangle rect, boolean batch) {
+        paintOffscreen(g, rect, null, batch);
+    }
+
+    /**
+     * Paint the header and track panels for {@code frame}, which need not be one of the displayed frames.  This
+     * supports snapshots of several loci, each in its own frame, without changing the view.  Components are not
+     * modified, but tracks are, so calls must not overlap; see {@link org.broad.igv.ui.util.SnapshotUtilities#doFrameSnapshot}.
+     *
+     * @param frame frame to paint, or null for the frames currently displayed
+     */
+    public void paintOffscreen(Graphics2D g, Rectangle rect, ReferenceFrame frame, boolean batch) {
 
         // Header
         int width = applicationHeaderPanel.getWidth();
@@ -504,7 +515,7 @@ public class MainPanel extends JPanel implements Paintable {
 
         Graphics2D headerGraphics = (Graphics2D) g.create();
         Rectangle headerRect = new Rectangle(0, 0, width, height);
-        applicationHeaderPanel.paintOffscreen(headerGraphics, headerRect, batch);
+        applicationHeaderPanel.paintOffscreen(headerGraphics, headerRect, frame, batch);
         headerGraphics.dispose();
 
         // Now loop through track panels
@@ -535,7 +546,11 @@ public class MainPanel extends JPanel implements Paintable {
                 tspRect.height = panelHeight;
 
                 g2d.setClip(new Rectangle(0, 0, tsp.getWidth(), tspRect.height));
-                tsp.paintOffscreen(g2d, tspRect, batch);
+                if (frame == null) {
+                    tsp.paintOffscreen(g2d, tspRect, batch);
+                } else {
+                    tsp.getTrackPanel().paintOffscreen(g2d, tspRect, frame, batch);
+                }
                 dy += tspRect.height;
 
             } else {
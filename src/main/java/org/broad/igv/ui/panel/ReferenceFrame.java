@@ -129,6 +129,18 @@ public class ReferenceFrame {
         this.eventBus = IGVEventBus.getInstance();
     }
 
+    /**
+     * Constructor for a frame detached from the application view, e.g. for offscreen rendering.  View changes are
+     * posted to {@code eventBus} rather than the global event bus.
+     *
+     * @param name
+     * @param eventBus
+     */
+    public ReferenceFrame(String name, IGVEventBus eventBus) {
+        this(name);
+        this.eventBus = eventBus;
+    }
+
     public ReferenceFrame(ReferenceFrame otherFrame) {
         this(otherFrame, otherFrame.eventBus);
     }
@@ -157,6 +157,34 @@ public class TrackPanel extends IGVPanel {
         return count;
     }
 
+    /**
+     * Return the tracks at least partly within the visible rectangle of the panel, i.e. on screen.  Tracks are laid
+     * out as in {@link DataPanel}.  Reads component geometry, call on the event dispatch thread.
+     */
+    public List<Track> getOnScreenTracks() {
+        List<Track> tracks = new ArrayList<>();
+        Rectangle visibleRect = getVisibleRect();
+        if (visibleRect.isEmpty()) {
+            return tracks;
+        }
+        int y = 0;
+        for (TrackGroup group : trackGroups) {
+            if (!group.isVisible()) continue;
+            if (trackGroups.size() > 1) {
+                y += UIConstants.groupGap;
+            }
+            for (Track track : group.getVisibleTracks()) {
+                if (track == null || !track.isVisible()) continue;
+                int height = track.getHeight();
+                if (y < visibleRect.y + visibleRect.height && y + height > visibleRect.y) {
+                    tracks.add(track);
+                }
+                y += height;
+            }
+        }
+        return tracks;
+    }
+
     public boolean isHeightChanged() {
         int height = getPreferredPanelHeight();
         boolean change = height != lastHeight;
@@ -442,6 +470,13 @@ public class TrackPanel extends IGVPanel {
 
     @Override
     public void paintOffscreen(Graphics2D g, Rectangle rect, boolean batch) {
+        paintOffscreen(g, rect, null, batch);
+    }
+
+    /**
+     * @param frame frame to paint the data panel for, or null for the frames currently displayed
+     */
+    public void paintOffscreen(Graphics2D g, Rectangle rect, ReferenceFrame frame, boolean batch) {
 
         int h = rect.height;
 
@@ -477,7 +512,11 @@ public class TrackPanel extends IGVPanel {
         Graphics2D dataGraphics = (Graphics2D) g.create();
         dataGraphics.setClip(dataRect);
         System.out.println("data " + dataRect);
-        ((Paintable) children[2]).paintOffscreen(dataGraphics, dataRect, batch);
+        if (frame != null && children[2] instanceof DataPanelContainer) {
+            ((DataPanelContainer) children[2]).paintOffscreen(dataGraphics, dataRect, frame, batch);
+        } else {
+            ((Paintable) children[2]).paintOffscreen(dataGraphics, dataRect, batch);
+        }
         dataGraphics.dispose();
 
 
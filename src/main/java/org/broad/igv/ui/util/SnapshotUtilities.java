@@ -36,7 +36,9 @@ package org.broad.igv.ui.util;
 import org.apache.batik.dom.GenericDOMImplementation;
 import org.apache.batik.svggen.SVGGraphics2D;
 import org.apache.log4j.Logger;
+import org.broad.igv.ui.panel.MainPanel;
 import org.broad.igv.ui.panel.Paintable;
+import org.broad.igv.ui.panel.ReferenceFrame;
 import org.w3c.dom.DOMImplementation;
 import org.w3c.dom.Document;
 
@@ -82,6 +84,12 @@ public class SnapshotUtilities {
 
     public static boolean snapshotInProgress = false;
 
+    /**
+     * Serializes painting in {@link #doFrameSnapshot}.  Tracks and renderers keep per-render state and are not safe
+     * to paint from several threads at once, even into different images.
+     */
+    private static final Object framePaintLock = new Object();
+
     // Treat this class as a singleton, no instances allowed
     private SnapshotUtilities() {
     }
@@ -94,30 +102,58 @@ public class SnapshotUtilities {
             if (!(component instanceof Paintable)) {
                 throw new RuntimeException("Error: " + component + " is not an instance of Paintable");
             }
-
-            Paintable paintable = (Paintable) component;
-            int width = component.getWidth();
-            int height = paintable.getSnapshotHeight(batch);
-
-            // Call appropriate converter
-            if (type == SVG) {
-                exportScreenshotSVG((Paintable) component, file, width, height, batch);
-                return "OK";
-            } else if (type == PNG) {
-                String format = "png";
-                String[] exts = new String[]{"." + format};
-                exportScreenShotBufferedImage((Paintable) component, file, width, height, exts, format, batch);
-                return "OK";
-            } else {
-                final String message = "No image write for file type: " + file + " Try '.png' or '.svg'";
-                MessageUtils.showMessage(message);
-                return "ERROR: " + message;
-            }
+            return doSnapshot((Paintable) component, component.getWidth(), file, type, batch);
         } finally {
             snapshotInProgress = false;
         }
     }
 
+    /**
+     * Create a snapshot of {@code mainPanel} rendered for {@code frame}, which need not be one of the displayed
+     * frames.  This method may be called concurrently for different frames, painting is serialized but image
+     * encoding and output are not.  Track data for the frame should be loaded first, painting does not load it.
+     * Callers are responsible for setting {@link #snapshotInProgress}.
+     */
+    public static String doFrameSnapshot(MainPanel mainPanel, ReferenceFrame frame, File file, ImageFileTypes.Type type, boolean batch) throws IOException {
+
+        Paintable paintable = new Paintable() {
+            @Override
+            public void paintOffscreen(Graphics2D g, Rectangle rect, boolean batch) {
+                synchronized (framePaintLock) {
+                    mainPanel.paintOffscreen(g, rect, frame, batch);
+                }
+            }
+
+            @Override
+            public int getSnapshotHeight(boolean batch) {
+                synchronized (framePaintLock) {
+                    return mainPanel.getSnapshotHeight(batch);
+                }
+            }
+        };
+        return doSnapshot(paintable, mainPanel.getWidth(), file, type, batch);
+    }
+
+    private static String doSnapshot(Paintable paintable, int width, File file, ImageFileTypes.Type type, boolean batch) throws IOException {
+
+        int height = paintable.getSnapshotHeight(batch);
+
+        // Call appropriate converter
+        if (type == SVG) {
+            exportScreenshotSVG(paintable, file, width, height, batch);
+            return "OK";
+        } else if (type == PNG) {
+            String format = "png";
+            String[] exts = new String[]{"." + format};
+            exportScreenShotBufferedImage(paintable, file, width, height, exts, format, batch);
+            return "OK";
+        } else {
+            final String message = "No image write for file type: " + file + " Try '.png' or '.svg'";
+            MessageUtils.showMessage(message);
+            return "ERROR: " + message;
+        }
+    }
+
     private static void exportScreenshotSVG(Paintable target, File selectedFile, int width, int height, boolean batch) throws IOException {
 
         String format = "svg";
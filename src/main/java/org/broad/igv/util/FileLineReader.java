@@ -0,0 +1,125 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads lines at arbitrary offsets through a buffer window.  Reads at increasing, nearby offsets are served
+ * from the buffer.
+ */
+public class FileLineReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 65536;
+
+    private final FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private long bufferStart = 0;
+    private int bufferLength = 0;
+    private long nextLineOffset;
+
+    public FileLineReader(File file) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    }
+
+    /**
+     * Read the line of known length starting at {@code offset}
+     */
+    public String readLine(long offset, int length) throws IOException {
+        if (offset < bufferStart || offset + length > bufferStart + bufferLength) {
+            fill(offset, Math.max(BUFFER_SIZE, length));
+        }
+        int pos = (int) (offset - bufferStart);
+        int len = length;
+        byte[] array = buffer.array();
+        while (len > 0 && (array[pos + len - 1] == '\n' || array[pos + len - 1] == '\r')) {
+            len--;
+        }
+        nextLineOffset = offset + length;
+        return new String(array, pos, len, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read the line starting at {@code offset}, or null at end of file.
+     */
+    public String readLine(long offset) throws IOException {
+        while (true) {
+            if (offset < bufferStart || offset >= bufferStart + bufferLength) {
+                fill(offset, buffer.capacity());
+                if (bufferLength == 0) {
+                    return null;
+                }
+            }
+            int pos = (int) (offset - bufferStart);
+            byte[] array = buffer.array();
+            for (int i = pos; i < bufferLength; i++) {
+                if (array[i] == '\n') {
+                    return readLine(offset, i - pos + 1);
+                }
+            }
+            if (bufferStart + bufferLength >= channel.size()) {
+                // Last line, no terminator
+                return readLine(offset, bufferLength - pos);
+            }
+            if (pos == 0) {
+                // Line longer than the buffer
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+            }
+            bufferLength = 0;
+        }
+    }
+
+    /**
+     * Offset of the line following the last line read
+     */
+    public long getNextLineOffset() {
+        return nextLineOffset;
+    }
+
+    private void fill(long offset, int size) throws IOException {
+        if (buffer.capacity() < size) {
+            buffer = ByteBuffer.allocate(size);
+        }
+        buffer.clear();
+        channel.position(offset);
+        while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+            // keep reading
+        }
+        bufferStart = offset;
+        bufferLength = buffer.position();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -29,9 +29,12 @@
  */
 package org.broad.igv.util;
 
+import org.broad.igv.track.AttributeTable;
 import org.broad.igv.track.Track;
 import org.broad.igv.util.collections.CollUtils;
 
+import java.util.BitSet;
+
 /**
  * @author eflakes
  */
@@ -111,6 +114,51 @@ abstract public class FilterElement {
 
     public boolean test(String comparableItem, Boolean previousResult) {
 
+        boolean result = matches(comparableItem);
+
+        // If we have previous result we need to test against them
+        if (previousResult != null) {
+
+            // And/Or new result to previous result
+            if (booleanOperator.equals(BooleanOperator.OR)) {
+                result = (result || previousResult);
+            } else {
+                result = (result && previousResult);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Evaluate this element for every row of {@code column}, combining with the result of the previous element as
+     * {@link #test(String, Boolean)} does.  The comparison is made once per distinct value of the column, and the
+     * matching rows are collected from the column's value bitmaps.
+     *
+     * @param previousResult rows selected by the previous FilterElement, or null if this is the first
+     */
+    public BitSet test(AttributeTable.Column column, BitSet previousResult) {
+
+        BitSet matchingCodes = new BitSet(column.getValueCount() + 1);
+        for (int code = 0; code <= column.getValueCount(); code++) {
+            if (matches(column.getValue(code))) {
+                matchingCodes.set(code);
+            }
+        }
+        BitSet result = column.getRows(matchingCodes);
+
+        if (previousResult != null) {
+            if (booleanOperator.equals(BooleanOperator.OR)) {
+                result.or(previousResult);
+            } else {
+                result.and(previousResult);
+            }
+        }
+        return result;
+    }
+
+    private boolean matches(String comparableItem) {
+
         boolean result = false;
 
         // Changed by JTR.  Treat nulls as empty strings, so " == null" will
@@ -169,17 +217,6 @@ abstract public class FilterElement {
             result = (comparableItem.startsWith(expectedValue));
         }
 
-        // If we have previous result we need to test against them
-        if (previousResult != null) {
-
-            // And/Or new result to previous result
-            if (booleanOperator.equals(BooleanOperator.OR)) {
-                result = (result || previousResult);
-            } else {
-                result = (result && previousResult);
-            }
-        }
-
         return result;
     }
 
@@ -0,0 +1,431 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.util;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.Globals;
+import org.broad.igv.google.GoogleUtils;
+import org.broad.igv.prefs.PreferencesManager;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.*;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import static org.broad.igv.prefs.Constants.HTTP_CLIENT_ENABLE;
+import static org.broad.igv.prefs.Constants.HTTP_CLIENT_HOST_LIMIT;
+
+/**
+ * Transport for byte range requests built on the JDK {@link HttpClient}.  Connections are pooled and kept alive, and
+ * HTTP/2 is used where the server supports it.  Requests are asynchronous, and the number in flight to any one host
+ * is limited.  Latency, bytes, and retries are recorded per host.
+ * <p>
+ * URL mapping, redirect caching, request headers, proxy selection, and authentication are those of
+ * {@link HttpUtils}.  SOCKS proxies are not supported by HttpClient, URLs that would use one are left to
+ * {@link HttpUtils#openConnection(URL, Map)}, as are hosts found to ignore range requests.
+ * <p>
+ * The transport is off unless HTTP_CLIENT.ENABLE is set.  Blocking reads of single ranges, as issued by
+ * {@link org.broad.igv.util.stream.IGVSeekableHTTPStream}, are no faster than through HttpURLConnection.
+ */
+public class HttpTransport {
+
+    private static Logger log = Logger.getLogger(HttpTransport.class);
+
+    private static final int MAX_REDIRECTS = 5;
+    private static final int MAX_RETRIES = 2;
+
+    private static HttpTransport instance;
+
+    private final Map<String, HttpClient> clients = new ConcurrentHashMap<>();
+    private final Map<String, HostLimiter> limiters = new ConcurrentHashMap<>();
+    private final Map<String, HostMetrics> metrics = new ConcurrentHashMap<>();
+    private final Set<String> rangeIgnoredHosts = ConcurrentHashMap.newKeySet();
+    private final ExecutorService executor;
+    private int hostLimit;
+
+    public static synchronized HttpTransport getInstance() {
+        if (instance == null) {
+            instance = new HttpTransport();
+        }
+        return instance;
+    }
+
+    /**
+     * Discard pooled clients, for example after a change to proxy settings or the authenticator.  Requests in
+     * flight are not affected.
+     */
+    static synchronized void resetClients() {
+        if (instance != null) {
+            instance.clients.clear();
+        }
+    }
+
+    static synchronized void shutdownInstance() {
+        if (instance != null) {
+            for (Map.Entry<String, HostMetrics> entry : instance.metrics.entrySet()) {
+                log.info(entry.getKey() + ": " + entry.getValue());
+            }
+            instance.executor.shutdownNow();
+            instance = null;
+        }
+    }
+
+    private HttpTransport() {
+        hostLimit = PreferencesManager.getPreferences().getAsInt(HTTP_CLIENT_HOST_LIMIT);
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "igv-http");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Set the maximum number of requests in flight to a host.  Applies to hosts first contacted after the call.
+     */
+    public void setHostLimit(int hostLimit) {
+        this.hostLimit = hostLimit;
+    }
+
+    /**
+     * Return true if range requests for the URL can be made with this transport
+     */
+    public boolean isSupported(URL url) {
+        if (!PreferencesManager.getPreferences().getAsBoolean(HTTP_CLIENT_ENABLE)) {
+            return false;
+        }
+        String protocol = url.getProtocol().toLowerCase();
+        if (!(protocol.equals("http") || protocol.equals("https")) || rangeIgnoredHosts.contains(url.getHost())) {
+            return false;
+        }
+        Proxy proxy = HttpUtils.getInstance().getProxy(url);
+        return proxy == null || proxy.type() != Proxy.Type.SOCKS;
+    }
+
+    /**
+     * Read bytes {@code start} through {@code end}, inclusive.  Fewer bytes are returned if the range extends past
+     * the end of the resource.
+     *
+     * @throws HttpUtils.UnsatisfiableRangeException if the range starts past the end of the resource
+     */
+    public byte[] getRange(URL url, long start, long end) throws IOException {
+        try {
+            return getRangeAsync(url, start, end).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted reading " + url);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else {
+                throw new IOException(cause);
+            }
+        }
+    }
+
+    /**
+     * Asynchronous version of {@link #getRange(URL, long, long)}.  The request is queued if the host limit is
+     * reached.
+     */
+    public CompletableFuture<byte[]> getRangeAsync(URL url, long start, long end) {
+        HostLimiter limiter = limiters.computeIfAbsent(url.getHost(), h -> new HostLimiter(hostLimit));
+        CompletableFuture<byte[]> result = limiter.acquire()
+                .thenCompose(v -> {
+                    try {
+                        return send(HttpUtils.getInstance().resolveURL(url), start, end, 0, 0, false);
+                    } catch (IOException e) {
+                        return failed(e);
+                    }
+                });
+        result.whenComplete((bytes, e) -> limiter.release());
+        return result;
+    }
+
+    public HostMetrics getMetrics(String host) {
+        return metrics.computeIfAbsent(host, h -> new HostMetrics());
+    }
+
+    private CompletableFuture<byte[]> send(URL url, long start, long end, int redirects, int retries,
+                                           boolean loginChecked) {
+
+        HttpUtils httpUtils = HttpUtils.getInstance();
+        HostMetrics hostMetrics = getMetrics(url.getHost());
+
+        Map<String, String> requestProperties = new HashMap<>();
+        requestProperties.put("Range", "bytes=" + start + "-" + end);
+
+        HttpRequest.Builder builder;
+        HttpClient client;
+        try {
+            builder = HttpRequest.newBuilder(url.toURI())
+                    .timeout(Duration.ofMillis(Globals.READ_TIMEOUT))
+                    .GET();
+            for (Map.Entry<String, String> header : httpUtils.getRequestHeaders(url, requestProperties, "GET").entrySet()) {
+                builder.header(header.getKey(), header.getValue());
+            }
+            Proxy proxy = httpUtils.getProxy(url);
+            String proxyAuthorization = proxy == null ? null : httpUtils.getProxyAuthorization();
+            if (proxyAuthorization != null) {
+                builder.header("Proxy-Authorization", proxyAuthorization);
+            }
+            client = getClient(proxy);
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return failed(new IOException("Error creating request for " + url, e));
+        }
+
+        long t0 = System.nanoTime();
+        return client.sendAsync(builder.build(), rangeBodyHandler(start, end))
+                .handle((response, e) -> {
+                    hostMetrics.requests.increment();
+                    hostMetrics.latencyNanos.add(System.nanoTime() - t0);
+                    if (e != null) {
+                        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                        if (cause instanceof IOException && retries < MAX_RETRIES) {
+                            log.info("Error reading " + url + ", retrying: " + cause.getMessage());
+                            hostMetrics.retries.increment();
+                            return send(url, start, end, redirects, retries + 1, loginChecked);
+                        }
+                        return HttpTransport.<byte[]>failed(cause);
+                    }
+                    return handleResponse(url, response, start, end, redirects, retries, loginChecked);
+                })
+                .thenCompose(f -> f);
+    }
+
+    /**
+     * Body handler for range requests.  Bodies are buffered except for a 200 response, a server ignoring the range,
+     * which is streamed by the supplier.  Only bytes through {@code end} are read from it, the rest of the resource is
+     * not downloaded.
+     */
+    private static HttpResponse.BodyHandler<Supplier<byte[]>> rangeBodyHandler(long start, long end) {
+        return info -> {
+            if (info.statusCode() == 200) {
+                return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofInputStream(),
+                        is -> () -> readRange(is, start, end));
+            } else {
+                return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofByteArray(),
+                        bytes -> () -> bytes);
+            }
+        };
+    }
+
+    /**
+     * Read bytes {@code start} through {@code end} of a full resource body, and close the stream
+     */
+    private static byte[] readRange(InputStream is, long start, long end) {
+        try (InputStream in = is) {
+            long skipped = 0;
+            while (skipped < start) {
+                long n = in.skip(start - skipped);
+                if (n <= 0) {
+                    if (in.read() < 0) return new byte[0];
+                    n = 1;
+                }
+                skipped += n;
+            }
+            return in.readNBytes((int) (end - start + 1));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private CompletableFuture<byte[]> handleResponse(URL url, HttpResponse<Supplier<byte[]>> response, long start,
+                                                     long end, int redirects, int retries, boolean loginChecked) {
+
+        HttpUtils httpUtils = HttpUtils.getInstance();
+        HostMetrics hostMetrics = getMetrics(url.getHost());
+        int code = response.statusCode();
+        try {
+            if (code == 206) {
+                byte[] bytes = response.body().get();
+                hostMetrics.bytes.add(bytes.length);
+                return CompletableFuture.completedFuture(bytes);
+
+            } else if (code == 200) {
+                // The range was ignored and the whole resource is being returned.  Read the requested portion, off the
+                // client's threads as the stream blocks, and leave later requests to this host to HttpUtils, which
+                // reroutes them.
+                log.error("Range header removed by client or ignored by server for url: " + url.toString());
+                rangeIgnoredHosts.add(url.getHost());
+                return CompletableFuture.supplyAsync(() -> {
+                    byte[] bytes = response.body().get();
+                    hostMetrics.bytes.add(bytes.length);
+                    return bytes;
+                }, executor);
+
+            } else if (code >= 300 && code < 400) {
+                Optional<String> location = response.headers().firstValue("Location");
+                if (!location.isPresent()) {
+                    throw new IOException("Redirect without location: " + url);
+                }
+                if (redirects >= MAX_REDIRECTS) {
+                    throw new IOException("Too many redirects");
+                }
+                httpUtils.cacheRedirect(url, location.get(),
+                        response.headers().firstValue("Cache-Control").orElse(null),
+                        response.headers().firstValue("Expires").orElse(null));
+                URL redirect = httpUtils.resolveURL(HttpUtils.createURL(location.get()));
+                return send(redirect, start, end, redirects + 1, retries, loginChecked);
+
+            } else if (code == 401 && GoogleUtils.isGoogleURL(url.toExternalForm()) && !loginChecked) {
+                GoogleUtils.checkLogin();
+                return send(url, start, end, redirects, retries, true);
+
+            } else if (code == 416) {
+                throw httpUtils.new UnsatisfiableRangeException("Requested range not satisfiable");
+
+            } else if (code >= 500 && retries < MAX_RETRIES) {
+                getMetrics(url.getHost()).retries.increment();
+                return send(url, start, end, redirects, retries + 1, loginChecked);
+
+            } else {
+                throw httpUtils.createResponseException(url, code, "HTTP " + code,
+                        () -> new String(response.body().get()));
+            }
+        } catch (IOException | RuntimeException e) {
+            return failed(e);
+        }
+    }
+
+    /**
+     * Return the client for the proxy.  Clients are shared, each pools its connections.
+     */
+    private HttpClient getClient(Proxy proxy) {
+        String key = proxy == null || proxy.type() == Proxy.Type.DIRECT ? "DIRECT" : proxy.address().toString();
+        return clients.computeIfAbsent(key, k -> {
+            HttpUtils httpUtils = HttpUtils.getInstance();
+            HttpClient.Builder builder = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_2)
+                    .followRedirects(HttpClient.Redirect.NEVER)
+                    .connectTimeout(Duration.ofMillis(Globals.CONNECT_TIMEOUT))
+                    .executor(executor)
+                    .proxy(k.equals("DIRECT") ?
+                            HttpClient.Builder.NO_PROXY :
+                            ProxySelector.of((InetSocketAddress) proxy.address()));
+            if (httpUtils.getAuthenticator() != null) {
+                builder.authenticator(httpUtils.getAuthenticator());
+            }
+            SSLContext sslContext = httpUtils.getSSLContext();
+            if (sslContext != null) {
+                builder.sslContext(sslContext);
+            }
+            return builder.build();
+        });
+    }
+
+    private static <T> CompletableFuture<T> failed(Throwable e) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(e);
+        return future;
+    }
+
+    /**
+     * Limits the number of requests in flight to a host.  Waiting requests are started in order as others complete.
+     */
+    private static class HostLimiter {
+
+        private final int limit;
+        private int active = 0;
+        private final Deque<CompletableFuture<Void>> waiting = new ArrayDeque<>();
+
+        HostLimiter(int limit) {
+            this.limit = Math.max(1, limit);
+        }
+
+        synchronized CompletableFuture<Void> acquire() {
+            if (active < limit) {
+                active++;
+                return CompletableFuture.completedFuture(null);
+            } else {
+                CompletableFuture<Void> future = new CompletableFuture<>();
+                waiting.add(future);
+                return future;
+            }
+        }
+
+        void release() {
+            CompletableFuture<Void> next;
+            synchronized (this) {
+                next = waiting.poll();
+                if (next == null) {
+                    active--;
+                }
+            }
+            if (next != null) {
+                next.complete(null);
+            }
+        }
+    }
+
+    /**
+     * Request counts, bytes received, retries, and cumulative latency for a host
+     */
+    public static class HostMetrics {
+
+        final LongAdder requests = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        final LongAdder retries = new LongAdder();
+        final LongAdder latencyNanos = new LongAdder();
+
+        public long getRequestCount() {
+            return requests.sum();
+        }
+
+        public long getBytes() {
+            return bytes.sum();
+        }
+
+        public long getRetryCount() {
+            return retries.sum();
+        }
+
+        public double getMeanLatencyMillis() {
+            long n = requests.sum();
+            return n == 0 ? 0 : latencyNanos.sum() / (1.0e6 * n);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d requests, %d bytes, %d retries, mean latency %.1f ms",
+                    getRequestCount(), getBytes(), getRetryCount(), getMeanLatencyMillis());
+        }
+    }
+}
@@ -58,6 +58,7 @@ import java.time.ZonedDateTime;
 import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.zip.GZIPInputStream;
 
 import static org.broad.igv.prefs.Constants.*;
@@ -83,6 +84,9 @@ public class HttpUtils {
     private String defaultUserName = null;
     private char[] defaultPassword = null;
 
+    private Authenticator authenticator;
+    private SSLContext sslContext;
+
     private Map<String, Collection<String>> headerMap = new HashMap<>();
 
     // static provided to support unit testing
@@ -111,7 +115,8 @@ public class HttpUtils {
     private HttpUtils() {
 
         disableCertificateValidation();
-        Authenticator.setDefault(new IGVAuthenticator());
+        authenticator = new IGVAuthenticator();
+        Authenticator.setDefault(authenticator);
 
         try {
             System.setProperty("java.net.useSystemProxies", "true");
@@ -489,6 +494,7 @@ public class HttpUtils {
                 new HashSet(Arrays.asList(Globals.commaPattern.split(proxyWhitelistString)));
 
         proxySettings = new ProxySettings(useProxy, user, pw, auth, proxyHost, proxyPort, type, whitelist);
+        HttpTransport.resetClients();
     }
 
     /**
@@ -597,6 +603,7 @@ public class HttpUtils {
             SSLContext sc = SSLContext.getInstance("SSL");
             sc.init(null, trustAllCerts, null);
             HttpsURLConnection.setDefaultSSLSocketFactory(sc.getSocketFactory());
+            sslContext = sc;
         } catch (NoSuchAlgorithmException e) {
         } catch (KeyManagementException e) {
         }
@@ -649,12 +656,109 @@ public class HttpUtils {
 
             URL url, Map<String, String> requestProperties, String method, int redirectCount, int retries) throws IOException {
 
+        url = resolveURL(url);
+
+        Proxy proxy = getProxy(url);
+        HttpURLConnection conn;
+        if (proxy != null) {
+            conn = (HttpURLConnection) url.openConnection(proxy);
+            String proxyAuthorization = getProxyAuthorization();
+            if (proxyAuthorization != null) {
+                conn.setRequestProperty("Proxy-Authorization", proxyAuthorization);
+            }
+        } else {
+            conn = (HttpURLConnection) url.openConnection();
+        }
+
+
+        conn.setConnectTimeout(Globals.CONNECT_TIMEOUT);
+        conn.setReadTimeout(Globals.READ_TIMEOUT);
+        conn.setRequestMethod(method);
+        conn.setRequestProperty("Connection", "Keep-Alive");
+        // we'll handle redirects manually, allowing us to cache the new URL
+        conn.setInstanceFollowRedirects(false);
+
+        for (Map.Entry<String, String> header : getRequestHeaders(url, requestProperties, method).entrySet()) {
+            conn.setRequestProperty(header.getKey(), header.getValue());
+        }
+
+        if (GoogleUtils.isGoogleURL(url.toExternalForm()) &&
+                GoogleUtils.getProjectID() != null &&
+                GoogleUtils.getProjectID().length() > 0 &&
+                !hasQueryParameter(url, "userProject")) {
+            url = addQueryParameter(url, "userProject", GoogleUtils.getProjectID());
+        }
+
+        if (method.equals("PUT")) {
+            return conn;
+        } else {
+
+            int code = conn.getResponseCode();
+
+            if (!isDropboxHost(url.getHost()) && requestProperties != null && requestProperties.containsKey("Range") && code == 200 && method.equals("GET")) {
+
+                log.error("Range header removed by client or ignored by server for url: " + url.toString());
+
+                if (!SwingUtilities.isEventDispatchThread()) {
+                    MessageUtils.showMessage("Warning: unsuccessful attempt to execute 'Range byte' request to host " + url.getHost());
+                }
+
+                byteRangeTestMap.put(url.getHost(), false);
+                String[] positionString = requestProperties.get("Range").split("=")[1].split("-");
+                int length = Integer.parseInt(positionString[1]) - Integer.parseInt(positionString[0]) + 1;
+                requestProperties.remove("Range"); // < VERY IMPORTANT
+                URL wsUrl = HttpUtils.createURL(WEBSERVICE_URL + "?file=" + url.toExternalForm() + "&position=" + positionString[0] + "&length=" + length);
+                return openConnection(wsUrl, requestProperties, "GET", redirectCount, retries);
+            }
+
+            if (log.isDebugEnabled()) {
+                //logHeaders(conn);
+            }
+
+            // Redirects.  These can occur even if followRedirects == true if there is a change in protocol,
+            // for example http -> https.
+            if (code >= 300 && code < 400) {
+                if (redirectCount > MAX_REDIRECTS) {
+                    throw new IOException("Too many redirects");
+                }
+
+                URL location = cacheRedirect(url, conn.getHeaderField("Location"),
+                        conn.getHeaderField("Cache-Control"), conn.getHeaderField("Expires"));
+                if (location != null) {
+                    log.debug("Redirecting to " + location);
+                    return openConnection(HttpUtils.createURL(location.toString()), requestProperties, method, ++redirectCount, retries);
+                }
+            }
+
+            // TODO -- handle other response codes.
+            else if (code >= 400) {
+
+                // TODO -- detect Google requestor pay failure
+
+                if (code == 401 && GoogleUtils.isGoogleURL(url.toExternalForm()) && retries == 0) {
+                    GoogleUtils.checkLogin();
+                    return openConnection(url, requestProperties, method, redirectCount, ++retries);
+                } else if (code == 416) {
+                    throw new UnsatisfiableRangeException(conn.getResponseMessage());
+                } else {
+                    throw createResponseException(url, code, conn.getResponseMessage(), () -> readErrorStream(conn));
+                }
+            }
+        }
+        return conn;
+    }
+
+    /**
+     * Apply URL mappings common to all requests:  cached redirects, Google openid mapping, and query string encoding.
+     */
+    URL resolveURL(URL url) throws MalformedURLException {
+
         // if we're already seen a redirect for this URL, use the updated one
-        if (redirectCache.containsKey(url)) {
-            CachedRedirect cr = redirectCache.get(url);
+        CachedRedirect cr = redirectCache.get(url);
+        if (cr != null) {
             if (ZonedDateTime.now().compareTo(cr.expires) < 0.0) {
                 // now() is before our expiration
-                log.debug("Found URL in redirection cache: " + url + " ->" + redirectCache.get(url).url);
+                log.debug("Found URL in redirection cache: " + url + " ->" + cr.url);
                 url = cr.url;
             } else {
                 log.debug("Removing expired URL from redirection cache: " + url);
@@ -681,6 +785,13 @@ public class HttpUtils {
             String newPath = url.toExternalForm().replaceAll(" ", "%20");
             url = HttpUtils.createURL(newPath);
         }
+        return url;
+    }
+
+    /**
+     * Return the proxy to use for the URL, or null for a direct connection
+     */
+    Proxy getProxy(URL url) {
 
         Proxy sysProxy = null;
         boolean igvProxySettingsExist = proxySettings != null && proxySettings.useProxy;
@@ -696,7 +807,6 @@ public class HttpUtils {
                 (sysProxy != null && sysProxy.type() != Proxy.Type.DIRECT) ||
                         (igvProxySettingsExist && !proxySettings.getWhitelist().contains(url.getHost()));
 
-        HttpURLConnection conn;
         if (useProxy) {
             Proxy proxy = sysProxy;
             if (igvProxySettingsExist) {
@@ -715,13 +825,7 @@ public class HttpUtils {
                     proxy = new Proxy(proxySettings.type, new InetSocketAddress(proxySettings.proxyHost, proxySettings.proxyPort));
                 }
             }
-            conn = (HttpURLConnection) url.openConnection(proxy);
-            if (igvProxySettingsExist && proxySettings.auth && proxySettings.user != null && proxySettings.pw != null) {
-                byte[] bytes = (proxySettings.user + ":" + proxySettings.pw).getBytes();
-
-                String encodedUserPwd = String.valueOf(Base64Coder.encode(bytes));
-                conn.setRequestProperty("Proxy-Authorization", "Basic " + encodedUserPwd);
-            }
+            return proxy;
         } else {
             if (PreferencesManager.getPreferences().getAsBoolean("DEBUG.PROXY")) {
                 log.info("PROXY NOT USED ");
@@ -730,158 +834,127 @@ public class HttpUtils {
                 }
                 ;
             }
-            conn = (HttpURLConnection) url.openConnection();
+            return null;
+        }
+    }
+
+    /**
+     * Return the value of the "Proxy-Authorization" header for IGV proxy settings, or null if none is required
+     */
+    String getProxyAuthorization() {
+        boolean igvProxySettingsExist = proxySettings != null && proxySettings.useProxy;
+        if (igvProxySettingsExist && proxySettings.auth && proxySettings.user != null && proxySettings.pw != null) {
+            byte[] bytes = (proxySettings.user + ":" + proxySettings.pw).getBytes();
+
+            String encodedUserPwd = String.valueOf(Base64Coder.encode(bytes));
+            return "Basic " + encodedUserPwd;
+        } else {
+            return null;
         }
+    }
 
+    /**
+     * Return the request headers for the URL:  the caller's request properties, headers registered for the host,
+     * and Google authorization.
+     */
+    Map<String, String> getRequestHeaders(URL url, Map<String, String> requestProperties, String method) {
 
+        Map<String, String> headers = new LinkedHashMap<>();
         if (!"HEAD".equals(method)) {
-            conn.setRequestProperty("Accept", "text/plain");
+            headers.put("Accept", "text/plain");
         }
 
-        conn.setConnectTimeout(Globals.CONNECT_TIMEOUT);
-        conn.setReadTimeout(Globals.READ_TIMEOUT);
-        conn.setRequestMethod(method);
-        conn.setRequestProperty("Connection", "Keep-Alive");
-        // we'll handle redirects manually, allowing us to cache the new URL
-        conn.setInstanceFollowRedirects(false);
-
         if (requestProperties != null) {
-            for (Map.Entry<String, String> prop : requestProperties.entrySet()) {
-                conn.setRequestProperty(prop.getKey(), prop.getValue());
-            }
+            headers.putAll(requestProperties);
         }
 
-        Collection<String> headers = headerMap.get(url.getHost());
-        if (headers != null) {
-            for (String h : headers) {
+        Collection<String> hostHeaders = headerMap.get(url.getHost());
+        if (hostHeaders != null) {
+            for (String h : hostHeaders) {
                 String[] kv = h.split(":");
                 if (kv.length == 2) {
-                    conn.setRequestProperty(kv[0], kv[1]);
+                    headers.put(kv[0], kv[1]);
                 }
             }
         }
 
-        conn.setRequestProperty("User-Agent", Globals.applicationString());
+        headers.put("User-Agent", Globals.applicationString());
 
         // If this is a Google URL and we have an access token use it.
         if (GoogleUtils.isGoogleURL(url.toExternalForm())) {
             String token = OAuthUtils.getInstance().getProvider().getAccessToken();
             if (token != null) {
-                conn.setRequestProperty("Authorization", "Bearer " + token);
-            }
-            if (GoogleUtils.getProjectID() != null &&
-                    GoogleUtils.getProjectID().length() > 0 &&
-                    !hasQueryParameter(url, "userProject")) {
-                url = addQueryParameter(url, "userProject", GoogleUtils.getProjectID());
+                headers.put("Authorization", "Bearer " + token);
             }
         }
+        return headers;
+    }
 
-        if (method.equals("PUT")) {
-            return conn;
-        } else {
-
-            int code = conn.getResponseCode();
-
-            if (!isDropboxHost(url.getHost()) && requestProperties != null && requestProperties.containsKey("Range") && code == 200 && method.equals("GET")) {
-
-                log.error("Range header removed by client or ignored by server for url: " + url.toString());
-
-                if (!SwingUtilities.isEventDispatchThread()) {
-                    MessageUtils.showMessage("Warning: unsuccessful attempt to execute 'Range byte' request to host " + url.getHost());
-                }
+    /**
+     * Record a redirect in the redirect cache, unless the response forbids caching.
+     *
+     * @return the redirect location if it was cached, null otherwise
+     */
+    URL cacheRedirect(URL url, String location, String cacheControl, String expires) throws MalformedURLException {
 
-                byteRangeTestMap.put(url.getHost(), false);
-                String[] positionString = requestProperties.get("Range").split("=")[1].split("-");
-                int length = Integer.parseInt(positionString[1]) - Integer.parseInt(positionString[0]) + 1;
-                requestProperties.remove("Range"); // < VERY IMPORTANT
-                URL wsUrl = HttpUtils.createURL(WEBSERVICE_URL + "?file=" + url.toExternalForm() + "&position=" + positionString[0] + "&length=" + length);
-                return openConnection(wsUrl, requestProperties, "GET", redirectCount, retries);
-            }
+        CachedRedirect cr = new CachedRedirect();
+        cr.url = new URL(location);
+        cr.expires = ZonedDateTime.now().plusMinutes(DEFAULT_REDIRECT_EXPIRATION_MIN);
+        if (cacheControl != null) {
 
-            if (log.isDebugEnabled()) {
-                //logHeaders(conn);
+            // cache-control takes priority
+            CacheControl cc = null;
+            try {
+                cc = CacheControl.valueOf(cacheControl);
+            } catch (IllegalArgumentException e) {
+                // use default
             }
-
-            // Redirects.  These can occur even if followRedirects == true if there is a change in protocol,
-            // for example http -> https.
-            if (code >= 300 && code < 400) {
-                if (redirectCount > MAX_REDIRECTS) {
-                    throw new IOException("Too many redirects");
-                }
-
-                CachedRedirect cr = new CachedRedirect();
-                cr.url = new URL(conn.getHeaderField("Location"));
-                if (cr.url != null) {
-                    cr.expires = ZonedDateTime.now().plusMinutes(DEFAULT_REDIRECT_EXPIRATION_MIN);
-                    String s;
-                    if ((s = conn.getHeaderField("Cache-Control")) != null) {
-
-                        // cache-control takes priority
-                        CacheControl cc = null;
-                        try {
-                            cc = CacheControl.valueOf(s);
-                        } catch (IllegalArgumentException e) {
-                            // use default
-                        }
-                        if (cc != null) {
-                            if (cc.isNoCache()) {
-                                // set expires to null, preventing caching
-                                cr.expires = null;
-                            } else if (cc.getMaxAge() > 0) {
-                                cr.expires = ZonedDateTime.now().plusSeconds(cc.getMaxAge());
-                            }
-                        }
-                    } else if ((s = conn.getHeaderField("Expires")) != null) {
-                        // no cache-control header, so try "expires" next
-                        try {
-                            cr.expires = ZonedDateTime.parse(s);
-                        } catch (DateTimeParseException e) {
-                            // use default
-                        }
-                    }
-                    if (cr.expires != null) {
-                        redirectCache.put(url, cr);
-                        log.debug("Redirecting to " + cr.url);
-                        return openConnection(HttpUtils.createURL(cr.url.toString()), requestProperties, method, ++redirectCount, retries);
-                    }
+            if (cc != null) {
+                if (cc.isNoCache()) {
+                    // set expires to null, preventing caching
+                    cr.expires = null;
+                } else if (cc.getMaxAge() > 0) {
+                    cr.expires = ZonedDateTime.now().plusSeconds(cc.getMaxAge());
                 }
             }
+        } else if (expires != null) {
+            // no cache-control header, so try "expires" next
+            try {
+                cr.expires = ZonedDateTime.parse(expires);
+            } catch (DateTimeParseException e) {
+                // use default
+            }
+        }
+        if (cr.expires != null) {
+            redirectCache.put(url, cr);
+            return cr.url;
+        } else {
+            return null;
+        }
+    }
 
-            // TODO -- handle other response codes.
-            else if (code >= 400) {
-
-                String message;
-
-                // TODO -- detect Google requestor pay failure
-
-                if (code == 404) {
-                    message = "File not found: " + url.toString();
-                    throw new FileNotFoundException(message);
-                } else if (code == 401) {
-                    if (GoogleUtils.isGoogleURL(url.toExternalForm()) && retries == 0) {
-                        GoogleUtils.checkLogin();
-                        return openConnection(url, requestProperties, method, redirectCount, ++retries);
-                    }
-                    message = "You must log in to access this file";
-                    throw new HttpResponseException(code, message, "");
-                } else if (code == 403) {
-                    message = "Access forbidden";
-                    throw new HttpResponseException(code, message, "");
-                } else if (code == 416) {
-                    throw new UnsatisfiableRangeException(conn.getResponseMessage());
-                } else {
-                    message = conn.getResponseMessage();
-                    String details = readErrorStream(conn);
-
-                    if (url.getHost().equals("www.googleapis.com") && details.contains("requester pays bucket")) {
-                        MessageUtils.showMessage("<html>" + details + "<br>Use Google menu to set project.");
-                    }
-
-                    throw new HttpResponseException(code, message, details);
+    /**
+     * Return the exception for an unsuccessful response code.  {@code details} is called only if the response body
+     * is needed.
+     */
+    IOException createResponseException(URL url, int code, String message, Callable<String> details) {
+        try {
+            if (code == 404) {
+                return new FileNotFoundException("File not found: " + url.toString());
+            } else if (code == 401) {
+                return new HttpResponseException(code, "You must log in to access this file", "");
+            } else if (code == 403) {
+                return new HttpResponseException(code, "Access forbidden", "");
+            } else {
+                String detailString = details.call();
+                if (url.getHost().equals("www.googleapis.com") && detailString.contains("requester pays bucket")) {
+                    MessageUtils.showMessage("<html>" + detailString + "<br>Use Google menu to set project.");
                 }
+                return new HttpResponseException(code, message, detailString);
             }
+        } catch (Exception e) {
+            return e instanceof IOException ? (IOException) e : new IOException(e);
         }
-        return conn;
     }
 
     private boolean isDropboxHost(String host) {
@@ -1024,7 +1097,7 @@ public class HttpUtils {
     }
 
     public void shutdown() {
-        // Do any cleanup required here
+        HttpTransport.shutdownInstance();
     }
 
     public static class ProxySettings {
@@ -1137,15 +1210,27 @@ public class HttpUtils {
      * Provide override for unit tests
      */
     public void setAuthenticator(Authenticator authenticator) {
+        this.authenticator = authenticator;
         Authenticator.setDefault(authenticator);
+        HttpTransport.resetClients();
     }
 
     /**
      * For unit tests
      */
     public void resetAuthenticator() {
-        Authenticator.setDefault(new IGVAuthenticator());
+        setAuthenticator(new IGVAuthenticator());
+    }
+
+    Authenticator getAuthenticator() {
+        return authenticator;
+    }
 
+    /**
+     * Return the SSL context used for https connections, or null if the default context is used
+     */
+    SSLContext getSSLContext() {
+        return sslContext;
     }
 
 
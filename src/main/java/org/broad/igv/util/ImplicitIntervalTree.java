@@ -0,0 +1,195 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * An immutable, array backed, augmented interval tree built in bulk from a list of intervals.
+ * <p>
+ * Intervals are stored sorted by start in primitive arrays.  The tree is implicit in the array indices, as
+ * in cgranges (https://github.com/lh3/cgranges):  leaves are at even indices, and a node at level k is at an
+ * index whose lowest k bits are all 1, with children at index -/+ 2^(k-1).  Each node records the maximum end
+ * of its subtree.  There are no node objects, and queries allocate nothing beyond what the caller's consumer
+ * does.  Overlapping intervals are reported in order of start.
+ * <p>
+ * Coordinates are half-open:  an interval [s, e) overlaps the query [start, end) if s < end && start < e.
+ *
+ * @param <T> value type
+ */
+public class ImplicitIntervalTree<T> {
+
+    private final int size;
+    private final int[] starts;
+    private final int[] ends;
+    private final int[] maxEnds;
+    private final Object[] values;
+    private final int maxLevel;
+
+    /**
+     * @param values  the intervals.  These need not be sorted, but building is faster if they are sorted by start.
+     * @param startFn function returning the start of a value
+     * @param endFn   function returning the end of a value
+     */
+    public ImplicitIntervalTree(List<? extends T> values, ToIntFunction<? super T> startFn, ToIntFunction<? super T> endFn) {
+
+        List<? extends T> sorted = values;
+        for (int i = 1; i < values.size(); i++) {
+            if (startFn.applyAsInt(values.get(i)) < startFn.applyAsInt(values.get(i - 1))) {
+                List<T> copy = new ArrayList<>(values);
+                copy.sort(Comparator.comparingInt(startFn));
+                sorted = copy;
+                break;
+            }
+        }
+
+        size = sorted.size();
+        starts = new int[size];
+        ends = new int[size];
+        maxEnds = new int[size];
+        this.values = new Object[size];
+        for (int i = 0; i < size; i++) {
+            T v = sorted.get(i);
+            starts[i] = startFn.applyAsInt(v);
+            ends[i] = endFn.applyAsInt(v);
+            this.values[i] = v;
+        }
+        maxLevel = index();
+    }
+
+    /**
+     * Compute the subtree max ends, bottom up.  Returns the level of the root.
+     */
+    private int index() {
+
+        if (size == 0) {
+            return -1;
+        }
+
+        int lastIndex = 0;
+        int last = 0;
+        for (int i = 0; i < size; i += 2) {
+            lastIndex = i;
+            last = maxEnds[i] = ends[i];
+        }
+
+        int k;
+        for (k = 1; (1L << k) <= size; k++) {
+            int x = 1 << (k - 1);
+            int i0 = (x << 1) - 1;
+            int step = x << 2;
+            for (int i = i0; i < size; i += step) {
+                int el = maxEnds[i - x];                        // max end of the left child
+                int er = i + x < size ? maxEnds[i + x] : last;  // max end of the right child
+                int e = ends[i];
+                e = e > el ? e : el;
+                e = e > er ? e : er;
+                maxEnds[i] = e;
+            }
+            // lastIndex now points to the parent of the previous lastIndex
+            lastIndex = ((lastIndex >> k) & 1) != 0 ? lastIndex - x : lastIndex + x;
+            if (lastIndex < size && maxEnds[lastIndex] > last) {
+                last = maxEnds[lastIndex];
+            }
+        }
+        return k - 1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getStart(int index) {
+        return starts[index];
+    }
+
+    public int getEnd(int index) {
+        return ends[index];
+    }
+
+    public T getValue(int index) {
+        return (T) values[index];
+    }
+
+    /**
+     * Pass the index of each interval overlapping [start, end) to {@code consumer}, in order of start.
+     */
+    public void forEachOverlappingIndex(int start, int end, IntConsumer consumer) {
+        if (size > 0) {
+            visit(maxLevel, (1 << maxLevel) - 1, start, end, consumer);
+        }
+    }
+
+    /**
+     * Pass each value overlapping [start, end) to {@code consumer}, in order of start.
+     */
+    public void forEachOverlapping(int start, int end, Consumer<? super T> consumer) {
+        forEachOverlappingIndex(start, end, i -> consumer.accept((T) values[i]));
+    }
+
+    public List<T> getOverlapping(int start, int end) {
+        List<T> result = new ArrayList<>();
+        forEachOverlapping(start, end, result::add);
+        return result;
+    }
+
+    /**
+     * Visit the subtree rooted at index x, level k.  Recursion depth is bounded by the tree height.
+     */
+    private void visit(int k, int x, int start, int end, IntConsumer consumer) {
+
+        if (k <= 3) {
+            // Small subtree, scan it linearly
+            int i0 = x >> k << k;
+            int i1 = Math.min(i0 + (1 << (k + 1)) - 1, size);
+            for (int i = i0; i < i1 && starts[i] < end; i++) {
+                if (start < ends[i]) {
+                    consumer.accept(i);
+                }
+            }
+            return;
+        }
+
+        // Left child.  It might be out of range, in which case its subtree is partially populated.
+        int y = x - (1 << (k - 1));
+        if (y >= size || maxEnds[y] > start) {
+            visit(k - 1, y, start, end, consumer);
+        }
+
+        // This node and the right child
+        if (x < size && starts[x] < end) {
+            if (start < ends[x]) {
+                consumer.accept(x);
+            }
+            visit(k - 1, x + (1 << (k - 1)), start, end, consumer);
+        }
+    }
+}
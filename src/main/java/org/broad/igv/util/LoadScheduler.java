@@ -0,0 +1,330 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.util;
+
+import org.apache.log4j.Logger;
+
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Schedules track data loads, and other long running tasks, on a shared set of worker threads.
+ * <p>
+ * Loads are dispatched in priority order, subject to a global limit on concurrent loads and a per-resource limit
+ * so that many tracks backed by one file or server do not monopolize the workers.  A load submitted with the same
+ * key as a queued load (e.g. the same track) supersedes it;  the queued load is dropped and its future
+ * completes without running.  Loads with the same key never run concurrently.
+ * <p>
+ * Workers are virtual threads if the system property "igv.virtualThreads" is true and the runtime supports them,
+ * otherwise daemon platform threads.
+ */
+public class LoadScheduler {
+
+    private static Logger log = Logger.getLogger(LoadScheduler.class);
+
+    public enum Priority {VISIBLE, BACKGROUND}
+
+    public static final int DEFAULT_RESOURCE_LIMIT = 2;
+    public static final int DEFAULT_TASK_LIMIT = 5;
+
+    private static LoadScheduler instance;
+
+    public static synchronized LoadScheduler getInstance() {
+        if (instance == null) {
+            Executor virtualThreadExecutor = Boolean.getBoolean("igv.virtualThreads") ? createVirtualThreadExecutor() : null;
+            if (virtualThreadExecutor != null) {
+                instance = new LoadScheduler(virtualThreadExecutor, 32, DEFAULT_RESOURCE_LIMIT, DEFAULT_TASK_LIMIT);
+            } else {
+                int nLoads = Math.max(5, Runtime.getRuntime().availableProcessors());
+                instance = new LoadScheduler(createPlatformThreadExecutor(), nLoads, DEFAULT_RESOURCE_LIMIT, DEFAULT_TASK_LIMIT);
+            }
+        }
+        return instance;
+    }
+
+    private final Executor executor;
+    private final int maxLoads;
+    private final int maxPerResource;
+    private final int maxTasks;
+
+    // Guarded by this
+    private final TreeSet<Job> queue = new TreeSet<>();
+    private final Map<Object, Job> queuedByKey = new HashMap<>();
+    private final Set<Object> runningKeys = new HashSet<>();
+    private final Map<String, Integer> runningByResource = new HashMap<>();
+    private int runningLoads;
+    private int runningTasks;
+    private long sequence;
+
+    private final LongAdder completedCount = new LongAdder();
+    private final LongAdder supersededCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder queueWaitNanos = new LongAdder();
+    private final LongAdder runNanos = new LongAdder();
+    private final AtomicLong maxQueueWaitNanos = new AtomicLong();
+    private final AtomicLong maxRunNanos = new AtomicLong();
+
+    /**
+     * @param executor       executor for running jobs.  It must not queue, limits are enforced by this class.
+     * @param maxLoads       maximum number of loads running at once
+     * @param maxPerResource maximum number of loads running at once for any one resource
+     * @param maxTasks       maximum number of non-load tasks running at once
+     */
+    LoadScheduler(Executor executor, int maxLoads, int maxPerResource, int maxTasks) {
+        this.executor = executor;
+        this.maxLoads = maxLoads;
+        this.maxPerResource = maxPerResource;
+        this.maxTasks = maxTasks;
+    }
+
+    /**
+     * Submit a data load.
+     *
+     * @param resource resource the load reads from, typically a file path or URL, or null.  Used to limit concurrency per resource.
+     * @param key      identifies what is being loaded, e.g. a track, or null.  A new load supersedes a queued load with an equal key.
+     * @param priority load priority
+     * @param runnable the load
+     * @return future completing when the load finishes or is superseded
+     */
+    public CompletableFuture<Void> submitLoad(String resource, Object key, Priority priority, Runnable runnable) {
+        return submit(new Job(true, resource, maxPerResource, key, priority, runnable));
+    }
+
+    /**
+     * Submit a data load with its own limit on concurrent loads for the resource, e.g. a host.
+     *
+     * @param resourceLimit maximum number of loads running at once for the resource, including loads submitted
+     *                      without an explicit limit
+     */
+    public CompletableFuture<Void> submitLoad(String resource, int resourceLimit, Object key, Priority priority, Runnable runnable) {
+        return submit(new Job(true, resource, Math.max(1, resourceLimit), key, priority, runnable));
+    }
+
+    /**
+     * Submit a task which is not a data load, e.g. loading a file or building an index.  Tasks do not count against
+     * load limits, but share the worker threads and statistics.
+     */
+    public CompletableFuture<Void> submitTask(Runnable runnable) {
+        return submit(new Job(false, null, 0, null, Priority.VISIBLE, runnable));
+    }
+
+    private CompletableFuture<Void> submit(Job job) {
+        Job superseded = null;
+        synchronized (this) {
+            job.sequence = sequence++;
+            if (job.key != null) {
+                superseded = queuedByKey.put(job.key, job);
+                if (superseded != null) {
+                    queue.remove(superseded);
+                }
+            }
+            queue.add(job);
+        }
+        if (superseded != null) {
+            supersededCount.increment();
+            superseded.future.complete(null);
+        }
+        dispatch();
+        return job.future;
+    }
+
+    /**
+     * Start as many queued jobs as limits allow, in priority order
+     */
+    private void dispatch() {
+        List<Job> toStart = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Job> iter = queue.iterator();
+            while (iter.hasNext()) {
+                Job job = iter.next();
+                if (job.future.isDone()) {
+                    // Cancelled by the submitter
+                    iter.remove();
+                    removeQueuedKey(job);
+                    continue;
+                }
+                if (job.isLoad) {
+                    if (runningLoads >= maxLoads) continue;
+                    if (job.resource != null && runningByResource.getOrDefault(job.resource, 0) >= job.resourceLimit) continue;
+                    if (job.key != null && runningKeys.contains(job.key)) continue;
+                    runningLoads++;
+                    if (job.resource != null) runningByResource.merge(job.resource, 1, Integer::sum);
+                    if (job.key != null) runningKeys.add(job.key);
+                } else {
+                    if (runningTasks >= maxTasks) continue;
+                    runningTasks++;
+                }
+                iter.remove();
+                removeQueuedKey(job);
+                toStart.add(job);
+            }
+        }
+        for (Job job : toStart) {
+            executor.execute(() -> run(job));
+        }
+    }
+
+    private void removeQueuedKey(Job job) {
+        if (job.key != null && queuedByKey.get(job.key) == job) {
+            queuedByKey.remove(job.key);
+        }
+    }
+
+    private void run(Job job) {
+        long startTime = System.nanoTime();
+        record(queueWaitNanos, maxQueueWaitNanos, startTime - job.submitTime);
+        Throwable error = null;
+        try {
+            job.runnable.run();
+        } catch (Throwable e) {
+            error = e;
+        }
+        record(runNanos, maxRunNanos, System.nanoTime() - startTime);
+
+        synchronized (this) {
+            if (job.isLoad) {
+                runningLoads--;
+                if (job.resource != null) {
+                    runningByResource.computeIfPresent(job.resource, (r, n) -> n > 1 ? n - 1 : null);
+                }
+                if (job.key != null) runningKeys.remove(job.key);
+            } else {
+                runningTasks--;
+            }
+        }
+
+        if (error == null) {
+            completedCount.increment();
+            job.future.complete(null);
+        } else {
+            failedCount.increment();
+            job.future.completeExceptionally(error);
+        }
+        dispatch();
+    }
+
+    private static void record(LongAdder total, AtomicLong max, long nanos) {
+        total.add(nanos);
+        max.accumulateAndGet(nanos, Math::max);
+    }
+
+    public synchronized int getQueuedCount() {
+        return queue.size();
+    }
+
+    public synchronized int getRunningCount() {
+        return runningLoads + runningTasks;
+    }
+
+    public long getCompletedCount() {
+        return completedCount.sum();
+    }
+
+    public long getSupersededCount() {
+        return supersededCount.sum();
+    }
+
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    /**
+     * Mean time jobs spent queued, in milliseconds
+     */
+    public double getMeanQueueWait() {
+        long n = completedCount.sum() + failedCount.sum();
+        return n == 0 ? 0 : queueWaitNanos.sum() / (n * 1.0e6);
+    }
+
+    /**
+     * Mean time jobs spent running, in milliseconds
+     */
+    public double getMeanRunTime() {
+        long n = completedCount.sum() + failedCount.sum();
+        return n == 0 ? 0 : runNanos.sum() / (n * 1.0e6);
+    }
+
+    public String getStatistics() {
+        return String.format("completed=%d superseded=%d failed=%d queued=%d running=%d " +
+                        "queueWait(ms) mean=%.1f max=%.1f runTime(ms) mean=%.1f max=%.1f",
+                getCompletedCount(), getSupersededCount(), getFailedCount(), getQueuedCount(), getRunningCount(),
+                getMeanQueueWait(), maxQueueWaitNanos.get() / 1.0e6, getMeanRunTime(), maxRunNanos.get() / 1.0e6);
+    }
+
+    private static Executor createPlatformThreadExecutor() {
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "igv-load-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Virtual threads are only available in Java 21+, look the factory method up reflectively
+     */
+    private static Executor createVirtualThreadExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (Executor) method.invoke(null);
+        } catch (Exception e) {
+            log.info("Virtual threads are not supported by this runtime, using platform threads");
+            return null;
+        }
+    }
+
+    private static class Job implements Comparable<Job> {
+
+        final boolean isLoad;
+        final String resource;
+        final int resourceLimit;
+        final Object key;
+        final Priority priority;
+        final Runnable runnable;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        final long submitTime = System.nanoTime();
+        long sequence;
+
+        Job(boolean isLoad, String resource, int resourceLimit, Object key, Priority priority, Runnable runnable) {
+            this.isLoad = isLoad;
+            this.resource = resource;
+            this.resourceLimit = resourceLimit;
+            this.key = key;
+            this.priority = priority;
+            this.runnable = runnable;
+        }
+
+        @Override
+        public int compareTo(Job o) {
+            int c = priority.compareTo(o.priority);
+            return c != 0 ? c : Long.compare(sequence, o.sequence);
+        }
+    }
+}
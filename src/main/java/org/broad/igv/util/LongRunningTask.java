@@ -44,12 +44,13 @@ public class LongRunningTask implements Callable {
 
     private static Logger log = Logger.getLogger(LongRunningTask.class);
 
-    private static final ExecutorService threadExecutor = Executors.newFixedThreadPool(5);
-
     Runnable runnable;
 
+    /**
+     * Executor for background tasks.  Tasks share worker threads with track loads, see {@link LoadScheduler}.
+     */
     public static Executor getThreadExecutor() {
-        return threadExecutor;
+        return runnable -> LoadScheduler.getInstance().submitTask(runnable);
     }
 
     public static Future submit(Runnable runnable) {
@@ -57,7 +58,8 @@ public class LongRunningTask implements Callable {
             runnable.run();
             return null;
         } else {
-            return threadExecutor.submit(new LongRunningTask(runnable));
+            LongRunningTask task = new LongRunningTask(runnable);
+            return LoadScheduler.getInstance().submitTask(task::call);
         }
     }
 
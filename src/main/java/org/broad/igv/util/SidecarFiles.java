@@ -0,0 +1,241 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.util;
+
+import org.apache.log4j.Logger;
+
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Support for the binary files IGV derives from a local source file and keeps in one of its own directories, for
+ * example feature indexes and coverage summaries.
+ * <p>
+ * A sidecar is named {@code <source name>_<hex hash of source path><extension>}.  Binary sidecars start with a common
+ * header recording the sources they were built from
+ * <pre>
+ *   int magic, int version, int sourceCount, sourceCount x { UTF path, long length, long lastModified }
+ * </pre>
+ * and are current only while every source is unchanged.  Sidecars are written to a temporary file which then
+ * replaces the old version, so readers never see a partial file.  A sidecar that is read is touched, and sidecars
+ * not used for {@link #MAX_AGE} are deleted when another is written to their directory, so that sidecars of
+ * deleted or moved sources do not accumulate.
+ */
+public class SidecarFiles {
+
+    private static Logger log = Logger.getLogger(SidecarFiles.class);
+
+    public static final long MAX_AGE = 30L * 24 * 60 * 60 * 1000;
+
+    // Temporary files left by an interrupted write
+    static final long MAX_TEMP_AGE = 24L * 60 * 60 * 1000;
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final Set<String> cleanedDirectories = ConcurrentHashMap.newKeySet();
+
+    public interface Writer {
+        void write(File file) throws IOException;
+    }
+
+    /**
+     * Return the sidecar of {@code sourceFile} with the given extension in {@code directory}.
+     */
+    public static File getFile(File directory, File sourceFile, String extension) {
+        return getFile(directory, sourceFile.getName(), sourceFile.getAbsolutePath(), extension);
+    }
+
+    /**
+     * Return the sidecar for a source identified by {@code key}, e.g. a URL, in {@code directory}.
+     */
+    public static File getFile(File directory, String name, String key, String extension) {
+        return new File(directory, name + "_" + Integer.toHexString(key.hashCode()) + extension);
+    }
+
+    public static void writeHeader(DataOutput out, int magic, int version, File... sources) throws IOException {
+        writeHeader(out, magic, version, Arrays.asList(sources));
+    }
+
+    public static void writeHeader(DataOutput out, int magic, int version, List<File> sources) throws IOException {
+        out.writeInt(magic);
+        out.writeInt(version);
+        out.writeInt(sources.size());
+        for (File source : sources) {
+            out.writeUTF(source.getAbsolutePath());
+            out.writeLong(source.length());
+            out.writeLong(source.lastModified());
+        }
+    }
+
+    /**
+     * Read the header, returning true if it has the given magic number and version and was written for the
+     * current versions of {@code sources}.
+     */
+    public static boolean readHeader(DataInput in, int magic, int version, List<File> sources) throws IOException {
+        if (in.readInt() != magic || in.readInt() != version || in.readInt() != sources.size()) {
+            return false;
+        }
+        for (File source : sources) {
+            if (!in.readUTF().equals(source.getAbsolutePath()) ||
+                    in.readLong() != source.length() ||
+                    in.readLong() != source.lastModified()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read past the header of {@code file}, without checking its sources.
+     *
+     * @throws IOException if the file does not have the given magic number and version
+     */
+    public static void skipHeader(DataInput in, int magic, int version, File file) throws IOException {
+        if (in.readInt() != magic || in.readInt() != version) {
+            throw new IOException("Unrecognized file: " + file.getAbsolutePath());
+        }
+        int sourceCount = in.readInt();
+        for (int i = 0; i < sourceCount; i++) {
+            in.readUTF();
+            in.readLong();
+            in.readLong();
+        }
+    }
+
+    /**
+     * Open {@code file} if it exists and its header is current for {@code sources}, otherwise return null.  The
+     * returned stream is positioned after the header.
+     */
+    public static DataInputStream openIfCurrent(File file, int magic, int version, File... sources) {
+        return openIfCurrent(file, magic, version, Arrays.asList(sources));
+    }
+
+    public static DataInputStream openIfCurrent(File file, int magic, int version, List<File> sources) {
+        if (!file.exists()) {
+            return null;
+        }
+        DataInputStream dis = null;
+        try {
+            dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (readHeader(dis, magic, version, sources)) {
+                touch(file);
+                return dis;
+            }
+        } catch (IOException e) {
+            // Truncated or unreadable, treat as out of date
+        }
+        if (dis != null) {
+            try {
+                dis.close();
+            } catch (IOException e) {
+                log.error("Error closing " + file.getAbsolutePath(), e);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Record that {@code file} is in use, so it is not deleted as outdated.
+     */
+    public static void touch(File file) {
+        file.setLastModified(System.currentTimeMillis());
+    }
+
+    /**
+     * Write {@code file} with {@code writer}, which is given a temporary file in the same directory.  When the
+     * writer completes the temporary file replaces {@code file}, otherwise it is deleted.
+     */
+    public static void write(File file, Writer writer) throws IOException {
+
+        File directory = file.getAbsoluteFile().getParentFile();
+        String extension = getExtension(file);
+        File tmpFile = File.createTempFile(file.getName() + ".", TEMP_SUFFIX + extension, directory);
+        try {
+            writer.write(tmpFile);
+            try {
+                Files.move(tmpFile.toPath(), file.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            if (tmpFile.exists() && !tmpFile.delete()) {
+                log.warn("Could not delete " + tmpFile.getAbsolutePath());
+            }
+        }
+
+        if (cleanedDirectories.add(directory.getAbsolutePath() + File.separator + extension)) {
+            deleteOutdated(directory, extension, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Delete sidecars with the given extension in {@code directory} that have not been written or read for
+     * {@link #MAX_AGE}, and temporary files left by interrupted writes.
+     *
+     * @return the number of files deleted
+     */
+    static int deleteOutdated(File directory, String extension, long now) {
+        String ext = Pattern.quote(extension);
+        Pattern sidecarPattern = Pattern.compile(".+_[0-9a-f]{1,8}" + ext);
+        Pattern tempPattern = Pattern.compile(".+_[0-9a-f]{1,8}" + ext + "\\.\\d+" + Pattern.quote(TEMP_SUFFIX) + ext);
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return 0;
+        }
+        int count = 0;
+        for (File f : files) {
+            String name = f.getName();
+            long age = now - f.lastModified();
+            boolean outdated = (sidecarPattern.matcher(name).matches() && age > MAX_AGE) ||
+                    (tempPattern.matcher(name).matches() && age > MAX_TEMP_AGE);
+            if (outdated && f.isFile()) {
+                if (f.delete()) {
+                    count++;
+                } else {
+                    log.warn("Could not delete outdated file " + f.getAbsolutePath());
+                }
+            }
+        }
+        if (count > 0) {
+            log.info("Deleted " + count + " outdated " + extension + " files from " + directory.getAbsolutePath());
+        }
+        return count;
+    }
+
+    private static String getExtension(File file) {
+        String name = file.getName();
+        int idx = name.lastIndexOf('.');
+        return idx < 0 ? "" : name.substring(idx);
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.util.collections;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from long keys to int values.  Purpose is to avoid the need to create a key and a value
+ * object for each entry in the standard java collections.
+ */
+public class LongIntHashMap {
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private int[] values;
+    private boolean[] used;
+    private int size;
+    private int mask;
+    private final int noEntryValue;
+
+    public LongIntHashMap() {
+        this(16, -1);
+    }
+
+    /**
+     * @param initialCapacity expected number of entries
+     * @param noEntryValue    value returned by {@link #get(long)} for keys not in the map
+     */
+    public LongIntHashMap(int initialCapacity, int noEntryValue) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (initialCapacity / LOAD_FACTOR)) - 1) << 1;
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+        this.used = new boolean[capacity];
+        this.mask = capacity - 1;
+        this.noEntryValue = noEntryValue;
+    }
+
+    public int get(long key) {
+        int slot = find(key);
+        return used[slot] ? values[slot] : noEntryValue;
+    }
+
+    public boolean containsKey(long key) {
+        return used[find(key)];
+    }
+
+    public void put(long key, int value) {
+        int slot = find(key);
+        if (!used[slot]) {
+            used[slot] = true;
+            keys[slot] = key;
+            if (++size > LOAD_FACTOR * keys.length) {
+                values[slot] = value;
+                rehash();
+                return;
+            }
+        }
+        values[slot] = value;
+    }
+
+    /**
+     * Add {@code delta} to the value for {@code key}, treating a missing key as 0, and return the new value
+     */
+    public int increment(long key, int delta) {
+        int slot = find(key);
+        if (used[slot]) {
+            return values[slot] += delta;
+        }
+        put(key, delta);
+        return delta;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    /**
+     * Visit each entry, in no particular order
+     */
+    public void forEach(EntryVisitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) {
+                visitor.visit(keys[i], values[i]);
+            }
+        }
+    }
+
+    private int find(long key) {
+        int slot = hash(key) & mask;
+        while (used[slot] && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        used = new boolean[oldKeys.length * 2];
+        mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                int slot = find(oldKeys[i]);
+                used[slot] = true;
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    public interface EntryVisitor {
+        void visit(long key, int value);
+    }
+}
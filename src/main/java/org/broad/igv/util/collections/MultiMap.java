@@ -71,6 +71,20 @@ public class MultiMap<K, V> {
         }
     }
 
+    /**
+     * Return all values for the key, in insertion order, or an empty list if there are none.
+     */
+    public List<V> getAll(K key) {
+        Object value = map.get(key);
+        if (value == null) {
+            return Collections.emptyList();
+        } else if (value instanceof List) {
+            return (List<V>) value;
+        } else {
+            return Collections.singletonList((V) value);
+        }
+    }
+
     public V remove(K key) {
         Object value = map.get(key);
         if (value == null) return null;
@@ -27,8 +27,10 @@ package org.broad.igv.util.stream;
 
 import htsjdk.samtools.seekablestream.SeekableStream;
 import org.apache.log4j.Logger;
+import org.broad.igv.util.HttpTransport;
 import org.broad.igv.util.HttpUtils;
 
+import java.io.ByteArrayInputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
@@ -183,6 +185,11 @@ public class IGVSeekableHTTPStream extends SeekableStream {
 
     public InputStream openInputStreamForRange(long start, long end) throws IOException {
 
+        HttpTransport transport = HttpTransport.getInstance();
+        if (transport.isSupported(url)) {
+            return new ByteArrayInputStream(transport.getRange(url, start, end));
+        }
+
         String byteRange = "bytes=" + start + "-" + end;
         Map<String, String> params = new HashMap();
         params.put("Range", byteRange);
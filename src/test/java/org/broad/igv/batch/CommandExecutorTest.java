@@ -299,6 +299,22 @@ public class CommandExecutorTest extends AbstractHeadedTest {
     }
 
 
+    @Test
+    public void testSnapshots() throws Exception {
+        String[] loci = {"chr1:1000000-1010000", "chr2:2000000-2010000", "chr3:3000000-3010000"};
+        for (int i = 0; i < loci.length; i++) {
+            new File(snapshotDir, outFileBase + "_multi_" + i + ".png").delete();
+        }
+
+        String result = exec.execute("snapshots " + String.join(",", loci) + " " + outFileBase + "_multi_{index}.png 2");
+        assertEquals("OK", result);
+        for (int i = 0; i < loci.length; i++) {
+            File out = new File(snapshotDir, outFileBase + "_multi_" + i + ".png");
+            assertTrue(out.exists());
+            assertTrue(ImageIO.read(out).getWidth() > 0);
+        }
+    }
+
     public File tstSnapshot(String outFileName) throws Exception {
         return tstSnapshot(outFileName, true, null);
     }
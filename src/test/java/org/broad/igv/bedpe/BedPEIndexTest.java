@@ -0,0 +1,120 @@
+package org.broad.igv.bedpe;
+
+import org.broad.igv.util.FeatureCache;
+import org.broad.igv.util.ResourceLocator;
+import org.broad.igv.util.TestUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class BedPEIndexTest {
+
+    private File bedpeFile;
+
+    @Before
+    public void setUp() throws Exception {
+        Random random = new Random(11);
+        bedpeFile = new File(TestUtils.TMP_OUTPUT_DIR, "bedPEIndexTest.bedpe");
+        bedpeFile.deleteOnExit();
+        try (PrintWriter pw = new PrintWriter(bedpeFile)) {
+            pw.println("#chr1\tx1\tx2\tchr2\ty1\ty2\tname\tscore");
+            for (int i = 0; i < 5000; i++) {
+                String chr1 = random.nextInt(10) == 0 ? "chr2" : "chr1";
+                String chr2 = random.nextInt(10) == 0 ? "chr2" : "chr1";
+                int start1 = random.nextInt(20000000);
+                // Mostly short range interactions, some spanning the chromosome
+                int start2 = random.nextInt(5) == 0 ? random.nextInt(20000000) : start1 + random.nextInt(200000);
+                pw.println(chr1 + "\t" + start1 + "\t" + (start1 + 5000) + "\t" + chr2 + "\t" + start2 + "\t" +
+                        (start2 + 5000) + "\tf" + i + "\t" + random.nextInt(100));
+            }
+        }
+    }
+
+    /**
+     * Features returned by the index must match those of the in-memory feature cache
+     */
+    @Test
+    public void testQuery() throws Exception {
+
+        ResourceLocator locator = new ResourceLocator(bedpeFile.getAbsolutePath());
+        assertTrue(BedPEIndex.isIndexable(locator));
+        BedPEParser.Dataset dataset = BedPEParser.parse(locator, null);
+
+        List<BedPE> expanded = new ArrayList<>();
+        for (BedPEFeature f : dataset.features) {
+            if (f.isSameChr()) {
+                expanded.add(f);
+            } else {
+                expanded.add(new BedPEInterFeature(f, 1));
+                expanded.add(new BedPEInterFeature(f, 2));
+            }
+        }
+        FeatureCache<BedPE> cache = new FeatureCache<>(expanded);
+
+        File indexFile = new File(TestUtils.TMP_OUTPUT_DIR, "bedPEIndexTestQuery.bpi");
+        indexFile.deleteOnExit();
+        BedPEIndex.build(bedpeFile, indexFile, null);
+        assertTrue(BedPEIndex.isCurrent(bedpeFile, indexFile, ""));
+        assertFalse(BedPEIndex.isCurrent(bedpeFile, indexFile, "hg19"));
+        BedPEIndex index = BedPEIndex.read(bedpeFile, indexFile, null);
+
+        assertEquals(dataset.type, index.getType());
+        assertEquals(dataset.features.size(), index.getFeatureCount());
+        assertEquals(dataset.features.size(), index.getAllFeatures().size());
+
+        int[][] ranges = {{0, 100000}, {5000000, 5100000}, {10000000, 10001000}, {19000000, 21000000}, {0, 30000000}};
+        for (String chr : new String[]{"chr1", "chr2"}) {
+            for (int[] r : ranges) {
+                List<BedPE> expected = cache.getFeatures(chr, r[0], r[1]);
+                List<BedPE> features = index.getFeatures(chr, r[0], r[1], 1, Integer.MAX_VALUE);
+                assertEquals(keys(expected), keys(features));
+                assertEquals(expected.size(), index.count(chr, r[0], r[1]));
+            }
+        }
+        assertTrue(index.getFeatures("chrX", 0, 1000000, 1, Integer.MAX_VALUE).isEmpty());
+    }
+
+    /**
+     * Aggregated features must account for every feature in the range
+     */
+    @Test
+    public void testAggregation() throws Exception {
+
+        File indexFile = new File(TestUtils.TMP_OUTPUT_DIR, "bedPEIndexTestAggregation.bpi");
+        indexFile.deleteOnExit();
+        BedPEIndex.build(bedpeFile, indexFile, null);
+        BedPEIndex index = BedPEIndex.read(bedpeFile, indexFile, null);
+
+        int start = 0;
+        int end = 20000000;
+        double binSize = 20000;
+        List<BedPE> features = index.getFeatures("chr1", start, end, binSize, Integer.MAX_VALUE);
+        List<BedPE> aggregated = index.getFeatures("chr1", start, end, binSize, 100);
+        assertTrue(aggregated.size() < features.size());
+
+        double totalScore = 0;
+        for (BedPE f : features) totalScore += f.getScore();
+        double aggregatedScore = 0;
+        for (BedPE f : aggregated) aggregatedScore += f.getScore();
+        assertEquals(totalScore, aggregatedScore, 1.0e-3 * totalScore);
+
+        // Aggregating the parsed features gives the same bins
+        List<BedPE> fromFeatures = BedPEAggregator.aggregate(features, binSize);
+        assertEquals(keys(fromFeatures), keys(aggregated));
+    }
+
+    private static Set<String> keys(List<BedPE> features) {
+        Set<String> keys = new HashSet<>();
+        for (BedPE bedPE : features) {
+            BedPEFeature f = bedPE.get();
+            keys.add(bedPE.getContig() + ":" + bedPE.getStart() + "-" + bedPE.getEnd() + " " +
+                    f.chr1 + ":" + f.start1 + " " + f.chr2 + ":" + f.start2 + " " + f.getScore());
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.data;
+
+import org.broad.igv.Globals;
+import org.broad.igv.data.expression.ExpressionDataset;
+import org.broad.igv.data.expression.ExpressionFileParser;
+import org.broad.igv.feature.genome.load.ChromsizesLoader;
+import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.util.ResourceLocator;
+import org.broad.igv.util.TestUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MatrixDatasetTest {
+
+    static Genome genome;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        Globals.setHeadless(true);
+        genome = new ChromsizesLoader(TestUtils.DATA_DIR + "genomes/hg19.chrom.sizes").loadGenome();
+    }
+
+    @Test
+    public void testIGVFile() throws Exception {
+
+        String igvFile = TestUtils.DATA_DIR + "igv/recombRate.igv.txt";
+        IGVDataset expected = new IGVDataset(new ResourceLocator(igvFile), genome);
+
+        File matrixFile = new File(TestUtils.TMP_OUTPUT_DIR, "matrixDatasetTestIGV.igvm");
+        matrixFile.deleteOnExit();
+        new MatrixDatasetWriter(genome).write(expected, null, new File(igvFile), matrixFile, genome.getId(), "");
+        assertTrue(MatrixDataset.isCurrent(new File(igvFile), matrixFile, genome.getId(), ""));
+        assertFalse(MatrixDataset.isCurrent(new File(igvFile), matrixFile, genome.getId(), "genes=true"));
+
+        MatrixDataset dataset = MatrixDataset.read(matrixFile);
+        compare(expected, dataset);
+
+        // Whole genome summary
+        assertTrue(dataset.hasWholeGenomeSummary());
+        String heading = expected.getTrackNames()[0];
+        GenomeSummaryData summary = expected.getGenomeSummary();
+        assertArrayEquals(summary.getLocations(), dataset.getWholeGenomeLocations());
+        assertArrayEquals(summary.getData(heading), dataset.getWholeGenomeData(heading), 0);
+    }
+
+    @Test
+    public void testExpressionFile() throws Exception {
+
+        Random random = new Random(5);
+        int nRows = 500;
+        int nSamples = 20;
+        File gctFile = new File(TestUtils.TMP_OUTPUT_DIR, "matrixDatasetTest.gct");
+        gctFile.deleteOnExit();
+        try (PrintWriter pw = new PrintWriter(gctFile)) {
+            pw.println("#1.2");
+            pw.println(nRows + "\t" + nSamples);
+            pw.print("NAME\tDESCRIPTION");
+            for (int s = 0; s < nSamples; s++) pw.print("\tsample" + s);
+            pw.println();
+            for (int i = 0; i < nRows; i++) {
+                int start = random.nextInt(10000000);
+                String chr = "chr" + (1 + random.nextInt(3));
+                pw.print("probe" + i + "\t|@" + chr + ":" + start + "-" + (start + random.nextInt(5000)) + "|");
+                for (int s = 0; s < nSamples; s++) pw.print("\t" + (float) random.nextGaussian());
+                pw.println();
+            }
+        }
+
+        ExpressionDataset expected = new ExpressionFileParser(gctFile, null, genome).createDataset();
+        expected.setNormalized(true);
+
+        File matrixFile = new File(TestUtils.TMP_OUTPUT_DIR, "matrixDatasetTestGCT.igvm");
+        matrixFile.deleteOnExit();
+        new MatrixDatasetWriter(genome).write(expected, null, gctFile, matrixFile, genome.getId(), "");
+        MatrixDataset dataset = MatrixDataset.read(matrixFile);
+        compare(expected, dataset);
+        assertEquals(nSamples, dataset.getTrackNames().length);
+    }
+
+    private void compare(Dataset expected, MatrixDataset dataset) {
+
+        assertArrayEquals(expected.getTrackNames(), dataset.getTrackNames());
+        assertArrayEquals(expected.getChromosomes(), dataset.getChromosomes());
+        assertEquals(expected.getType(), dataset.getType());
+        assertEquals(expected.isLogNormalized(), dataset.isLogNormalized());
+        assertEquals(expected.getDataMin(), dataset.getDataMin(), 0);
+        assertEquals(expected.getDataMax(), dataset.getDataMax(), 0);
+
+        int count = 0;
+        for (String chr : expected.getChromosomes()) {
+            assertArrayEquals(expected.getStartLocations(chr), dataset.getStartLocations(chr));
+            assertArrayEquals(expected.getEndLocations(chr), dataset.getEndLocations(chr));
+            assertArrayEquals(expected.getFeatureNames(chr), dataset.getFeatureNames(chr));
+            assertEquals(expected.getLongestFeature(chr), dataset.getLongestFeature(chr));
+            for (String heading : expected.getTrackNames()) {
+                assertArrayEquals(expected.getData(heading, chr), dataset.getData(heading, chr), 0);
+                count++;
+            }
+        }
+        assertTrue(count > 0);
+
+        assertNull(dataset.getStartLocations("noSuchChr"));
+        assertNull(dataset.getData("noSuchHeading", expected.getChromosomes()[0]));
+    }
+}
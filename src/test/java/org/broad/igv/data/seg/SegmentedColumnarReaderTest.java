@@ -0,0 +1,92 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.data.seg;
+
+import org.broad.igv.feature.LocusScore;
+import org.broad.igv.util.ResourceLocator;
+import org.broad.igv.util.TestUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SegmentedColumnarReaderTest {
+
+    /**
+     * Convert a seg file and compare the segments read back to those of the ascii dataset
+     */
+    @Test
+    public void testConvert() throws Exception {
+
+        String segFile = TestUtils.DATA_DIR + "seg/Broad.080528.subtypes.seg.gz";
+        ResourceLocator locator = new ResourceLocator(segFile);
+
+        SegmentedAsciiDataSet expected = new SegmentFileParser(locator).loadSegments(locator, null);
+
+        File columnarFile = new File(TestUtils.TMP_OUTPUT_DIR, "segmentedColumnarReaderTest.segc");
+        columnarFile.deleteOnExit();
+        SegmentedColumnarWriter writer = new SegmentedColumnarWriter(null);
+        new SegmentFileParser(locator).parse(writer, null);
+        writer.write(new File(segFile), columnarFile, "");
+        assertTrue(SegmentedColumnarReader.isCurrent(new File(segFile), columnarFile, ""));
+
+        SegmentedBinaryDataSet dataset = new SegmentedBinaryDataSet(SegmentedColumnarReader.read(columnarFile));
+
+        assertEquals(expected.getSampleNames(), dataset.getSampleNames());
+        assertEquals(expected.getType(), dataset.getType());
+        assertEquals(expected.isLogNormalized(), dataset.isLogNormalized());
+        assertEquals(expected.getDataMax("chr1"), dataset.getDataMax("chr1"), 1.0e-6);
+        assertEquals(expected.getDataMin("chr1"), dataset.getDataMin("chr1"), 1.0e-6);
+
+        int count = 0;
+        for (String sample : expected.getSampleNames()) {
+            for (String chr : expected.getChromosomes()) {
+                List<LocusScore> expectedSegments = expected.getSegments(sample, chr);
+                List<LocusScore> segments = dataset.getSegments(sample, chr);
+                if (expectedSegments == null) {
+                    assertNull(segments);
+                    continue;
+                }
+                assertEquals(expectedSegments.size(), segments.size());
+                for (int i = 0; i < segments.size(); i++) {
+                    Segment e = (Segment) expectedSegments.get(i);
+                    Segment s = (Segment) segments.get(i);
+                    assertEquals(e.getStart(), s.getStart());
+                    assertEquals(e.getEnd(), s.getEnd());
+                    assertEquals(e.getScore(), s.getScore(), 0);
+                    assertEquals(e.getDescription(), s.getDescription());
+                    count++;
+                }
+            }
+        }
+        assertTrue(count > 0);
+
+        assertNull(dataset.getSegments(expected.getSampleNames().get(0), "noSuchChr"));
+        assertNull(dataset.getSegments("noSuchSample", "chr1"));
+    }
+}
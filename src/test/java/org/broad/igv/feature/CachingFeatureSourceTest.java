@@ -0,0 +1,176 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.feature;
+
+import htsjdk.tribble.Feature;
+import org.broad.igv.track.FeatureSource;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CachingFeatureSourceTest {
+
+    /**
+     * Features every 100 bp on chr1, 0 - 100,000
+     */
+    static class CountingSource implements FeatureSource<Feature> {
+
+        AtomicInteger queryCount = new AtomicInteger();
+
+        @Override
+        public Iterator<Feature> getFeatures(String chr, int start, int end) {
+            queryCount.incrementAndGet();
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                // ignore
+            }
+            List<Feature> features = new ArrayList<>();
+            for (int s = Math.max(0, start - start % 100); s < Math.min(end, 100000); s += 100) {
+                features.add(new BasicFeature(chr, s, s + 50));
+            }
+            return features.iterator();
+        }
+
+        @Override
+        public List<LocusScore> getCoverageScores(String chr, int start, int end, int zoom) {
+            return null;
+        }
+
+        @Override
+        public int getFeatureWindowSize() {
+            return 0;
+        }
+
+        @Override
+        public void setFeatureWindowSize(int size) {
+        }
+    }
+
+    @Test
+    public void testQuery() throws Exception {
+
+        CountingSource source = new CountingSource();
+        CachingFeatureSource cachingSource = new CachingFeatureSource(source, 1000);
+
+        Iterator<Feature> iter = cachingSource.getFeatures("chr1", 2000, 5000);
+        int count = 0;
+        int lastStart = -1;
+        while (iter.hasNext()) {
+            Feature f = iter.next();
+            assertTrue(f.getEnd() >= 2000 && f.getStart() <= 5000);
+            assertTrue(f.getStart() > lastStart);
+            lastStart = f.getStart();
+            count++;
+        }
+        assertEquals(31, count);
+        assertEquals(1, source.queryCount.get());
+
+        // Fully cached, no new queries
+        cachingSource.getFeatures("chr1", 2500, 4500);
+        assertEquals(1, source.queryCount.get());
+    }
+
+    /**
+     * Concurrent requests for the same bins should result in a single load
+     */
+    @Test
+    public void testConcurrentQuery() throws Exception {
+
+        CountingSource source = new CountingSource();
+        CachingFeatureSource cachingSource = new CachingFeatureSource(source, 1000);
+
+        int nThreads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        CountDownLatch latch = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < nThreads; i++) {
+            results.add(executor.submit(() -> {
+                latch.await();
+                Iterator<Feature> iter = cachingSource.getFeatures("chr1", 10000, 20000);
+                int count = 0;
+                while (iter.hasNext()) {
+                    iter.next();
+                    count++;
+                }
+                return count;
+            }));
+        }
+        latch.countDown();
+        for (Future<Integer> f : results) {
+            assertEquals(101, f.get().intValue());
+        }
+        executor.shutdown();
+
+        // Each bin is loaded exactly once, regardless of how the claims were split among threads
+        assertTrue(source.queryCount.get() <= 11);
+        int queries = source.queryCount.get();
+        cachingSource.getFeatures("chr1", 10000, 20000);
+        assertEquals(queries, source.queryCount.get());
+    }
+
+    /**
+     * Two adjacent dense bins, each holding more than a quarter of the record budget, should both stay cached
+     */
+    @Test
+    public void testDenseBinsCached() throws Exception {
+
+        final AtomicInteger queryCount = new AtomicInteger();
+        AbstractCacher cacher = new AbstractCacher(1000, 1500) {
+            @Override
+            protected Iterator<Feature> queryRaw(String chr, int start, int end) {
+                queryCount.incrementAndGet();
+                // 500 features per 1 kb bin, a third of the budget
+                List<Feature> features = new ArrayList<>();
+                for (int s = Math.max(0, start - start % 2); s < end; s += 2) {
+                    features.add(new BasicFeature(chr, s, s + 2));
+                }
+                return features.iterator();
+            }
+        };
+
+        cacher.queryCached("chr1", 10000, 11999);
+        assertEquals(1, queryCount.get());
+
+        for (int i = 0; i < 5; i++) {
+            Iterator<Feature> iter = cacher.queryCached("chr1", 10000, 11999);
+            int count = 0;
+            while (iter.hasNext()) {
+                iter.next();
+                count++;
+            }
+            assertEquals(1000, count);
+        }
+        assertEquals(1, queryCount.get());
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.feature.genome.load;
+
+import htsjdk.tribble.Feature;
+import org.broad.igv.Globals;
+import org.broad.igv.feature.*;
+import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.track.FeatureCollectionSource;
+import org.broad.igv.track.FeatureTrack;
+import org.broad.igv.util.ResourceLocator;
+import org.broad.igv.util.TestUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class GenomeSnapshotTest {
+
+    @BeforeClass
+    public static void setUpClass() {
+        Globals.setHeadless(true);
+    }
+
+    @Test
+    public void testSnapshot() throws Exception {
+
+        String rawDir = TestUtils.DATA_DIR + "genomes/genome_raw_files/hg18.unittest/";
+        File geneFile = new File(rawDir + "hg18_refGene_head1k.txt");
+        File cytobandFile = new File(rawDir + "hg18_cytoBand.txt");
+        List<File> sources = Arrays.asList(geneFile, cytobandFile);
+
+        FeatureDB.clearFeatures();
+        Genome genome = loadGenome();
+        try (BufferedReader reader = new BufferedReader(new FileReader(cytobandFile))) {
+            genome.setCytobands(CytoBandFileParser.loadData(reader));
+        }
+        genome.addChrAliases(Collections.singletonList(Arrays.asList("chr1", "one")));
+        List<Feature> genes;
+        try (BufferedReader reader = new BufferedReader(new FileReader(geneFile))) {
+            FeatureParser parser = AbstractFeatureParser.getInstanceFor(new ResourceLocator(geneFile.getPath()), genome);
+            genes = parser.loadFeatures(reader, genome);
+        }
+        genome.setGeneTrack(new FeatureTrack("genes", "RefSeq genes", new FeatureCollectionSource(genes, genome)));
+        Map<String, List<NamedFeature>> expectedIndex = FeatureDB.getFeatureMap();
+        assertFalse(expectedIndex.isEmpty());
+
+        File snapshotFile = new File(TestUtils.TMP_OUTPUT_DIR, "genomeSnapshotTest.snap");
+        snapshotFile.deleteOnExit();
+        GenomeSnapshot.write(snapshotFile, sources, genome);
+        assertTrue(GenomeSnapshot.isCurrent(snapshotFile, sources, genome));
+        assertFalse(GenomeSnapshot.isCurrent(snapshotFile, Collections.singletonList(geneFile), genome));
+
+        FeatureDB.clearFeatures();
+        Genome restored = loadGenome();
+        GenomeSnapshot snapshot = GenomeSnapshot.read(snapshotFile);
+        snapshot.apply(restored);
+
+        assertEquals("chr1", restored.getCanonicalChrName("one"));
+        assertEquals(genome.getChrAliasTable(), restored.getChrAliasTable());
+
+        List<Cytoband> expectedBands = genome.getChromosome("chr1").getCytobands();
+        List<Cytoband> bands = restored.getChromosome("chr1").getCytobands();
+        assertEquals(expectedBands.size(), bands.size());
+        for (int i = 0; i < bands.size(); i++) {
+            assertEquals(expectedBands.get(i).getName(), bands.get(i).getName());
+            assertEquals(expectedBands.get(i).getEnd(), bands.get(i).getEnd());
+            assertEquals(expectedBands.get(i).getStain(), bands.get(i).getStain());
+            assertEquals(expectedBands.get(i).getType(), bands.get(i).getType());
+        }
+
+        assertTrue(snapshot.hasGeneTrack());
+        assertEquals("RefSeq genes", snapshot.getGeneTrackName());
+        assertEquals(genes.size(), snapshot.getGeneFeatures().size());
+        Map<String, BasicFeature> restoredGenes = new HashMap<>();
+        for (Feature f : snapshot.getGeneFeatures()) {
+            BasicFeature bf = (BasicFeature) f;
+            restoredGenes.put(bf.getIdentifier() + ":" + bf.getChr() + ":" + bf.getStart(), bf);
+        }
+        for (Feature f : genes) {
+            BasicFeature e = (BasicFeature) f;
+            BasicFeature bf = restoredGenes.get(e.getIdentifier() + ":" + e.getChr() + ":" + e.getStart());
+            assertNotNull(bf);
+            assertEquals(e.getName(), bf.getName());
+            assertEquals(e.getEnd(), bf.getEnd());
+            assertEquals(e.getStrand(), bf.getStrand());
+            assertEquals(e.getThickStart(), bf.getThickStart());
+            assertEquals(e.getThickEnd(), bf.getThickEnd());
+            assertEquals(e.getExonCount(), bf.getExonCount());
+            for (int i = 0; i < e.getExonCount(); i++) {
+                Exon ee = e.getExons().get(i);
+                Exon be = bf.getExons().get(i);
+                assertEquals(ee.getStart(), be.getStart());
+                assertEquals(ee.getEnd(), be.getEnd());
+                assertEquals(ee.getCdStart(), be.getCdStart());
+                assertEquals(ee.getCdEnd(), be.getCdEnd());
+                assertEquals(ee.getReadingFrame(), be.getReadingFrame());
+                assertEquals(ee.isNonCoding(), be.isNonCoding());
+                assertEquals(ee.getNumber(), be.getNumber());
+            }
+        }
+
+        Map<String, List<NamedFeature>> index = FeatureDB.getFeatureMap();
+        assertEquals(expectedIndex.keySet(), index.keySet());
+        for (String key : expectedIndex.keySet()) {
+            List<NamedFeature> expected = expectedIndex.get(key);
+            List<NamedFeature> features = index.get(key);
+            assertEquals(expected.size(), features.size());
+            for (int i = 0; i < features.size(); i++) {
+                assertEquals(expected.get(i).getChr(), features.get(i).getChr());
+                assertEquals(expected.get(i).getStart(), features.get(i).getStart());
+                assertEquals(expected.get(i).getEnd(), features.get(i).getEnd());
+            }
+        }
+    }
+
+    private static Genome loadGenome() throws Exception {
+        return new ChromsizesLoader(TestUtils.DATA_DIR + "genomes/hg19.chrom.sizes").loadGenome();
+    }
+}
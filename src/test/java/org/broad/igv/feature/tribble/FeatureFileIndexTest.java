@@ -0,0 +1,100 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.feature.tribble;
+
+import htsjdk.tribble.Feature;
+import org.broad.igv.feature.BasicFeature;
+import org.broad.igv.util.TestUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FeatureFileIndexTest {
+
+    /**
+     * Index an unsorted bed file in several chunks, and compare queries to a brute force scan.
+     */
+    @Test
+    public void testQuery() throws Exception {
+
+        File bedFile = new File(TestUtils.TMP_OUTPUT_DIR, "featureFileIndexTest.bed");
+        bedFile.deleteOnExit();
+        int n = 5000;
+        int[] starts = new int[n];
+        int[] ends = new int[n];
+        try (PrintWriter pw = new PrintWriter(bedFile)) {
+            pw.println("track name=test");
+            pw.println("#gffTags");
+            for (int i = 0; i < n; i++) {
+                // Unsorted, with an occasional long feature
+                starts[i] = (i * 7919) % 100000;
+                ends[i] = starts[i] + (i % 500 == 0 ? 50000 : 100);
+                String chr = i % 2 == 0 ? "chr1" : "chr2";
+                pw.println(chr + "\t" + starts[i] + "\t" + ends[i] + "\tName=f" + i);
+            }
+        }
+
+        File indexFile = new File(TestUtils.TMP_OUTPUT_DIR, "featureFileIndexTest.bed.fidx");
+        indexFile.deleteOnExit();
+        FeatureFileIndex.create(bedFile, indexFile, IGVBEDCodec::new, 4);
+        assertTrue(FeatureFileIndex.isCurrent(bedFile, indexFile));
+
+        FeatureFileIndex index = FeatureFileIndex.load(bedFile, indexFile);
+        assertEquals(2, index.getSequenceNames().size());
+        assertEquals(n / 2, index.getFeatureCount("chr1"));
+        assertEquals(2, index.getHeaderLines().size());
+
+        IGVBEDCodec codec = new IGVBEDCodec();
+        for (String line : index.getHeaderLines()) {
+            codec.decode(line);
+        }
+
+        int qStart = 40000;
+        int qEnd = 41000;
+        List<Feature> features = index.query("chr1", qStart, qEnd, codec);
+
+        int expected = 0;
+        for (int i = 0; i < n; i += 2) {
+            if (starts[i] <= qEnd && ends[i] > qStart) expected++;
+        }
+        assertEquals(expected, features.size());
+
+        int lastStart = -1;
+        for (Feature f : features) {
+            assertEquals("chr1", f.getChr());
+            assertTrue(f.getStart() <= qEnd && f.getEnd() > qStart);
+            assertTrue(f.getStart() >= lastStart);
+            lastStart = f.getStart();
+            assertNotNull(((BasicFeature) f).getName());
+        }
+
+        assertEquals(0, index.query("chr3", 0, 1000, codec).size());
+    }
+}
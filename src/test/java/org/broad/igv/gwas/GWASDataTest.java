@@ -0,0 +1,136 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.gwas;
+
+import org.broad.igv.util.ResourceLocator;
+import org.broad.igv.util.TestUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class GWASDataTest {
+
+    private File gwasFile;
+    private int n = 20000;
+    private int[] positions = new int[n];
+    private double[] values = new double[n];
+
+    @Before
+    public void setUp() throws Exception {
+        Random random = new Random(17);
+        gwasFile = new File(TestUtils.TMP_OUTPUT_DIR, "gwasDataTest.gwas");
+        gwasFile.deleteOnExit();
+        try (PrintWriter pw = new PrintWriter(gwasFile)) {
+            pw.println("CHR\tBP\tSNP\tP");
+            for (int i = 0; i < n; i++) {
+                // Unsorted positions
+                positions[i] = random.nextInt(50000000);
+                double p = Math.pow(10, -10 * random.nextDouble());
+                values[i] = -Math.log10(p);
+                pw.println("chr1\t" + positions[i] + "\trs" + i + "\t" + p);
+            }
+        }
+    }
+
+    @Test
+    public void testSummaries() throws Exception {
+        GWASData data = new GWASParser(new ResourceLocator(gwasFile.getAbsolutePath()), null).parseData(true);
+        checkData(data);
+    }
+
+    @Test
+    public void testBinaryFile() throws Exception {
+        ResourceLocator locator = new ResourceLocator(gwasFile.getAbsolutePath());
+        GWASData parsed = new GWASParser(locator, null).parseData(false);
+
+        File binaryFile = new File(TestUtils.TMP_OUTPUT_DIR, "gwasDataTest.gwasb");
+        binaryFile.deleteOnExit();
+        GWASBinaryFile.write(parsed, gwasFile, binaryFile, "hg19");
+        assertTrue(GWASBinaryFile.isCurrent(gwasFile, binaryFile, "hg19"));
+        assertFalse(GWASBinaryFile.isCurrent(gwasFile, binaryFile, "hg38"));
+
+        GWASData data = GWASBinaryFile.read(gwasFile, binaryFile);
+        assertArrayEquals(parsed.getColumnHeaders(), data.getColumnHeaders());
+        checkData(data);
+
+        // Lines are read from the source file
+        GWASData.ChrData chrData = data.getChrData("chr1");
+        for (int index = 0; index < chrData.size(); index += 1000) {
+            String[] tokens = data.getLine("chr1", index).split("\t");
+            assertEquals(chrData.getPosition(index), Integer.parseInt(tokens[1]));
+            int i = Integer.parseInt(tokens[2].substring(2));
+            assertEquals(positions[i], chrData.getPosition(index));
+        }
+    }
+
+    private void checkData(GWASData data) {
+
+        GWASData.ChrData chrData = data.getChrData("chr1");
+        assertEquals(n, chrData.size());
+        for (int i = 1; i < n; i++) {
+            assertTrue(chrData.getPosition(i) >= chrData.getPosition(i - 1));
+        }
+
+        double max = 0;
+        for (double v : values) max = Math.max(max, v);
+        assertEquals(max, data.getMaxValue(), 1.0e-5);
+
+        // At each resolution, every SNP in the range must be drawn or dominated by a drawn SNP less than a pixel away
+        int start = 10000000;
+        int end = 30000000;
+        for (double bpPerPixel : new double[]{100, 2000, 50000, 1000000}) {
+            int[] indices = chrData.getIndices(start, end, bpPerPixel);
+            int[] drawnPositions = new int[indices.length];
+            for (int i = 0; i < indices.length; i++) {
+                drawnPositions[i] = chrData.getPosition(indices[i]);
+                if (i > 0) assertTrue(drawnPositions[i] >= drawnPositions[i - 1]);
+            }
+
+            for (int i = 0; i < n; i++) {
+                // Bins straddling the ends of the range might not be included, the renderer pads the range
+                if (positions[i] >= start + bpPerPixel && positions[i] < end - bpPerPixel) {
+                    int j = Arrays.binarySearch(drawnPositions, (int) Math.ceil(positions[i] - bpPerPixel));
+                    if (j < 0) j = -j - 1;
+                    while (j > 0 && drawnPositions[j - 1] > positions[i] - bpPerPixel) j--;
+                    double nearbyMax = 0;
+                    for (; j < indices.length && drawnPositions[j] < positions[i] + bpPerPixel; j++) {
+                        nearbyMax = Math.max(nearbyMax, chrData.getValue(indices[j]));
+                    }
+                    assertTrue(nearbyMax >= (float) values[i]);
+                }
+            }
+            if (bpPerPixel >= GWASData.BASE_BIN_SIZE) {
+                assertTrue(indices.length < n);
+            }
+        }
+    }
+}
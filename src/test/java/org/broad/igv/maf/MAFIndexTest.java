@@ -0,0 +1,148 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.maf;
+
+import htsjdk.samtools.util.BlockCompressedOutputStream;
+import org.broad.igv.util.TestUtils;
+import org.broad.igv.util.index.Interval;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class MAFIndexTest {
+
+    private int blockSize;
+    private long minRangeSize;
+
+    @Before
+    public void setUp() {
+        blockSize = MAFIndex.blockSize;
+        minRangeSize = MAFIndex.minRangeSize;
+        MAFIndex.blockSize = 10;
+        MAFIndex.minRangeSize = 1000;
+    }
+
+    @After
+    public void tearDown() {
+        MAFIndex.blockSize = blockSize;
+        MAFIndex.minRangeSize = minRangeSize;
+    }
+
+    /**
+     * Write a MAF file with nBlocks blocks on each of chr1 and chr2.  Returns the block starts.
+     */
+    static int[] writeMAF(OutputStream os, int nBlocks) throws IOException {
+        Random random = new Random(11);
+        String[] species = {"hg19", "panTro4", "mm10"};
+        int[] starts = new int[nBlocks];
+        PrintWriter pw = new PrintWriter(new OutputStreamWriter(os));
+        pw.println("##maf version=1 scoring=autoMZ.v1");
+        pw.println();
+        for (String chr : new String[]{"chr1", "chr2"}) {
+            int start = 1000;
+            for (int b = 0; b < nBlocks; b++) {
+                int size = 20 + random.nextInt(80);
+                starts[b] = start;
+                pw.println("a score=" + b);
+                for (int s = 0; s < species.length; s++) {
+                    if (s > 0 && random.nextInt(4) == 0) continue;
+                    StringBuilder text = new StringBuilder();
+                    for (int i = 0; i < size; i++) {
+                        text.append(s > 0 && random.nextInt(10) == 0 ? '-' : "ACGT".charAt(random.nextInt(4)));
+                    }
+                    pw.println("s " + species[s] + "." + chr + " " + start + " " + size + " + 100000000 " + text);
+                    if (s > 0) pw.println("i " + species[s] + "." + chr + " C 0 C 0");
+                }
+                pw.println();
+                start += size + random.nextInt(100);
+            }
+        }
+        pw.flush();
+        return starts;
+    }
+
+    @Test
+    public void testParallelIndex() throws Exception {
+        File mafFile = new File(TestUtils.TMP_OUTPUT_DIR, "mafIndexTest.maf");
+        mafFile.deleteOnExit();
+        try (OutputStream os = new FileOutputStream(mafFile)) {
+            writeMAF(os, 1000);
+        }
+        checkIndex(mafFile, 1000);
+    }
+
+    @Test
+    public void testParallelIndexBgzipped() throws Exception {
+        File mafFile = new File(TestUtils.TMP_OUTPUT_DIR, "mafIndexTest.maf.gz");
+        mafFile.deleteOnExit();
+        try (OutputStream os = new BlockCompressedOutputStream(mafFile)) {
+            writeMAF(os, 1000);
+        }
+        assertTrue(MAFIndex.isBgzipped(mafFile.getAbsolutePath()));
+        checkIndex(mafFile, 1000);
+    }
+
+    private void checkIndex(File mafFile, int nBlocks) throws Exception {
+
+        String path = mafFile.getAbsolutePath();
+        MAFIndex serial = MAFIndex.createIndex(path, 1);
+        MAFIndex parallel = MAFIndex.createIndex(path, 4);
+
+        assertEquals(Arrays.asList("hg19", "panTro4", "mm10"), serial.getSpecies());
+        assertEquals(serial.getSpecies(), parallel.getSpecies());
+        assertEquals(new HashSet<>(serial.getChromosomes()), new HashSet<>(parallel.getChromosomes()));
+
+        // Ranges split intervals, so the parallel index can have more, but must cover the same blocks
+        for (String chr : serial.getChromosomes()) {
+            int serialCount = serial.getIntervalTree(chr).getIntervals().size();
+            int parallelCount = parallel.getIntervalTree(chr).getIntervals().size();
+            assertEquals(nBlocks / MAFIndex.blockSize, serialCount);
+            assertTrue(parallelCount >= serialCount && parallelCount < serialCount + 4);
+        }
+
+        MAFIndex.writeIndex(parallel, path + ".index");
+        new File(path + ".index").deleteOnExit();
+        MAFParser parser = new MAFParser(path);
+        for (String chr : new String[]{"chr1", "chr2"}) {
+            List<MultipleAlignmentBlock> blocks = parser.loadAlignments(chr, 0, Integer.MAX_VALUE);
+            assertEquals(nBlocks, blocks.size());
+            for (int i = 1; i < blocks.size(); i++) {
+                assertTrue(blocks.get(i).getStart() > blocks.get(i - 1).getStart());
+            }
+
+            // Every block is reachable through a query on its own interval
+            for (Interval iv : parallel.getIntervalTree(chr).getIntervals()) {
+                List<MultipleAlignmentBlock> ivBlocks = parser.loadAlignments(chr, iv.getLow() + 1, iv.getLow() + 1);
+                assertEquals(iv.getLow(), ivBlocks.get(0).getStart());
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.maf;
+
+import org.broad.igv.util.TestUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MAFTileCacheTest {
+
+    @Test
+    public void testCodec() throws Exception {
+        MAFParser parser = new MAFParser(writeMAF());
+        List<MultipleAlignmentBlock> blocks = parser.loadAlignments("chr1", 0, Integer.MAX_VALUE);
+
+        // Non-nucleotide text is stored unpacked
+        MultipleAlignmentBlock odd = new MultipleAlignmentBlock();
+        odd.addSequence(new MultipleAlignmentBlock.Sequence("hg19", "chr1", 10, 4, '+', 1000, "AC-GX"));
+        odd.addSequence(new MultipleAlignmentBlock.Sequence("mm10", "chr5", 20, 5, '-', 1000, "acngt"));
+        blocks.add(odd);
+
+        byte[] bytes = MAFBlockCodec.encode(blocks);
+        List<MultipleAlignmentBlock> decoded = MAFBlockCodec.decode(bytes);
+        assertEquals(blocks.size(), decoded.size());
+        int textLength = 0;
+        for (int b = 0; b < blocks.size(); b++) {
+            assertBlocksEqual(blocks.get(b), decoded.get(b));
+            for (MultipleAlignmentBlock.Sequence seq : blocks.get(b).getSequences()) {
+                textLength += seq.getText().length();
+            }
+        }
+        assertTrue(bytes.length < textLength);
+    }
+
+    @Test
+    public void testTiles() throws Exception {
+        MAFParser parser = new MAFParser(writeMAF());
+        MAFTileCache cache = new MAFTileCache(parser);
+
+        int[][] ranges = {{0, 5000}, {9000, 31000}, {19999, 20000}, {45000, 61000}};
+        for (int[] r : ranges) {
+            List<MultipleAlignmentBlock> expected = parser.loadAlignments("chr1", r[0], r[1]);
+            List<MultipleAlignmentBlock> alignments = cache.getAlignments("chr1", r[0], r[1]);
+            assertEquals(expected.size(), alignments.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertBlocksEqual(expected.get(i), alignments.get(i));
+            }
+        }
+        assertTrue(cache.contains("chr1", 3));
+        assertTrue(cache.getAlignments("chr3", 0, 10000).isEmpty());
+    }
+
+    @Test
+    public void testBudget() throws Exception {
+        MAFParser parser = new MAFParser(writeMAF());
+        long budget = 20000;
+        MAFTileCache cache = new MAFTileCache(parser, budget);
+        for (int t = 0; t < 8; t++) {
+            cache.getAlignments("chr1", t * MAFTileCache.TILE_SIZE, t * MAFTileCache.TILE_SIZE + 100);
+            assertTrue(cache.getSize() <= budget || !cache.contains("chr1", t - 1));
+        }
+        assertTrue(cache.contains("chr1", 7));
+        assertFalse(cache.contains("chr1", 0));
+    }
+
+    private String writeMAF() throws Exception {
+        File mafFile = new File(TestUtils.TMP_OUTPUT_DIR, "mafTileCacheTest.maf");
+        mafFile.deleteOnExit();
+        new File(mafFile.getAbsolutePath() + ".index").deleteOnExit();
+        try (OutputStream os = new FileOutputStream(mafFile)) {
+            MAFIndexTest.writeMAF(os, 1000);
+        }
+        return mafFile.getAbsolutePath();
+    }
+
+    private static void assertBlocksEqual(MultipleAlignmentBlock expected, MultipleAlignmentBlock block) {
+        assertEquals(expected.getChr(), block.getChr());
+        assertEquals(expected.getStart(), block.getStart());
+        assertEquals(expected.getEnd(), block.getEnd());
+        assertEquals(expected.getGaps().size(), block.getGaps().size());
+        assertEquals(expected.getSequences().size(), block.getSequences().size());
+        for (int i = 0; i < expected.getSequences().size(); i++) {
+            MultipleAlignmentBlock.Sequence e = expected.getSequences().get(i);
+            MultipleAlignmentBlock.Sequence s = block.getSequences().get(i);
+            assertEquals(e.getSpecies(), s.getSpecies());
+            assertEquals(e.getChr(), s.getChr());
+            assertEquals(e.getStart(), s.getStart());
+            assertEquals(e.getSize(), s.getSize());
+            assertEquals(e.getStrand(), s.getStrand());
+            assertEquals(e.getSrcSize(), s.getSrcSize());
+            assertEquals(e.getText(), s.getText());
+        }
+    }
+}
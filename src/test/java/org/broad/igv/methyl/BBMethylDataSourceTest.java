@@ -90,6 +90,45 @@ public class BBMethylDataSourceTest {
 
     }
 
+    /**
+     * Scores served from the bins of a caching source match those of the underlying source
+     */
+    @Test
+    public void testUscCacheQuery() throws Exception {
+
+        String testFile = TestUtils.DATA_DIR +
+                "/methylation/usc/jhu-usc.edu_UCEC.IlluminaHiSeq_WGBS.Level_3.1.0.0.hg18.SAMPLE.bb";
+        String chr = "chr11";
+        int start = 10000000;
+        int end = 10100000;
+
+        BBFileReader reader = new BBFileReader(testFile);
+        MethylDataSource source = new BBMethylDataSource(reader, BBMethylDataSource.Type.USC, null);
+        List<MethylScore> expected = new ArrayList<MethylScore>();
+        Iterator<MethylScore> iter = source.query(chr, start, end);
+        while (iter.hasNext()) {
+            MethylScore score = iter.next();
+            if (score.getEnd() >= start && score.getStart() <= end) {
+                expected.add(score);
+            }
+        }
+        assertTrue(expected.size() > 3);
+
+        CachingMethylSource cachedSource = new CachingMethylSource(source, 1000, 5000);
+        Iterator<MethylScore> iter2 = cachedSource.query(chr, start, end);
+        int i = 0;
+        while (iter2.hasNext()) {
+            MethylScore cScore = iter2.next();
+            MethylScore score = expected.get(i++);
+            assertEquals(score.getStart(), cScore.getStart());
+            assertEquals(score.getEnd(), cScore.getEnd());
+            assertEquals(score.getScore(), cScore.getScore(), 0);
+            assertEquals(score.getCount(), cScore.getCount());
+            assertEquals(score.getStrand(), cScore.getStrand());
+        }
+        assertEquals(expected.size(), i);
+    }
+
     //@Test
     public void testZillerQuery() throws Exception {
 
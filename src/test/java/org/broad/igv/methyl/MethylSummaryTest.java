@@ -0,0 +1,105 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.methyl;
+
+import org.broad.igv.bbfile.BBFileReader;
+import org.broad.igv.util.TestUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MethylSummaryTest {
+
+    static final String PATH = TestUtils.DATA_DIR +
+            "/methylation/usc/jhu-usc.edu_UCEC.IlluminaHiSeq_WGBS.Level_3.1.0.0.hg18.SAMPLE.bb";
+
+    /**
+     * Compare summaries with coverage weighted means computed directly from the records
+     */
+    @Test
+    public void testSummaryScores() throws Exception {
+
+        MethylDataSource source = new BBMethylDataSource(new BBFileReader(PATH), BBMethylDataSource.Type.USC, null);
+        String chr = "chr11";
+        MethylSummary summary = MethylSummary.compute(source, chr);
+        assertTrue(summary.getWindowCount() > 0);
+
+        int start = 10000000;
+        int end = 12000000;
+        double scale = 50000;
+        List<MethylScore> scores = summary.getSummaryScores(start, end, scale);
+        assertFalse(scores.isEmpty());
+
+        for (MethylScore s : scores) {
+            assertEquals(50000, s.getEnd() - s.getStart());
+            long coverage = 0;
+            double weightedSum = 0;
+            Iterator<MethylScore> iter = source.query(chr, s.getStart(), s.getEnd());
+            while (iter.hasNext()) {
+                MethylScore site = iter.next();
+                if (site.getStart() >= s.getStart() && site.getStart() < s.getEnd()) {
+                    coverage += site.getCount();
+                    weightedSum += (double) site.getScore() * site.getCount();
+                }
+            }
+            assertEquals(coverage, s.getCount());
+            assertEquals(weightedSum / coverage, s.getScore(), 1.0e-3);
+        }
+    }
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+
+        File sourceFile = new File(PATH);
+        File cacheFile = new File(TestUtils.TMP_OUTPUT_DIR, "methylSummaryTest.methsum");
+        cacheFile.deleteOnExit();
+
+        MethylDataSource source = new BBMethylDataSource(new BBFileReader(PATH), BBMethylDataSource.Type.USC, null);
+        MethylSummary summary = MethylSummary.compute(source, "chr11");
+        MethylSummary.save(sourceFile, cacheFile, summary);
+        MethylSummary.save(sourceFile, cacheFile, new MethylSummary("chr1", new int[0], new int[0], new int[0], new float[0]));
+
+        MethylSummary loaded = MethylSummary.load(sourceFile, cacheFile, "chr11");
+        assertNotNull(loaded);
+        assertEquals(summary.getWindowCount(), loaded.getWindowCount());
+
+        List<MethylScore> expected = summary.getSummaryScores(0, Integer.MAX_VALUE, 1000);
+        List<MethylScore> scores = loaded.getSummaryScores(0, Integer.MAX_VALUE, 1000);
+        assertEquals(expected.size(), scores.size());
+        for (int i = 0; i < scores.size(); i++) {
+            assertEquals(expected.get(i).getStart(), scores.get(i).getStart());
+            assertEquals(expected.get(i).getScore(), scores.get(i).getScore(), 0);
+            assertEquals(expected.get(i).getCount(), scores.get(i).getCount());
+        }
+
+        assertNotNull(MethylSummary.load(sourceFile, cacheFile, "chr1"));
+        assertNull(MethylSummary.load(sourceFile, cacheFile, "chr2"));
+    }
+}
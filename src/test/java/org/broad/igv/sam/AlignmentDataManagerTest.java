@@ -27,12 +27,16 @@ package org.broad.igv.sam;
 
 import htsjdk.samtools.util.CloseableIterator;
 import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.event.IGVEventBus;
+import org.broad.igv.feature.Locus;
 import org.broad.igv.prefs.Constants;
 import org.broad.igv.prefs.IGVPreferences;
 import org.broad.igv.prefs.PreferencesManager;
 import org.broad.igv.sam.reader.AlignmentReader;
 import org.broad.igv.sam.reader.AlignmentReaderFactory;
 import org.broad.igv.sam.reader.ReadGroupFilter;
+import org.broad.igv.track.RenderContext;
+import org.broad.igv.ui.panel.FrameManager;
 import org.broad.igv.ui.panel.ReferenceFrame;
 import org.broad.igv.util.ResourceLocator;
 import org.broad.igv.util.TestUtils;
@@ -43,8 +47,12 @@ import org.junit.Test;
 import org.junit.rules.TestRule;
 import org.junit.rules.Timeout;
 
+import java.awt.*;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
 
 import static junit.framework.Assert.assertNotNull;
 import static junit.framework.Assert.assertTrue;
@@ -364,6 +372,83 @@ public class AlignmentDataManagerTest extends AbstractHeadlessTest {
         }
     }
 
+    /**
+     * Loads for several offscreen frames at once, as done by parallel snapshots, must not evict each other's
+     * intervals before the frames are painted
+     */
+    @Test
+    public void testConcurrentOffscreenLoads() throws Exception {
+
+        String[] loci = {"chr1:10300800-10301100", "chr1:10798400-10798800", "chr2:10135700-10136000",
+                "chr3:10479800-10480100"};
+        ResourceLocator locator = new ResourceLocator(TestUtils.DATA_DIR + "bam/BAMFileIndexTest/index_test.bam");
+        AlignmentDataManager manager = new AlignmentDataManager(locator, genome);
+        AlignmentTrack track = new AlignmentTrack(locator, manager, genome);
+        CoverageTrack coverageTrack = new CoverageTrack(locator, "Coverage", track, genome);
+        coverageTrack.setVisible(PreferencesManager.getPreferences().getAsBoolean(Constants.SAM_SHOW_COV_TRACK));
+        coverageTrack.setDataManager(manager);
+        manager.setCoverageTrack(coverageTrack);
+        track.setCoverageTrack(coverageTrack);
+        SpliceJunctionTrack junctionTrack = new SpliceJunctionTrack(locator, "Junctions", manager, track,
+                SpliceJunctionTrack.StrandOption.BOTH);
+        junctionTrack.setVisible(PreferencesManager.getPreferences().getAsBoolean(Constants.SAM_SHOW_JUNCTION_TRACK));
+        track.setSpliceJunctionTrack(junctionTrack);
+
+        int width = 700;
+        List<ReferenceFrame> frames = new ArrayList<>();
+        for (int i = 0; i < loci.length; i++) {
+            ReferenceFrame frame = new ReferenceFrame("snapshot-" + i, new IGVEventBus());
+            frame.setBounds(0, width);
+            frame.jumpTo(Locus.fromString(loci[i]));
+            frames.add(frame);
+            FrameManager.addOffscreenFrame(frame);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(loci.length);
+        CyclicBarrier loaded = new CyclicBarrier(loci.length);
+        Object paintLock = new Object();
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (ReferenceFrame frame : frames) {
+                results.add(executor.submit(() -> {
+                    track.load(frame);
+                    // Paint only once every frame is loaded
+                    loaded.await(60, TimeUnit.SECONDS);
+                    synchronized (paintLock) {
+                        return countPaintedPixels(track, frame, width);
+                    }
+                }));
+            }
+            for (int i = 0; i < loci.length; i++) {
+                assertTrue("No alignments rendered at " + loci[i], results.get(i).get() > 0);
+            }
+        } finally {
+            executor.shutdown();
+            for (ReferenceFrame frame : frames) {
+                FrameManager.removeOffscreenFrame(frame);
+            }
+        }
+    }
+
+    private static int countPaintedPixels(AlignmentTrack track, ReferenceFrame frame, int width) {
+        int height = 200;
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        Rectangle rect = new Rectangle(0, 0, width, height);
+        RenderContext context = new RenderContext(null, g, frame, rect);
+        track.render(context, rect);
+        context.dispose();
+        g.dispose();
+
+        int count = 0;
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                if ((image.getRGB(x, y) >>> 24) != 0) count++;
+            }
+        }
+        return count;
+    }
+
     /**
      * Load alignment interval. Here for other tests, so we don't need to expose
      * {@link AlignmentDataManager#loadInterval(String, int, int, AlignmentTrack.RenderOptions)}
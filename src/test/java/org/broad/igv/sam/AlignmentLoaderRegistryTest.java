@@ -0,0 +1,170 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.sam;
+
+import htsjdk.samtools.SAMRecord;
+import org.broad.igv.Globals;
+import org.broad.igv.util.ResourceLocator;
+import org.broad.igv.util.TestUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+public class AlignmentLoaderRegistryTest {
+
+    static final String PATH = TestUtils.DATA_DIR + "bam/gstt1_sample.bam";
+
+    @BeforeClass
+    public static void setUpClass() {
+        Globals.setHeadless(true);
+    }
+
+    @Test
+    public void testReferenceCounts() throws Exception {
+
+        AlignmentLoaderRegistry registry = new AlignmentLoaderRegistry();
+        ResourceLocator locator = new ResourceLocator(PATH);
+
+        AlignmentLoaderRegistry.Resource r1 = registry.acquire(locator);
+        AlignmentLoaderRegistry.Resource r2 = registry.acquire(new ResourceLocator(PATH));
+        assertSame(r1, r2);
+        assertEquals(2, registry.getReferenceCount(locator));
+
+        r1.release();
+        assertEquals(1, registry.getReferenceCount(locator));
+        r2.release();
+        assertEquals(0, registry.getReferenceCount(locator));
+
+        // A new subscriber opens a new reader
+        AlignmentLoaderRegistry.Resource r3 = registry.acquire(locator);
+        assertNotSame(r1, r3);
+        r3.release();
+    }
+
+    /**
+     * Concurrent requests for the same range, and later requests for contained ranges, decode the file once
+     */
+    @Test
+    public void testSingleFlight() throws Exception {
+
+        AlignmentLoaderRegistry registry = new AlignmentLoaderRegistry();
+        AlignmentLoaderRegistry.Resource resource = registry.acquire(new ResourceLocator(PATH));
+        String settings = "settings";
+
+        AtomicInteger decodeCount = new AtomicInteger();
+        CountDownLatch decoding = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        Supplier<AlignmentLoaderRegistry.DecodedInterval> decoder = () -> {
+            decodeCount.incrementAndGet();
+            decoding.countDown();
+            try {
+                proceed.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return decode(resource, 24300000, 24500000);
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<AlignmentLoaderRegistry.SharedInterval> first =
+                    executor.submit(() -> resource.load("chr22", 24300000, 24500000, settings, decoder));
+            assertTrue(decoding.await(10, TimeUnit.SECONDS));
+            Future<AlignmentLoaderRegistry.SharedInterval> second =
+                    executor.submit(() -> resource.load("chr22", 24350000, 24450000, settings, decoder));
+            proceed.countDown();
+
+            AlignmentLoaderRegistry.SharedInterval s1 = first.get(10, TimeUnit.SECONDS);
+            AlignmentLoaderRegistry.SharedInterval s2 = second.get(10, TimeUnit.SECONDS);
+            assertSame(s1, s2);
+            assertEquals(1, decodeCount.get());
+            assertEquals(2, s1.getReferenceCount());
+            assertTrue(s1.getTile().getAlignments().size() > 0);
+
+            // Different settings are decoded separately
+            AlignmentLoaderRegistry.SharedInterval s3 = resource.load("chr22", 24350000, 24450000, "other",
+                    () -> decode(resource, 24350000, 24450000));
+            assertNotSame(s1, s3);
+            assertEquals(2, resource.getIntervalCount());
+
+            // Memory is released with the last subscriber
+            assertFalse(s1.release());
+            assertTrue(s2.release());
+            assertTrue(s3.release());
+            assertEquals(0, resource.getIntervalCount());
+        } finally {
+            executor.shutdown();
+            resource.release();
+        }
+    }
+
+    /**
+     * Insert size thresholds computed by one subscriber must not change those of another
+     */
+    @Test
+    public void testPEStatsCopies() throws Exception {
+
+        AlignmentLoaderRegistry registry = new AlignmentLoaderRegistry();
+        AlignmentLoaderRegistry.Resource resource = registry.acquire(new ResourceLocator(PATH));
+        try {
+            PEStats shared = new PEStats("lib");
+            for (int i = 1; i <= 1000; i++) {
+                SAMRecord record = new SAMRecord(null);
+                record.setReadPairedFlag(true);
+                record.setProperPairFlag(true);
+                record.setInferredInsertSize(i);
+                shared.update(new PicardAlignment(record));
+            }
+            resource.getPEStats().put("lib", shared);
+
+            PEStats s1 = resource.copyPEStats().get("lib");
+            PEStats s2 = resource.copyPEStats().get("lib");
+            assertNotSame(s1, s2);
+            s1.computeInsertSize(10, 90);
+            s2.computeInsertSize(1, 99);
+            assertEquals(100, s1.getMinThreshold(), 1);
+            assertEquals(900, s1.getMaxThreshold(), 1);
+            assertEquals(10, s2.getMinThreshold(), 1);
+            assertEquals(990, s2.getMaxThreshold(), 1);
+        } finally {
+            resource.release();
+        }
+    }
+
+    private static AlignmentLoaderRegistry.DecodedInterval decode(AlignmentLoaderRegistry.Resource resource,
+                                                                   int start, int end) {
+        SpliceJunctionHelper helper = new SpliceJunctionHelper(new SpliceJunctionHelper.LoadOptions(1, 0));
+        ReadStats readStats = new ReadStats();
+        AlignmentTileLoader.AlignmentTile tile = resource.getLoader().loadTile("chr22", start, end, helper,
+                new AlignmentDataManager.DownsampleOptions(false, 50, 100), readStats, resource.getPEStats(), null);
+        return new AlignmentLoaderRegistry.DecodedInterval(tile, helper, readStats);
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.sam;
+
+import htsjdk.samtools.*;
+import org.broad.igv.Globals;
+import org.broad.igv.util.TestUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.reflect.Array;
+
+import static org.junit.Assert.*;
+
+public class BAMTagsTest {
+
+    @BeforeClass
+    public static void setUpClass() {
+        Globals.setHeadless(true);
+    }
+
+    /**
+     * Tag values read from the binary block match those decoded by htsjdk
+     */
+    @Test
+    public void testAttributes() throws Exception {
+        for (String file : new String[]{"bam/yc_tags.bam", "bam/gstt1_sample.bam"}) {
+            int count = compareFile(new File(TestUtils.DATA_DIR + file));
+            assertTrue(count > 0);
+        }
+    }
+
+    /**
+     * All tag value types, including arrays and unsigned values decoded by htsjdk
+     */
+    @Test
+    public void testValueTypes() throws Exception {
+
+        SAMFileHeader header = new SAMFileHeader();
+        header.setSortOrder(SAMFileHeader.SortOrder.coordinate);
+        header.addSequence(new SAMSequenceRecord("chr1", 1000000));
+        header.addReadGroup(new SAMReadGroupRecord("rg1"));
+        header.getReadGroup("rg1").setLibrary("lib1");
+        header.getReadGroup("rg1").setSample("sample1");
+
+        SAMRecord record = new SAMRecord(header);
+        record.setReadName("read1");
+        record.setReferenceName("chr1");
+        record.setAlignmentStart(1001);
+        record.setCigarString("2S5M2I3M1D4M3S");
+        record.setReadString("ACGTACGTACGTACGTACG");
+        record.setBaseQualityString("IIIIIIIIIIIIIIIIIII");
+        record.setAttribute("RG", "rg1");
+        record.setAttribute("YC", "255,0,0");
+        record.setAttribute("XA", 'x');
+        record.setAttribute("XB", -5);
+        record.setAttribute("XC", 200);
+        record.setAttribute("XD", -30000);
+        record.setAttribute("XE", 60000);
+        record.setAttribute("XF", Integer.MIN_VALUE);
+        record.setAttribute("XG", 3000000000L);
+        record.setAttribute("XH", 1.5f);
+        record.setAttribute("XI", new int[]{1, 2, 3});
+        record.setAttribute("XJ", new float[]{0.5f});
+        record.setAttribute("XK", new byte[]{1, 2});
+        record.setAttribute("XL", new short[0]);
+
+        File bam = new File(TestUtils.TMP_OUTPUT_DIR, "bamTagsTest.bam");
+        bam.deleteOnExit();
+        try (SAMFileWriter writer = new SAMFileWriterFactory().makeBAMWriter(header, true, bam)) {
+            writer.addAlignment(record);
+        }
+        assertEquals(1, compareFile(bam));
+
+        try (SamReader reader = SamReaderFactory.makeDefault().validationStringency(ValidationStringency.SILENT).open(bam)) {
+            PicardAlignment alignment = new PicardAlignment(reader.iterator().next());
+            assertEquals(255, alignment.getYcColor().getRed());
+            assertEquals("lib1", alignment.getLibrary());
+            assertEquals(3000000000L, alignment.getAttribute("XG"));
+            assertEquals(1000, alignment.getStart());
+            assertEquals(1, alignment.getInsertions().length);
+            assertEquals(1, alignment.getGaps().size());
+        }
+    }
+
+    /**
+     * Compare tags and alignment blocks of each record in {@code file}, returning the number of records
+     */
+    private int compareFile(File file) throws Exception {
+        int count = 0;
+        try (SamReader reader = SamReaderFactory.makeDefault().validationStringency(ValidationStringency.SILENT).open(file)) {
+            for (SAMRecord record : reader) {
+                PicardAlignment alignment = new PicardAlignment(record);
+                for (SAMRecord.SAMTagAndValue tag : record.getAttributes()) {
+                    assertValueEquals(tag.value, alignment.getAttribute(tag.tag));
+                }
+                for (String tag : new String[]{"YC", "BX", "HP", "Q1", "zz"}) {
+                    assertValueEquals(record.getAttribute(tag), alignment.getAttribute(tag));
+                }
+                assertEquals(record.getAlignmentStart() - 1, alignment.getStart());
+                assertEquals(record.getAlignmentEnd(), alignment.getEnd());
+                if (record.getReadUnmappedFlag()) continue;
+
+                int aligned = 0;
+                for (CigarElement element : record.getCigar()) {
+                    if (element.getOperator().isAlignment()) aligned += element.getLength();
+                }
+                int blockBases = 0;
+                for (AlignmentBlock block : alignment.getAlignmentBlocks()) {
+                    blockBases += block.getLength();
+                }
+                assertEquals(aligned, blockBases);
+                assertEquals(alignment.getStart(), alignment.getAlignmentBlocks()[0].getStart());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void assertValueEquals(Object expected, Object value) {
+        if (expected != null && expected.getClass().isArray()) {
+            assertEquals(expected.getClass(), value.getClass());
+            assertEquals(Array.getLength(expected), Array.getLength(value));
+            for (int i = 0; i < Array.getLength(expected); i++) {
+                assertEquals(Array.get(expected, i), Array.get(value, i));
+            }
+        } else {
+            assertEquals(expected, value);
+        }
+    }
+}
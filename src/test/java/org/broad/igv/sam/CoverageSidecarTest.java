@@ -0,0 +1,117 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.sam;
+
+import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.feature.genome.load.ChromsizesLoader;
+import org.broad.igv.tdf.TDFDataSource;
+import org.broad.igv.tdf.TDFReader;
+import org.broad.igv.tdf.TDFTile;
+import org.broad.igv.tools.CoverageCounter;
+import org.broad.igv.tools.parsers.DataConsumer;
+import org.broad.igv.track.TrackType;
+import org.broad.igv.util.TestUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class CoverageSidecarTest {
+
+    @Test
+    public void testCompute() throws Exception {
+
+        Genome genome = new ChromsizesLoader(TestUtils.DATA_DIR + "genomes/hg19.chrom.sizes").loadGenome();
+        File bamFile = new File(TestUtils.DATA_DIR + "bam/gstt1_sample.bam");
+        File sidecarFile = new File(TestUtils.TMP_OUTPUT_DIR, "coverageSidecarTest.bam.tdf");
+        sidecarFile.deleteOnExit();
+
+        CoverageSidecar.compute(bamFile, sidecarFile, genome);
+        assertTrue(CoverageSidecar.isCurrent(bamFile, sidecarFile, genome.getId()));
+        assertFalse(CoverageSidecar.isCurrent(bamFile, sidecarFile, "otherGenome"));
+
+        // Expected window means, counted directly
+        final Map<Integer, Float> expected = new HashMap<>();
+        CoverageCounter counter = new CoverageCounter(bamFile.getAbsolutePath(), new WindowCollector(expected),
+                CoverageSidecar.WINDOW_SIZE, 0, null, genome, null, 0, 0);
+        counter.parse();
+        assertFalse(expected.isEmpty());
+
+        // The finest level holds the window means
+        TDFReader reader = TDFReader.getReader(sidecarFile.getAbsolutePath());
+        int start = Collections.min(expected.keySet());
+        int end = Collections.max(expected.keySet()) + CoverageSidecar.WINDOW_SIZE;
+        int count = 0;
+        for (TDFTile tile : reader.getDataset("/chr22/raw").getTiles(start, end)) {
+            for (int i = 0; i < tile.getSize(); i++) {
+                assertEquals(expected.get(tile.getStartPosition(i)), tile.getValue(0, i), 1.0e-4);
+                count++;
+            }
+        }
+        assertEquals(expected.size(), count);
+
+        // Summaries at zoomed out levels
+        TDFDataSource ds = new TDFDataSource(reader, 0, "test", genome);
+        assertFalse(ds.getSummaryScoresForRange("chr22", 0, Integer.MAX_VALUE, 0).isEmpty());
+    }
+
+    private static class WindowCollector implements DataConsumer {
+
+        final Map<Integer, Float> values;
+
+        WindowCollector(Map<Integer, Float> values) {
+            this.values = values;
+        }
+
+        public void addData(String chr, int start, int end, float[] data, String name) {
+            if (data[0] != 0) {
+                values.put(start, data[0]);
+            }
+        }
+
+        public void setType(String type) {
+        }
+
+        public void parsingComplete() {
+        }
+
+        public void setTrackParameters(TrackType trackType, String trackLine, String[] trackNames) {
+        }
+
+        public void setTrackParameters(TrackType trackType, String trackLine, String[] trackNames, boolean b) {
+        }
+
+        public void setSortTolerance(int tolerance) {
+        }
+
+        public void setAttribute(String key, String value) {
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.sam;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class InsertionIndexTest {
+
+    @After
+    public void tearDown() {
+        InsertionManager.getInstance().clear();
+    }
+
+    @Test
+    public void testCollapse() {
+
+        // Enough records at few positions to force compaction of the key buffer while loading
+        InsertionIndex index = new InsertionIndex(0);
+        for (int i = 0; i < 10000; i++) {
+            index.add(1000 + (i % 10) * 100, 1 + (i % 7));
+        }
+        index.add(50, 3);
+        index.finish();
+
+        assertEquals(11, index.size());
+        assertEquals(50, index.getPosition(0));
+        assertEquals(3, index.getSize(0));
+        for (int i = 1; i < index.size(); i++) {
+            assertEquals(1000 + (i - 1) * 100, index.getPosition(i));
+            assertEquals(7, index.getSize(i));
+        }
+
+        assertEquals(0, index.firstIndexAtOrAfter(0));
+        assertEquals(1, index.firstIndexAtOrAfter(51));
+        assertEquals(1, index.firstIndexAtOrAfter(1000));
+        assertEquals(11, index.firstIndexAtOrAfter(2000));
+        assertEquals(7, index.getSizeAt(1100));
+        assertEquals(-1, index.getSizeAt(1101));
+    }
+
+    @Test
+    public void testRegisterAndEvict() {
+
+        InsertionManager manager = InsertionManager.getInstance();
+
+        InsertionIndex index1 = new InsertionIndex(0);
+        index1.add(100, 2);
+        index1.add(200, 5);
+        index1.finish();
+        AlignmentInterval interval1 = new AlignmentInterval("chr1", 0, 1000, null, null, null, null, index1);
+
+        InsertionIndex index2 = new InsertionIndex(0);
+        index2.add(200, 8);
+        index2.add(300, 1);
+        index2.finish();
+        AlignmentInterval interval2 = new AlignmentInterval("chr1", 150, 1500, null, null, null, null, index2);
+
+        manager.register(interval1);
+        manager.register(interval2);
+
+        List<InsertionMarker> markers = manager.getInsertions("chr1", 150, 1000);
+        assertEquals(2, markers.size());
+        assertEquals(200, markers.get(0).position);
+        assertEquals(8, markers.get(0).size);
+        assertEquals(300, markers.get(1).position);
+        assertNull(manager.getInsertions("chr2", 0, 1000));
+
+        manager.setSelected("chr1", 100);
+        InsertionMarker selected = manager.getSelectedInsertion("chr1");
+        assertEquals(2, selected.size);
+        assertSame(selected, manager.getInsertions("chr1", 0, 150).get(0));
+
+        manager.unregister(interval1);
+        assertNull(manager.getSelectedInsertion("chr1"));
+        markers = manager.getInsertions("chr1", 0, 1000);
+        assertEquals(2, markers.size());
+        assertEquals(8, markers.get(0).size);
+
+        manager.unregister(interval2);
+        assertNull(manager.getInsertions("chr1", 0, 1000));
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.sam;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RowTest {
+
+    /**
+     * A packed row of 100 bp alignments separated by 5 bp, with an occasional long (e.g. spliced) alignment
+     */
+    private static Row createRow(int n) {
+        Row row = new Row();
+        int start = 0;
+        for (int i = 0; i < n; i++) {
+            int length = i % 50 == 0 ? 1000 : 100;
+            row.addAlignment(new DotAlignedAlignment("chr1", start, start + length, false));
+            start += length + 5;
+        }
+        return row;
+    }
+
+    @Test
+    public void testAlignmentsOverlapping() {
+
+        Row row = createRow(1000);
+        for (int start = -500; start < 120000; start += 777) {
+            int end = start + 300;
+            List<Alignment> visible = row.getAlignmentsOverlapping(start, end);
+            int expected = 0;
+            for (Alignment a : row.alignments) {
+                boolean overlaps = a.getEnd() >= start && a.getStart() <= end;
+                if (overlaps) {
+                    expected++;
+                    assertTrue(visible.contains(a));
+                }
+            }
+            // The slice is contiguous in row order, and bounded by the first and last overlapping alignments
+            assertEquals(expected, visible.size());
+        }
+    }
+
+    @Test
+    public void testAlignmentAt() {
+        Row row = createRow(10);
+        Alignment a = row.getAlignmentAt(1050);
+        assertEquals(1005, a.getStart());
+        assertNull(row.getAlignmentAt(1003));
+
+        // Adding an alignment invalidates the index
+        row.addAlignment(new DotAlignedAlignment("chr1", 100000, 100100, false));
+        assertNotNull(row.getAlignmentAt(100050));
+    }
+
+    /**
+     * Repaint cost is dominated by visiting alignments, compare a full scan of the row with the visible slice as the
+     * loaded interval grows, for a fixed 1 kb window.
+     */
+    @Ignore
+    @Test
+    public void testSpeed() {
+        int nTrials = 10000;
+        for (int n : new int[]{1000, 10000, 100000}) {
+            Row row = createRow(n);
+            int center = n * 52;
+
+            long count = 0;
+            long t0 = System.nanoTime();
+            for (int t = 0; t < nTrials; t++) {
+                for (Alignment a : row.alignments) {
+                    if (a.getEnd() >= center && a.getStart() <= center + 1000) count++;
+                }
+            }
+            long t1 = System.nanoTime();
+            for (int t = 0; t < nTrials; t++) {
+                for (Alignment a : row.getAlignmentsOverlapping(center, center + 1000)) {
+                    if (a.getEnd() >= center && a.getStart() <= center + 1000) count--;
+                }
+            }
+            long t2 = System.nanoTime();
+            assertEquals(0, count);
+            assertTrue((t2 - t1) < (t1 - t0));
+        }
+    }
+}
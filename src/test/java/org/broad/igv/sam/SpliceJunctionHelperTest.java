@@ -0,0 +1,185 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.sam;
+
+import htsjdk.samtools.util.CloseableIterator;
+import org.broad.igv.Globals;
+import org.broad.igv.feature.SpliceJunctionFeature;
+import org.broad.igv.feature.Strand;
+import org.broad.igv.sam.reader.AlignmentReader;
+import org.broad.igv.sam.reader.AlignmentReaderFactory;
+import org.broad.igv.util.ResourceLocator;
+import org.broad.igv.util.TestUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class SpliceJunctionHelperTest {
+
+    static final String PATH = TestUtils.DATA_DIR + "sam/test_2.sam";
+
+    @BeforeClass
+    public static void setUpClass() {
+        Globals.setHeadless(true);
+    }
+
+    /**
+     * Compare junctions with those built by adding each read to a feature, as done before junctions were counted
+     * in primitive tables
+     */
+    @Test
+    public void testJunctions() throws Exception {
+
+        List<Alignment> alignments = loadAlignments();
+        SpliceJunctionHelper helper = new SpliceJunctionHelper(new SpliceJunctionHelper.LoadOptions(1, 0));
+        for (Alignment a : alignments) {
+            helper.addAlignment(a);
+        }
+        helper.finish();
+
+        Map<String, SpliceJunctionFeature> expectedPos = new HashMap<>();
+        Map<String, SpliceJunctionFeature> expectedNeg = new HashMap<>();
+        for (Alignment a : alignments) {
+            AlignmentBlock[] blocks = a.getAlignmentBlocks();
+            if (blocks == null || blocks.length < 2 || a.getGaps() == null) continue;
+            Object xs = a.getAttribute("XS");
+            boolean neg = xs != null ? xs.toString().charAt(0) == '-' :
+                    (a.isPaired() ? a.getFirstOfPairStrand() == Strand.NEGATIVE : a.isNegativeStrand());
+            for (Gap gap : a.getGaps()) {
+                if (!(gap instanceof SpliceGap)) continue;
+                SpliceGap sg = (SpliceGap) gap;
+                int js = sg.getStart();
+                int je = js + sg.getnBases();
+                Map<String, SpliceJunctionFeature> map = neg ? expectedNeg : expectedPos;
+                SpliceJunctionFeature f = map.computeIfAbsent(js + "-" + je,
+                        k -> new SpliceJunctionFeature(a.getChr(), js, je, neg ? Strand.NEGATIVE : Strand.POSITIVE));
+                f.addRead(js - sg.getFlankingLeft(), je + sg.getFlankingRight());
+            }
+        }
+        assertTrue(expectedPos.size() + expectedNeg.size() > 0);
+
+        assertSameJunctions(expectedPos, helper.getFilteredJunctions(SpliceJunctionTrack.StrandOption.FORWARD));
+        assertSameJunctions(expectedNeg, helper.getFilteredJunctions(SpliceJunctionTrack.StrandOption.REVERSE));
+        assertEquals(expectedPos.size() + expectedNeg.size(),
+                helper.getFilteredJunctions(SpliceJunctionTrack.StrandOption.BOTH).size());
+
+        Set<String> keys = new HashSet<>(expectedPos.keySet());
+        keys.addAll(expectedNeg.keySet());
+        List<SpliceJunctionFeature> combined = helper.getFilteredJunctions(SpliceJunctionTrack.StrandOption.COMBINE);
+        assertEquals(keys.size(), combined.size());
+        for (SpliceJunctionFeature f : combined) {
+            String key = f.getJunctionStart() + "-" + f.getJunctionEnd();
+            int depth = (expectedPos.containsKey(key) ? expectedPos.get(key).getJunctionDepth() : 0) +
+                    (expectedNeg.containsKey(key) ? expectedNeg.get(key).getJunctionDepth() : 0);
+            assertEquals(depth, f.getJunctionDepth());
+        }
+
+        // Coverage filter
+        int maxDepth = 0;
+        for (SpliceJunctionFeature f : combined) maxDepth = Math.max(maxDepth, f.getJunctionDepth());
+        helper.setLoadOptions(new SpliceJunctionHelper.LoadOptions(maxDepth, 0));
+        List<SpliceJunctionFeature> filtered = helper.getFilteredJunctions(SpliceJunctionTrack.StrandOption.COMBINE);
+        assertTrue(filtered.size() > 0 && filtered.size() <= combined.size());
+        for (SpliceJunctionFeature f : filtered) assertEquals(maxDepth, f.getJunctionDepth());
+    }
+
+    @Test
+    public void testCache() throws Exception {
+
+        SpliceJunctionHelper.LoadOptions loadOptions = new SpliceJunctionHelper.LoadOptions(1, 0);
+        SpliceJunctionHelper helper = new SpliceJunctionHelper(loadOptions);
+        List<Alignment> alignments = loadAlignments();
+        for (Alignment a : alignments) {
+            helper.addAlignment(a);
+        }
+        helper.finish();
+        String chr = alignments.get(0).getChr();
+        int start = alignments.get(0).getStart();
+        int end = alignments.get(alignments.size() - 1).getEnd();
+
+        File alignmentFile = new File(PATH);
+        File cacheFile = new File(TestUtils.TMP_OUTPUT_DIR, "spliceJunctionHelperTest.junctions");
+        cacheFile.deleteOnExit();
+        SpliceJunctionCache.save(alignmentFile, cacheFile, "settings", chr, start, end, helper);
+
+        assertNull(SpliceJunctionCache.load(alignmentFile, cacheFile, "other", chr, start, end, loadOptions));
+        assertNull(SpliceJunctionCache.load(alignmentFile, cacheFile, "settings", chr, start - 1, end, loadOptions));
+
+        SpliceJunctionHelper cached = SpliceJunctionCache.load(alignmentFile, cacheFile, "settings", chr, start, end, loadOptions);
+        for (SpliceJunctionTrack.StrandOption option : SpliceJunctionTrack.StrandOption.values()) {
+            List<SpliceJunctionFeature> expected = helper.getFilteredJunctions(option);
+            List<SpliceJunctionFeature> actual = cached.getFilteredJunctions(option);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertSameJunction(expected.get(i), actual.get(i));
+            }
+        }
+
+        // A contained interval returns the junctions overlapping it
+        int mid = (start + end) / 2;
+        SpliceJunctionHelper subset = SpliceJunctionCache.load(alignmentFile, cacheFile, "settings", chr, mid, mid + 1000, loadOptions);
+        int expectedCount = 0;
+        for (SpliceJunctionFeature f : helper.getFilteredJunctions(SpliceJunctionTrack.StrandOption.BOTH)) {
+            if (f.getStart() < mid + 1000 && f.getEnd() > mid) expectedCount++;
+        }
+        assertEquals(expectedCount, subset.getFilteredJunctions(SpliceJunctionTrack.StrandOption.BOTH).size());
+    }
+
+    private static List<Alignment> loadAlignments() throws Exception {
+        AlignmentReader reader = AlignmentReaderFactory.getReader(new ResourceLocator(PATH));
+        List<Alignment> alignments = new ArrayList<>();
+        try (CloseableIterator<Alignment> iter = reader.iterator()) {
+            while (iter.hasNext()) {
+                Alignment a = iter.next();
+                if (a.isMapped()) alignments.add(a);
+            }
+        }
+        reader.close();
+        return alignments;
+    }
+
+    private static void assertSameJunctions(Map<String, SpliceJunctionFeature> expected, List<SpliceJunctionFeature> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (SpliceJunctionFeature f : actual) {
+            assertSameJunction(expected.get(f.getJunctionStart() + "-" + f.getJunctionEnd()), f);
+        }
+    }
+
+    private static void assertSameJunction(SpliceJunctionFeature expected, SpliceJunctionFeature actual) {
+        assertEquals(expected.getJunctionStart(), actual.getJunctionStart());
+        assertEquals(expected.getJunctionEnd(), actual.getJunctionEnd());
+        assertEquals(expected.getStart(), actual.getStart());
+        assertEquals(expected.getEnd(), actual.getEnd());
+        assertEquals(expected.getStrand(), actual.getStrand());
+        assertEquals(expected.getJunctionDepth(), actual.getJunctionDepth());
+        assertArrayEquals(expected.getStartFlankingRegionDepthArray(), actual.getStartFlankingRegionDepthArray());
+        assertArrayEquals(expected.getEndFlankingRegionDepthArray(), actual.getEndFlankingRegionDepthArray());
+    }
+}
@@ -44,7 +44,9 @@ import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertTrue;
@@ -99,6 +101,44 @@ public class CRAMReaderTest {
     }
 
 
+    /**
+     * Alignments decoded with only the reference spans named by the .crai must match those decoded with the whole
+     * chromosome
+     */
+    @Test
+    public void testQueryReferenceSpans() throws Exception {
+
+        String cramFile = TestUtils.DATA_DIR + "cram/cram_with_crai_index.cram";
+        GenomeManager.getInstance().loadGenome(TestUtils.DATA_DIR + "cram/hg19mini.fasta", null);
+
+        CRAMSliceIndex sliceIndex = CRAMSliceIndex.load(cramFile + ".crai");
+        int[][] spans = sliceIndex.getReferenceSpans(1, 500, 600);
+        assertTrue(spans.length > 0);
+        for (int[] span : spans) {
+            assertTrue(span[0] < span[1]);
+        }
+        assertEquals(0, sliceIndex.getReferenceSpans(99, 500, 600).length);
+
+        BAMReader reader = new BAMReader(new ResourceLocator(cramFile), true);
+        Map<String, String> expected = new HashMap<>();
+        CloseableIterator<PicardAlignment> iter = reader.iterator();
+        while (iter.hasNext()) {
+            PicardAlignment a = iter.next();
+            if ("2".equals(a.getChr())) {
+                expected.put(a.getReadName(), a.getReadSequence());
+            }
+        }
+
+        iter = reader.query("2", 500, 600, false);
+        int counter = 0;
+        while (iter.hasNext()) {
+            PicardAlignment a = iter.next();
+            assertEquals(expected.get(a.getReadName()), a.getReadSequence());
+            counter++;
+        }
+        assertEquals(2, counter);
+    }
+
     @Test
     public void testQueryLocalBaiCram() throws Exception {
 
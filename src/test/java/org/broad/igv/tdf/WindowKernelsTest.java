@@ -0,0 +1,176 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.tdf;
+
+import com.google.common.base.Function;
+import com.google.common.base.Supplier;
+import org.apache.commons.math3.stat.StatUtils;
+import org.broad.igv.track.WindowFunction;
+import org.broad.igv.util.TestUtils;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class WindowKernelsTest {
+
+    private static final double[] PERCENTILES = {2, 10, 50, 90, 98};
+
+    /**
+     * Percentiles must match the commons-math estimate, including small ranges, ties, and offset ranges
+     */
+    @Test
+    public void testPercentiles() {
+        Random random = new Random(11);
+        for (int n : new int[]{1, 2, 3, 5, 17, 100, 1001, 20000}) {
+            for (boolean ties : new boolean[]{false, true}) {
+                float[] data = new float[n + 10];
+                for (int i = 0; i < data.length; i++) {
+                    data[i] = ties ? random.nextInt(4) : (float) random.nextGaussian();
+                }
+                double[] expectedValues = new double[n];
+                for (int i = 0; i < n; i++) {
+                    expectedValues[i] = data[5 + i];
+                }
+
+                for (double p : PERCENTILES) {
+                    float[] copy = Arrays.copyOf(data, data.length);
+                    float expected = (float) StatUtils.percentile(expectedValues, p);
+                    assertEquals("n=" + n + " p=" + p, expected, WindowKernels.percentile(copy, 5, 5 + n, p), 0);
+                    // Values outside the range are untouched
+                    assertEquals(data[0], copy[0], 0);
+                    assertEquals(data[data.length - 1], copy[data.length - 1], 0);
+                }
+
+                float[] copy = Arrays.copyOf(data, data.length);
+                float[] result = new float[PERCENTILES.length];
+                WindowKernels.percentiles(copy, 5, 5 + n, PERCENTILES, result);
+                for (int i = 0; i < PERCENTILES.length; i++) {
+                    assertEquals((float) StatUtils.percentile(expectedValues, PERCENTILES[i]), result[i], 0);
+                }
+            }
+        }
+        assertTrue(Float.isNaN(WindowKernels.percentile(new float[0], 0, 0, 50)));
+    }
+
+    /**
+     * All values equal, which is quadratic for a naive quickselect
+     */
+    @Test
+    public void testConstant() {
+        float[] data = new float[1000000];
+        assertEquals(0, WindowKernels.percentile(data, 0, data.length, 50), 0);
+    }
+
+    @Test
+    public void testStreaming() {
+        float[] data = {Float.NaN, 3, -1, Float.NaN, 7, 2};
+        int[] weights = {5, 1, 1, 5, 2, 1};
+        assertEquals(-1, WindowKernels.min(data, 0, data.length), 0);
+        assertEquals(7, WindowKernels.max(data, 0, data.length), 0);
+        assertEquals(4, WindowKernels.count(data, 0, data.length));
+        assertEquals(11.0f / 4, WindowKernels.mean(data, 0, data.length), 1.0e-6);
+        assertEquals(18.0f / 5, WindowKernels.weightedMean(data, weights, 0, data.length), 1.0e-6);
+        assertEquals(3, WindowKernels.max(data, 0, 3), 0);
+
+        float[] nan = {Float.NaN, Float.NaN};
+        assertTrue(Float.isNaN(WindowKernels.min(nan, 0, 2)));
+        assertTrue(Float.isNaN(WindowKernels.max(nan, 0, 2)));
+        assertTrue(Float.isNaN(WindowKernels.mean(nan, 0, 2)));
+    }
+
+    @Test
+    public void testAccumulator() {
+        Random random = new Random(3);
+        double[] values = new double[5000];
+        for (int i = 0; i < values.length; i++) values[i] = random.nextDouble();
+
+        for (WindowFunction wf : new WindowFunction[]{WindowFunction.median, WindowFunction.percentile10,
+                WindowFunction.percentile98, WindowFunction.min, WindowFunction.max, WindowFunction.mean}) {
+            Accumulator accumulator = new Accumulator(wf, 5);
+            for (double v : values) accumulator.add(1, (float) v, null);
+            accumulator.add(1, Float.NaN, null);
+            double expected;
+            switch (wf) {
+                case min:
+                    expected = StatUtils.min(values);
+                    break;
+                case max:
+                    expected = StatUtils.max(values);
+                    break;
+                case mean:
+                    expected = StatUtils.mean(values);
+                    break;
+                default:
+                    float[] floats = new float[values.length];
+                    double[] rounded = new double[values.length];
+                    for (int i = 0; i < values.length; i++) rounded[i] = floats[i] = (float) values[i];
+                    expected = StatUtils.percentile(rounded, WindowKernels.getPercentile(wf));
+            }
+            assertEquals(wf.getValue(), expected, accumulator.getValue(), 1.0e-5);
+            assertEquals(values.length, accumulator.getNpts());
+        }
+    }
+
+    /**
+     * Compare the kernel percentile to sorting based commons-math percentiles on summary tile sized bins
+     */
+    @Ignore
+    @Test
+    public void comparePercentileSpeed() {
+        final Random random = new Random(7);
+        final int binSize = 2000;
+        Supplier<float[]> supplier = new Supplier<float[]>() {
+            public float[] get() {
+                float[] data = new float[binSize];
+                for (int i = 0; i < binSize; i++) data[i] = (float) random.nextGaussian();
+                return data;
+            }
+        };
+
+        long[] mathTimes = TestUtils.timeMethod(supplier, new Function<float[], Void>() {
+            public Void apply(float[] input) {
+                double[] values = new double[input.length];
+                for (int i = 0; i < input.length; i++) values[i] = input[i];
+                for (double p : PERCENTILES) StatUtils.percentile(values, p);
+                return null;
+            }
+        }, 5000);
+
+        final float[] result = new float[PERCENTILES.length];
+        long[] kernelTimes = TestUtils.timeMethod(supplier, new Function<float[], Void>() {
+            public Void apply(float[] input) {
+                WindowKernels.percentiles(input, 0, input.length, PERCENTILES, result);
+                return null;
+            }
+        }, 5000);
+
+        assertTrue(kernelTimes[kernelTimes.length / 2] < mathTimes[mathTimes.length / 2]);
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.track;
+
+import org.broad.igv.util.FilterElement;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class AttributeTableTest {
+
+    @After
+    public void tearDown() {
+        AttributeManager.getInstance().clearAllAttributes();
+    }
+
+    @Test
+    public void testColumns() {
+
+        AttributeTable table = new AttributeTable();
+        for (int i = 0; i < 100; i++) {
+            String sample = "S" + i;
+            table.set(sample, "AGE", String.valueOf(20 + i % 50));
+            table.set(sample, "GENDER", i % 2 == 0 ? "male" : "female");
+            if (i % 10 != 0) {
+                table.set(sample, "SUBTYPE", "T" + (i % 3));
+            }
+        }
+
+        assertEquals(100, table.getRowCount());
+        assertEquals("female", table.get("S3", "GENDER"));
+        assertNull(table.get("S10", "SUBTYPE"));
+        assertNull(table.get("noSuchSample", "GENDER"));
+
+        AttributeTable.Column age = table.getColumn("AGE");
+        assertEquals(AttributeTable.Type.NUMERIC, age.getType());
+        assertEquals(50, age.getValueCount());
+        assertEquals(25.0, age.getNumericValue(age.getCode(table.getRow("S5"))), 0);
+
+        AttributeTable.Column gender = table.getColumn("GENDER");
+        assertEquals(AttributeTable.Type.CATEGORICAL, gender.getType());
+        BitSet males = gender.getRows(gender.getCode("male"));
+        assertEquals(50, males.cardinality());
+        assertTrue(males.get(table.getRow("S4")));
+
+        // Missing values have code 0
+        AttributeTable.Column subtype = table.getColumn("SUBTYPE");
+        assertEquals(10, subtype.getRows(0).cardinality());
+
+        table.remove("S4", "GENDER");
+        assertNull(table.get("S4", "GENDER"));
+        assertEquals(49, gender.getRows(gender.getCode("male")).cardinality());
+    }
+
+    /**
+     * Column evaluation of a filter should select the same rows as testing each value
+     */
+    @Test
+    public void testFilter() {
+
+        Random random = new Random(1);
+        String[] values = new String[2000];
+        for (int i = 0; i < values.length; i++) {
+            int r = random.nextInt(12);
+            values[i] = r == 0 ? null : (r < 6 ? String.valueOf(r * 1.5) : "Type" + r);
+        }
+        AttributeTable.Column column = AttributeTable.Column.of("X", values);
+
+        FilterElement.Operator[] operators = FilterElement.Operator.values();
+        for (FilterElement.Operator op : operators) {
+            for (String expected : new String[]{"3", "type7", "", "TYP"}) {
+                FilterElement first = new TestElement(op, expected, FilterElement.BooleanOperator.AND);
+                FilterElement second = new TestElement(FilterElement.Operator.NOT_EQUAL, "type9", FilterElement.BooleanOperator.OR);
+
+                BitSet bits = second.test(column, first.test(column, null));
+                for (int i = 0; i < values.length; i++) {
+                    boolean expectedResult = second.test(values[i], first.test(values[i], null));
+                    assertEquals(op + " " + expected + " " + values[i], expectedResult, bits.get(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSort() {
+
+        AttributeManager manager = AttributeManager.getInstance();
+        Random random = new Random(2);
+        List<String> samples = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            String sample = "sample" + i;
+            samples.add(sample);
+            manager.addAttribute(sample, "SORT_SCORE", i % 7 == 0 ? "NA" : String.valueOf(random.nextInt(40) - 20));
+            manager.addAttribute(sample, "SORT_GROUP", "G" + random.nextInt(5));
+        }
+        assertTrue(manager.isNumeric("SORT_SCORE"));
+
+        String[] attributes = {"SORT_GROUP", "SORT_SCORE"};
+        boolean[] ascending = {true, false};
+        AttributeComparator.SampleAttributeComparator comparator =
+                new AttributeComparator.SampleAttributeComparator(attributes, ascending);
+
+        List<String> expected = new ArrayList<>(samples);
+        Collections.sort(expected, comparator);
+        List<String> sorted = new ArrayList<>(samples);
+        comparator.sort(sorted);
+        assertEquals(expected, sorted);
+    }
+
+    static class TestElement extends FilterElement {
+
+        TestElement(Operator op, String value, BooleanOperator booleanOperator) {
+            super(null, "X", op, value, booleanOperator);
+        }
+
+        @Override
+        public boolean evaluate(Track track, Boolean previousResult) {
+            return false;
+        }
+    }
+}
@@ -61,6 +61,36 @@ public class PackedFeaturesTest extends AbstractHeadlessTest {
 
     }
 
+    /**
+     * A view restricted to a sub-interval should keep the parent's row assignments, dropping empty rows.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testIntervalView() throws Exception {
+
+        TestFeature a = new TestFeature("chr1", 0, 100);
+        TestFeature b = new TestFeature("chr1", 50, 150);
+        TestFeature c = new TestFeature("chr1", 500, 600);
+        TestFeature d = new TestFeature("chr1", 520, 620);
+        List<TestFeature> features = Arrays.asList(a, b, c, d);
+
+        PackedFeatures<TestFeature> parent = new PackedFeatures("chr1", 0, 1000, features.iterator(), "");
+        assertEquals(2, parent.getRowCount());
+
+        PackedFeatures<TestFeature> left = new PackedFeatures(parent, 0, 200);
+        assertEquals(2, left.getFeatures().size());
+        assertEquals(2, left.getRowCount());
+        assertEquals(a, left.getRows().get(0).getFeatures().get(0));
+        assertEquals(b, left.getRows().get(1).getFeatures().get(0));
+
+        PackedFeatures<TestFeature> right = new PackedFeatures(parent, 610, 1000);
+        assertEquals(1, right.getFeatures().size());
+        assertEquals(1, right.getRowCount());
+        assertEquals(d, right.getRows().get(0).getFeatures().get(0));
+        assertTrue(right.containsInterval("chr1", 700, 800));
+    }
+
     static class TestFeature implements Feature {
         String chr;
         int start;
@@ -0,0 +1,318 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.util;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.log4j.Logger;
+import org.broad.igv.Globals;
+import org.broad.igv.prefs.Constants;
+import org.broad.igv.prefs.PreferencesManager;
+import org.broad.igv.util.stream.IGVSeekableHTTPStream;
+import org.junit.*;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests and a simple benchmark of {@link HttpTransport} against a local server
+ */
+public class HttpTransportTest {
+
+    private static Logger log = Logger.getLogger(HttpTransportTest.class);
+
+    private static final int SIZE = 1 << 20;
+
+    private HttpServer server;
+    private byte[] content;
+    private URL url;
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+    private volatile int delay = 0;
+    private boolean enabled;
+
+    @BeforeClass
+    public static void setUpClass() {
+        Globals.setHeadless(true);
+        // Avoid delayed-ack stalls in the JDK server, which would dominate the timings
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        // The transport is off by default
+        enabled = PreferencesManager.getPreferences().getAsBoolean(Constants.HTTP_CLIENT_ENABLE);
+        PreferencesManager.getPreferences().put(Constants.HTTP_CLIENT_ENABLE, true);
+
+        content = new byte[SIZE];
+        new Random(7).nextBytes(content);
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/data.bin", this::handle);
+        server.createContext("/norange.bin", this::handleIgnoringRange);
+        server.start();
+        url = new URL("http://localhost:" + server.getAddress().getPort() + "/data.bin");
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        PreferencesManager.getPreferences().put(Constants.HTTP_CLIENT_ENABLE, enabled);
+    }
+
+    /**
+     * Serves {@code content} with range support.  Fails the first {@code failures} requests with a 503.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        int n = active.incrementAndGet();
+        maxActive.accumulateAndGet(n, Math::max);
+        try {
+            if (delay > 0) Thread.sleep(delay);
+            if (failures.getAndDecrement() > 0) {
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            int start = 0;
+            int end = SIZE - 1;
+            int code = 200;
+            if (range != null) {
+                String[] tokens = range.substring("bytes=".length()).split("-");
+                start = Integer.parseInt(tokens[0]);
+                end = Math.min(SIZE - 1, Integer.parseInt(tokens[1]));
+                if (start >= SIZE) {
+                    exchange.sendResponseHeaders(416, -1);
+                    return;
+                }
+                code = 206;
+                exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + SIZE);
+            }
+            exchange.sendResponseHeaders(code, end - start + 1);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(content, start, end - start + 1);
+            }
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        } finally {
+            active.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    @Test
+    public void testGetRange() throws Exception {
+        HttpTransport transport = HttpTransport.getInstance();
+        assertTrue(transport.isSupported(url));
+
+        HttpTransport.HostMetrics metrics = transport.getMetrics(url.getHost());
+        long requests = metrics.getRequestCount();
+        long bytes = metrics.getBytes();
+
+        assertArrayEquals(Arrays.copyOfRange(content, 1000, 2001), transport.getRange(url, 1000, 2000));
+
+        // Range extending past the end of the resource
+        assertArrayEquals(Arrays.copyOfRange(content, SIZE - 10, SIZE), transport.getRange(url, SIZE - 10, SIZE + 100));
+
+        assertEquals(requests + 2, metrics.getRequestCount());
+        assertEquals(bytes + 1011, metrics.getBytes());
+
+        try {
+            transport.getRange(url, SIZE + 10, SIZE + 20);
+            fail("Expected UnsatisfiableRangeException");
+        } catch (HttpUtils.UnsatisfiableRangeException e) {
+            // expected
+        }
+
+        try {
+            transport.getRange(new URL(url, "/missing.bin"), 0, 10);
+            fail("Expected FileNotFoundException");
+        } catch (FileNotFoundException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Serves all of {@code content}, ignoring any range header
+     */
+    private void handleIgnoringRange(HttpExchange exchange) throws IOException {
+        exchange.sendResponseHeaders(200, SIZE);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(content);
+        } catch (IOException e) {
+            // Expected, the client closes the stream once it has read the requested range
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * A server ignoring the range returns the whole resource.  Only the requested range is read from the response,
+     * and the host is left to HttpUtils.
+     */
+    @Test
+    public void testRangeIgnored() throws Exception {
+        HttpTransport transport = HttpTransport.getInstance();
+        URL noRangeURL = new URL(url, "/norange.bin");
+        try {
+            HttpTransport.HostMetrics metrics = transport.getMetrics(url.getHost());
+            long bytes = metrics.getBytes();
+            assertArrayEquals(Arrays.copyOfRange(content, 1000, 2001), transport.getRange(noRangeURL, 1000, 2000));
+            assertEquals(bytes + 1001, metrics.getBytes());
+            assertFalse(transport.isSupported(url));
+        } finally {
+            // Discard the transport, which has marked the host as ignoring ranges
+            HttpTransport.shutdownInstance();
+        }
+    }
+
+    @Test
+    public void testRetry() throws Exception {
+        HttpTransport transport = HttpTransport.getInstance();
+        HttpTransport.HostMetrics metrics = transport.getMetrics(url.getHost());
+        long retries = metrics.getRetryCount();
+        failures.set(1);
+        assertArrayEquals(Arrays.copyOfRange(content, 0, 100), transport.getRange(url, 0, 99));
+        assertEquals(retries + 1, metrics.getRetryCount());
+    }
+
+    @Test
+    public void testHostLimit() throws Exception {
+        HttpTransport transport = HttpTransport.getInstance();
+        URL limitedURL = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/data.bin");
+        transport.setHostLimit(2);
+        delay = 20;
+        try {
+            List<CompletableFuture<byte[]>> futures = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                futures.add(transport.getRangeAsync(limitedURL, i * 100, i * 100 + 99));
+            }
+            for (int i = 0; i < 10; i++) {
+                assertArrayEquals(Arrays.copyOfRange(content, i * 100, i * 100 + 100), futures.get(i).get());
+            }
+            assertTrue(maxActive.get() <= 2);
+        } finally {
+            transport.setHostLimit(6);
+            delay = 0;
+        }
+    }
+
+    /**
+     * Compare random range reads through the transport to reads through HttpURLConnection.  The server adds a few
+     * milliseconds of latency to each response to stand in for a remote host.  Timings are logged.
+     */
+    @Ignore("Benchmark, timings vary by machine")
+    @Test
+    public void testBenchmark() throws Exception {
+
+        int n = 200;
+        int length = 16384;
+        Random random = new Random(11);
+        long[] starts = new long[n];
+        for (int i = 0; i < n; i++) {
+            starts[i] = random.nextInt(SIZE - length);
+        }
+
+        HttpTransport transport = HttpTransport.getInstance();
+        for (int i = 0; i < 2; i++) {
+            for (long start : starts) {
+                transport.getRange(url, start, start + length - 1);
+                Map<String, String> params = new HashMap<>();
+                params.put("Range", "bytes=" + start + "-" + (start + length - 1));
+                HttpURLConnection conn = HttpUtils.getInstance().openConnection(url, params);
+                try (InputStream is = conn.getInputStream()) {
+                    HttpUtils.readFully(is, new byte[length]);
+                }
+            }
+        }
+
+        delay = 5;
+        long t0 = System.nanoTime();
+        for (long start : starts) {
+            byte[] bytes = transport.getRange(url, start, start + length - 1);
+            assertEquals(length, bytes.length);
+        }
+        long transportNanos = System.nanoTime() - t0;
+
+        t0 = System.nanoTime();
+        List<CompletableFuture<byte[]>> futures = new ArrayList<>();
+        for (long start : starts) {
+            futures.add(transport.getRangeAsync(url, start, start + length - 1));
+        }
+        for (int i = 0; i < n; i++) {
+            assertArrayEquals(Arrays.copyOfRange(content, (int) starts[i], (int) starts[i] + length), futures.get(i).get());
+        }
+        long asyncNanos = System.nanoTime() - t0;
+
+        t0 = System.nanoTime();
+        byte[] buffer = new byte[length];
+        for (long start : starts) {
+            Map<String, String> params = new HashMap<>();
+            params.put("Range", "bytes=" + start + "-" + (start + length - 1));
+            HttpURLConnection conn = HttpUtils.getInstance().openConnection(url, params);
+            try (InputStream is = conn.getInputStream()) {
+                HttpUtils.readFully(is, buffer);
+            }
+        }
+        long connectionNanos = System.nanoTime() - t0;
+        delay = 0;
+
+        log.info(String.format("%d range reads of %d bytes:  HttpClient %.1f ms, HttpClient async %.1f ms, " +
+                        "HttpURLConnection %.1f ms", n, length, transportNanos / 1.0e6, asyncNanos / 1.0e6,
+                connectionNanos / 1.0e6));
+        log.info(url.getHost() + ": " + transport.getMetrics(url.getHost()));
+    }
+
+    /**
+     * Reads through the seekable stream use the transport when it is enabled
+     */
+    @Test
+    public void testSeekableStream() throws Exception {
+
+        for (boolean enable : new boolean[]{false, true}) {
+            PreferencesManager.getPreferences().put(Constants.HTTP_CLIENT_ENABLE, enable);
+            assertEquals(enable, HttpTransport.getInstance().isSupported(url));
+
+            IGVSeekableHTTPStream stream = new IGVSeekableHTTPStream(url);
+            stream.seek(5000);
+            byte[] bytes = new byte[100];
+            assertEquals(100, stream.read(bytes, 0, 100));
+            assertArrayEquals(Arrays.copyOfRange(content, 5000, 5100), bytes);
+        }
+    }
+}
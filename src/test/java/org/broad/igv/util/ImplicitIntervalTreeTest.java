@@ -0,0 +1,148 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.util;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ImplicitIntervalTreeTest {
+
+    private static List<int[]> randomIntervals(Random random, int n, int maxPosition, int maxLength) {
+        List<int[]> intervals = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            int start = random.nextInt(maxPosition);
+            // Mostly short intervals with an occasional long one
+            int length = random.nextInt(100) == 0 ? random.nextInt(maxLength * 100) : random.nextInt(maxLength);
+            intervals.add(new int[]{start, start + length + 1});
+        }
+        return intervals;
+    }
+
+    @Test
+    public void testEmpty() {
+        ImplicitIntervalTree<int[]> tree = new ImplicitIntervalTree<>(new ArrayList<>(), iv -> iv[0], iv -> iv[1]);
+        assertEquals(0, tree.size());
+        assertEquals(0, tree.getOverlapping(0, 100).size());
+    }
+
+    /**
+     * Compare queries to a brute force scan, for a range of tree sizes including non powers of 2
+     */
+    @Test
+    public void testOverlapping() {
+
+        Random random = new Random(1234);
+        for (int n : new int[]{1, 2, 3, 7, 8, 9, 15, 16, 17, 100, 1000, 4097}) {
+
+            List<int[]> intervals = randomIntervals(random, n, 100000, 1000);
+            ImplicitIntervalTree<int[]> tree = new ImplicitIntervalTree<>(intervals, iv -> iv[0], iv -> iv[1]);
+            assertEquals(n, tree.size());
+
+            for (int q = 0; q < 200; q++) {
+                int start = random.nextInt(110000) - 5000;
+                int end = start + random.nextInt(5000);
+
+                Set<int[]> expected = Collections.newSetFromMap(new IdentityHashMap<>());
+                for (int[] iv : intervals) {
+                    if (iv[0] < end && start < iv[1]) expected.add(iv);
+                }
+
+                List<int[]> result = tree.getOverlapping(start, end);
+                assertEquals(expected.size(), result.size());
+                int lastStart = Integer.MIN_VALUE;
+                for (int[] iv : result) {
+                    assertTrue(expected.contains(iv));
+                    assertTrue(iv[0] >= lastStart);
+                    lastStart = iv[0];
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testIndexAccess() {
+        List<int[]> intervals = Arrays.asList(new int[]{20, 30}, new int[]{0, 10}, new int[]{5, 25});
+        ImplicitIntervalTree<int[]> tree = new ImplicitIntervalTree<>(intervals, iv -> iv[0], iv -> iv[1]);
+
+        List<Integer> indeces = new ArrayList<>();
+        tree.forEachOverlappingIndex(8, 21, indeces::add);
+        assertEquals(Arrays.asList(0, 1, 2), indeces);
+        assertEquals(0, tree.getStart(0));
+        assertEquals(25, tree.getEnd(1));
+        assertEquals(20, tree.getValue(2)[0]);
+
+        // Half-open, intervals ending at the query start do not overlap
+        assertEquals(1, tree.getOverlapping(10, 11).size());
+    }
+
+    /**
+     * Compare build time and query time with the red-black IntervalTree
+     */
+    @Ignore
+    @Test
+    public void testSpeed() {
+
+        Random random = new Random(1234);
+        int n = 1000000;
+        int nQueries = 100000;
+        List<int[]> intervals = randomIntervals(random, n, 250000000, 10000);
+        int[][] queries = new int[nQueries][];
+        for (int q = 0; q < nQueries; q++) {
+            int start = random.nextInt(250000000);
+            queries[q] = new int[]{start, start + 100000};
+        }
+
+        long t0 = System.nanoTime();
+        IntervalTree<int[]> rbTree = new IntervalTree<>();
+        for (int[] iv : intervals) {
+            rbTree.insert(new Interval<>(iv[0], iv[1] - 1, iv));
+        }
+        long t1 = System.nanoTime();
+        ImplicitIntervalTree<int[]> tree = new ImplicitIntervalTree<>(intervals, iv -> iv[0], iv -> iv[1]);
+        long t2 = System.nanoTime();
+
+        long rbCount = 0;
+        long t3 = System.nanoTime();
+        for (int[] q : queries) {
+            rbCount += rbTree.findOverlapping(q[0], q[1] - 1).size();
+        }
+        long t4 = System.nanoTime();
+        long[] count = new long[1];
+        for (int[] q : queries) {
+            tree.forEachOverlappingIndex(q[0], q[1], i -> count[0]++);
+        }
+        long t5 = System.nanoTime();
+
+        assertEquals(rbCount, count[0]);
+        assertTrue((t2 - t1) < (t1 - t0));
+        assertTrue((t5 - t4) < (t4 - t3));
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class LoadSchedulerTest {
+
+    private static LoadScheduler newScheduler(int maxLoads, int maxPerResource) {
+        return new LoadScheduler(Executors.newCachedThreadPool(), maxLoads, maxPerResource, 1);
+    }
+
+    @Test
+    public void testResourceLimit() throws Exception {
+
+        LoadScheduler scheduler = newScheduler(10, 2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(scheduler.submitLoad("file.bam", i, LoadScheduler.Priority.VISIBLE, () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(20);
+                running.decrementAndGet();
+            }));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+        assertEquals(2, maxRunning.get());
+        assertEquals(10, scheduler.getCompletedCount());
+    }
+
+    @Test
+    public void testExplicitResourceLimit() throws Exception {
+
+        LoadScheduler scheduler = newScheduler(10, 2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            futures.add(scheduler.submitLoad("example.org", 4, null, LoadScheduler.Priority.VISIBLE, () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(20);
+                running.decrementAndGet();
+            }));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+        assertEquals(4, maxRunning.get());
+    }
+
+    @Test
+    public void testPriorityAndSupersede() throws Exception {
+
+        LoadScheduler scheduler = newScheduler(1, 1);
+        CountDownLatch latch = new CountDownLatch(1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+        // Occupy the only slot so the rest queue
+        CompletableFuture<Void> blocker = scheduler.submitLoad(null, "blocker", LoadScheduler.Priority.VISIBLE, () -> {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                // ignore
+            }
+        });
+        CompletableFuture<Void> background = scheduler.submitLoad(null, "b", LoadScheduler.Priority.BACKGROUND, () -> order.add("background"));
+        CompletableFuture<Void> stale = scheduler.submitLoad(null, "v", LoadScheduler.Priority.VISIBLE, () -> order.add("stale"));
+        CompletableFuture<Void> current = scheduler.submitLoad(null, "v", LoadScheduler.Priority.VISIBLE, () -> order.add("current"));
+
+        // The superseded load completes without running
+        stale.get(1, TimeUnit.SECONDS);
+        assertEquals(1, scheduler.getSupersededCount());
+
+        latch.countDown();
+        CompletableFuture.allOf(blocker, background, current).get(10, TimeUnit.SECONDS);
+        assertEquals(List.of("current", "background"), order);
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        LoadScheduler scheduler = newScheduler(2, 2);
+        CompletableFuture<Void> future = scheduler.submitLoad(null, null, LoadScheduler.Priority.VISIBLE, () -> {
+            throw new RuntimeException("load failed");
+        });
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            fail("Expected exception");
+        } catch (ExecutionException e) {
+            assertEquals("load failed", e.getCause().getMessage());
+        }
+        assertEquals(1, scheduler.getFailedCount());
+        assertEquals(0, scheduler.getRunningCount());
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            // ignore
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+
+import static org.junit.Assert.*;
+
+public class SidecarFilesTest {
+
+    private static final int MAGIC = 0x49475458;
+
+    private File directory;
+    private File sourceFile;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = new File(TestUtils.TMP_OUTPUT_DIR, "sidecars");
+        directory.mkdirs();
+        directory.deleteOnExit();
+        for (File f : directory.listFiles()) {
+            f.delete();
+        }
+        sourceFile = new File(TestUtils.TMP_OUTPUT_DIR, "source.txt");
+        sourceFile.deleteOnExit();
+        try (PrintWriter pw = new PrintWriter(new FileWriter(sourceFile))) {
+            pw.println("source");
+        }
+    }
+
+    @Test
+    public void testWriteAndCheck() throws IOException {
+
+        File sidecar = SidecarFiles.getFile(directory, sourceFile, ".test");
+        sidecar.deleteOnExit();
+        assertTrue(sidecar.getName().startsWith("source.txt_"));
+        assertNull(SidecarFiles.openIfCurrent(sidecar, MAGIC, 1, sourceFile));
+
+        SidecarFiles.write(sidecar, tmpFile -> {
+            try (DataOutputStream dos = new DataOutputStream(new FileOutputStream(tmpFile))) {
+                SidecarFiles.writeHeader(dos, MAGIC, 1, sourceFile);
+                dos.writeInt(42);
+            }
+        });
+        assertEquals(1, directory.listFiles().length);
+
+        try (DataInputStream dis = SidecarFiles.openIfCurrent(sidecar, MAGIC, 1, sourceFile)) {
+            assertNotNull(dis);
+            assertEquals(42, dis.readInt());
+        }
+        assertNull(SidecarFiles.openIfCurrent(sidecar, MAGIC, 2, sourceFile));
+
+        sourceFile.setLastModified(sourceFile.lastModified() - 10000);
+        assertNull(SidecarFiles.openIfCurrent(sidecar, MAGIC, 1, sourceFile));
+    }
+
+    @Test
+    public void testFailedWriteKeepsOldVersion() throws IOException {
+
+        File sidecar = SidecarFiles.getFile(directory, sourceFile, ".test");
+        sidecar.deleteOnExit();
+        SidecarFiles.write(sidecar, tmpFile -> {
+            try (DataOutputStream dos = new DataOutputStream(new FileOutputStream(tmpFile))) {
+                SidecarFiles.writeHeader(dos, MAGIC, 1, sourceFile);
+            }
+        });
+        long length = sidecar.length();
+
+        try {
+            SidecarFiles.write(sidecar, tmpFile -> {
+                try (DataOutputStream dos = new DataOutputStream(new FileOutputStream(tmpFile))) {
+                    dos.writeInt(0);
+                }
+                throw new IOException("Write failed");
+            });
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // Expected
+        }
+        assertEquals(length, sidecar.length());
+        assertEquals(1, directory.listFiles().length);
+    }
+
+    @Test
+    public void testDeleteOutdated() throws IOException {
+
+        long now = System.currentTimeMillis();
+        File outdated = createFile("deleted.bed_1a2b3c.test", now - SidecarFiles.MAX_AGE - 1000);
+        File recent = createFile("current.bed_4d5e6f.test", now - 1000);
+        File otherExtension = createFile("deleted.bed_1a2b3c.other", now - SidecarFiles.MAX_AGE - 1000);
+        File notSidecar = createFile("notes.test", now - SidecarFiles.MAX_AGE - 1000);
+        File staleTemp = createFile("current.bed_4d5e6f.test.123.tmp.test", now - SidecarFiles.MAX_TEMP_AGE - 1000);
+
+        assertEquals(2, SidecarFiles.deleteOutdated(directory, ".test", now));
+        assertFalse(outdated.exists());
+        assertFalse(staleTemp.exists());
+        assertTrue(recent.exists());
+        assertTrue(otherExtension.exists());
+        assertTrue(notSidecar.exists());
+    }
+
+    private File createFile(String name, long lastModified) throws IOException {
+        File f = new File(directory, name);
+        f.deleteOnExit();
+        f.createNewFile();
+        f.setLastModified(lastModified);
+        return f;
+    }
+}